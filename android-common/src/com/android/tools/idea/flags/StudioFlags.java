@@ -229,6 +229,12 @@ public final class StudioFlags {
     "If enabled, the surface displays some debug information to diagnose performance",
     false);
 
+  public static final Flag<Boolean> NELE_RETAINED_DISPLAY_LIST = Flag.create(
+    NELE, "retained.display.list", "Only rebuild the changed parts of the display list",
+    "If enabled, the draw commands of components that did not change are reused when the display list is rebuilt, and repaints " +
+    "are limited to the area of the changed components when possible.",
+    true);
+
   public static final Flag<Boolean> NELE_SPLIT_EDITOR = Flag.create(
     NELE, "split.layout.editor", "Enable design editors and XML side-by-side view.",
     "Enable this flag to display the design editors side-by-side with their text representation.",
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.lang.androidSql.room
+
+import com.android.support.AndroidxName
+import com.intellij.ide.highlighter.JavaFileType
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.psi.search.GlobalSearchScope
+import com.intellij.util.indexing.DataIndexer
+import com.intellij.util.indexing.DefaultFileTypeSpecificInputFilter
+import com.intellij.util.indexing.FileBasedIndex
+import com.intellij.util.indexing.FileContent
+import com.intellij.util.indexing.ID
+import com.intellij.util.indexing.ScalarIndexExtension
+import com.intellij.util.io.EnumeratorStringDescriptor
+import com.intellij.util.io.KeyDescriptor
+import org.jetbrains.kotlin.idea.KotlinFileType
+
+/**
+ * File based index of Java and Kotlin source files that may declare parts of a Room schema.
+ *
+ * Keys are the short names of the Room annotations that contribute to [RoomSchema] (see [SCHEMA_ANNOTATIONS]). The index is purely
+ * textual, so it may contain false positives (e.g. a JPA `@Entity`); [RoomSchemaManager] checks the actual annotations when it builds
+ * the schema fragment of every file returned by the index.
+ */
+class RoomAnnotatedFilesIndex : ScalarIndexExtension<String>() {
+  companion object {
+    @JvmField
+    val NAME = ID.create<String, Void>("RoomAnnotatedFilesIndex")
+
+    /** Room annotations that define tables, databases or DAOs. `@Fts3` and `@Fts4` are only valid together with `@Entity`. */
+    val SCHEMA_ANNOTATIONS = listOf(RoomAnnotations.ENTITY, RoomAnnotations.DATABASE_VIEW, RoomAnnotations.DATABASE, RoomAnnotations.DAO)
+
+    private val ANNOTATION_SHORT_NAMES = SCHEMA_ANNOTATIONS.map { it.newName().substringAfterLast('.') }.toSet()
+
+    /** Matches an annotation usage, possibly fully qualified, e.g. `@Entity` or `@androidx.room.Entity`. */
+    private val ANNOTATION_PATTERN = Regex("""@\s*(?:[\w$]+\s*\.\s*)*(\w+)""")
+
+    /** Returns source files in [scope] that use the given Room annotation. */
+    fun getFilesWithAnnotation(annotation: AndroidxName, scope: GlobalSearchScope): Collection<VirtualFile> {
+      return FileBasedIndex.getInstance().getContainingFiles(NAME, annotation.newName().substringAfterLast('.'), scope)
+    }
+  }
+
+  override fun getName(): ID<String, Void> = NAME
+
+  override fun getIndexer(): DataIndexer<String, Void, FileContent> = DataIndexer { inputData ->
+    val text = inputData.contentAsText
+    if (!text.contains("@")) return@DataIndexer emptyMap()
+
+    val result = HashMap<String, Void?>()
+    for (match in ANNOTATION_PATTERN.findAll(text)) {
+      val shortName = match.groupValues[1]
+      if (shortName in ANNOTATION_SHORT_NAMES) {
+        result[shortName] = null
+        if (result.size == ANNOTATION_SHORT_NAMES.size) break
+      }
+    }
+    result
+  }
+
+  override fun getKeyDescriptor(): KeyDescriptor<String> = EnumeratorStringDescriptor.INSTANCE
+
+  override fun getVersion() = 1
+
+  override fun getInputFilter(): FileBasedIndex.InputFilter =
+    DefaultFileTypeSpecificInputFilter(JavaFileType.INSTANCE, KotlinFileType.INSTANCE)
+
+  override fun dependsOnFileContent() = true
+}
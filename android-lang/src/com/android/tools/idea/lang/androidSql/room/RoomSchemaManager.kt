@@ -28,13 +28,18 @@ import com.android.tools.idea.projectsystem.getScopeType
 import com.intellij.openapi.diagnostic.Logger
 import com.intellij.openapi.diagnostic.debug
 import com.intellij.openapi.module.Module
+import com.intellij.openapi.roots.ProjectRootModificationTracker
+import com.intellij.openapi.util.Key
+import com.intellij.openapi.vfs.VirtualFile
 import com.intellij.psi.*
 import com.intellij.psi.search.GlobalSearchScope
+import com.intellij.psi.search.ProjectScope
 import com.intellij.psi.search.searches.AnnotatedElementsSearch.searchPsiClasses
 import com.intellij.psi.util.*
 import com.intellij.testFramework.LightVirtualFile
 import org.jetbrains.kotlin.asJava.elements.KtLightField
 import org.jetbrains.kotlin.psi.KtExpression
+import org.jetbrains.kotlin.psi.KtStringTemplateExpression
 
 private val LOG = Logger.getInstance(RoomSchemaManager::class.java)
 
@@ -42,9 +47,12 @@ private val LOG = Logger.getInstance(RoomSchemaManager::class.java)
 class RoomSchemaManager(val module: Module) {
   companion object {
     fun getInstance(module: Module): RoomSchemaManager = module.getService(RoomSchemaManager::class.java)!!
+
+    private val FRAGMENT_KEY = Key.create<CachedValue<RoomSchema>>("RoomSchemaManager.fragment")
   }
 
   private val schemas = ScopeType.values().associate { it to createCachedValue(it) }
+  private val librarySchemas = ScopeType.values().associate { it to createLibraryCachedValue(it) }
 
   private fun createCachedValue(scope: ScopeType): CachedValue<RoomSchema> {
     return CachedValuesManager.getManager(module.project).createCachedValue {
@@ -52,10 +60,16 @@ class RoomSchemaManager(val module: Module) {
     }
   }
 
+  private fun createLibraryCachedValue(scope: ScopeType): CachedValue<RoomSchema> {
+    return CachedValuesManager.getManager(module.project).createCachedValue {
+      CachedValueProvider.Result(buildLibrarySchema(module, scope), ProjectRootModificationTracker.getInstance(module.project))
+    }
+  }
+
   /**
    * Returns the [RoomSchema] visible from the given [PsiFile] or null if Room is not used in the project.
    *
-   * The schema is cached in the file and recomputed after a change to PSI.
+   * The schema is cached in the module and merged again after a change to PSI, reusing the fragments of unchanged files.
    */
   fun getSchema(psiFile: PsiFile): RoomSchema? {
     var vFile = psiFile.originalFile.virtualFile ?: return null
@@ -72,15 +86,49 @@ class RoomSchemaManager(val module: Module) {
   private val constantEvaluationHelper = JavaPsiFacade.getInstance(module.project).constantEvaluationHelper
   private val pointerManager = SmartPointerManager.getInstance(module.project)
 
-  /** Builds the schema using IJ indexes. */
+  /**
+   * Builds the schema by merging per-file schema fragments of the source files found by [RoomAnnotatedFilesIndex] with the schema
+   * defined in libraries.
+   *
+   * Fragments are cached in their files and depend only on the files they were computed from (see [getFragmentDependencies]), so
+   * after an edit only the fragments of the modified files are recomputed.
+   */
   private fun buildSchema(module: Module, scopeType: ScopeType): RoomSchema? {
     val scope = module.getModuleSystem().getResolveScope(scopeType)
 
     if (!isRoomPresentInScope(scope)) return null
 
-    LOG.debug { "Recalculating Room schema for module ${module.name} for scope ${scopeType}" }
+    LOG.debug { "Merging Room schema for module ${module.name} for scope ${scopeType}" }
+
+    val project = module.project
+    val sourceScope = scope.intersectWith(ProjectScope.getContentScope(project))
+    val psiManager = PsiManager.getInstance(project)
+    val files = LinkedHashSet<VirtualFile>()
+    RoomAnnotatedFilesIndex.SCHEMA_ANNOTATIONS.forEach { files.addAll(RoomAnnotatedFilesIndex.getFilesWithAnnotation(it, sourceScope)) }
+
+    val librarySchema = librarySchemas[scopeType]!!.value
+    val databases = HashSet<RoomDatabase>(librarySchema?.databases.orEmpty())
+    val tables = HashSet<RoomTable>(librarySchema?.tables.orEmpty())
+    val daos = HashSet<Dao>(librarySchema?.daos.orEmpty())
+
+    for (file in files) {
+      val psiFile = psiManager.findFile(file) as? PsiClassOwner ?: continue
+      val fragment = getFileFragment(psiFile)
+      databases.addAll(fragment.databases)
+      tables.addAll(fragment.tables)
+      daos.addAll(fragment.daos)
+    }
+
+    return RoomSchema(databases, tables, daos)
+  }
 
-    val psiFacade = JavaPsiFacade.getInstance(module.project) ?: return null
+  /** Builds the part of the schema defined by compiled classes, which only changes together with project roots. */
+  private fun buildLibrarySchema(module: Module, scopeType: ScopeType): RoomSchema? {
+    val project = module.project
+    val scope = module.getModuleSystem().getResolveScope(scopeType).intersectWith(ProjectScope.getLibrariesScope(project))
+    val psiFacade = JavaPsiFacade.getInstance(project) ?: return null
+
+    LOG.debug { "Recalculating library Room schema for module ${module.name} for scope ${scopeType}" }
 
     // Some of this logic is repeated in [RoomReferenceSearchExecutor], make sure to keep them in sync.
     val entities = processAnnotatedClasses(psiFacade, scope, RoomAnnotations.ENTITY) { createTable(it, RoomTable.Type.ENTITY) }
@@ -93,6 +141,86 @@ class RoomSchemaManager(val module: Module) {
     return RoomSchema(databases, entities + views, daos)
   }
 
+  private fun getFileFragment(psiFile: PsiClassOwner): RoomSchema {
+    return CachedValuesManager.getCachedValue(psiFile, FRAGMENT_KEY) {
+      val fragment = buildFragment(psiFile)
+      CachedValueProvider.Result.create(fragment, *getFragmentDependencies(psiFile, fragment))
+    }
+  }
+
+  /** Builds the part of the schema declared by classes of a single file. */
+  private fun buildFragment(psiFile: PsiClassOwner): RoomSchema {
+    val classes = ArrayList<PsiClass>()
+    fun collect(psiClass: PsiClass) {
+      classes.add(psiClass)
+      psiClass.innerClasses.forEach(::collect)
+    }
+    psiFile.classes.forEach(::collect)
+
+    fun PsiClass.hasAnnotation(annotation: AndroidxName) = modifierList?.findAnnotation(annotation) != null
+
+    // Some of this logic is repeated in [RoomReferenceSearchExecutor], make sure to keep them in sync.
+    val entities = classes.filter { it.hasAnnotation(RoomAnnotations.ENTITY) }.mapNotNull { createTable(it, RoomTable.Type.ENTITY) }
+    val views = classes.filter { it.hasAnnotation(RoomAnnotations.DATABASE_VIEW) }.mapNotNull { createTable(it, RoomTable.Type.VIEW) }
+    val databases = classes.filter { it.hasAnnotation(RoomAnnotations.DATABASE) }.mapNotNull { createDatabase(it, pointerManager) }
+    val daos = classes.filter { it.hasAnnotation(RoomAnnotations.DAO) }.map { Dao(pointerManager.createSmartPsiElementPointer(it)) }
+
+    return RoomSchema(databases.toSet(), (entities + views).toSet(), daos.toSet())
+  }
+
+  /**
+   * Returns the dependencies of a schema fragment: the file itself and the files declaring super classes and embedded classes of its
+   * tables. If a table or column name is not a literal (e.g. refers to a constant declared elsewhere), the fragment falls back to
+   * depending on any PSI change.
+   */
+  private fun getFragmentDependencies(psiFile: PsiFile, fragment: RoomSchema): Array<Any> {
+    val dependencies = LinkedHashSet<Any>()
+    dependencies.add(psiFile)
+    val visited = HashSet<PsiClass>()
+    for (table in fragment.tables) {
+      val psiClass = table.psiClass.element ?: continue
+      if (!collectTableDependencies(psiClass, dependencies, visited)) {
+        return arrayOf(PsiModificationTracker.MODIFICATION_COUNT)
+      }
+    }
+    return dependencies.toTypedArray()
+  }
+
+  private fun collectTableDependencies(psiClass: PsiClass, dependencies: MutableSet<Any>, visited: MutableSet<PsiClass>): Boolean {
+    if (!visited.add(psiClass)) return true
+    dependencies.add(psiClass.containingFile ?: return false)
+
+    val modifierList = psiClass.modifierList
+    if (!isLiteralOrAbsent(modifierList?.findAnnotation(RoomAnnotations.ENTITY)?.findDeclaredAttributeValue("tableName")) ||
+        !isLiteralOrAbsent(modifierList?.findAnnotation(RoomAnnotations.DATABASE_VIEW)?.findDeclaredAttributeValue("viewName"))) {
+      return false
+    }
+
+    for (psiField in psiClass.fields) {
+      val fieldModifierList = psiField.modifierList ?: continue
+      if (!isLiteralOrAbsent(fieldModifierList.findAnnotation(RoomAnnotations.COLUMN_INFO)?.findDeclaredAttributeValue("name"))) {
+        return false
+      }
+      if (psiField is KtLightField && !isLiteralOrAbsent(psiField.getPropertyAnnotationExpression(RoomAnnotations.COLUMN_INFO, "name"))) {
+        return false
+      }
+      val embeddedAnnotation = fieldModifierList.findAnnotation(RoomAnnotations.EMBEDDED) ?: continue
+      if (!isLiteralOrAbsent(embeddedAnnotation.findDeclaredAttributeValue("prefix"))) return false
+      val embeddedClass = PsiUtil.resolveClassInClassTypeOnly(psiField.type) ?: continue
+      if (!collectTableDependencies(embeddedClass, dependencies, visited)) return false
+    }
+
+    return psiClass.supers.all { collectTableDependencies(it, dependencies, visited) }
+  }
+
+  private fun isLiteralOrAbsent(value: PsiElement?): Boolean {
+    return when (value) {
+      null, is PsiLiteralExpression -> true
+      is KtStringTemplateExpression -> !value.hasInterpolation()
+      else -> false
+    }
+  }
+
   /**
    * Finds classes annotated with the given annotation (both old and new names) and processes them using the supplied [processor] function,
    * gathering non-null results.
@@ -527,6 +527,56 @@ class RoomSchemaManagerTest : JavaCodeInsightFixtureTestCase() {
         daos = emptySet()))
   }
 
+  fun testTablesReusedAfterUnrelatedEdit() {
+    val entityClass = myFixture.addRoomEntity("com.example.User", "name" ofType "String")
+    val otherClass = myFixture.addClass(
+      """
+        package com.example;
+
+        public class Other {}
+        """.trimIndent())
+
+    val table = getSchema(entityClass).tables.single()
+
+    myFixture.openFileInEditor(otherClass.containingFile.virtualFile)
+    myFixture.editor.caretModel.moveToOffset(myFixture.editor.document.getLineStartOffset(2))
+    myFixture.type("// comment\n")
+    PsiDocumentManager.getInstance(project).commitAllDocuments()
+
+    assertThat(getSchema(entityClass).tables.single()).isSameAs(table)
+  }
+
+  fun testColumns_inheritance_editBase() {
+    val baseClass = myFixture.addClass(
+      """
+        package com.example;
+
+        public abstract class NamedBase {
+        }
+        """.trimIndent())
+
+    val entityClass = myFixture.addClass(
+      """
+        package com.example;
+
+        import androidx.room.Entity;
+
+        @Entity
+        public class User extends NamedBase {
+          private int age;
+        }
+        """.trimIndent())
+
+    assertThat(getSchema(entityClass).tables.single().columns.mapNotNull { it.name }).containsExactly("age")
+
+    myFixture.openFileInEditor(baseClass.containingFile.virtualFile)
+    myFixture.editor.caretModel.moveToOffset(myFixture.editor.document.getLineStartOffset(3))
+    myFixture.type("private String name;\n")
+    PsiDocumentManager.getInstance(project).commitAllDocuments()
+
+    assertThat(getSchema(entityClass).tables.single().columns.mapNotNull { it.name }).containsExactly("age", "name")
+  }
+
   fun testFts() {
     val psiClass = myFixture.addClass(
       """
@@ -18,6 +18,7 @@ package com.android.tools.idea.transport.poller
 import com.android.tools.profiler.proto.Common
 import com.android.tools.profiler.proto.Transport
 import com.android.tools.profiler.proto.TransportServiceGrpc
+import com.google.common.util.concurrent.ThreadFactoryBuilder
 import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.CopyOnWriteArrayList
 import java.util.concurrent.Executors
@@ -25,6 +26,9 @@ import java.util.concurrent.ScheduledExecutorService
 import java.util.concurrent.ScheduledFuture
 import java.util.concurrent.TimeUnit
 import kotlin.math.max
+import kotlin.math.min
+
+private const val POLLING_THREAD_COUNT = 4
 
 /**
  * Encapsulates most of the polling functionality that Transport Pipeline subscribers would need to implement
@@ -53,45 +57,81 @@ class TransportEventPoller(private val transportClient: TransportServiceGrpc.Tra
   fun poll() {
     // Copy the list so we can remove listeners within the loop in-place.
     val listeners = mutableListOf<TransportEventListener>().apply { addAll(eventListeners) }
-    // Poll for each listener
+
+    // Group listeners by their request parameters. Listeners in the same group share a single request starting at the earliest
+    // timestamp any of them needs; they only differ in the events they receive, which are never before their own start timestamp.
+    val queries = LinkedHashMap<EventQuery, MutableList<ListenerState>>()
     for (eventListener in listeners) {
       // Use start/end time if available
       val startTimestamp = listenersToLastTimestamp[eventListener] ?: eventListener.startTime?.invoke() ?: Long.MIN_VALUE
-      val endTimestamp = eventListener.endTime()
+      val query = EventQuery(eventListener.eventKind,
+                             eventListener.streamId?.invoke(),
+                             eventListener.processId?.invoke(),
+                             eventListener.groupId?.invoke(),
+                             eventListener.endTime())
+      queries.getOrPut(query) { mutableListOf() }.add(ListenerState(eventListener, startTimestamp))
+    }
 
+    for ((query, states) in queries) {
       val builder = Transport.GetEventGroupsRequest.newBuilder()
-        .setKind(eventListener.eventKind)
-        .setFromTimestamp(startTimestamp)
-        .setToTimestamp(endTimestamp)
-      eventListener.streamId?.invoke()?.let { builder.streamId = it }
-      eventListener.processId?.invoke()?.let { builder.pid = it }
-      eventListener.groupId?.invoke()?.let { builder.groupId = it }
-
-      val request = builder.build()
-      var removeListener = false
+        .setKind(query.kind)
+        .setFromTimestamp(states.fold(Long.MAX_VALUE) { timestamp, state -> min(timestamp, state.startTimestamp) })
+        .setToTimestamp(query.endTimestamp)
+      query.streamId?.let { builder.streamId = it }
+      query.processId?.let { builder.pid = it }
+      query.groupId?.let { builder.groupId = it }
 
       // Order by timestamp
-      val response = transportClient.getEventGroups(request)
+      val response = transportClient.getEventGroups(builder.build())
       if (response != Transport.GetEventGroupsResponse.getDefaultInstance()) {
-        val filtered = response.groupsList
+        val events = response.groupsList
           .flatMap { group -> group.eventsList }
           .sortedWith(sortOrder)
-          .filter { event -> event.timestamp >= startTimestamp && eventListener.filter(event) }
-        filtered.forEach { event -> eventListener.executor.execute { removeListener = eventListener.callback(event) } }
-        val maxTimeEvent = filtered.maxBy {it.timestamp}
-        // Update last timestamp per listener
-        maxTimeEvent?.let { listenersToLastTimestamp[eventListener] = max(startTimestamp, it.timestamp + 1) }
+        states.forEach { state -> dispatch(state.listener, state.startTimestamp, events) }
       }
+    }
+  }
 
-      if (removeListener) {
-        unregisterListener(eventListener)
+  /**
+   * Delivers the events at or after [startTimestamp] that pass the listener's filter. All events are delivered by a single task
+   * on the listener's executor; the remaining events are dropped once the listener is unregistered, e.g. because its callback asked
+   * for it to be removed.
+   */
+  private fun dispatch(eventListener: TransportEventListener, startTimestamp: Long, events: List<Common.Event>) {
+    val filtered = events.filter { event -> event.timestamp >= startTimestamp && eventListener.filter(event) }
+    val maxTimeEvent = filtered.maxBy { it.timestamp } ?: return
+    // Update last timestamp per listener
+    listenersToLastTimestamp[eventListener] = max(startTimestamp, maxTimeEvent.timestamp + 1)
+
+    eventListener.executor.execute {
+      for (event in filtered) {
+        if (!eventListeners.contains(eventListener)) {
+          break
+        }
+        if (eventListener.callback(event)) {
+          unregisterListener(eventListener)
+        }
       }
     }
   }
 
+  /**
+   * The parameters of a [Transport.GetEventGroupsRequest] except for the start timestamp.
+   */
+  private data class EventQuery(val kind: Common.Event.Kind,
+                                val streamId: Long?,
+                                val processId: Int?,
+                                val groupId: Long?,
+                                val endTimestamp: Long)
+
+  private class ListenerState(val listener: TransportEventListener, val startTimestamp: Long)
+
   companion object {
-    private val myExecutorService: ScheduledExecutorService = Executors.newScheduledThreadPool(1)
-    private val myScheduledFutures = mutableMapOf<TransportEventPoller, ScheduledFuture<*>>()
+    // Pollers are scheduled with a fixed delay, so a poller never runs concurrently with itself. Using more than one thread keeps
+    // a poller with slow requests or busy listeners from delaying all the other pollers.
+    private val myExecutorService: ScheduledExecutorService =
+      Executors.newScheduledThreadPool(POLLING_THREAD_COUNT, ThreadFactoryBuilder().setNameFormat("TransportEventPoller-%d").build())
+    private val myScheduledFutures = ConcurrentHashMap<TransportEventPoller, ScheduledFuture<*>>()
 
     @JvmOverloads
     @JvmStatic
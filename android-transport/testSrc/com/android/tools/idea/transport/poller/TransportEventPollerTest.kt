@@ -22,21 +22,31 @@ import com.android.tools.idea.transport.faketransport.FakeGrpcServer
 import com.android.tools.idea.transport.faketransport.FakeTransportService
 import com.android.tools.pipeline.example.proto.Echo
 import com.android.tools.profiler.proto.Common
+import com.android.tools.profiler.proto.Transport
 import com.google.common.truth.Truth.assertThat
 import com.google.common.util.concurrent.MoreExecutors
+import io.grpc.stub.StreamObserver
 import junit.framework.TestCase.fail
 import org.junit.Rule
 import org.junit.Test
 import java.util.ArrayList
 import java.util.concurrent.CountDownLatch
 import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
 
 private const val TIMEOUT_MILLISECONDS: Long = 10000
 
 class TransportEventPollerTest {
 
   private var timer = FakeTimer()
-  private var transportService = FakeTransportService(timer, true)
+  private val eventGroupRequestCount = AtomicInteger()
+  private var transportService = object : FakeTransportService(timer, true) {
+    override fun getEventGroups(request: Transport.GetEventGroupsRequest,
+                                responseObserver: StreamObserver<Transport.GetEventGroupsResponse>) {
+      eventGroupRequestCount.incrementAndGet()
+      super.getEventGroups(request, responseObserver)
+    }
+  }
 
   @get:Rule
   val grpcServer = FakeGrpcServer.createFakeGrpcServer("TransportEventPollerTestChannel", transportService, transportService)!!
@@ -229,6 +239,53 @@ class TransportEventPollerTest {
     assertThat(receivedEventsCount2).isEqualTo(5)
   }
 
+  /**
+   * Tests that listeners with the same request parameters share a single request and that each of them only receives the events
+   * after its own start time.
+   */
+  @Test
+  fun testListenersShareRequest() {
+    val transportClient = TransportClient(grpcServer.name)
+    // The poller is not scheduled, poll() is called directly.
+    val transportEventPoller = TransportEventPoller(transportClient.transportStub, Comparator.comparing(Common.Event::getTimestamp))
+    for (timestamp in 1L..3L) {
+      transportService.addEventToStream(FakeTransportService.FAKE_DEVICE_ID, generateEchoEvent(timestamp))
+    }
+
+    // The first listener removes itself after the event with timestamp 2, even though there are more events in the same poll.
+    val received1 = mutableListOf<Long>()
+    TransportEventListener(
+      eventKind = Common.Event.Kind.ECHO,
+      startTime = { 0L },
+      callback = { event ->
+        received1.add(event.timestamp)
+        event.timestamp == 2L
+      },
+      executor = MoreExecutors.directExecutor()
+    ).also { transportEventPoller.registerListener(it) }
+    val received2 = mutableListOf<Long>()
+    TransportEventListener(
+      eventKind = Common.Event.Kind.ECHO,
+      startTime = { 2L },
+      callback = { event ->
+        received2.add(event.timestamp)
+        false
+      },
+      executor = MoreExecutors.directExecutor()
+    ).also { transportEventPoller.registerListener(it) }
+
+    eventGroupRequestCount.set(0)
+    transportEventPoller.poll()
+    assertThat(eventGroupRequestCount.get()).isEqualTo(1)
+    assertThat(received1).containsExactly(1L, 2L).inOrder()
+    assertThat(received2).containsExactly(2L, 3L).inOrder()
+
+    transportService.addEventToStream(FakeTransportService.FAKE_DEVICE_ID, generateEchoEvent(4))
+    transportEventPoller.poll()
+    assertThat(received1).containsExactly(1L, 2L).inOrder()
+    assertThat(received2).containsExactly(2L, 3L, 4L).inOrder()
+  }
+
   @Test
   fun pollerTracksEventListenerTimestamp() {
     val transportClient = TransportClient(grpcServer.name)
@@ -36,9 +36,10 @@ import com.android.tools.idea.res.ResourceRepositoryManager;
 import com.android.utils.SparseArray;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Table;
 import com.intellij.openapi.application.ReadAction;
+import java.util.AbstractMap;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -62,13 +63,17 @@ public class ResourceResolverCache {
    * resolver since they can be shared between different layouts that only vary by theme.
    * Note that they key here is only the full configuration, whereas the map for the
    * resolvers also includes the theme.
+   * <p>
+   * The resources of each type are only configured when first looked up, see {@link ConfiguredResourceMap}.
    */
   @VisibleForTesting
-  final Map<String, Table<ResourceNamespace, ResourceType, ResourceValueMap>> myAppResourceMap = new HashMap<>();
+  final Map<String, Map<ResourceNamespace, Map<ResourceType, ResourceValueMap>>> myAppResourceMap = new HashMap<>();
 
   /**
    * Map of configured resources from Android framework. These are cached separately from the final resource
    * resolver since they can be shared between different layouts that only vary by theme.
+   * <p>
+   * The resources of each type are only configured when first looked up, see {@link ConfiguredResourceMap}.
    */
   @VisibleForTesting
   final Map<String, Map<ResourceType, ResourceValueMap>> myFrameworkResourceMap = new HashMap<>();
@@ -130,16 +135,19 @@ public class ResourceResolverCache {
           target == null ? Collections.emptyMap() : getConfiguredFrameworkResources(target, fullConfiguration);
 
       // App resources
-      Table<ResourceNamespace, ResourceType, ResourceValueMap> configuredAppRes = myAppResourceMap.get(qualifierString);
+      Map<ResourceNamespace, Map<ResourceType, ResourceValueMap>> configuredAppRes = myAppResourceMap.get(qualifierString);
       if (configuredAppRes == null) {
-        // Get the project resource values based on the current config.
-        configuredAppRes = ReadAction.compute(() -> ResourceRepositoryUtil.getConfiguredResources(resources, fullConfiguration));
+        // The project resource values are configured for the current config on first use.
+        configuredAppRes = new HashMap<>();
+        for (ResourceNamespace namespace : ReadAction.compute(resources::getNamespaces)) {
+          configuredAppRes.put(namespace, new ConfiguredResourceMap(resources, namespace, fullConfiguration, true));
+        }
         myAppResourceMap.put(qualifierString, configuredAppRes);
       }
 
       // Resource Resolver
       Map<ResourceNamespace, Map<ResourceType, ResourceValueMap>> allResources =
-          new DisjointUnionMap<>(Collections.singletonMap(ResourceNamespace.ANDROID, frameworkResources), configuredAppRes.rowMap());
+          new DisjointUnionMap<>(Collections.singletonMap(ResourceNamespace.ANDROID, frameworkResources), configuredAppRes);
 
       assert themeStyle.startsWith(PREFIX_RESOURCE_REF) : themeStyle;
 
@@ -181,7 +189,7 @@ public class ResourceResolverCache {
     // Get the framework resource values based on the current config.
     Map<ResourceType, ResourceValueMap> frameworkResources = myFrameworkResourceMap.get(qualifierString);
     if (frameworkResources == null) {
-      frameworkResources = ResourceRepositoryUtil.getConfiguredResources(resourceRepository, fullConfiguration).row(ResourceNamespace.ANDROID);
+      frameworkResources = new ConfiguredResourceMap(resourceRepository, ResourceNamespace.ANDROID, fullConfiguration, false);
       myFrameworkResourceMap.put(qualifierString, frameworkResources);
     }
     return frameworkResources;
@@ -252,4 +260,74 @@ public class ResourceResolverCache {
     myCustomConfigurationKey = qualifierString;
     myCustomResolverKey = newCustomResolverKey;
   }
+
+  /**
+   * Resources of a namespace configured for a {@link FolderConfiguration}, keyed by type. The resources of a type are only
+   * matched against the configuration when the type is first looked up, and then kept. Renders usually only look up a few
+   * types so most of the resources, in particular the framework ones, are never configured.
+   * <p>
+   * Iterating over the map configures all the types present in the repository.
+   */
+  @VisibleForTesting
+  static final class ConfiguredResourceMap extends AbstractMap<ResourceType, ResourceValueMap> {
+    @NotNull private final ResourceRepository myRepository;
+    @NotNull private final ResourceNamespace myNamespace;
+    @NotNull private final FolderConfiguration myConfiguration;
+    /** Whether the repository has to be read in a read action. */
+    private final boolean myNeedsReadAction;
+    private final Map<ResourceType, ResourceValueMap> myConfiguredResources = new EnumMap<>(ResourceType.class);
+    @Nullable private Set<Entry<ResourceType, ResourceValueMap>> myEntrySet;
+
+    ConfiguredResourceMap(@NotNull ResourceRepository repository,
+                          @NotNull ResourceNamespace namespace,
+                          @NotNull FolderConfiguration configuration,
+                          boolean needsReadAction) {
+      myRepository = repository;
+      myNamespace = namespace;
+      // The configuration may be modified by the caller after the map has been created.
+      myConfiguration = FolderConfiguration.copyOf(configuration);
+      myNeedsReadAction = needsReadAction;
+    }
+
+    @Override
+    @Nullable
+    public synchronized ResourceValueMap get(@Nullable Object key) {
+      if (!(key instanceof ResourceType)) {
+        return null;
+      }
+      ResourceType type = (ResourceType)key;
+      ResourceValueMap resources = myConfiguredResources.get(type);
+      if (resources == null) {
+        resources = myNeedsReadAction
+                    ? ReadAction.compute(() -> ResourceRepositoryUtil.getConfiguredResources(myRepository, myNamespace, type, myConfiguration))
+                    : ResourceRepositoryUtil.getConfiguredResources(myRepository, myNamespace, type, myConfiguration);
+        myConfiguredResources.put(type, resources);
+      }
+      return resources;
+    }
+
+    @Override
+    public boolean containsKey(@Nullable Object key) {
+      return key instanceof ResourceType && myRepository.hasResources(myNamespace, (ResourceType)key);
+    }
+
+    @Override
+    @NotNull
+    public synchronized Set<Entry<ResourceType, ResourceValueMap>> entrySet() {
+      if (myEntrySet == null) {
+        Map<ResourceType, ResourceValueMap> all = new EnumMap<>(ResourceType.class);
+        for (ResourceType type : myRepository.getResourceTypes(myNamespace)) {
+          all.put(type, get(type));
+        }
+        myEntrySet = Collections.unmodifiableMap(all).entrySet();
+      }
+      return myEntrySet;
+    }
+
+    /** Returns the number of types configured so far. */
+    @VisibleForTesting
+    synchronized int getConfiguredTypeCount() {
+      return myConfiguredResources.size();
+    }
+  }
 }
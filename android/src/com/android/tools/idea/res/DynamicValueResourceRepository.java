@@ -126,6 +126,7 @@ public final class DynamicValueResourceRepository extends LocalResourceRepositor
   private void notifyProjectSynced() {
     synchronized (ITEM_MAP_LOCK) {
       myResourceTable.clear(); // Computed lazily in getMap.
+      setModificationCount(ourModificationCounter.incrementAndGet());
       invalidateParentCaches(this, ResourceType.values());
     }
   }
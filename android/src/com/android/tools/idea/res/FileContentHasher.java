@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.res;
+
+import com.google.common.hash.Hashing;
+import com.intellij.openapi.vfs.VirtualFile;
+import java.io.IOException;
+import java.util.Arrays;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Computes a 64-bit hash of contents of a file. Used together with {@link FileTimeStampLengthHasher} to recognize
+ * files that were rewritten without changing their contents, e.g. by switching back and forth between VCS branches.
+ */
+public class FileContentHasher {
+  private static final byte[] NULL_HASH = new byte[8];
+
+  /**
+   * Computes a 64-bit hash of contents of a {@link VirtualFile}.
+   * Returns an array of 8 zero bytes if the virtual file is null, is not valid, or cannot be read.
+   */
+  @NotNull
+  public static byte[] hash(@Nullable VirtualFile virtualFile) {
+    if (virtualFile == null || !virtualFile.isValid() || virtualFile.isDirectory()) {
+      return NULL_HASH;
+    }
+    try {
+      return Hashing.sipHash24().hashBytes(virtualFile.contentsToByteArray()).asBytes();
+    }
+    catch (IOException e) {
+      return NULL_HASH;
+    }
+  }
+
+  /**
+   * Checks if the contents of a {@link VirtualFile} match the given hash previously returned by {@link #hash}.
+   */
+  public static boolean matches(@Nullable VirtualFile virtualFile, @NotNull byte[] expectedHash) {
+    if (Arrays.equals(expectedHash, NULL_HASH)) {
+      return false;
+    }
+    return Arrays.equals(expectedHash, hash(virtualFile));
+  }
+
+  /**
+   * Returns the length of the hashes returned by {@link #hash}.
+   */
+  public static int getHashLength() {
+    return NULL_HASH.length;
+  }
+}
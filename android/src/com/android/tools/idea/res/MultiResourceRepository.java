@@ -28,10 +28,12 @@ import com.google.common.base.Stopwatch;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMultiset;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.Multimaps;
 import com.google.common.collect.Multiset;
 import com.google.common.collect.Table;
 import com.google.common.collect.Tables;
@@ -55,6 +57,10 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.Predicate;
 import javax.annotation.concurrent.GuardedBy;
 import org.jetbrains.annotations.NotNull;
@@ -67,34 +73,48 @@ import org.jetbrains.annotations.Nullable;
  * replace/hide any subsequent definitions of the same resource.
  *
  * <p>In the resource repository hierarchy, MultiResourceRepository is an internal node, never a leaf.
+ *
+ * <p>The merged resources are published as immutable snapshots, one per namespace and resource type,
+ * tagged with the modification count they were computed for. Reads of an up to date snapshot, and of
+ * the list of children, do not take {@link #ITEM_MAP_LOCK}. The lock is only taken to compute a new
+ * snapshot after the resources have changed, and by the writers.
  */
 @SuppressWarnings("InstanceGuardedByStatic") // TODO: The whole locking scheme for resource repositories needs to be reworked.
 public abstract class MultiResourceRepository extends LocalResourceRepository implements Disposable {
   private static final Logger LOG = Logger.getInstance(MultiResourceRepository.class);
 
-  @GuardedBy("ITEM_MAP_LOCK")
-  @NotNull private ImmutableList<LocalResourceRepository> myLocalResources = ImmutableList.of();
-  @GuardedBy("ITEM_MAP_LOCK")
-  @NotNull private ImmutableList<AarResourceRepository> myLibraryResources = ImmutableList.of();
+  private static final int RESOURCE_TYPE_COUNT = ResourceType.values().length;
+
+  // The children related fields are immutable values, only replaced while holding ITEM_MAP_LOCK, so they can be read without it.
+  @NotNull private volatile ImmutableList<LocalResourceRepository> myLocalResources = ImmutableList.of();
+  @NotNull private volatile ImmutableList<AarResourceRepository> myLibraryResources = ImmutableList.of();
   /** A concatenation of {@link #myLocalResources} and {@link #myLibraryResources}. */
-  @GuardedBy("ITEM_MAP_LOCK")
-  @NotNull private ImmutableList<ResourceRepository> myChildren = ImmutableList.of();
+  @NotNull private volatile ImmutableList<ResourceRepository> myChildren = ImmutableList.of();
   /** Leaf resource repositories keyed by namespace. */
-  @GuardedBy("ITEM_MAP_LOCK")
-  @NotNull private ImmutableListMultimap<ResourceNamespace, SingleNamespaceResourceRepository> myLeafsByNamespace =
+  @NotNull private volatile ImmutableListMultimap<ResourceNamespace, SingleNamespaceResourceRepository> myLeafsByNamespace =
       ImmutableListMultimap.of();
   /** Contained single-namespace resource repositories keyed by namespace. */
-  @GuardedBy("ITEM_MAP_LOCK")
-  @NotNull private ImmutableListMultimap<ResourceNamespace, SingleNamespaceResourceRepository> myRepositoriesByNamespace =
+  @NotNull private volatile ImmutableListMultimap<ResourceNamespace, SingleNamespaceResourceRepository> myRepositoriesByNamespace =
       ImmutableListMultimap.of();
 
   @GuardedBy("ITEM_MAP_LOCK")
   @NotNull private ResourceItemComparator myResourceComparator =
       new ResourceItemComparator(new ResourcePriorityComparator(ImmutableList.of()));
 
-  @GuardedBy("ITEM_MAP_LOCK")
-  private long[] myModificationCounts;
+  /** Last seen modification counts of {@link #myLocalResources}, in the same order. */
+  @NotNull private volatile AtomicLongArray myModificationCounts = new AtomicLongArray(0);
 
+  /**
+   * Read-only snapshots of the merged resources, indexed by namespace and {@link ResourceType#ordinal()}. A snapshot
+   * is used as long as the modification count and the version of its namespace and type are the ones it was computed
+   * for. Versions are bumped, and the snapshots cleared, while holding ITEM_MAP_LOCK when the caches are invalidated.
+   */
+  private final ConcurrentMap<ResourceNamespace, NamespaceSnapshots> mySnapshots = new ConcurrentHashMap<>();
+
+  /**
+   * Merged resources of the namespaces with more than one leaf repository. The maps are never modified once they are
+   * cached, since the snapshots are views of them: they are copied before being updated.
+   */
   @GuardedBy("ITEM_MAP_LOCK")
   private final ResourceTable myCachedMaps = new ResourceTable();
 
@@ -136,7 +156,7 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
 
       myResourceComparator = new ResourceItemComparator(new ResourcePriorityComparator(myLeafsByNamespace.values()));
 
-      myModificationCounts = new long[localResources.size()];
+      AtomicLongArray modificationCounts = new AtomicLongArray(localResources.size());
       if (localResources.size() == 1) {
         // Make sure that the modification count of the child and the parent are same. This is
         // done so that we can return child's modification count, instead of ours.
@@ -146,9 +166,11 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
       int i = 0;
       for (LocalResourceRepository child : myLocalResources) {
         child.addParent(this);
-        myModificationCounts[i++] = child.getModificationCount();
+        modificationCounts.set(i++, child.getModificationCount());
       }
+      myModificationCounts = modificationCounts;
       myCachedMaps.clear();
+      clearSnapshots();
 
       invalidateParentCaches();
     }
@@ -185,22 +207,16 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
   }
 
   public ImmutableList<LocalResourceRepository> getLocalResources() {
-    synchronized (ITEM_MAP_LOCK) {
-      return myLocalResources;
-    }
+    return myLocalResources;
   }
 
   public ImmutableList<AarResourceRepository> getLibraryResources() {
-    synchronized (ITEM_MAP_LOCK) {
-      return myLibraryResources;
-    }
+    return myLibraryResources;
   }
 
   @NotNull
   public final List<ResourceRepository> getChildren() {
-    synchronized (ITEM_MAP_LOCK) {
-      return myChildren;
-    }
+    return myChildren;
   }
 
   /**
@@ -213,58 +229,56 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
    */
   @NotNull
   public final List<SingleNamespaceResourceRepository> getRepositoriesForNamespace(@NotNull ResourceNamespace namespace) {
-    synchronized (ITEM_MAP_LOCK) {
-      return myRepositoriesByNamespace.get(namespace);
-    }
+    return myRepositoriesByNamespace.get(namespace);
   }
 
   @Override
   public long getModificationCount() {
-    synchronized (ITEM_MAP_LOCK) {
-      if (myLocalResources.size() == 1) {
-        return myLocalResources.get(0).getModificationCount();
-      }
+    ImmutableList<LocalResourceRepository> localResources = myLocalResources;
+    if (localResources.size() == 1) {
+      return localResources.get(0).getModificationCount();
+    }
 
-      // See if any of the delegates have changed.
-      boolean changed = false;
-      for (int i = 0; i < myLocalResources.size(); i++) {
-        LocalResourceRepository child = myLocalResources.get(i);
-        long rev = child.getModificationCount();
-        if (rev != myModificationCounts[i]) {
-          myModificationCounts[i] = rev;
+    AtomicLongArray modificationCounts = myModificationCounts;
+    if (modificationCounts.length() != localResources.size()) {
+      // The children are being replaced by setChildren, which has already updated our modification count.
+      return super.getModificationCount();
+    }
+
+    // See if any of the delegates have changed.
+    boolean changed = false;
+    for (int i = 0; i < localResources.size(); i++) {
+      long rev = localResources.get(i).getModificationCount();
+      if (rev != modificationCounts.get(i)) {
+        if (!changed) {
+          // Update our count before recording the new counts of the children, so a concurrent caller that sees the new
+          // counts of the children also sees our new count. Concurrent callers may both update it, which is harmless.
+          setModificationCount(ourModificationCounter.incrementAndGet());
           changed = true;
         }
+        modificationCounts.set(i, rev);
       }
-
-      if (changed) {
-        setModificationCount(ourModificationCounter.incrementAndGet());
-      }
-
-      return super.getModificationCount();
     }
+
+    return super.getModificationCount();
   }
 
   @Override
   @NotNull
   public Set<ResourceNamespace> getNamespaces() {
-    synchronized (ITEM_MAP_LOCK) {
-      return myRepositoriesByNamespace.keySet();
-    }
+    return myRepositoriesByNamespace.keySet();
   }
 
   @Override
   @NotNull
   public ResourceVisitor.VisitResult accept(@NotNull ResourceVisitor visitor) {
-    synchronized (ITEM_MAP_LOCK) {
-      for (ResourceNamespace namespace : getNamespaces()) {
-        if (visitor.shouldVisitNamespace(namespace)) {
-          for (ResourceType type : ResourceType.values()) {
-            if (visitor.shouldVisitResourceType(type)) {
-              ListMultimap<String, ResourceItem> map = getMap(namespace, type);
-              for (ResourceItem item : map.values()) {
-                if (visitor.visit(item) == ResourceVisitor.VisitResult.ABORT) {
-                  return ResourceVisitor.VisitResult.ABORT;
-                }
+    for (ResourceNamespace namespace : getNamespaces()) {
+      if (visitor.shouldVisitNamespace(namespace)) {
+        for (ResourceType type : ResourceType.values()) {
+          if (visitor.shouldVisitResourceType(type)) {
+            for (ResourceItem item : getSnapshot(namespace, type).values()) {
+              if (visitor.visit(item) == ResourceVisitor.VisitResult.ABORT) {
+                return ResourceVisitor.VisitResult.ABORT;
               }
             }
           }
@@ -275,6 +289,85 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
     return ResourceVisitor.VisitResult.CONTINUE;
   }
 
+  /**
+   * Returns a read-only snapshot of the merged resources of the given namespace and type. If the snapshot computed
+   * for the current modification count and version of the namespace and type is available it is returned without locking.
+   */
+  @NotNull
+  private ListMultimap<String, ResourceItem> getSnapshot(@NotNull ResourceNamespace namespace, @NotNull ResourceType type) {
+    int index = type.ordinal();
+    NamespaceSnapshots snapshots = mySnapshots.computeIfAbsent(namespace, key -> new NamespaceSnapshots());
+    ResourcesSnapshot snapshot = snapshots.snapshots.get(index);
+    if (snapshot != null && snapshot.version == snapshots.versions.get(index) && snapshot.modificationCount == getModificationCount()) {
+      return snapshot.resources;
+    }
+
+    synchronized (ITEM_MAP_LOCK) {
+      // Writers only change the resources while holding the lock, so the versions, the modification count and the map
+      // are consistent here. Get the snapshots again since they may have been cleared while waiting for the lock.
+      snapshots = mySnapshots.computeIfAbsent(namespace, key -> new NamespaceSnapshots());
+      long version = snapshots.versions.get(index);
+      long modificationCount = getModificationCount();
+      ListMultimap<String, ResourceItem> map = getMap(namespace, type);
+      // The cached maps are not modified anymore and can be shared. The map of a single leaf repository is modified in
+      // place by that repository, so it is copied.
+      ListMultimap<String, ResourceItem> resources =
+          map == myCachedMaps.get(namespace, type) ? Multimaps.unmodifiableListMultimap(map) : ImmutableListMultimap.copyOf(map);
+      snapshots.snapshots.set(index, new ResourcesSnapshot(version, modificationCount, resources));
+      return resources;
+    }
+  }
+
+  @GuardedBy("ITEM_MAP_LOCK")
+  private void clearSnapshots() {
+    // Invalidate the snapshots before dropping them, for the readers that already got them.
+    for (NamespaceSnapshots snapshots : mySnapshots.values()) {
+      for (ResourceType type : ResourceType.values()) {
+        snapshots.invalidate(type);
+      }
+    }
+    mySnapshots.clear();
+  }
+
+  @Override
+  @NotNull
+  public ListMultimap<String, ResourceItem> getResources(@NotNull ResourceNamespace namespace, @NotNull ResourceType resourceType) {
+    return getSnapshot(namespace, resourceType);
+  }
+
+  @Override
+  @NotNull
+  public List<ResourceItem> getResources(@NotNull ResourceNamespace namespace,
+                                         @NotNull ResourceType resourceType,
+                                         @NotNull String resourceName) {
+    return getSnapshot(namespace, resourceType).get(resourceName);
+  }
+
+  @Override
+  @NotNull
+  public List<ResourceItem> getResources(@NotNull ResourceNamespace namespace,
+                                         @NotNull ResourceType resourceType,
+                                         @NotNull Predicate<ResourceItem> filter) {
+    List<ResourceItem> result = new ArrayList<>();
+    for (ResourceItem item : getSnapshot(namespace, resourceType).values()) {
+      if (filter.test(item)) {
+        result.add(item);
+      }
+    }
+    return result;
+  }
+
+  @Override
+  @NotNull
+  public Set<String> getResourceNames(@NotNull ResourceNamespace namespace, @NotNull ResourceType resourceType) {
+    return getSnapshot(namespace, resourceType).keySet();
+  }
+
+  @Override
+  public boolean hasResources(@NotNull ResourceNamespace namespace, @NotNull ResourceType resourceType, @NotNull String resourceName) {
+    return getSnapshot(namespace, resourceType).containsKey(resourceName);
+  }
+
   @GuardedBy("ITEM_MAP_LOCK")
   @Override
   @NotNull
@@ -314,7 +407,8 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
       }
     }
     else {
-      // Update a partially out of date map.
+      // Update a partially out of date map. The cached map may be used by a snapshot, so a copy of it is updated.
+      map = map instanceof PerConfigResourceMap ? new PerConfigResourceMap((PerConfigResourceMap)map) : ArrayListMultimap.create(map);
       for (SingleNamespaceResourceRepository unreconciledRepository : unreconciledRepositories) {
         // Delete all resources that belonged to unreconciledRepository.
         Predicate<ResourceItem> filter = item -> item.getRepository().equals(unreconciledRepository);
@@ -372,30 +466,29 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
 
   @Override
   public boolean hasResources(@NotNull ResourceNamespace namespace, @NotNull ResourceType type) {
-    synchronized (ITEM_MAP_LOCK) {
-      if (myChildren.size() == 1) {
-        return myChildren.get(0).hasResources(namespace, type);
-      }
+    ImmutableList<ResourceRepository> children = myChildren;
+    if (children.size() == 1) {
+      return children.get(0).hasResources(namespace, type);
+    }
 
-      if (this instanceof SingleNamespaceResourceRepository) {
-        if (namespace.equals(((SingleNamespaceResourceRepository)this).getNamespace())) {
-          for (ResourceRepository child : myChildren) {
-            if (child.hasResources(namespace, type)) {
-              return true;
-            }
+    if (this instanceof SingleNamespaceResourceRepository) {
+      if (namespace.equals(((SingleNamespaceResourceRepository)this).getNamespace())) {
+        for (ResourceRepository child : children) {
+          if (child.hasResources(namespace, type)) {
+            return true;
           }
         }
-        return false;
       }
+      return false;
+    }
 
-      Collection<SingleNamespaceResourceRepository> repositories = myRepositoriesByNamespace.get(namespace);
-      for (ResourceRepository repository : repositories) {
-        if (repository.hasResources(namespace, type)) {
-          return true;
-        }
+    Collection<SingleNamespaceResourceRepository> repositories = myRepositoriesByNamespace.get(namespace);
+    for (ResourceRepository repository : repositories) {
+      if (repository.hasResources(namespace, type)) {
+        return true;
       }
-      return false;
     }
+    return false;
   }
 
   @Override
@@ -415,6 +508,7 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
     myCachedMaps.clear();
     myResourceNames.clear();
     myUnreconciledResources.clear();
+    clearSnapshots();
     setModificationCount(ourModificationCounter.incrementAndGet());
 
     invalidateParentCaches();
@@ -428,6 +522,14 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
   public void invalidateCache(@NotNull SingleNamespaceResourceRepository repository, @NotNull ResourceType... types) {
     ResourceNamespace namespace = repository.getNamespace();
 
+    // Not all the changes of the children update their modification count, invalidate the snapshots explicitly.
+    NamespaceSnapshots snapshots = mySnapshots.get(namespace);
+    if (snapshots != null) {
+      for (ResourceType type : types) {
+        snapshots.invalidate(type);
+      }
+    }
+
     // Since myLeafsByNamespace updates are not atomic with respect to grandchildren updates, it is
     // possible that the repository that triggered cache invalidation is not in myLeafsByNamespace.
     // In such a case we don't need to do anything.
@@ -491,8 +593,32 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
   @Override
   @NotNull
   public Collection<SingleNamespaceResourceRepository> getLeafResourceRepositories() {
-    synchronized (ITEM_MAP_LOCK) {
-      return myLeafsByNamespace.values();
+    return myLeafsByNamespace.values();
+  }
+
+  /**
+   * The snapshots of the merged resources of one namespace, with the version of each resource type.
+   */
+  private static final class NamespaceSnapshots {
+    final AtomicLongArray versions = new AtomicLongArray(RESOURCE_TYPE_COUNT);
+    final AtomicReferenceArray<ResourcesSnapshot> snapshots = new AtomicReferenceArray<>(RESOURCE_TYPE_COUNT);
+
+    void invalidate(@NotNull ResourceType type) {
+      // Bump the version first, a reader that still gets the old snapshot then sees it is outdated.
+      versions.incrementAndGet(type.ordinal());
+      snapshots.set(type.ordinal(), null);
+    }
+  }
+
+  private static final class ResourcesSnapshot {
+    final long version;
+    final long modificationCount;
+    @NotNull final ListMultimap<String, ResourceItem> resources;
+
+    ResourcesSnapshot(long version, long modificationCount, @NotNull ListMultimap<String, ResourceItem> resources) {
+      this.version = version;
+      this.modificationCount = modificationCount;
+      this.resources = resources;
     }
   }
 
@@ -525,8 +651,8 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
    * configuration.
    *
    * <p>This ListMultimap implementation is not as robust as Guava multimaps but is sufficient
-   * for MultiResourceRepository because the latter always copies data to immutable containers
-   * before exposing it to callers.
+   * for MultiResourceRepository because the latter only exposes it to callers through a read-only
+   * view once it is no longer modified.
    */
   private static final class PerConfigResourceMap implements ListMultimap<String, ResourceItem> {
     private final Map<String, List<ResourceItem>> myMap = new HashMap<>();
@@ -538,10 +664,20 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
       myComparator = comparator;
     }
 
+    /** Creates a copy of the given map, including the resource items hidden by items with the same configuration. */
+    private PerConfigResourceMap(@NotNull PerConfigResourceMap map) {
+      myComparator = map.myComparator;
+      for (Map.Entry<String, List<ResourceItem>> entry : map.myMap.entrySet()) {
+        myMap.put(entry.getKey(), new PerConfigResourceList((PerConfigResourceList)entry.getValue()));
+      }
+      mySize = map.mySize;
+    }
+
     @Override
-    @Nullable
+    @NotNull
     public List<ResourceItem> get(@Nullable String key) {
-      return myMap.get(key);
+      List<ResourceItem> list = myMap.get(key);
+      return list == null ? ImmutableList.of() : list;
     }
 
     @Override
@@ -553,7 +689,11 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
     @Override
     @NotNull
     public Multiset<String> keys() {
-      throw new UnsupportedOperationException();
+      ImmutableMultiset.Builder<String> keys = ImmutableMultiset.builder();
+      for (Map.Entry<String, List<ResourceItem>> entry : myMap.entrySet()) {
+        keys.addCopies(entry.getKey(), entry.getValue().size());
+      }
+      return keys.build();
     }
 
     @Override
@@ -570,7 +710,13 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
     @Override
     @NotNull
     public Collection<Map.Entry<String, ResourceItem>> entries() {
-      throw new UnsupportedOperationException();
+      List<Map.Entry<String, ResourceItem>> entries = new ArrayList<>(mySize);
+      for (Map.Entry<String, List<ResourceItem>> entry : myMap.entrySet()) {
+        for (ResourceItem item : entry.getValue()) {
+          entries.add(Maps.immutableEntry(entry.getKey(), item));
+        }
+      }
+      return entries;
     }
 
     @Override
@@ -623,12 +769,14 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
 
     @Override
     public boolean containsValue(@Nullable Object value) {
-      throw new UnsupportedOperationException();
+      return values().contains(value);
     }
 
     @Override
     public boolean containsEntry(@Nullable Object key, @Nullable Object value) {
-      throw new UnsupportedOperationException();
+      //noinspection SuspiciousMethodCalls
+      List<ResourceItem> list = myMap.get(key);
+      return list != null && list.contains(value);
     }
 
     @Override
@@ -698,7 +846,18 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
      */
     private class PerConfigResourceList extends AbstractList<ResourceItem> {
       /** Resource items sorted by folder configurations. Nested lists are sorted by repository priority. */
-      private final List<List<ResourceItem>> myResourceItems = new ArrayList<>();
+      private final List<List<ResourceItem>> myResourceItems;
+
+      PerConfigResourceList() {
+        myResourceItems = new ArrayList<>();
+      }
+
+      PerConfigResourceList(@NotNull PerConfigResourceList list) {
+        myResourceItems = new ArrayList<>(list.myResourceItems.size());
+        for (List<ResourceItem> nested : list.myResourceItems) {
+          myResourceItems.add(new SmartList<>(nested));
+        }
+      }
 
       @Override
       @NotNull
@@ -573,6 +573,20 @@ public final class PsiResourceItem implements ResourceItem {
     return true;
   }
 
+  /**
+   * Recomputes the value of this item from its tag. Returns false only if the value was computed before and is still the same,
+   * since nothing is known about the previous value otherwise.
+   */
+  boolean updateValue() {
+    ResourceValue oldValue = myResourceValue;
+    if (oldValue == null) {
+      return true;
+    }
+
+    myResourceValue = null;
+    return !oldValue.equals(getResourceValue());
+  }
+
   @Override
   public boolean equals(Object o) {
     // Only reference equality; we need to be able to distinguish duplicate elements which can happen during editing
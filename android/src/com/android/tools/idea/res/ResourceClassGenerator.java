@@ -15,6 +15,7 @@
  */
 package com.android.tools.idea.res;
 
+import com.android.annotations.concurrency.GuardedBy;
 import com.android.ide.common.rendering.api.ResourceNamespace;
 import com.android.ide.common.rendering.api.ResourceReference;
 import com.android.ide.common.rendering.api.ResourceValue;
@@ -22,11 +23,14 @@ import com.android.ide.common.rendering.api.StyleableResourceValue;
 import com.android.ide.common.resources.ResourceItem;
 import com.android.ide.common.resources.ResourceRepository;
 import com.android.resources.ResourceType;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.ModificationTracker;
 import gnu.trove.TIntArrayList;
 import gnu.trove.TObjectIntHashMap;
 import org.jetbrains.android.util.AndroidResourceUtil;
@@ -76,9 +80,48 @@ public final class ResourceClassGenerator {
     int getOrGenerateId(@NotNull ResourceReference resourceReference);
   }
 
-  private Map<ResourceType, TObjectIntHashMap<String>> myCache;
-  /** For int[] in styleables. The ints in styleables are stored in {@link #myCache}. */
-  private Map<String, TIntArrayList> myStyleableCache;
+  /**
+   * Values of the fields of an inner R class, with the resources they were computed from. The data is reused as long as the resources
+   * of its type don't change, even when other resources of the repository do.
+   */
+  private static final class TypeData {
+    /** Modification count of the repository when the data was last known to be up to date. */
+    long myModificationCount;
+    /** The resource names, or for styleables the {@link MergedStyleable}s, the data was computed from. */
+    @NotNull final Object mySource;
+    @NotNull final TObjectIntHashMap<String> myFields;
+    /** For int[] in styleables. The ints in styleables are stored in {@link #myFields}. */
+    @NotNull final Map<String, TIntArrayList> myArrays;
+
+    TypeData(long modificationCount,
+             @NotNull Object source,
+             @NotNull TObjectIntHashMap<String> fields,
+             @NotNull Map<String, TIntArrayList> arrays) {
+      myModificationCount = modificationCount;
+      mySource = source;
+      myFields = fields;
+      myArrays = arrays;
+    }
+  }
+
+  /** Bytecode of a generated inner R class, with the {@link TypeData} it was generated from. */
+  private static final class GeneratedClass {
+    @NotNull final TypeData myData;
+    @NotNull final byte[] myBytecode;
+
+    GeneratedClass(@NotNull TypeData data, @NotNull byte[] bytecode) {
+      myData = data;
+      myBytecode = bytecode;
+    }
+  }
+
+  @GuardedBy("this")
+  private final Map<ResourceType, TypeData> myTypeData = new EnumMap<>(ResourceType.class);
+  /** Generated inner classes, keyed by class name since the same generator may be used for several packages. */
+  @GuardedBy("this")
+  private final Map<String, GeneratedClass> myGeneratedClasses = new HashMap<>();
+  @GuardedBy("this")
+  private int myGeneratedClassCount;
   @NotNull private final ResourceRepository myResources;
   @NotNull private final NumericIdProvider myIdProvider;
   @NotNull private final ResourceNamespace myNamespace;
@@ -102,62 +145,61 @@ public final class ResourceClassGenerator {
   }
 
   /**
+   * Generates the bytecode of the given R class. Inner classes are only regenerated when the resources of their type have changed since
+   * the last call.
+   *
    * @param fqcn Fully qualified class name (as accepted by ClassLoader, or as returned by Class.getName())
    */
   @Nullable
-  public byte[] generate(String fqcn) {
+  public synchronized byte[] generate(String fqcn) {
     String className = fqcn.replace('.', '/');
 
     if (LOG.isDebugEnabled()) {
       LOG.debug(String.format("generate(%s)", anonymizeClassName(className)));
     }
-    ClassWriter cw = new ClassWriter(0);  // Don't compute MAXS and FRAMES.
-    cw.visit(V1_6, ACC_PUBLIC + ACC_FINAL + ACC_SUPER, className, null, Type.getInternalName(Object.class), null);
 
     int index = className.lastIndexOf('$');
+    ResourceType type = null;
     if (index != -1) {
       String typeName = className.substring(index + 1);
-      ResourceType type = ResourceType.fromClassName(typeName);
+      type = ResourceType.fromClassName(typeName);
       if (type == null) {
         if (LOG.isDebugEnabled()) {
           LOG.debug(String.format("  type '%s' doesn't exist", typeName));
         }
         return null;
       }
+    }
 
-      cw.visitInnerClass(className, className.substring(0, index), typeName, ACC_PUBLIC + ACC_FINAL + ACC_STATIC);
-      if (myCache == null) {
-        myCache = Maps.newHashMap();
+    ClassWriter cw = new ClassWriter(0);  // Don't compute MAXS and FRAMES.
+    cw.visit(V1_6, ACC_PUBLIC + ACC_FINAL + ACC_SUPER, className, null, Type.getInternalName(Object.class), null);
+
+    if (type != null) {
+      TypeData data = getTypeData(type, className);
+      GeneratedClass generatedClass = myGeneratedClasses.get(className);
+      if (generatedClass != null && generatedClass.myData == data) {
+        return generatedClass.myBytecode;
       }
+
+      cw.visitInnerClass(className, className.substring(0, index), type.getName(), ACC_PUBLIC + ACC_FINAL + ACC_STATIC);
       if (type == ResourceType.STYLEABLE) {
-        if (myStyleableCache == null) {
-          myCache.put(ResourceType.STYLEABLE, new TObjectIntHashMap<>());
-          myStyleableCache = Maps.newHashMap();
-          generateStyleable(cw, className);
-        }
-        else {
-          TObjectIntHashMap<String> indexFieldsCache = myCache.get(ResourceType.STYLEABLE);
-          assert indexFieldsCache != null;
-          generateFields(cw, indexFieldsCache);
-          generateIntArraysFromCache(cw, className);
-        }
-      } else {
-        TObjectIntHashMap<String> typeCache = myCache.get(type);
-        if (typeCache == null) {
-          typeCache = new TObjectIntHashMap<>();
-          myCache.put(type, typeCache);
-          generateValuesForType(cw, type, typeCache);
-        }
-        else {
-          generateFields(cw, typeCache);
-        }
+        generateStyleable(cw, className, data);
       }
-    } else {
-      // Default R class.
-      for (ResourceType t : myResources.getResourceTypes(myNamespace)) {
-        if (t.getHasInnerClass()) {
-          cw.visitInnerClass(className + "$" + t.getName(), className, t.getName(), ACC_PUBLIC + ACC_FINAL + ACC_STATIC);
-        }
+      else {
+        generateFields(cw, data.myFields);
+      }
+      generateConstructor(cw);
+      cw.visitEnd();
+      byte[] bytecode = cw.toByteArray();
+      myGeneratedClasses.put(className, new GeneratedClass(data, bytecode));
+      myGeneratedClassCount++;
+      return bytecode;
+    }
+
+    // Default R class.
+    for (ResourceType t : myResources.getResourceTypes(myNamespace)) {
+      if (t.getHasInnerClass()) {
+        cw.visitInnerClass(className + "$" + t.getName(), className, t.getName(), ACC_PUBLIC + ACC_FINAL + ACC_STATIC);
       }
     }
 
@@ -166,14 +208,64 @@ public final class ResourceClassGenerator {
     return cw.toByteArray();
   }
 
-  private void generateValuesForType(@NotNull ClassWriter cw, @NotNull ResourceType resType, @NotNull TObjectIntHashMap<String> cache) {
-    Collection<String> resourceNames = myResources.getResourceNames(myNamespace, resType);
+  /**
+   * Returns the number of inner classes for which bytecode had to be generated, as opposed to reused from a previous call.
+   */
+  @VisibleForTesting
+  synchronized int getGeneratedClassCount() {
+    return myGeneratedClassCount;
+  }
+
+  private long getModificationCount() {
+    // Repositories that are not modification trackers, like the ones of AARs, never change.
+    return myResources instanceof ModificationTracker ? ((ModificationTracker)myResources).getModificationCount() : 0;
+  }
+
+  /**
+   * Returns the up to date {@link TypeData} of the given type. If the repository has been modified since the data was computed, the
+   * resources of the type are compared with the ones the data was computed from, and the data is only recomputed if they differ.
+   */
+  @GuardedBy("this")
+  @NotNull
+  private TypeData getTypeData(@NotNull ResourceType type, @NotNull String className) {
+    long modificationCount = getModificationCount();
+    TypeData data = myTypeData.get(type);
+    if (data != null && data.myModificationCount == modificationCount) {
+      return data;
+    }
+
+    Object source;
+    if (type == ResourceType.STYLEABLE) {
+      source = getMergedStyleables(className);
+    }
+    else {
+      source = ImmutableSet.copyOf(myResources.getResourceNames(myNamespace, type));
+    }
+    if (data != null && data.mySource.equals(source)) {
+      data.myModificationCount = modificationCount;
+      return data;
+    }
+
+    if (type == ResourceType.STYLEABLE) {
+      //noinspection unchecked
+      data = computeStyleableData(modificationCount, (List<MergedStyleable>)source);
+    }
+    else {
+      //noinspection unchecked
+      data = computeTypeData(modificationCount, type, (Set<String>)source);
+    }
+    myTypeData.put(type, data);
+    return data;
+  }
+
+  @NotNull
+  private TypeData computeTypeData(long modificationCount, @NotNull ResourceType resType, @NotNull Set<String> resourceNames) {
+    TObjectIntHashMap<String> fields = new TObjectIntHashMap<>(resourceNames.size());
     for (String name : resourceNames) {
       int initialValue = myIdProvider.getOrGenerateId(new ResourceReference(myNamespace, resType, name));
-      name = AndroidResourceUtil.getFieldNameByResourceName(name);
-      generateField(cw, name, initialValue);
-      cache.put(name, initialValue);
+      fields.put(AndroidResourceUtil.getFieldNameByResourceName(name), initialValue);
     }
+    return new TypeData(modificationCount, resourceNames, fields, Collections.emptyMap());
   }
 
   /**
@@ -188,17 +280,12 @@ public final class ResourceClassGenerator {
     return Lists.transform(dv.getAllAttributes(), ResourceValue::asReference);
   }
 
-  private void generateStyleable(@NotNull ClassWriter cw, String className) {
-    if (LOG.isDebugEnabled()) {
-      LOG.debug(String.format("generateStyleable(%s)", anonymizeClassName(className)));
-    }
+  @NotNull
+  private List<MergedStyleable> getMergedStyleables(@NotNull String className) {
     boolean debug = LOG.isDebugEnabled() && isPublicClass(className);
 
-    TObjectIntHashMap<String> indexFieldsCache = myCache.get(ResourceType.STYLEABLE);
     Collection<String> styleableNames = myResources.getResourceNames(myNamespace, ResourceType.STYLEABLE);
     List<MergedStyleable> mergedStyleables = new ArrayList<>(styleableNames.size());
-
-    // Generate all declarations - both int[] and int for the indices into the array.
     for (String styleableName : styleableNames) {
       List<ResourceItem> items = myResources.getResources(myNamespace, ResourceType.STYLEABLE, styleableName);
       if (items.isEmpty()) {
@@ -207,11 +294,6 @@ public final class ResourceClassGenerator {
         }
         continue;
       }
-      String fieldName = AndroidResourceUtil.getFieldNameByResourceName(styleableName);
-      cw.visitField(ACC_PUBLIC + ACC_FINAL + ACC_STATIC, fieldName, "[I", null, null);
-      if (debug) {
-        LOG.debug("  Defined styleable " + fieldName);
-      }
 
       // Merge all the styleables with the same name, to compute the sum of all attrs defined in them.
       LinkedHashSet<ResourceReference> mergedAttributes = new LinkedHashSet<>();
@@ -220,31 +302,42 @@ public final class ResourceClassGenerator {
       }
 
       mergedStyleables.add(new MergedStyleable(styleableName, mergedAttributes));
-
-      int idx = 0;
-      for (ResourceReference attr : mergedAttributes) {
-        String styleableEntryName = getResourceName(fieldName, attr);
-        int fieldValue = idx++;
-        cw.visitField(ACC_PUBLIC + ACC_FINAL + ACC_STATIC, styleableEntryName, "I", null, fieldValue);
-        indexFieldsCache.put(styleableEntryName, fieldValue);
-        if (debug) {
-          LOG.debug("  Defined styleable " + styleableEntryName);
-        }
-      }
     }
+    return mergedStyleables;
+  }
 
-    // Generate class initializer block to initialize the arrays declared above.
-    MethodVisitor mv = cw.visitMethod(ACC_STATIC, "<clinit>", "()V", null, null);
-    mv.visitCode();
+  @NotNull
+  private TypeData computeStyleableData(long modificationCount, @NotNull List<MergedStyleable> mergedStyleables) {
+    TObjectIntHashMap<String> indexFields = new TObjectIntHashMap<>();
+    Map<String, TIntArrayList> arrays = new LinkedHashMap<>();
     for (MergedStyleable mergedStyleable : mergedStyleables) {
       String fieldName = AndroidResourceUtil.getFieldNameByResourceName(mergedStyleable.name);
       TIntArrayList values = new TIntArrayList();
+      int idx = 0;
       for (ResourceReference attr : mergedStyleable.attrs) {
+        indexFields.put(getResourceName(fieldName, attr), idx++);
         values.add(myIdProvider.getOrGenerateId(attr));
       }
-      myStyleableCache.put(fieldName, values);
-      generateArrayInitialization(mv, className, fieldName, values);
+      arrays.put(fieldName, values);
+    }
+    return new TypeData(modificationCount, mergedStyleables, indexFields, arrays);
+  }
+
+  private static void generateStyleable(@NotNull ClassWriter cw, String className, @NotNull TypeData data) {
+    if (LOG.isDebugEnabled()) {
+      LOG.debug(String.format("generateStyleable(%s)", anonymizeClassName(className)));
+    }
+
+    // Generate all declarations - both int[] and int for the indices into the array.
+    generateFields(cw, data.myFields);
+    for (String name : data.myArrays.keySet()) {
+      cw.visitField(ACC_PUBLIC + ACC_FINAL + ACC_STATIC, name, "[I", null, null);
     }
+
+    // Generate class initializer block to initialize the arrays declared above.
+    MethodVisitor mv = cw.visitMethod(ACC_STATIC, "<clinit>", "()V", null, null);
+    mv.visitCode();
+    data.myArrays.forEach((arrayName, values) -> generateArrayInitialization(mv, className, arrayName, values));
     mv.visitInsn(RETURN);
     mv.visitMaxs(4, 0);
     mv.visitEnd();
@@ -261,23 +354,6 @@ public final class ResourceClassGenerator {
     cw.visitField(ACC_PUBLIC + ACC_FINAL + ACC_STATIC, name, "I", null, value).visitEnd();
   }
 
-  private void generateIntArraysFromCache(@NotNull ClassWriter cw, String className) {
-    // Generate the field declarations.
-    for (String name : myStyleableCache.keySet()) {
-      cw.visitField(ACC_PUBLIC + ACC_FINAL + ACC_STATIC, name, "[I", null, null);
-    }
-
-    // Generate class initializer block to initialize the arrays declared above.
-    MethodVisitor mv = cw.visitMethod(ACC_STATIC, "<clinit>", "()V", null, null);
-    mv.visitCode();
-    myStyleableCache.forEach((arrayName, values) -> {
-      generateArrayInitialization(mv, className, arrayName, values);
-    });
-    mv.visitInsn(RETURN);
-    mv.visitMaxs(4, 0);
-    mv.visitEnd();
-  }
-
   /**
    * Generates the instruction to push value into the stack. It will select the best opcode depending on the given value.
    */
@@ -359,5 +435,19 @@ public final class ResourceClassGenerator {
       this.name = name;
       this.attrs = attrs;
     }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      MergedStyleable other = (MergedStyleable)o;
+      // The order of the attributes matters since it defines the indices in the array.
+      return name.equals(other.name) && Iterables.elementsEqual(attrs, other.attrs);
+    }
+
+    @Override
+    public int hashCode() {
+      return name.hashCode();
+    }
   }
 }
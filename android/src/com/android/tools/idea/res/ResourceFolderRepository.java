@@ -57,6 +57,7 @@ import com.android.sdklib.IAndroidTarget;
 import com.android.tools.idea.configurations.ConfigurationManager;
 import com.android.tools.idea.flags.StudioFlags;
 import com.android.tools.idea.resources.base.Base128InputStream;
+import com.android.tools.idea.resources.base.Base128OutputStream;
 import com.android.tools.idea.resources.base.BasicDensityBasedFileResourceItem;
 import com.android.tools.idea.resources.base.BasicFileResourceItem;
 import com.android.tools.idea.resources.base.BasicResourceItem;
@@ -108,9 +109,12 @@ import com.intellij.psi.xml.XmlProcessingInstruction;
 import com.intellij.psi.xml.XmlTag;
 import com.intellij.psi.xml.XmlText;
 import com.intellij.util.concurrency.EdtExecutorService;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -119,6 +123,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -130,6 +135,7 @@ import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import java.util.function.Consumer;
+import java.util.zip.CRC32;
 import javax.annotation.concurrent.GuardedBy;
 import org.jetbrains.android.facet.AndroidFacet;
 import org.jetbrains.android.sdk.AndroidTargetData;
@@ -154,8 +160,8 @@ import org.jetbrains.ide.PooledThreadExecutor;
  * <li>Find some way to have event updates in this resource folder directly update parent repositories
  * (typically {@link ModuleResourceRepository})</li>
  * <li>Add defensive checks for non-read permission reads of resource values</li>
- * <li>Idea: For {@link #scheduleScan}; compare the removed items from the added items, and if they're the same, avoid
- * creating a new generation.</li>
+ * <li>Idea: For {@link #scheduleScan} of id generating files; compare the removed items from the added items, and if they're the same,
+ * avoid creating a new generation.</li>
  * <li>Register the PSI project listener as a project service instead.</li>
  * </ul>
  */
@@ -164,7 +170,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
    * Increment when making changes that may affect content of repository cache files.
    * Used together with CachingData.codeVersion. Important for developer builds.
    */
-  static final String CACHE_FILE_FORMAT_VERSION = "2";
+  static final String CACHE_FILE_FORMAT_VERSION = "3";
   private static final byte[] CACHE_FILE_HEADER = "Resource cache".getBytes(UTF_8);
   /**
    * Maximum fraction of resources out of date in the cache for the cache to be considered fresh.
@@ -198,6 +204,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
   // Statistics of the initial repository loading.
   private int myNumXmlFilesLoadedInitially; // Doesn't count files that were explicitly skipped.
   private int myNumXmlFilesLoadedInitiallyFromSources;
+  private int myNumXmlFilesRevalidatedInitially; // Files loaded from cache after comparing their contents.
 
   @SuppressWarnings("InstanceGuardedByStatic")
   @GuardedBy("ITEM_MAP_LOCK")
@@ -211,6 +218,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
   @Nullable private Set<PsiFile> myPendingScans;
 
   @VisibleForTesting static int ourFullRescans;
+  @VisibleForTesting static int ourIncrementalValueFileUpdates;
   @VisibleForTesting static int ourLayoutlibCacheFlushes;
 
   /**
@@ -221,7 +229,9 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
    * defined in the XML files that changed recently are skipped. Whether an XML has changed or not is determined by
    * comparing the combined hash of the file modification time and the length obtained by calling
    * {@link VirtualFile#getTimeStamp()} and {@link VirtualFile#getLength()} with the hash value stored in the cache.
-   * The checks are located in {@link #deserializeResourceSourceFile} and {@link #deserializeFileResourceItem}.
+   * If that hash doesn't match, the file is still considered unchanged when the hash of its contents matches the one
+   * stored in the cache. The checks are located in {@link #deserializeResourceSourceFile} and {@link #deserializeFileResourceItem}.
+   * The whole cache file is ignored if its contents don't match the checksum stored in it.
    * <p>
    * The remaining resources are then loaded by parsing XML files that were not present in the cache or were newer
    * than their cached versions.
@@ -337,7 +347,10 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
    */
   @VisibleForTesting
   boolean hasFreshFileCache() {
-    return myNumXmlFilesLoadedInitiallyFromSources <= myNumXmlFilesLoadedInitially * CACHE_STALENESS_THRESHOLD;
+    // Files that had to be revalidated by contents are counted as stale too, so that the cache doesn't keep
+    // outdated time stamps forever.
+    return myNumXmlFilesLoadedInitiallyFromSources + myNumXmlFilesRevalidatedInitially <=
+           myNumXmlFilesLoadedInitially * CACHE_STALENESS_THRESHOLD;
   }
 
   @TestOnly
@@ -350,6 +363,11 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
     return myNumXmlFilesLoadedInitiallyFromSources;
   }
 
+  @TestOnly
+  int getNumXmlFilesRevalidatedInitially() {
+    return myNumXmlFilesRevalidatedInitially;
+  }
+
   @Nullable
   private PsiFile ensureValid(@NotNull PsiFile psiFile) {
     if (psiFile.isValid()) {
@@ -505,33 +523,12 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
         XmlTag[] subTags = root.getSubTags(); // Not recursive, right?
         List<PsiResourceItem> items = new ArrayList<>(subTags.length);
         for (XmlTag tag : subTags) {
-          String name = tag.getAttributeValue(ATTR_NAME);
-          ResourceType type = getResourceTypeForResourceTag(tag);
-          if (type != null && isValidValueResourceName(name)) {
-            PsiResourceItem item = PsiResourceItem.forXmlTag(name, type, this, tag, false);
-            addToResult(result, item);
-            items.add(item);
-            added = true;
-
-            if (type == ResourceType.STYLEABLE) {
-              // For styleables we also need to create attr items for its children.
-              XmlTag[] attrs = tag.getSubTags();
-              if (attrs.length > 0) {
-                for (XmlTag child : attrs) {
-                  String attrName = child.getAttributeValue(ATTR_NAME);
-                  if (isValidValueResourceName(attrName) && !attrName.startsWith(ANDROID_NS_NAME_PREFIX)
-                      // Only add attr nodes for elements that specify a format or have flag/enum children; otherwise
-                      // it's just a reference to an existing attr.
-                      && (child.getAttribute(ATTR_FORMAT) != null || child.getSubTags().length > 0)) {
-                    PsiResourceItem attrItem = PsiResourceItem.forXmlTag(attrName, ResourceType.ATTR, this, child, false);
-                    items.add(attrItem);
-                    addToResult(result, attrItem);
-                  }
-                }
-              }
-            }
-          }
+          addValueItems(tag, false, items);
         }
+        for (PsiResourceItem item : items) {
+          addToResult(result, item);
+        }
+        added = !items.isEmpty();
 
         PsiResourceFile resourceFile = new PsiResourceFile(file, items, VALUES, new RepositoryConfiguration(this, folderConfiguration));
         mySources.put(file.getVirtualFile(), resourceFile);
@@ -541,6 +538,139 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
     return added;
   }
 
+  /**
+   * Creates the resource items defined by a top level tag of a values file and adds them to {@code items}.
+   * For a {@code <declare-styleable>} tag this includes the attr resources defined inside of it.
+   */
+  private void addValueItems(@NotNull XmlTag tag, boolean calledFromPsiListener, @NotNull List<PsiResourceItem> items) {
+    String name = tag.getAttributeValue(ATTR_NAME);
+    ResourceType type = getResourceTypeForResourceTag(tag);
+    if (type != null && isValidValueResourceName(name)) {
+      items.add(PsiResourceItem.forXmlTag(name, type, this, tag, calledFromPsiListener));
+
+      if (type == ResourceType.STYLEABLE) {
+        // For styleables we also need to create attr items for its children.
+        for (XmlTag child : tag.getSubTags()) {
+          String attrName = child.getAttributeValue(ATTR_NAME);
+          if (isAttrDefinition(child, attrName)) {
+            items.add(PsiResourceItem.forXmlTag(attrName, ResourceType.ATTR, this, child, calledFromPsiListener));
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Checks if an {@code <attr>} tag inside a {@code <declare-styleable>} defines a new attr resource.
+   */
+  @Contract(value = "_, null -> false")
+  private static boolean isAttrDefinition(@NotNull XmlTag attrTag, @Nullable String attrName) {
+    return isValidValueResourceName(attrName) && !attrName.startsWith(ANDROID_NS_NAME_PREFIX)
+           // Only add attr nodes for elements that specify a format or have flag/enum children; otherwise
+           // it's just a reference to an existing attr.
+           && (attrTag.getAttribute(ATTR_FORMAT) != null || attrTag.getSubTags().length > 0);
+  }
+
+  /**
+   * Brings the items of a values file that is already backed by PSI up to date by comparing them with the tags
+   * currently present in the file. Items of tags with unchanged name and type are kept and have their values
+   * recomputed, items of tags that no longer define them are removed, and new items are created for the remaining
+   * tags. All changes are committed to the repository at once, and the modification count is bumped if any value
+   * changed.
+   *
+   * @return true if the items were updated, false if the file has to be rescanned from scratch
+   */
+  private boolean updateValueFileItems(@NotNull PsiResourceFile source, @NotNull PsiFile psiFile) {
+    if (source.getPsiFile() != psiFile || !psiFile.isValid() || !(psiFile instanceof XmlFile)) {
+      return false;
+    }
+    XmlTag root = ((XmlFile)psiFile).getRootTag();
+    if (root == null || !root.getName().equals(TAG_RESOURCES)) {
+      return false;
+    }
+
+    Map<XmlTag, List<PsiResourceItem>> existingItemsByTag = new HashMap<>();
+    List<PsiResourceItem> removedItems = new ArrayList<>();
+    for (PsiResourceItem item : source) {
+      XmlTag tag = item.getTag();
+      if (tag == null) {
+        removedItems.add(item);
+      }
+      else {
+        existingItemsByTag.computeIfAbsent(tag, t -> new ArrayList<>(1)).add(item);
+      }
+    }
+
+    List<PsiResourceItem> addedItems = new ArrayList<>();
+    boolean valuesChanged = false;
+    for (XmlTag tag : root.getSubTags()) {
+      String name = tag.getAttributeValue(ATTR_NAME);
+      ResourceType type = getResourceTypeForResourceTag(tag);
+      if (type != null && isValidValueResourceName(name)) {
+        valuesChanged |= keepOrCreateItem(existingItemsByTag, tag, name, type, addedItems);
+
+        if (type == ResourceType.STYLEABLE) {
+          for (XmlTag child : tag.getSubTags()) {
+            String attrName = child.getAttributeValue(ATTR_NAME);
+            if (isAttrDefinition(child, attrName)) {
+              valuesChanged |= keepOrCreateItem(existingItemsByTag, child, attrName, ResourceType.ATTR, addedItems);
+            }
+          }
+        }
+      }
+    }
+    existingItemsByTag.values().forEach(removedItems::addAll);
+
+    if (removedItems.isEmpty() && addedItems.isEmpty()) {
+      if (valuesChanged) {
+        synchronized (ITEM_MAP_LOCK) {
+          setModificationCount(ourModificationCounter.incrementAndGet());
+        }
+      }
+      return true;
+    }
+
+    Set<ResourceType> changedTypes = EnumSet.noneOf(ResourceType.class);
+    synchronized (ITEM_MAP_LOCK) {
+      for (PsiResourceItem item : removedItems) {
+        removeFromResourceTable(item);
+        source.removeItem(item);
+        changedTypes.add(item.getType());
+      }
+      for (PsiResourceItem item : addedItems) {
+        source.addItem(item);
+        getOrCreateMap(item.getType()).put(item.getName(), item);
+        changedTypes.add(item.getType());
+      }
+
+      setModificationCount(ourModificationCounter.incrementAndGet());
+      invalidateParentCaches(this, changedTypes.toArray(new ResourceType[0]));
+    }
+    return true;
+  }
+
+  /**
+   * Takes the existing item for the given tag, name and type out of {@code existingItemsByTag} and recomputes its
+   * value, or creates a new item and adds it to {@code addedItems} if there is no such item.
+   *
+   * @return true if the value of an existing item may have changed, see {@link PsiResourceItem#updateValue()}
+   */
+  private boolean keepOrCreateItem(@NotNull Map<XmlTag, List<PsiResourceItem>> existingItemsByTag, @NotNull XmlTag tag,
+                                   @NotNull String name, @NotNull ResourceType type, @NotNull List<PsiResourceItem> addedItems) {
+    List<PsiResourceItem> candidates = existingItemsByTag.get(tag);
+    if (candidates != null) {
+      for (Iterator<PsiResourceItem> iter = candidates.iterator(); iter.hasNext(); ) {
+        PsiResourceItem item = iter.next();
+        if (item.getType() == type && item.getName().equals(name)) {
+          iter.remove();
+          return item.updateValue();
+        }
+      }
+    }
+    addedItems.add(PsiResourceItem.forXmlTag(name, type, this, tag, false));
+    return false;
+  }
+
   @Contract(value = "null -> false")
   private static boolean isValidValueResourceName(@Nullable String name) {
     return !StringUtil.isEmpty(name) && ValueResourceNameValidator.getErrorText(name, null) == null;
@@ -709,6 +839,16 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
 
     PsiFile file = psiFile;
     if (folderType == VALUES) {
+      // A values file that is already backed by PSI doesn't have to be rebuilt from scratch. All edits since the scan
+      // was scheduled are applied by a single tag level comparison that keeps the items of unchanged tags.
+      ResourceItemSource<? extends ResourceItem> psiSource = mySources.get(file.getVirtualFile());
+      if (psiSource instanceof PsiResourceFile && updateValueFileItems((PsiResourceFile)psiSource, file)) {
+        // For unit test tracking purposes only.
+        //noinspection AssignmentToStaticFieldFromInstanceMethod
+        ourIncrementalValueFileUpdates++;
+        return;
+      }
+
       // For unit test tracking purposes only.
       //noinspection AssignmentToStaticFieldFromInstanceMethod
       ourFullRescans++;
@@ -912,24 +1052,37 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
 
     synchronized (ITEM_MAP_LOCK) {
       for (ResourceItem item : source) {
-        ListMultimap<String, ResourceItem> map = myResourceTable.get(item.getType());
-        List<ResourceItem> items = map.get(item.getName());
-        for (Iterator<ResourceItem> iter = items.iterator(); iter.hasNext(); ) {
-          ResourceItem candidate = iter.next();
-          if (candidate == item) {
-            iter.remove();
-            changed = true;
-            break;
-          }
-        }
-        if (items.isEmpty()) {
-          map.removeAll(item.getName());
-        }
+        changed |= removeFromResourceTable(item);
       }
     }
     return changed;
   }
 
+  /**
+   * Removes the given resource item from {@link #myResourceTable}. The caller has to hold {@link #ITEM_MAP_LOCK}.
+   *
+   * @return true if the item was removed
+   */
+  @SuppressWarnings("InstanceGuardedByStatic")
+  @GuardedBy("ITEM_MAP_LOCK")
+  private boolean removeFromResourceTable(@NotNull ResourceItem item) {
+    boolean removed = false;
+    ListMultimap<String, ResourceItem> map = myResourceTable.get(item.getType());
+    List<ResourceItem> items = map.get(item.getName());
+    for (Iterator<ResourceItem> iter = items.iterator(); iter.hasNext(); ) {
+      ResourceItem candidate = iter.next();
+      if (candidate == item) {
+        iter.remove();
+        removed = true;
+        break;
+      }
+    }
+    if (items.isEmpty()) {
+      map.removeAll(item.getName());
+    }
+    return removed;
+  }
+
   /**
    * Find the {@link com.android.tools.idea.configurations.Configuration} for the provided file and
    * it's associated {@link AndroidTargetData} asynchronously and then run the provided consumer on the EDT
@@ -993,6 +1146,8 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
 
   /**
    * PSI listener which keeps the repository up to date. It handles simple edits synchronously and schedules rescans for other events.
+   * Scheduled rescans of values files that are already backed by PSI are done by {@link #updateValueFileItems}, which only touches
+   * the items of the tags that actually changed.
    *
    * @see IncrementalUpdatePsiListener
    */
@@ -1026,18 +1181,22 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                   String name = tag.getAttributeValue(ATTR_NAME);
                   if (isValidValueResourceName(name)) {
                     ResourceType type = getResourceTypeForResourceTag(tag);
-                    if (type == ResourceType.STYLEABLE) {
-                      // Can't handle declare styleable additions incrementally yet; need to update paired attr items.
-                      scheduleScan(psiFile, folderType);
-                      return;
-                    }
                     if (type != null) {
-                      PsiResourceItem item = PsiResourceItem.forXmlTag(name, type, ResourceFolderRepository.this, tag, true);
+                      // A declare-styleable also defines the attr resources nested in it.
+                      List<PsiResourceItem> items = new ArrayList<>();
+                      addValueItems(tag, true, items);
                       synchronized (ITEM_MAP_LOCK) {
-                        getOrCreateMap(type).put(name, item);
-                        psiResourceFile.addItem(item);
+                        for (PsiResourceItem item : items) {
+                          getOrCreateMap(item.getType()).put(item.getName(), item);
+                          psiResourceFile.addItem(item);
+                        }
                         setModificationCount(ourModificationCounter.incrementAndGet());
-                        invalidateParentCaches(ResourceFolderRepository.this, type);
+                        if (type == ResourceType.STYLEABLE) {
+                          invalidateParentCaches(ResourceFolderRepository.this, type, ResourceType.ATTR);
+                        }
+                        else {
+                          invalidateParentCaches(ResourceFolderRepository.this, type);
+                        }
                         return;
                       }
                     }
@@ -1833,8 +1992,8 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
    * {@inheritDoc}
    * <p>
    * This override is needed because this repository uses {@link VfsResourceFile} that is a subclass of
-   * {@link ResourceSourceFile} used by {@link RepositoryLoader}. If the combined hash of file timestamp
-   * and length doesn't match the stream, the method returns an invalid {@link VfsResourceFile} containing
+   * {@link ResourceSourceFile} used by {@link RepositoryLoader}. If neither the combined hash of file timestamp
+   * and length nor the hash of file contents match the stream, the method returns an invalid {@link VfsResourceFile} containing
    * a null {@link VirtualFile} reference. Validity of of the {@link VfsResourceFile} is checked later
    * inside the {@link Loader#addResourceItem} method. This process creates few objects that are discarded
    * later, but an alternative of returning null instead of an invalid {@link VfsResourceFile} would lead
@@ -1853,19 +2012,40 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
     RepositoryConfiguration configuration = configurations.get(configIndex);
     VirtualFile virtualFile =
         ((ResourceFolderRepository)configuration.getRepository()).getResourceDir().findFileByRelativePath(relativePath);
-    if (!stream.validateContents(FileTimeStampLengthHasher.hash(virtualFile))) {
+    if (!isUpToDate(stream, virtualFile)) {
       virtualFile = null;
     }
 
     return new VfsResourceFile(virtualFile, configuration);
   }
 
+  /**
+   * Reads the time stamp, length and content hashes written by {@link VfsResourceFile#serialize} or {@link VfsFileResourceItem#serialize}
+   * and checks if they match the given file. The contents of the file are only read if the time stamp or the length of the file differ
+   * from the cached ones.
+   */
+  private boolean isUpToDate(@NotNull Base128InputStream stream, @Nullable VirtualFile virtualFile) throws IOException {
+    boolean timeStampAndLengthMatch = stream.validateContents(FileTimeStampLengthHasher.hash(virtualFile));
+    byte[] contentHash = new byte[FileContentHasher.getHashLength()];
+    for (int i = 0; i < contentHash.length; i++) {
+      contentHash[i] = stream.readByte();
+    }
+    if (timeStampAndLengthMatch) {
+      return true;
+    }
+    if (FileContentHasher.matches(virtualFile, contentHash)) {
+      myNumXmlFilesRevalidatedInitially++;
+      return true;
+    }
+    return false;
+  }
+
   /**
    * {@inheritDoc}
    * <p>
    * This override is needed because this repository uses {@link VfsFileResourceItem} that is a subclass of
-   * {@link BasicFileResourceItem} used by {@link RepositoryLoader}. If the combined hash of file timestamp
-   * and length doesn't match the stream, the method returns an invalid {@link VfsFileResourceItem} containing
+   * {@link BasicFileResourceItem} used by {@link RepositoryLoader}. If neither the combined hash of file timestamp
+   * and length nor the hash of file contents match the stream, the method returns an invalid {@link VfsFileResourceItem} containing
    * a null {@link VirtualFile} reference. Validity of of the {@link VfsFileResourceItem} is checked later
    * inside the {@link Loader#addResourceItem} method. This process creates few objects that are discarded
    * later, but an alternative of returning null instead of an invalid {@link VfsFileResourceItem} would lead
@@ -1897,7 +2077,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
       idGenerating = folderType != null && FolderTypeRelationship.isIdGeneratingFolderType(folderType);
     }
     if (idGenerating) {
-      if (!stream.validateContents(FileTimeStampLengthHasher.hash(virtualFile))) {
+      if (!isUpToDate(stream, virtualFile)) {
         virtualFile = null;
       }
 
@@ -1994,15 +2174,41 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
       }
 
       byte[] fileHeader = getCacheFileHeader(myCachingData);
+      byte[] contents;
       try (Base128InputStream stream = new Base128InputStream(myCachingData.getCacheFile())) {
         if (!stream.validateContents(fileHeader)) {
           return; // Cache file header doesn't match.
         }
-        ResourceSerializationUtil.readResourcesFromStream(stream, Maps.newHashMapWithExpectedSize(1000), null, myRepository,
-                                                          item -> addResourceItem(item, myRepository));
+        long checksum = stream.readLong();
+        int length = stream.readInt();
+        if (length < 0 || length > Files.size(myCachingData.getCacheFile())) {
+          LOG.warn("Ignoring corrupted cache file " + myCachingData.getCacheFile().toString());
+          return;
+        }
+        contents = new byte[length];
+        for (int offset = 0; offset < contents.length; ) {
+          int n = stream.read(contents, offset, contents.length - offset);
+          if (n < 0) {
+            throw Base128InputStream.StreamFormatException.prematureEndOfFile();
+          }
+          offset += n;
+        }
+        if (checksum != computeChecksum(contents)) {
+          LOG.warn("Ignoring corrupted cache file " + myCachingData.getCacheFile().toString());
+          return;
+        }
       }
       catch (NoSuchFileException ignored) {
-        // Cache file does not exist.
+        return; // Cache file does not exist.
+      }
+      catch (Throwable e) {
+        LOG.warn("Failed to read cache file " + myCachingData.getCacheFile().toString(), e);
+        return;
+      }
+
+      try (Base128InputStream stream = new Base128InputStream(new ByteArrayInputStream(contents))) {
+        ResourceSerializationUtil.readResourcesFromStream(stream, Maps.newHashMapWithExpectedSize(1000), null, myRepository,
+                                                          item -> addResourceItem(item, myRepository));
       }
       catch (Throwable e) {
         // Remove incomplete data.
@@ -2023,17 +2229,36 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
       });
     }
 
+    /**
+     * Writes the cache file. The resources are stored after the header, preceded by their checksum and length so that
+     * a truncated or otherwise damaged cache file is detected before any resources are read from it.
+     */
     private void createCacheFile() {
       assert myCachingData != null;
       byte[] header = getCacheFileHeader(myCachingData);
       try {
-        createPersistentCache(myCachingData.getCacheFile(), header, stream -> writeResourcesToStream(myResources, stream, config -> true));
+        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+        try (Base128OutputStream contentStream = new Base128OutputStream(byteStream)) {
+          writeResourcesToStream(myResources, contentStream, config -> true);
+        }
+        byte[] contents = byteStream.toByteArray();
+        createPersistentCache(myCachingData.getCacheFile(), header, stream -> {
+          stream.writeLong(computeChecksum(contents));
+          stream.writeInt(contents.length);
+          stream.write(contents);
+        });
       }
       catch (Throwable e) {
         LOG.error(e);
       }
     }
 
+    private static long computeChecksum(@NotNull byte[] bytes) {
+      CRC32 crc = new CRC32();
+      crc.update(bytes, 0, bytes.length);
+      return crc.getValue();
+    }
+
     private void scanResFolder() {
       try {
         for (VirtualFile subDir : myResourceDir.getChildren()) {
@@ -47,18 +47,74 @@ class ResourceIdManager private constructor(val module: Module) : ResourceClassG
    * Class for generating dynamic ids with the given byte as the "package id" part of the 32-bit resource id.
    *
    * The generated ids follow the aapt PPTTEEEE format: 1 byte for package, 1 byte for type, 2 bytes for entry id. The entry IDs are
-   * assigned sequentially, starting with the highest possible value and going down. This should mean they won't conflict with
-   * [compiledIds] assigned by real aapt in a normal-size project (although there is no mechanism to check that).
+   * derived from a hash of the resource name, in the upper half of the entry range. This should mean they won't conflict with
+   * [compiledIds] assigned by real aapt in a normal-size project, and ids that are taken are skipped by probing for the next free entry.
+   *
+   * The entry assigned to each name is remembered, and the provider is kept by [resetDynamicIds]. A resource then gets the same id
+   * after the reset whatever the order the ids are requested in, even when the hashes of several names collide, which keeps the R
+   * classes generated before and after the reset consistent.
    */
   class IdProvider(private val packageByte: Byte) {
-    private val counters: ShortArray = ShortArray(ResourceType.values().size) { 0xffff.toShort() }
+    private val usedEntries = arrayOfNulls<BitSet>(ResourceType.values().size)
+    /** Entries assigned to the resource names, including the ones of resources that don't exist anymore. */
+    private val assignedEntries = arrayOfNulls<TObjectIntHashMap<String>>(ResourceType.values().size)
+    /** Next entry to use in the lower half of the entry range, once the upper half is full. */
+    private val lowerHalfCounters: ShortArray = ShortArray(ResourceType.values().size) { FIRST_HASHED_ENTRY.toShort() }
+
+    /**
+     * Returns a new id for the resource of the given [type] and [name]. [isTaken] is called for ids not assigned by this provider that
+     * can not be used, like the ones compiled by aapt.
+     */
+    fun getNext(type: ResourceType, name: String, isTaken: (Int) -> Boolean = { false }): Int {
+      val typeByte = (type.ordinal + 1).toByte()
+      val used = usedEntries[type.ordinal] ?: BitSet(ENTRY_COUNT).also { usedEntries[type.ordinal] = it }
+      val assigned = assignedEntries[type.ordinal] ?: TObjectIntHashMap<String>().also { assignedEntries[type.ordinal] = it }
+
+      if (assigned.containsKey(name)) {
+        val id = buildResourceId(packageByte, typeByte, assigned[name].toShort())
+        if (!isTaken(id)) {
+          return id
+        }
+      }
 
-    fun getNext(type: ResourceType): Int {
-      return buildResourceId(packageByte, (type.ordinal + 1).toByte(), --counters[type.ordinal])
+      // Linear probing in the upper half. The entries assigned to other names are skipped even if they weren't requested since the last
+      // reset, so the order of the requests doesn't matter.
+      val start = spread(name.hashCode()) and (HASHED_ENTRY_COUNT - 1)
+      for (i in 0 until HASHED_ENTRY_COUNT) {
+        val entry = FIRST_HASHED_ENTRY + ((start + i) and (HASHED_ENTRY_COUNT - 1))
+        if (used[entry]) continue
+        used.set(entry)
+        val id = buildResourceId(packageByte, typeByte, entry.toShort())
+        if (!isTaken(id)) {
+          assigned.put(name, entry)
+          return id
+        }
+      }
+
+      // All the hashed entries are used, which only happens with more than 32k resources of a type. Fall back to assigning the lower
+      // entries sequentially, going down.
+      while (true) {
+        val entry = --lowerHalfCounters[type.ordinal]
+        used.set(entry.toInt() and 0xffff)
+        val id = buildResourceId(packageByte, typeByte, entry)
+        if (!isTaken(id)) {
+          assigned.put(name, entry.toInt() and 0xffff)
+          return id
+        }
+      }
     }
 
     override fun toString(): String {
-      return Arrays.toString(counters)
+      return usedEntries.mapIndexedNotNull { index, used -> used?.let { "${ResourceType.values()[index]}=${it.cardinality()}" } }.toString()
+    }
+
+    private companion object {
+      const val ENTRY_COUNT = 0x10000
+      const val HASHED_ENTRY_COUNT = 0x8000
+      const val FIRST_HASHED_ENTRY = 0x8000
+
+      /** Spreads the bits of the hash code, since the ones of similar resource names only differ in the low bits. */
+      fun spread(hash: Int): Int = (hash * -0x61c88647).let { it xor (it ushr 16) }
     }
   }
 
@@ -68,18 +124,11 @@ class ResourceIdManager private constructor(val module: Module) : ResourceClassG
   @GuardedBy("this")
   private val perNamespaceProviders = hashMapOf<ResourceNamespace, IdProvider>()
 
-  @Synchronized
-  private fun resetProviders() {
-    nextPackageId = FIRST_PACKAGE_ID
-    perNamespaceProviders.clear()
+  init {
     perNamespaceProviders[ResourceNamespace.RES_AUTO] = IdProvider(0x7f)
     perNamespaceProviders[ResourceNamespace.ANDROID] = IdProvider(0x01)
   }
 
-  init {
-    resetProviders()
-  }
-
   /**
    * Ids assigned by this class, on-the-fly. May not be the same as ids chosen by aapt.
    *
@@ -152,7 +201,12 @@ class ResourceIdManager private constructor(val module: Module) : ResourceClassG
     }
 
     val provider = perNamespaceProviders.getOrPut(resource.namespace) { IdProvider(nextPackageId++) }
-    val newId = provider.getNext(resource.resourceType)
+    val knownIds = when (resource.namespace) {
+      ResourceNamespace.ANDROID -> frameworkIds
+      ResourceNamespace.RES_AUTO -> compiledIds
+      else -> null
+    }
+    val newId = provider.getNext(resource.resourceType, resource.name) { id -> knownIds?.fromIdMap?.containsKey(id) == true }
 
     dynamicToIdMap.put(resource, newId)
     dynamicFromIdMap.put(newId, resource)
@@ -164,7 +218,7 @@ class ResourceIdManager private constructor(val module: Module) : ResourceClassG
   fun resetDynamicIds() {
     ResourceClassRegistry.get(module.project).clearCache()
 
-    resetProviders()
+    // The providers are kept, so the resources get the ids they had before the reset.
     dynamicToIdMap.clear()
     dynamicFromIdMap.clear()
   }
@@ -78,6 +78,7 @@ public class VfsFileResourceItem extends BasicFileResourceItem {
                         @NotNull Object2IntMap<ResourceNamespace.Resolver> namespaceResolverIndexes) throws IOException {
     super.serialize(stream, configIndexes, sourceFileIndexes, namespaceResolverIndexes);
     stream.write(FileTimeStampLengthHasher.hash(myVirtualFile));
+    stream.write(FileContentHasher.hash(myVirtualFile));
   }
 
   @Override
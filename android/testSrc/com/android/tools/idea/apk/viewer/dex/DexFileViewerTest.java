@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.apk.viewer.dex;
+
+import static com.android.tools.idea.apk.viewer.dex.GenerateProguardKeepRuleActionTest.getDexPath;
+import static com.android.tools.idea.apk.viewer.dex.GenerateProguardKeepRuleActionTest.getTestDexFile;
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.jf.dexlib2.dexbacked.DexBackedDexFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DexFileViewerTest {
+  @Rule public TemporaryFolder myTempFolder = new TemporaryFolder();
+
+  @Test
+  public void parseDexFilesInParallel() throws Exception {
+    byte[] dex = Files.readAllBytes(getDexPath("Test.dex"));
+    Path[] dexFiles = new Path[3];
+    for (int i = 0; i < dexFiles.length; i++) {
+      dexFiles[i] = myTempFolder.newFile("classes" + (i + 1) + ".dex").toPath();
+      Files.write(dexFiles[i], dex);
+    }
+
+    // Every parsing task waits for the others to start, which only happens if each dex file is parsed by its own task.
+    CountDownLatch started = new CountDownLatch(dexFiles.length);
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(dexFiles.length, dexFiles.length, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<>()) {
+      @Override
+      protected void beforeExecute(Thread t, Runnable r) {
+        started.countDown();
+        try {
+          started.await(10, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException ignored) {
+        }
+      }
+    };
+    try {
+      Map<Path, DexBackedDexFile> parsed =
+        DexFileViewer.parseDexFiles(dexFiles, MoreExecutors.listeningDecorator(executor)).get(30, TimeUnit.SECONDS);
+
+      assertThat(started.getCount()).isEqualTo(0);
+      assertThat(parsed.keySet()).containsExactly((Object[])dexFiles).inOrder();
+      int classCount = getTestDexFile(dexFiles[0]).getClasses().size();
+      for (DexBackedDexFile dexFile : parsed.values()) {
+        assertThat(dexFile.getClasses()).hasSize(classCount);
+      }
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+}
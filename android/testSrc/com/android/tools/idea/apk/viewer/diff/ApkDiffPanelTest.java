@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.apk.viewer.diff;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.tools.apk.analyzer.ArchiveContext;
+import com.google.common.io.Files;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import javax.swing.tree.DefaultMutableTreeNode;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ApkDiffPanelTest {
+  @Rule public TemporaryFolder myTempFolder = new TemporaryFolder();
+
+  /** Makes the contents unique to each test, since the trees are cached across instances. */
+  private final String myId = UUID.randomUUID().toString();
+  private int myParseCount;
+
+  @Test
+  public void treeIsReusedForSameContent() throws Exception {
+    File oldApk = createApk("old.apk", "old");
+    File newApk = createApk("new.apk", "new");
+
+    DefaultMutableTreeNode tree = ApkDiffPanel.getTree(oldApk, newApk, "test", this::parse);
+    assertThat(ApkDiffPanel.getTree(oldApk, newApk, "test", this::parse)).isSameAs(tree);
+    assertThat(myParseCount).isEqualTo(1);
+
+    // Trees are keyed by content, a copy of the same APK reuses it as well
+    File copy = new File(myTempFolder.getRoot(), "copy.apk");
+    Files.copy(newApk, copy);
+    assertThat(ApkDiffPanel.getTree(oldApk, copy, "test", this::parse)).isSameAs(tree);
+    assertThat(myParseCount).isEqualTo(1);
+
+    // Each kind of diff has its own tree
+    assertThat(ApkDiffPanel.getTree(oldApk, newApk, "other", this::parse)).isNotSameAs(tree);
+    assertThat(myParseCount).isEqualTo(2);
+  }
+
+  @Test
+  public void treeIsRecomputedWhenContentChanges() throws Exception {
+    File oldApk = createApk("old.apk", "old");
+    File newApk = createApk("new.apk", "new");
+    DefaultMutableTreeNode tree = ApkDiffPanel.getTree(oldApk, newApk, "test", this::parse);
+
+    long lastModified = newApk.lastModified();
+    writeApk(newApk, "changed");
+    assertThat(newApk.setLastModified(lastModified + 2000)).isTrue();
+
+    assertThat(ApkDiffPanel.getTree(oldApk, newApk, "test", this::parse)).isNotSameAs(tree);
+    assertThat(myParseCount).isEqualTo(2);
+  }
+
+  @Test
+  public void fileWithSameSizeAndTimestampIsNotHashedAgain() throws Exception {
+    File oldApk = createApk("old.apk", "old");
+    File newApk = createApk("new.apk", "new1");
+    DefaultMutableTreeNode tree = ApkDiffPanel.getTree(oldApk, newApk, "test", this::parse);
+
+    // Same size and modification time, the previous hash, and so the previous tree, is used without reading the file
+    long length = newApk.length();
+    long lastModified = newApk.lastModified();
+    writeApk(newApk, "new2");
+    assertThat(newApk.setLastModified(lastModified)).isTrue();
+    assertThat(newApk.length()).isEqualTo(length);
+
+    assertThat(ApkDiffPanel.getTree(oldApk, newApk, "test", this::parse)).isSameAs(tree);
+    assertThat(myParseCount).isEqualTo(1);
+  }
+
+  @NotNull
+  private DefaultMutableTreeNode parse(@NotNull ArchiveContext oldContext, @NotNull ArchiveContext newContext) {
+    myParseCount++;
+    return new DefaultMutableTreeNode();
+  }
+
+  @NotNull
+  private File createApk(@NotNull String name, @NotNull String content) throws IOException {
+    File apk = myTempFolder.newFile(name);
+    writeApk(apk, content);
+    return apk;
+  }
+
+  /**
+   * Writes an APK with a single stored entry, so contents of the same length produce files of the same size.
+   */
+  private void writeApk(@NotNull File apk, @NotNull String content) throws IOException {
+    byte[] bytes = (myId + content).getBytes(StandardCharsets.UTF_8);
+    CRC32 crc = new CRC32();
+    crc.update(bytes);
+    ZipEntry entry = new ZipEntry("res/raw/content.txt");
+    entry.setMethod(ZipEntry.STORED);
+    entry.setSize(bytes.length);
+    entry.setCompressedSize(bytes.length);
+    entry.setCrc(crc.getValue());
+    entry.setTime(0);
+    try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(apk))) {
+      out.putNextEntry(entry);
+      out.write(bytes);
+      out.closeEntry();
+    }
+  }
+}
@@ -18,6 +18,7 @@ package com.android.tools.idea.configurations;
 import static com.android.tools.idea.res.ResourcesTestsUtil.checkIfScanPending;
 
 import com.android.ide.common.resources.ResourceResolver;
+import com.android.resources.ResourceType;
 import com.android.sdklib.devices.Device;
 import com.android.sdklib.devices.Screen;
 import com.android.tools.idea.res.LocalResourceRepository;
@@ -168,4 +169,24 @@ public class ResourceResolverCacheTest extends AndroidTestCase {
     // We've only changed the theme so the resource maps won't change. They are indexed per device config.
     assertDoesntContain(cache.myResolverMap.keySet(), customResolverMapKey);
   }
+
+  public void testResourcesConfiguredOnDemand() {
+    VirtualFile file = myFixture.copyFileToProject("render/layout1.xml", "res/layout/layout1.xml");
+    myFixture.copyFileToProject("javadoc/strings/strings.xml", "res/values/strings.xml");
+    ConfigurationManager configurationManager = ConfigurationManager.getOrCreateInstance(myModule);
+    Configuration configuration = configurationManager.getConfiguration(file);
+    ResourceResolverCache cache = configurationManager.getResolverCache();
+
+    ResourceResolver resolver = configuration.getResourceResolver();
+    ResourceResolverCache.ConfiguredResourceMap frameworkResources =
+      (ResourceResolverCache.ConfiguredResourceMap)Iterables.getOnlyElement(cache.myFrameworkResourceMap.values());
+    // Only the types needed to resolve the theme have been configured
+    int configuredTypes = frameworkResources.getConfiguredTypeCount();
+    assertTrue(configuredTypes < ResourceType.values().length);
+
+    assertEquals("Cancel", resolver.findResValue("@string/cancel", false).getValue());
+    assertNotNull(resolver.findResValue("@android:string/ok", false));
+    // Looking up a framework string configures at most the string type
+    assertTrue(frameworkResources.getConfiguredTypeCount() <= configuredTypes + 1);
+  }
 }
@@ -26,6 +26,7 @@ import com.android.ide.common.resources.configuration.FolderConfiguration;
 import com.android.resources.ResourceType;
 import com.android.tools.lint.detector.api.Lint;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
 import com.intellij.openapi.command.WriteCommandAction;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.vfs.VirtualFile;
@@ -358,6 +359,26 @@ public class ModuleResourceRepositoryTest extends AndroidTestCase {
     assertStringIs(resources, "title_layout_changes", "New Layout Changes");
   }
 
+  public void testSnapshots() {
+    VirtualFile res1 = myFixture.copyFileToProject(LAYOUT, "res/layout/layout1.xml").getParent().getParent();
+    VirtualFile layout2 = myFixture.copyFileToProject(LAYOUT, "res/layout/layout2.xml");
+    VirtualFile res2 = myFixture.copyFileToProject(VALUES_OVERLAY1, "res2/values/values.xml").getParent().getParent();
+    ModuleResourceRepository resources = ModuleResourceRepository.createForTest(myFacet, ImmutableList.of(res1, res2), RES_AUTO, null);
+
+    // Unchanged resources are read from the same snapshot.
+    ListMultimap<String, ResourceItem> layouts = resources.getResources(RES_AUTO, ResourceType.LAYOUT);
+    assertThat(layouts.keySet()).containsExactly("layout1", "layout2");
+    assertSame(layouts, resources.getResources(RES_AUTO, ResourceType.LAYOUT));
+
+    PsiFile psiLayout2 = PsiManager.getInstance(getProject()).findFile(layout2);
+    assertNotNull(psiLayout2);
+    WriteCommandAction.runWriteCommandAction(null, psiLayout2::delete);
+    assertThat(resources.getResources(RES_AUTO, ResourceType.LAYOUT).keySet()).containsExactly("layout1");
+    assertFalse(resources.hasResources(RES_AUTO, ResourceType.LAYOUT, "layout2"));
+    // Snapshots already returned are not modified.
+    assertThat(layouts.keySet()).containsExactly("layout1", "layout2");
+  }
+
   public void testHasResourcesOfType() {
     // Test hasResourcesOfType merging (which may be optimized to be lighter-weight than map merging).
     VirtualFile res1 = myFixture.copyFileToProject(LAYOUT, "res/layout/layout.xml").getParent().getParent();
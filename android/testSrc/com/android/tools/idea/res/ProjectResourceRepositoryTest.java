@@ -19,6 +19,7 @@ import static com.android.AndroidProjectTypes.PROJECT_TYPE_LIBRARY;
 import static com.android.ide.common.rendering.api.ResourceNamespace.RES_AUTO;
 import static com.android.tools.idea.res.ModuleResourceRepositoryTest.assertHasExactResourceTypes;
 import static com.android.tools.idea.res.ResourcesTestsUtil.getSingleItem;
+import static com.google.common.truth.Truth.assertThat;
 
 import com.android.ide.common.gradle.model.level2.IdeDependenciesFactory;
 import com.android.ide.common.rendering.api.ResourceValue;
@@ -33,6 +34,7 @@ import com.android.tools.idea.gradle.stubs.android.VariantStub;
 import com.android.tools.idea.model.AndroidModel;
 import com.android.tools.idea.testing.Modules;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.command.WriteCommandAction;
@@ -54,10 +56,15 @@ import com.intellij.testFramework.fixtures.TestFixtureBuilder;
 import com.intellij.util.ui.UIUtil;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 import org.intellij.lang.annotations.Language;
 import org.jetbrains.android.AndroidTestCase;
@@ -79,6 +86,74 @@ public class ProjectResourceRepositoryTest extends AndroidTestCase {
     assertSame(ResourceRepositoryManager.getProjectResources(myFacet), ResourceRepositoryManager.getProjectResources(myModule));
   }
 
+  public void testConcurrentReadsSeeUpdates() throws Exception {
+    TestLocalResourceRepository first = new TestLocalResourceRepository(RES_AUTO);
+    TestLocalResourceRepository second = new TestLocalResourceRepository(RES_AUTO);
+    ProjectResourceRepository resources = ProjectResourceRepository.createForTest(myFacet, ImmutableList.of(first, second));
+    int count = 200;
+    AtomicBoolean done = new AtomicBoolean();
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> readers = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        readers.add(executor.submit(() -> {
+          int previousSize = 0;
+          while (!done.get()) {
+            // Snapshots are consistent and never go back in time.
+            Set<String> ids = resources.getResourceNames(RES_AUTO, ResourceType.ID);
+            assertTrue(ids.size() >= previousSize);
+            for (int id = 0; id < ids.size(); id++) {
+              assertTrue(ids.contains("id" + id));
+            }
+            previousSize = ids.size();
+          }
+        }));
+      }
+
+      for (int i = 0; i < count; i++) {
+        long modificationCount = resources.getModificationCount();
+        (i % 2 == 0 ? first : second).addIdAndNotify("id" + i);
+        // Every caller sees the new modification count, even while others are updating it.
+        List<Future<Long>> counts = new ArrayList<>();
+        for (int j = 0; j < 4; j++) {
+          counts.add(executor.submit(resources::getModificationCount));
+        }
+        for (Future<Long> newCount : counts) {
+          assertThat(newCount.get()).isNotEqualTo(modificationCount);
+        }
+        assertTrue(resources.hasResources(RES_AUTO, ResourceType.ID, "id" + i));
+      }
+      done.set(true);
+      for (Future<?> reader : readers) {
+        reader.get();
+      }
+    }
+    finally {
+      done.set(true);
+      executor.shutdownNow();
+    }
+
+    assertThat(resources.getResourceNames(RES_AUTO, ResourceType.ID)).hasSize(count);
+  }
+
+  public void testSnapshotsNotChangedByLaterUpdates() {
+    TestLocalResourceRepository first = new TestLocalResourceRepository(RES_AUTO);
+    TestLocalResourceRepository second = new TestLocalResourceRepository(RES_AUTO);
+    ProjectResourceRepository resources = ProjectResourceRepository.createForTest(myFacet, ImmutableList.of(first, second));
+    first.addIdAndNotify("id0");
+
+    ListMultimap<String, ResourceItem> ids = resources.getResources(RES_AUTO, ResourceType.ID);
+    // The snapshot is reused until the resources change.
+    assertSame(ids, resources.getResources(RES_AUTO, ResourceType.ID));
+
+    // The merged resources are updated in a copy, so the snapshot that was already returned stays the same.
+    second.addIdAndNotify("id1");
+    assertThat(ids.keySet()).containsExactly("id0");
+    assertThat(resources.getResources(RES_AUTO, ResourceType.ID).keySet()).containsExactly("id0", "id1");
+    assertThat(resources.getResources(RES_AUTO, ResourceType.ID, "id2")).isEmpty();
+  }
+
   /**
    * Like {@link ModuleResourceRepository#testOverlayUpdates1}, but rather than testing changes to layout
    * resources (file-based resource) perform document edits in value-documents.
@@ -29,7 +29,10 @@ import com.android.tools.idea.projectsystem.FilenameConstants;
 import com.android.tools.idea.resources.aar.AarSourceResourceRepository;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ListMultimap;
+import com.intellij.openapi.command.WriteCommandAction;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.nio.file.Path;
@@ -457,6 +460,41 @@ public class ResourceClassGeneratorTest extends AndroidTestCase {
     assertEquals(0x01010030, array[idx]);
   }
 
+  public void testIncrementalGeneration() throws Exception {
+    VirtualFile res = myFixture.copyFileToProject("render/layout1.xml", "res/layout/layout1.xml").getParent().getParent();
+    VirtualFile layout2 = myFixture.copyFileToProject("render/layout2.xml", "res/layout/layout2.xml");
+    myFixture.copyFileToProject("javadoc/strings/strings.xml", "res/values/strings.xml");
+    ModuleResourceRepository resources = ModuleResourceRepository.createForTest(myFacet, ImmutableList.of(res), RES_AUTO, null);
+
+    ResourceClassGenerator generator = ResourceClassGenerator.create(ResourceIdManager.get(myModule), resources, RES_AUTO);
+    byte[] layouts = generator.generate("my.test.pkg.R$layout");
+    byte[] strings = generator.generate("my.test.pkg.R$string");
+    assertEquals(2, generator.getGeneratedClassCount());
+
+    // Nothing has changed.
+    assertSame(layouts, generator.generate("my.test.pkg.R$layout"));
+    assertSame(strings, generator.generate("my.test.pkg.R$string"));
+    assertEquals(2, generator.getGeneratedClassCount());
+
+    // Only the layouts have changed, the strings are not regenerated.
+    PsiFile psiLayout2 = PsiManager.getInstance(getProject()).findFile(layout2);
+    assertNotNull(psiLayout2);
+    WriteCommandAction.runWriteCommandAction(null, psiLayout2::delete);
+    byte[] newLayouts = generator.generate("my.test.pkg.R$layout");
+    assertNotSame(layouts, newLayouts);
+    assertSame(strings, generator.generate("my.test.pkg.R$string"));
+    assertEquals(3, generator.getGeneratedClassCount());
+
+    Class<?> clz = generateClass(generator, "my.test.pkg.R$layout");
+    assertNotNull(clz.getField("layout1"));
+    try {
+      clz.getField("layout2");
+      fail("Deleted layout should not be in the regenerated class");
+    } catch (NoSuchFieldException e) {
+      // pass
+    }
+  }
+
   @Nullable
   protected static Class<?> generateClass(final ResourceClassGenerator generator, String name) throws ClassNotFoundException {
     ClassLoader classLoader = new ClassLoader(ResourceClassGeneratorTest.class.getClassLoader()) {
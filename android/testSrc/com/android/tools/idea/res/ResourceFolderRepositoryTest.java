@@ -150,6 +150,7 @@ public class ResourceFolderRepositoryTest extends AndroidTestCase {
 
   private static void resetCounters() {
     ResourceFolderRepository.ourFullRescans = 0;
+    ResourceFolderRepository.ourIncrementalValueFileUpdates = 0;
     ResourceFolderRepository.ourLayoutlibCacheFlushes = 0;
   }
 
@@ -161,6 +162,11 @@ public class ResourceFolderRepositoryTest extends AndroidTestCase {
     assertEquals(1, ResourceFolderRepository.ourFullRescans);
   }
 
+  private static void ensureSingleValueFileUpdate() {
+    assertEquals(0, ResourceFolderRepository.ourFullRescans);
+    assertEquals(1, ResourceFolderRepository.ourIncrementalValueFileUpdates);
+  }
+
   private static void ensureLayoutlibCachesFlushed() {
     assertThat(ResourceFolderRepository.ourLayoutlibCacheFlushes).named("times layoutlib caches flushed").isGreaterThan(0);
   }
@@ -1647,6 +1653,108 @@ public class ResourceFolderRepositoryTest extends AndroidTestCase {
     ensureIncremental();
   }
 
+  public void testBulkValueEditsWithoutRescan() {
+    resetCounters();
+
+    VirtualFile file1 = myFixture.copyFileToProject(VALUES1, "res/values/myvalues.xml");
+    PsiFile psiFile1 = PsiManager.getInstance(getProject()).findFile(file1);
+    assertNotNull(psiFile1);
+
+    ResourceFolderRepository resources = createRegisteredRepository();
+    assertNotNull(resources);
+    PsiDocumentManager documentManager = PsiDocumentManager.getInstance(getProject());
+    Document document = documentManager.getDocument(psiFile1);
+    assertNotNull(document);
+
+    WriteCommandAction.runWriteCommandAction(null, () -> {
+      String textToRemove = "<string name=\"app_name\">Animations Demo</string>";
+      int offset = document.getText().indexOf(textToRemove);
+      document.deleteString(offset, offset + textToRemove.length());
+      documentManager.commitDocument(document);
+    });
+    // First edit won't be incremental (file -> Psi).
+    assertTrue(resources.isScanPending(psiFile1));
+    UIUtil.dispatchAllInvocationEvents();
+    ensureSingleScan();
+    resetCounters();
+
+    ResourceItem zoom = getOnlyItem(resources, ResourceType.STRING, "title_zoom");
+    ResourceItem style = getOnlyItem(resources, ResourceType.STYLE, "DarkTheme");
+    assertEquals("android:Theme.Holo", ((StyleResourceValue)style.getResourceValue()).getParentStyleName());
+    long generation = resources.getModificationCount();
+
+    // Editing the style parent schedules an update of the file; the edits that follow are applied together with it.
+    WriteCommandAction.runWriteCommandAction(null, () -> {
+      int offset = document.getText().indexOf("android:Theme.Holo\"");
+      document.replaceString(offset, offset + "android:Theme.Holo".length(), "android:Theme.Material");
+      documentManager.commitDocument(document);
+
+      String textToRemove = "<string name=\"title_crossfade\">Simple Crossfade</string>";
+      offset = document.getText().indexOf(textToRemove);
+      document.replaceString(offset, offset + textToRemove.length(),
+                             "<string name=\"new_string1\">New String 1</string><string name=\"new_string2\">New String 2</string>");
+      documentManager.commitDocument(document);
+    });
+    assertTrue(resources.isScanPending(psiFile1));
+    UIUtil.dispatchAllInvocationEvents();
+    UIUtil.invokeAndWaitIfNeeded((Runnable)() -> {
+      ensureSingleValueFileUpdate();
+      assertTrue(generation < resources.getModificationCount());
+      assertFalse(resources.hasResources(RES_AUTO, ResourceType.STRING, "title_crossfade"));
+      //noinspection ConstantConditions
+      assertEquals("New String 1", getOnlyItem(resources, ResourceType.STRING, "new_string1").getResourceValue().getValue());
+      //noinspection ConstantConditions
+      assertEquals("New String 2", getOnlyItem(resources, ResourceType.STRING, "new_string2").getResourceValue().getValue());
+      // Items of unchanged tags are kept.
+      assertSame(zoom, getOnlyItem(resources, ResourceType.STRING, "title_zoom"));
+      assertSame(style, getOnlyItem(resources, ResourceType.STYLE, "DarkTheme"));
+      assertEquals("android:Theme.Material", ((StyleResourceValue)style.getResourceValue()).getParentStyleName());
+    });
+  }
+
+  public void testValueEditWithoutRescanBumpsModificationCount() {
+    resetCounters();
+
+    VirtualFile file1 = myFixture.copyFileToProject(VALUES1, "res/values/myvalues.xml");
+    PsiFile psiFile1 = PsiManager.getInstance(getProject()).findFile(file1);
+    assertNotNull(psiFile1);
+
+    ResourceFolderRepository resources = createRegisteredRepository();
+    assertNotNull(resources);
+    PsiDocumentManager documentManager = PsiDocumentManager.getInstance(getProject());
+    Document document = documentManager.getDocument(psiFile1);
+    assertNotNull(document);
+
+    WriteCommandAction.runWriteCommandAction(null, () -> {
+      String textToRemove = "<string name=\"app_name\">Animations Demo</string>";
+      int offset = document.getText().indexOf(textToRemove);
+      document.deleteString(offset, offset + textToRemove.length());
+      documentManager.commitDocument(document);
+    });
+    // First edit won't be incremental (file -> Psi).
+    UIUtil.dispatchAllInvocationEvents();
+    ensureSingleScan();
+    resetCounters();
+
+    // The value of the style is not read before the edit, so it isn't cached when the file is updated.
+    ResourceItem style = getOnlyItem(resources, ResourceType.STYLE, "DarkTheme");
+    long generation = resources.getModificationCount();
+
+    WriteCommandAction.runWriteCommandAction(null, () -> {
+      int offset = document.getText().indexOf("android:Theme.Holo\"");
+      document.replaceString(offset, offset + "android:Theme.Holo".length(), "android:Theme.Material");
+      documentManager.commitDocument(document);
+    });
+    assertTrue(resources.isScanPending(psiFile1));
+    UIUtil.dispatchAllInvocationEvents();
+    UIUtil.invokeAndWaitIfNeeded((Runnable)() -> {
+      ensureSingleValueFileUpdate();
+      assertTrue(generation < resources.getModificationCount());
+      assertSame(style, getOnlyItem(resources, ResourceType.STYLE, "DarkTheme"));
+      assertEquals("android:Theme.Material", ((StyleResourceValue)style.getResourceValue()).getParentStyleName());
+    });
+  }
+
   public void testAddIdValue() {
     resetCounters();
     VirtualFile file1 = myFixture.copyFileToProject(VALUES1, "res/values/myvalues.xml");
@@ -1907,7 +2015,8 @@ public class ResourceFolderRepositoryTest extends AndroidTestCase {
       resetCounters();
     });
 
-    // Even on the second edit we don't expect editing the style parent to be incremental.
+    // Editing the style parent is not handled by the PSI listener directly, but on the second edit the file is
+    // updated without a full rescan.
     long generation2 = resources.getModificationCount();
     WriteCommandAction.runWriteCommandAction(null, () -> {
       int offset = document.getText().indexOf("android:Theme.Light");
@@ -1918,7 +2027,7 @@ public class ResourceFolderRepositoryTest extends AndroidTestCase {
     assertTrue(resources.isScanPending(psiFile1));
     UIUtil.dispatchAllInvocationEvents();
     UIUtil.invokeAndWaitIfNeeded((Runnable)() -> {
-      ensureSingleScan();
+      ensureSingleValueFileUpdate();
       assertTrue(generation2 < resources.getModificationCount());
       ResourceItem style = getOnlyItem(resources, ResourceType.STYLE, "DarkTheme");
       ResourceValue resourceValue = style.getResourceValue();
@@ -2348,7 +2457,7 @@ public class ResourceFolderRepositoryTest extends AndroidTestCase {
     assertTrue(resources.isScanPending(psiFile1));
     UIUtil.dispatchAllInvocationEvents();
     UIUtil.invokeAndWaitIfNeeded((Runnable)() -> {
-      ensureSingleScan();
+      ensureSingleValueFileUpdate();
       assertTrue(generation2 < resources.getModificationCount());
       assertTrue(resources.hasResources(RES_AUTO, ResourceType.STYLEABLE, "MyCustomView"));
       assertFalse(resources.hasResources(RES_AUTO, ResourceType.ATTR, "watchType"));
@@ -3931,6 +4040,49 @@ public class ResourceFolderRepositoryTest extends AndroidTestCase {
     assertTrue(fromCacheFile.hasResources(RES_AUTO, ResourceType.STRING, "hello_there"));
   }
 
+  public void testSerializationTouchXmlFileAndLoad() throws Exception {
+    VirtualFile file1 = myFixture.copyFileToProject(STRINGS, "res/values/strings.xml");
+    myFixture.copyFileToProject(LAYOUT1, "res/layout/layout.xml");
+    File file1AsFile = virtualToIoFile(file1);
+    ResourceFolderRepository resources = createRepository(true);
+    assertNotNull(resources);
+
+    // Change the time stamp of the file without changing its contents, like switching VCS branches back and forth does.
+    if (!file1AsFile.setLastModified(file1AsFile.lastModified() + 2000)) {
+      // Not supported on this platform?
+      return;
+    }
+    file1.refresh(false, false);
+
+    ResourceFolderRepository fromCacheFile = createRepository(false);
+    assertNotNull(fromCacheFile);
+    assertEquals(2, fromCacheFile.getNumXmlFilesLoadedInitially());
+    assertEquals(0, fromCacheFile.getNumXmlFilesLoadedInitiallyFromSources());
+    assertEquals(1, fromCacheFile.getNumXmlFilesRevalidatedInitially());
+    assertContainSameData(myFacet, resources, fromCacheFile);
+  }
+
+  public void testCorruptedCacheFileIgnored() throws Exception {
+    myFixture.copyFileToProject(STRINGS, "res/values/strings.xml");
+    myFixture.copyFileToProject(LAYOUT1, "res/layout/layout.xml");
+    ResourceFolderRepository resources = createRepository(true);
+    assertNotNull(resources);
+
+    ResourceFolderRepositoryCachingData cachingData =
+        ResourceFolderRepositoryFileCacheService.get().getCachingData(getProject(), getResourceDirectory(), null);
+    assertNotNull(cachingData);
+    Path cacheFile = cachingData.getCacheFile();
+    byte[] cacheContents = Files.readAllBytes(cacheFile);
+    cacheContents[cacheContents.length - 1] ^= 1;
+    Files.write(cacheFile, cacheContents);
+
+    ResourceFolderRepository fromCacheFile = createRepository(false);
+    assertNotNull(fromCacheFile);
+    assertEquals(2, fromCacheFile.getNumXmlFilesLoadedInitially());
+    assertEquals(2, fromCacheFile.getNumXmlFilesLoadedInitiallyFromSources());
+    assertContainSameData(myFacet, resources, fromCacheFile);
+  }
+
   public void testSerializationAddXmlFileAndLoad() {
     myFixture.copyFileToProject(STRINGS, "res/values/strings.xml");
     ResourceFolderRepository resources = createRepository(true);
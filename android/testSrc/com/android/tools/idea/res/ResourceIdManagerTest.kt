@@ -67,10 +67,33 @@ class ResourceIdManagerTest : LightJavaCodeInsightFixtureTestCase() {
     assertNull(idManager.findById(id2))
     assertNull(idManager.findById(id3))
 
-    // Check in different order. These should be new IDs.
-    assertNotEquals(id3, idManager.getOrGenerateId(ResourceReference(RES_AUTO, ResourceType.STRING, "string3")))
-    assertNotEquals(id1, idManager.getOrGenerateId(ResourceReference(RES_AUTO, ResourceType.STRING, "string1")))
-    assertNotEquals(id2, idManager.getOrGenerateId(ResourceReference(RES_AUTO, ResourceType.STRING, "string2")))
+    // Check in different order. The ids don't depend on the order so they should be the same as before.
+    assertEquals(id3, idManager.getOrGenerateId(ResourceReference(RES_AUTO, ResourceType.STRING, "string3")))
+    assertEquals(id1, idManager.getOrGenerateId(ResourceReference(RES_AUTO, ResourceType.STRING, "string1")))
+    assertEquals(id2, idManager.getOrGenerateId(ResourceReference(RES_AUTO, ResourceType.STRING, "string2")))
+  }
+
+  fun testResetDynamicIdsWithCollidingNames() {
+    // The hashes of these names map to the same entry, so the second one requested is moved to another entry.
+    val first = ResourceReference(RES_AUTO, ResourceType.STRING, "colliding70")
+    val second = ResourceReference(RES_AUTO, ResourceType.STRING, "colliding210")
+    val firstId = idManager.getOrGenerateId(first)
+    val secondId = idManager.getOrGenerateId(second)
+    assertNotEquals(firstId, secondId)
+
+    idManager.resetDynamicIds()
+
+    // Requested in the other order, both still get the ids they had before the reset.
+    assertEquals(secondId, idManager.getOrGenerateId(second))
+    assertEquals(firstId, idManager.getOrGenerateId(first))
+    assertEquals(first, idManager.findById(firstId))
+    assertEquals(second, idManager.findById(secondId))
+  }
+
+  fun testDynamicIdCollisions() {
+    val ids = (0 until 1000).map { idManager.getOrGenerateId(ResourceReference(RES_AUTO, ResourceType.STRING, "string$it")) }
+    assertEquals(ids.size, ids.toSet().size)
+    ids.forEachIndexed { index, id -> assertEquals(ResourceReference(RES_AUTO, ResourceType.STRING, "string$index"), idManager.findById(id)) }
   }
 
   fun testLoadCompiledResources() {
@@ -18,10 +18,12 @@ package com.android.tools.idea.res;
 import com.android.annotations.concurrency.GuardedBy;
 import com.android.ide.common.rendering.api.ResourceNamespace;
 import com.android.ide.common.resources.ResourceItem;
+import com.android.ide.common.resources.ResourceMergerItem;
 import com.android.ide.common.resources.ResourceTable;
 import com.android.ide.common.resources.ResourceVisitor;
 import com.android.ide.common.resources.SingleNamespaceResourceRepository;
 import com.android.resources.ResourceType;
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ListMultimap;
 import com.intellij.openapi.vfs.VirtualFile;
 import java.util.Collections;
@@ -83,4 +85,20 @@ public class TestLocalResourceRepository extends LocalResourceRepository impleme
                            @NotNull ListMultimap<String, ResourceItem> resources) {
     myResourceTable.put(namespace, resourceType, resources);
   }
+
+  /**
+   * Adds an ID to this repository and notifies the parents, like the repositories backed by files do when they change.
+   */
+  public void addIdAndNotify(@NotNull String name) {
+    synchronized (ITEM_MAP_LOCK) {
+      ListMultimap<String, ResourceItem> ids = myResourceTable.get(myNamespace, ResourceType.ID);
+      if (ids == null) {
+        ids = ArrayListMultimap.create();
+        myResourceTable.put(myNamespace, ResourceType.ID, ids);
+      }
+      ids.put(name, new ResourceMergerItem(name, myNamespace, ResourceType.ID, null, null, null));
+      setModificationCount(ourModificationCounter.incrementAndGet());
+      invalidateParentCaches(this, ResourceType.ID);
+    }
+  }
 }
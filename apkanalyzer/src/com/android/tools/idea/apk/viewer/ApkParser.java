@@ -18,6 +18,7 @@ package com.android.tools.idea.apk.viewer;
 import com.android.SdkConstants;
 import com.android.annotations.NonNull;
 import com.android.ide.common.process.ProcessException;
+import com.android.ide.common.resources.ProtoXmlPullParser;
 import com.android.ide.common.xml.AndroidManifestParser;
 import com.android.ide.common.xml.ManifestData;
 import com.android.tools.apk.analyzer.*;
@@ -31,11 +32,12 @@ import com.intellij.openapi.diagnostic.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.ide.PooledThreadExecutor;
+import org.xmlpull.v1.XmlPullParser;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
@@ -153,23 +155,64 @@ public class ApkParser {
   }
 
   private static AndroidApplicationInfo getAppInfoFromAppBundle(@NotNull ArchiveEntry entry) throws Exception {
-    // Note: This code below is a little convoluted, it would be better to update AndroidManifestParser
-    //       to support ProtoXmlPullParser, which can decode xml protobuf streams automatically.
-
-    // Decode XML protobuf into XML document string representation
-    byte[] content = Files.readAllBytes(entry.getPath());
-    String doc = new ProtoXmlPrettyPrinterImpl().prettyPrint(content);
+    // Read the attributes of the root <manifest> tag straight from the XML protobuf stream, instead of pretty printing
+    // the whole document and parsing it a second time.
+    try (InputStream stream = Files.newInputStream(entry.getPath())) {
+      XmlPullParser parser = new ProtoXmlPullParser();
+      parser.setInput(stream, null);
+      int event = parser.next();
+      while (event != XmlPullParser.START_TAG && event != XmlPullParser.END_DOCUMENT) {
+        event = parser.next();
+      }
+      if (event != XmlPullParser.START_TAG || !SdkConstants.TAG_MANIFEST.equals(parser.getName())) {
+        return AndroidApplicationInfo.UNKNOWN;
+      }
+      String packageName = parser.getAttributeValue(null, SdkConstants.ATTR_PACKAGE);
+      String versionName = parser.getAttributeValue(SdkConstants.ANDROID_URI, SdkConstants.ATTR_VERSION_NAME);
+      Integer versionCode = parseVersionCode(parser.getAttributeValue(SdkConstants.ANDROID_URI, SdkConstants.ATTR_VERSION_CODE));
+      return new AndroidApplicationInfo(packageName, versionName,
+                                        versionCode != null ? versionCode : AndroidApplicationInfo.UNKNOWN.versionCode);
+    }
+  }
 
-    // Parse the XML string into manifest data and extract
-    byte[] decodedContent = doc.getBytes(StandardCharsets.UTF_8);
-    try (ByteArrayInputStream stream = new ByteArrayInputStream(decodedContent)) {
-      ManifestData data = AndroidManifestParser.parse(stream);
-      return new AndroidApplicationInfo(data.getPackage(), data.getVersionName(), data.getVersionCode());
+  /**
+   * Returns the version code of the given attribute value, or null if it is missing or not a number. Only the version code
+   * is unknown in that case, the rest of the manifest is still used.
+   */
+  @Nullable
+  private static Integer parseVersionCode(@Nullable String versionCode) {
+    if (versionCode == null) {
+      return null;
+    }
+    try {
+      return Integer.valueOf(versionCode.trim());
+    }
+    catch (NumberFormatException e) {
+      return null;
     }
   }
 
   @NotNull
   private static AndroidApplicationInfo getAppInfoFromApk(@NonNull Path pathToAapt, @NotNull ArchiveEntry archiveEntry)
+    throws ProcessException {
+    // Decode the binary manifest in-process, which is much cheaper than forking aapt for every artifact.
+    try {
+      byte[] content = BinaryXmlParser.decodeXml(SdkConstants.FN_ANDROID_MANIFEST_XML, Files.readAllBytes(archiveEntry.getPath()));
+      try (ByteArrayInputStream stream = new ByteArrayInputStream(content)) {
+        ManifestData data = AndroidManifestParser.parse(stream);
+        Integer versionCode = data.getVersionCode();
+        return new AndroidApplicationInfo(data.getPackage(), data.getVersionName(),
+                                          versionCode != null ? versionCode : AndroidApplicationInfo.UNKNOWN.versionCode);
+      }
+    }
+    catch (Exception e) {
+      Logger.getInstance(ApkParser.class).info("Unable to decode manifest in-process, falling back to aapt", e);
+      return getAppInfoFromAapt(pathToAapt, archiveEntry);
+    }
+  }
+
+  @NotNull
+  private static AndroidApplicationInfo getAppInfoFromAapt(@NonNull Path pathToAapt, @NotNull ArchiveEntry archiveEntry)
     throws ProcessException {
     AaptInvoker invoker = new AaptInvoker(pathToAapt, new LogWrapper(ApkParser.class));
 
@@ -19,6 +19,7 @@ import com.android.tools.apk.analyzer.BinaryXmlParser;
 import com.google.common.collect.ImmutableList;
 import com.google.devrel.gmscore.tools.apk.arsc.*;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import javax.swing.table.AbstractTableModel;
 import java.util.List;
@@ -30,6 +31,7 @@ public class ResourceTypeTableModel extends AbstractTableModel {
   private final PackageChunk myPackageChunk;
   private final TypeSpecChunk myTypeSpec;
   private final List<TypeChunk> myTypes;
+  @Nullable private String[] myResourceNames;
 
   public ResourceTypeTableModel(@NotNull StringPoolChunk stringPool, @NotNull PackageChunk packageChunk, @NotNull TypeSpecChunk typeSpec) {
     myStringPool = stringPool;
@@ -55,15 +57,8 @@ public class ResourceTypeTableModel extends AbstractTableModel {
       return id.toString();
     }
     else if (col == 1) { // resource name
-      String key = "unknown";
-      for (TypeChunk type : myTypes) {
-        TypeChunk.Entry entry = type.getEntries().get(row);
-        if (entry != null) {
-          key = entry.key();
-          break;
-        }
-      }
-      return key;
+      String key = getResourceNames()[row];
+      return key == null ? "unknown" : key;
     }
     else {
       TypeChunk typeChunk = myTypes.get(col - 2);
@@ -85,6 +80,27 @@ public class ResourceTypeTableModel extends AbstractTableModel {
     }
   }
 
+  /**
+   * Returns the resource names indexed by entry id, computed with a single pass over the entries of all configurations the first
+   * time they are needed instead of probing every configuration for every rendered row.
+   */
+  @NotNull
+  private String[] getResourceNames() {
+    if (myResourceNames == null) {
+      String[] names = new String[myTypeSpec.getResourceCount()];
+      for (TypeChunk type : myTypes) {
+        for (Map.Entry<Integer, TypeChunk.Entry> entry : type.getEntries().entrySet()) {
+          int index = entry.getKey();
+          if (index < names.length && names[index] == null) {
+            names[index] = entry.getValue().key();
+          }
+        }
+      }
+      myResourceNames = names;
+    }
+    return myResourceNames;
+  }
+
   @NotNull
   private String formatValue(@NotNull BinaryResourceValue value) {
     if (value.type() == BinaryResourceValue.Type.STRING) {
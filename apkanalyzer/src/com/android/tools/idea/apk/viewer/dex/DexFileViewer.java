@@ -26,6 +26,7 @@ import com.android.tools.idea.apk.viewer.ApkViewPanel;
 import com.android.tools.proguard.ProguardMap;
 import com.android.tools.proguard.ProguardSeedsMap;
 import com.android.tools.proguard.ProguardUsagesMap;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Charsets;
 import com.google.common.base.Function;
 import com.google.common.collect.Maps;
@@ -289,13 +290,7 @@ public class DexFileViewer extends UserDataHolderBase implements ApkFileEditorCo
 
   public void initDex() {
     ListeningExecutorService pooledThreadExecutor = MoreExecutors.listeningDecorator(PooledThreadExecutor.INSTANCE);
-    ListenableFuture<Map<Path, DexBackedDexFile>> dexFileFuture = pooledThreadExecutor.submit(() -> {
-      Map<Path, DexBackedDexFile> dexFiles = Maps.newHashMapWithExpectedSize(myDexFiles.length);
-      for (int i = 0; i < myDexFiles.length; i++) {
-        dexFiles.put(myDexFiles[i], DexFiles.getDexFile(myDexFiles[i]));
-      }
-      return dexFiles;
-    });
+    ListenableFuture<Map<Path, DexBackedDexFile>> dexFileFuture = parseDexFiles(myDexFiles, pooledThreadExecutor);
 
     ListenableFuture<DexPackageNode> treeNodeFuture =
       Futures.transform(dexFileFuture, new Function<Map<Path, DexBackedDexFile>, DexPackageNode>() {
@@ -384,6 +379,32 @@ public class DexFileViewer extends UserDataHolderBase implements ApkFileEditorCo
     }
   }
 
+  /**
+   * Parses each dex file on its own task of the given executor, since multidex apps can have a dozen of them. The returned
+   * future completes once all of them are parsed, with the parsed files in the order of the given paths.
+   */
+  @VisibleForTesting
+  @NotNull
+  static ListenableFuture<Map<Path, DexBackedDexFile>> parseDexFiles(@NotNull Path[] dexFiles,
+                                                                     @NotNull ListeningExecutorService executor) {
+    List<ListenableFuture<DexBackedDexFile>> parsedDexFiles = new ArrayList<>(dexFiles.length);
+    for (Path dexFile : dexFiles) {
+      parsedDexFiles.add(executor.submit(() -> DexFiles.getDexFile(dexFile)));
+    }
+    return Futures.transform(Futures.allAsList(parsedDexFiles), new Function<List<DexBackedDexFile>, Map<Path, DexBackedDexFile>>() {
+      @NotNull
+      @Override
+      public Map<Path, DexBackedDexFile> apply(@Nullable List<DexBackedDexFile> input) {
+        assert input != null;
+        Map<Path, DexBackedDexFile> parsed = Maps.newLinkedHashMapWithExpectedSize(dexFiles.length);
+        for (int i = 0; i < dexFiles.length; i++) {
+          parsed.put(dexFiles[i], input.get(i));
+        }
+        return parsed;
+      }
+    }, MoreExecutors.directExecutor());
+  }
+
   @NotNull
   @Override
   public JComponent getComponent() {
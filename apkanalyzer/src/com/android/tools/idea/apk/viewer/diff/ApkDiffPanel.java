@@ -24,6 +24,10 @@ import com.android.tools.apk.analyzer.internal.ApkDiffParser;
 import com.android.tools.apk.analyzer.internal.ApkEntry;
 import com.android.tools.apk.analyzer.internal.ApkFileByFileDiffParser;
 import com.android.tools.idea.apk.viewer.ApkViewPanel.FutureCallBackAdapter;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
@@ -46,12 +50,18 @@ import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.TreePath;
 import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
+import java.io.File;
+import java.io.IOException;
 
 import static com.android.tools.idea.apk.viewer.ApkViewPanel.getHumanizedSize;
 
 public class ApkDiffPanel {
 
   private static final ListeningExecutorService ourExecutorService = MoreExecutors.listeningDecorator(PooledThreadExecutor.INSTANCE);
+  /** Diff trees of recently compared APKs, keyed by the kind of diff and the content hashes of both APKs. */
+  private static final Cache<String, DefaultMutableTreeNode> ourTreeCache = CacheBuilder.newBuilder().maximumSize(8).softValues().build();
+  /** Content hashes of recently compared APKs, keyed by path. Only recomputed when the size or the modification time changes. */
+  private static final Cache<String, FileHash> ourFileHashes = CacheBuilder.newBuilder().maximumSize(16).build();
   private ListenableFuture<DefaultMutableTreeNode> myFbfTreeStructureFuture;
 
   private JPanel myContainer;
@@ -86,12 +96,9 @@ public class ApkDiffPanel {
 
   private void constructFbfTree(){
     if (myFbfTreeStructureFuture == null) {
-      myFbfTreeStructureFuture = ourExecutorService.submit(() -> {
-        try (ArchiveContext archiveContext1 = Archives.open(VfsUtilCore.virtualToIoFile(myOldApk).toPath());
-             ArchiveContext archiveContext2 = Archives.open(VfsUtilCore.virtualToIoFile(myNewApk).toPath())) {
-          return ApkFileByFileDiffParser.createTreeNode(archiveContext1, archiveContext2);
-        }
-      });
+      File oldApk = VfsUtilCore.virtualToIoFile(myOldApk);
+      File newApk = VfsUtilCore.virtualToIoFile(myNewApk);
+      myFbfTreeStructureFuture = ourExecutorService.submit(() -> getTree(oldApk, newApk, "fbf", ApkFileByFileDiffParser::createTreeNode));
     }
 
     FutureCallBackAdapter<DefaultMutableTreeNode> setRootNode = new FutureCallBackAdapter<DefaultMutableTreeNode>() {
@@ -106,12 +113,10 @@ public class ApkDiffPanel {
 
   private void constructDiffTree(){
     // construct the main tree
-    ListenableFuture<DefaultMutableTreeNode> treeStructureFuture = ourExecutorService.submit(() -> {
-      try (ArchiveContext archiveContext1 = Archives.open(VfsUtilCore.virtualToIoFile(myOldApk).toPath());
-           ArchiveContext archiveContext2 = Archives.open(VfsUtilCore.virtualToIoFile(myNewApk).toPath())) {
-        return ApkDiffParser.createTreeNode(archiveContext1, archiveContext2);
-      }
-    });
+    File oldApk = VfsUtilCore.virtualToIoFile(myOldApk);
+    File newApk = VfsUtilCore.virtualToIoFile(myNewApk);
+    ListenableFuture<DefaultMutableTreeNode> treeStructureFuture =
+      ourExecutorService.submit(() -> getTree(oldApk, newApk, "diff", ApkDiffParser::createTreeNode));
     FutureCallBackAdapter<DefaultMutableTreeNode> setRootNode = new FutureCallBackAdapter<DefaultMutableTreeNode>() {
       @Override
       public void onSuccess(DefaultMutableTreeNode result) {
@@ -122,6 +127,58 @@ public class ApkDiffPanel {
     Futures.addCallback(treeStructureFuture, setRootNode, EdtExecutorService.getInstance());
   }
 
+  /**
+   * Returns the diff tree of the two APKs computed by the given parser, reusing a previously computed tree if the contents of both
+   * APKs are unchanged. The returned tree is shared and must not be modified.
+   */
+  @VisibleForTesting
+  @NotNull
+  static DefaultMutableTreeNode getTree(@NotNull File oldApk, @NotNull File newApk, @NotNull String kind, @NotNull DiffTreeParser parser)
+    throws Exception {
+    String key = kind + ':' + hash(oldApk) + ':' + hash(newApk);
+    return ourTreeCache.get(key, () -> {
+      try (ArchiveContext archiveContext1 = Archives.open(oldApk.toPath());
+           ArchiveContext archiveContext2 = Archives.open(newApk.toPath())) {
+        return parser.createTreeNode(archiveContext1, archiveContext2);
+      }
+    });
+  }
+
+  /**
+   * Returns the content hash of the given file. The hash is only computed again if the size or the modification time of the file changed
+   * since the last call, so opening the same artifacts again does not read them.
+   */
+  @NotNull
+  private static String hash(@NotNull File file) throws IOException {
+    long length = file.length();
+    long lastModified = file.lastModified();
+    FileHash cached = ourFileHashes.getIfPresent(file.getPath());
+    if (cached != null && cached.myLength == length && cached.myLastModified == lastModified) {
+      return cached.myHash;
+    }
+    String hash = com.google.common.io.Files.asByteSource(file).hash(Hashing.murmur3_128()).toString();
+    ourFileHashes.put(file.getPath(), new FileHash(length, lastModified, hash));
+    return hash;
+  }
+
+  @VisibleForTesting
+  interface DiffTreeParser {
+    @NotNull
+    DefaultMutableTreeNode createTreeNode(@NotNull ArchiveContext oldContext, @NotNull ArchiveContext newContext) throws Exception;
+  }
+
+  private static final class FileHash {
+    private final long myLength;
+    private final long myLastModified;
+    @NotNull private final String myHash;
+
+    private FileHash(long length, long lastModified, @NotNull String hash) {
+      myLength = length;
+      myLastModified = lastModified;
+      myHash = hash;
+    }
+  }
+
   private void createUIComponents() {
     myTreeModel = new DefaultTreeModel(new LoadingNode());
     myTree = new Tree(myTreeModel);
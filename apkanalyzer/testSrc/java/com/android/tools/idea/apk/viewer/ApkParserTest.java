@@ -17,6 +17,7 @@ package com.android.tools.idea.apk.viewer;
 
 import com.android.ide.common.util.PathString;
 import com.android.testutils.TestResources;
+import com.android.tools.apk.analyzer.AndroidApplicationInfo;
 import com.android.tools.apk.analyzer.ArchiveContext;
 import com.android.tools.apk.analyzer.ArchiveNode;
 import com.android.tools.apk.analyzer.Archives;
@@ -26,8 +27,10 @@ import com.google.common.util.concurrent.ListenableFuture;
 import org.jetbrains.annotations.NotNull;
 import org.junit.Test;
 
+import java.nio.file.Paths;
 import java.util.concurrent.TimeUnit;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -56,6 +59,38 @@ public class ApkParserTest {
     checkArchive(archivePath);
   }
 
+  @Test
+  public void appInfoWithoutAaptForApk() throws Exception {
+    AndroidApplicationInfo info = getAppInfo(getArchivePath("app.apk"));
+    assertEquals("com.example.SanAngeles", info.packageId);
+    assertEquals("1.0", info.versionName);
+    assertEquals(4000001, info.versionCode);
+  }
+
+  @Test
+  public void appInfoWithoutAaptForAppBundle() throws Exception {
+    AndroidApplicationInfo info = getAppInfo(getArchivePath("bundle.aab"));
+    assertEquals("com.example.myapplication", info.packageId);
+    assertEquals("1.0", info.versionName);
+    assertEquals(1, info.versionCode);
+  }
+
+  @Test
+  public void appInfoForAppBundleWithoutVersionCode() throws Exception {
+    AndroidApplicationInfo info = getAppInfo(getArchivePath("bundle_no_version_code.aab"));
+    assertEquals("com.example.myapplication", info.packageId);
+    assertEquals("1.0", info.versionName);
+    assertEquals(AndroidApplicationInfo.UNKNOWN.versionCode, info.versionCode);
+  }
+
+  @NotNull
+  private static AndroidApplicationInfo getAppInfo(@NotNull PathString archivePath) throws Exception {
+    try (ArchiveContext archiveContext = Archives.open(archivePath.toPath(), new StdLogger(StdLogger.Level.VERBOSE))) {
+      // The manifest is decoded in-process, so a missing aapt binary should not matter.
+      return ApkParser.getAppInfo(Paths.get("does-not-exist", "aapt"), archiveContext.getArchive());
+    }
+  }
+
   private static void checkArchive(@NotNull PathString archivePath) throws Exception {
     try (ArchiveContext archiveContext = Archives.open(archivePath.toPath(), new StdLogger(StdLogger.Level.VERBOSE))) {
       ApkParser parser = new ApkParser(archiveContext, new GzipSizeCalculator());
@@ -30,16 +30,30 @@ import kotlin.math.max
 
 /**
  * An analyzer for calculating the critical path, that is the path of tasks determining the total build duration.
+ *
+ * The longest path through the task dependency graph is maintained online while task finish events arrive, so that at the end of the
+ * build only the path reconstruction and the filling of gaps between critical path tasks remain. Per-task state is kept in primitive
+ * arrays indexed by the id assigned to each task when its finish event is received.
  */
 class CriticalPathAnalyzer(override val warningsFilter: BuildAttributionWarningsFilter,
                            taskContainer: TaskContainer,
                            pluginContainer: PluginContainer)
   : BaseAnalyzer(taskContainer, pluginContainer), BuildEventsAnalyzer {
-  private val tasksSet = HashSet<TaskData>()
   /**
-   * Contains for each task, a list of tasks that this task depends on.
+   * Successfully finished tasks, the index in this list is the task id.
+   */
+  private val tasks = ArrayList<TaskData>()
+  private val taskIds = HashMap<TaskData, Int>()
+
+  /**
+   * For each task id, the total execution time of the longest chain of dependencies that ends with this task, including the task itself.
+   */
+  private var criticalPathDurationToTask = LongArray(INITIAL_CAPACITY)
+
+  /**
+   * For each task id, the id of the dependency preceding this task on its longest chain of dependencies, or -1 if there is none.
    */
-  private val dependenciesMap = HashMap<TaskData, List<TaskData>>()
+  private var criticalPathPredecessor = IntArray(INITIAL_CAPACITY)
 
   val tasksDeterminingBuildDuration = ArrayList<TaskData>()
   val pluginsDeterminingBuildDuration = ArrayList<PluginBuildData>()
@@ -60,103 +74,75 @@ class CriticalPathAnalyzer(override val warningsFilter: BuildAttributionWarnings
 
     if (event is TaskFinishEvent && event.result is TaskSuccessResult) {
       val task = getTask(event)
-      val dependenciesList = ArrayList<TaskData>()
+      if (taskIds.containsKey(task)) {
+        return
+      }
 
+      // Gradle finishes a task only after all of its dependencies, so their longest paths are already known.
+      var predecessor = -1
       event.descriptor.dependencies.forEach { dependency ->
         if (dependency is TaskOperationDescriptor) {
-          getTask(dependency.taskPath)?.let {
-            dependenciesList.add(it)
+          val dependencyId = getTask(dependency.taskPath)?.let { taskIds[it] } ?: return@forEach
+          if (predecessor == -1 || criticalPathDurationToTask[predecessor] < criticalPathDurationToTask[dependencyId]) {
+            predecessor = dependencyId
           }
         }
       }
 
-      tasksSet.add(task)
-      dependenciesMap[task] = dependenciesList
+      val id = tasks.size
+      ensureCapacity(id + 1)
+      tasks.add(task)
+      taskIds[task] = id
+      criticalPathPredecessor[id] = predecessor
+      criticalPathDurationToTask[id] = task.executionTime + if (predecessor == -1) 0 else criticalPathDurationToTask[predecessor]
     }
   }
 
-  /**
-   * returns the duration of the critical path that starts from task [startTask]
-   */
-  private fun calculateCriticalPathStartingFromTask(
-    startTask: TaskData,
-    criticalPathFromTaskMap: MutableMap<TaskData, Long>
-  ): Long {
-    // Avoid recomputing the subpath critical path if it's already calculated
-    criticalPathFromTaskMap[startTask]?.let { return it }
-
-    var criticalPathDuration = 0L
-    dependenciesMap[startTask]!!.forEach { dependency ->
-      criticalPathDuration = max(criticalPathDuration, calculateCriticalPathStartingFromTask(dependency, criticalPathFromTaskMap))
+  private fun ensureCapacity(capacity: Int) {
+    if (capacity > criticalPathDurationToTask.size) {
+      val newCapacity = max(capacity, criticalPathDurationToTask.size * 2)
+      criticalPathDurationToTask = criticalPathDurationToTask.copyOf(newCapacity)
+      criticalPathPredecessor = criticalPathPredecessor.copyOf(newCapacity)
     }
-
-    // Add task execution time
-    criticalPathDuration += startTask.executionTime
-    // Memoize the calculated value in the map
-    criticalPathFromTaskMap[startTask] = criticalPathDuration
-
-    return criticalPathDuration
   }
 
   /**
-   * We are using dynamic programming to calculate the critical path for the task graph that is a direct acyclic graph.
-   *
-   * The algorithm should run in linear time of the number of tasks and the number of dependencies in the graph. The memory used is in order
-   * of the number of tasks in the graph.
+   * Reconstructs the critical path of the dependency graph from the longest paths computed while receiving events. Runs in linear time of
+   * the number of tasks.
    */
   private fun calculateTasksCriticalPathBasedOnDependencies(): List<TaskData> {
-    val tasksCriticalPath = ArrayList<TaskData>()
-    val criticalPathFromTaskMap = HashMap<TaskData, Long>()
-
-    var startTask: TaskData? = null
-    var currentCriticalPathDuration = -1L
-
-    // Calculate the critical path starting from each task
-    tasksSet.forEach {
-      val criticalPathFromTask = calculateCriticalPathStartingFromTask(it, criticalPathFromTaskMap)
-      if (currentCriticalPathDuration < criticalPathFromTask) {
-        currentCriticalPathDuration = criticalPathFromTask
-        startTask = it
+    var lastTask = -1
+    for (id in tasks.indices) {
+      if (lastTask == -1 || criticalPathDurationToTask[lastTask] < criticalPathDurationToTask[id]) {
+        lastTask = id
       }
     }
 
-    // Construct critical path
-    while (startTask != null) {
-      tasksCriticalPath.add(startTask!!)
-
-      var nextTask: TaskData? = null
-      currentCriticalPathDuration = -1
-
-      dependenciesMap[startTask!!]!!.forEach { dependency ->
-        val criticalPathFromTask = criticalPathFromTaskMap[dependency]!!
-        if (currentCriticalPathDuration < criticalPathFromTask) {
-          currentCriticalPathDuration = criticalPathFromTask
-          nextTask = dependency
-        }
-      }
-
-      startTask = nextTask
+    val tasksCriticalPath = ArrayList<TaskData>()
+    var id = lastTask
+    while (id != -1) {
+      tasksCriticalPath.add(tasks[id])
+      id = criticalPathPredecessor[id]
     }
-
     tasksCriticalPath.reverse()
     return tasksCriticalPath
   }
 
   /**
    * Runs binary search to find the first task that starts at or after the given [timestamp], if there is no such task returns -1.
-   * [tasks] should be sorted in non decreasing order of execution start time.
+   * [taskIds] should be sorted in non decreasing order of execution start time.
    */
-  private fun getIndexOfFirstTaskStartingAtOrAfterTimestamp(timestamp: Long, tasks: List<TaskData>, searchStartIndex: Int): Int {
-    if (tasks.last().executionStartTime < timestamp) {
+  private fun getIndexOfFirstTaskStartingAtOrAfterTimestamp(timestamp: Long, taskIds: IntArray, searchStartIndex: Int): Int {
+    if (tasks[taskIds.last()].executionStartTime < timestamp) {
       return -1
     }
 
     var left = searchStartIndex
-    var right = tasks.size - 1
+    var right = taskIds.size - 1
 
     while (left < right) {
       val middle = left + (right - left) / 2
-      if (tasks[middle].executionStartTime < timestamp) {
+      if (tasks[taskIds[middle]].executionStartTime < timestamp) {
         left = middle + 1
       }
       else {
@@ -169,9 +155,9 @@ class CriticalPathAnalyzer(override val warningsFilter: BuildAttributionWarnings
 
   /**
    * Using dynamic programming to calculate tne critical path without having to create the graph, resulting in an O(N logN) runtime where
-   * N is the number of elements in [tasks]
+   * N is the number of elements in [taskIds]
    *
-   * [tasks] should be sorted in non decreasing order of execution start time.
+   * [taskIds] should be sorted in non decreasing order of execution start time.
    *
    * The algorithm works as follows:
    *
@@ -184,29 +170,30 @@ class CriticalPathAnalyzer(override val warningsFilter: BuildAttributionWarnings
    * >>> if it's true then maxCriticalPathStartIndexInSuffix_i should point to maxCriticalPathStartIndexInSuffix_i+1
    * > construct and return the critical path
    */
-  private fun calculateTasksCriticalPathBasedOnExecution(tasks: List<TaskData>): List<TaskData> {
-    if (tasks.isEmpty()) {
-      return tasks
+  private fun calculateTasksCriticalPathBasedOnExecution(taskIds: IntArray): List<TaskData> {
+    if (taskIds.isEmpty()) {
+      return emptyList()
     }
 
     // criticalPathFromTask[i] is the total execution time of the critical path that starts from task i
-    val criticalPathFromTask = tasks.map { it.executionTime }.toMutableList()
+    val criticalPathFromTask = LongArray(taskIds.size) { tasks[taskIds[it]].executionTime }
 
     // maxCriticalPathStartIndexInSuffix[i] is the index of maximum length of the critical path if we started from a task in the range
-    // [i, tasks.size - 1]
-    val maxCriticalPathStartIndexInSuffix = List(tasks.size) { it }.toMutableList()
+    // [i, taskIds.size - 1]
+    val maxCriticalPathStartIndexInSuffix = IntArray(taskIds.size) { it }
 
     // bestChoiceIndex[i] is the index of the next task in the max critical path that starts from task i
     // -1 means there are no tasks starting after this task finishes
-    val bestChoiceIndex = List(tasks.size) { -1 }.toMutableList()
+    val bestChoiceIndex = IntArray(taskIds.size) { -1 }
 
-    for (i in tasks.size - 2 downTo 0) {
+    for (i in taskIds.size - 2 downTo 0) {
+      val task = tasks[taskIds[i]]
       // The index of the first task that starts at or after this task finishes
-      val firstTaskIndex = getIndexOfFirstTaskStartingAtOrAfterTimestamp(tasks[i].executionEndTime, tasks, i + 1)
+      val firstTaskIndex = getIndexOfFirstTaskStartingAtOrAfterTimestamp(task.executionEndTime, taskIds, i + 1)
 
       if (firstTaskIndex != -1) {
         bestChoiceIndex[i] = maxCriticalPathStartIndexInSuffix[firstTaskIndex]
-        criticalPathFromTask[i] = tasks[i].executionTime + criticalPathFromTask[bestChoiceIndex[i]]
+        criticalPathFromTask[i] = task.executionTime + criticalPathFromTask[bestChoiceIndex[i]]
       }
 
       if (criticalPathFromTask[i] < criticalPathFromTask[maxCriticalPathStartIndexInSuffix[i + 1]]) {
@@ -219,34 +206,36 @@ class CriticalPathAnalyzer(override val warningsFilter: BuildAttributionWarnings
     var index = maxCriticalPathStartIndexInSuffix[0]
 
     while (index != -1) {
-      criticalPath.add(tasks[index])
+      criticalPath.add(tasks[taskIds[index]])
       index = bestChoiceIndex[index]
     }
     return criticalPath
   }
 
   /**
-   * Returns the tasks that are executed completely within the range [startTime, endTime].
+   * Returns the ids of the tasks that are executed completely within the range [startTime, endTime].
    *
-   * @param taskListSortedByStartTimeIterator is an iterator over the list of tasks sorted by start time.
+   * @param cursor iterates over the ids of tasks sorted by start time.
    */
-  private fun getTasksStrictlyInTimeRange(startTime: Long,
-                                          endTime: Long,
-                                          taskListSortedByStartTimeIterator: ListIterator<TaskData>): List<TaskData> {
-    val tasksInBetween = ArrayList<TaskData>()
-    while (taskListSortedByStartTimeIterator.hasNext()) {
-      val currentTask = taskListSortedByStartTimeIterator.next()
+  private fun getTasksStrictlyInTimeRange(startTime: Long, endTime: Long, cursor: SortedTasksCursor): IntArray {
+    val tasksInBetween = IntArray(cursor.remaining())
+    var count = 0
+    while (cursor.hasNext()) {
+      val currentTaskId = cursor.peek()
+      val currentTask = tasks[currentTaskId]
 
       // currentTask starts before the given time range
       if (currentTask.executionStartTime < startTime) {
+        cursor.advance()
         continue
       }
       // currentTask starts after the given time range
-      // Decrement the iterator so we don't consume this task as the iterator will be reused
+      // Don't consume this task as the cursor will be reused
       if (currentTask.executionStartTime >= endTime) {
-        taskListSortedByStartTimeIterator.previous()
         break
       }
+      cursor.advance()
+
       // At this point currentTasks starts within the given range
       // check if currentTask ends after the given time range
       if (currentTask.executionEndTime > endTime) {
@@ -255,21 +244,19 @@ class CriticalPathAnalyzer(override val warningsFilter: BuildAttributionWarnings
       // currentTask is executed completely within the given time range
       // Critical path tasks are already added, this is to eliminate duplicates
       if (!currentTask.isOnTheCriticalPath) {
-        tasksInBetween.add(currentTask)
+        tasksInBetween[count++] = currentTaskId
       }
     }
-    return tasksInBetween
+    return tasksInBetween.copyOf(count)
   }
 
   /**
    * Returns the critical path of tasks that are executed completely within the range [startTime, endTime].
    *
-   * @param taskListSortedByStartTimeIterator is an iterator over the list of tasks sorted by start time.
+   * @param cursor iterates over the ids of tasks sorted by start time.
    */
-  private fun getCriticalPathOfTasksStrictlyInTimeRange(startTime: Long,
-                                                        endTime: Long,
-                                                        taskListSortedByStartTimeIterator: ListIterator<TaskData>): List<TaskData> {
-    return calculateTasksCriticalPathBasedOnExecution(getTasksStrictlyInTimeRange(startTime, endTime, taskListSortedByStartTimeIterator))
+  private fun getCriticalPathOfTasksStrictlyInTimeRange(startTime: Long, endTime: Long, cursor: SortedTasksCursor): List<TaskData> {
+    return calculateTasksCriticalPathBasedOnExecution(getTasksStrictlyInTimeRange(startTime, endTime, cursor))
   }
 
   /**
@@ -285,28 +272,29 @@ class CriticalPathAnalyzer(override val warningsFilter: BuildAttributionWarnings
    *
    * The original critical path and the critical paths of the tasks in between will be the tasks determining build duration.
    *
-   * The overall runtime of O(N logN + M), where N is the number of tasks and M is the number of dependencies (i.e. edges) in the dependency
-   * graph.
+   * The overall runtime is O(N logN), where N is the number of tasks, as the critical path of the dependency graph is already known.
    */
   private fun calculateTasksDeterminingBuildDuration(tasksCriticalPath: List<TaskData>) {
-    val taskListSortedByStartTime = tasksSet.sortedBy { it.executionStartTime }
-
-    // Since the critical path tasks are not intersecting, and we iterate through them in start time order, we are able to reuse the
-    // iterator across all queries without having to iterate through the whole list each time
-    val listIterator = taskListSortedByStartTime.listIterator()
+    val taskIdsSortedByStartTime = tasks.indices
+      .sortedWith(compareBy<Int>({ tasks[it].executionStartTime }, { it }))
+      .toIntArray()
 
     if (tasksCriticalPath.isEmpty()) {
-      tasksDeterminingBuildDuration.addAll(calculateTasksCriticalPathBasedOnExecution(taskListSortedByStartTime))
+      tasksDeterminingBuildDuration.addAll(calculateTasksCriticalPathBasedOnExecution(taskIdsSortedByStartTime))
       return
     }
 
+    // Since the critical path tasks are not intersecting, and we iterate through them in start time order, we are able to reuse the
+    // cursor across all queries without having to iterate through the whole list each time
+    val cursor = SortedTasksCursor(taskIdsSortedByStartTime)
+
     tasksCriticalPath.forEach { task ->
       task.isOnTheCriticalPath = true
     }
 
     // get critical path of tasks before the start time of the first task in the critical path
     tasksDeterminingBuildDuration.addAll(
-      getCriticalPathOfTasksStrictlyInTimeRange(0, tasksCriticalPath.first().executionStartTime, listIterator))
+      getCriticalPathOfTasksStrictlyInTimeRange(0, tasksCriticalPath.first().executionStartTime, cursor))
 
     for (i in 0 until tasksCriticalPath.size - 1) {
       val previousCriticalPathTask = tasksCriticalPath[i]
@@ -317,7 +305,7 @@ class CriticalPathAnalyzer(override val warningsFilter: BuildAttributionWarnings
       // task
       tasksDeterminingBuildDuration.addAll(
         getCriticalPathOfTasksStrictlyInTimeRange(previousCriticalPathTask.executionEndTime, nextCriticalPathTask.executionStartTime,
-                                                  listIterator))
+                                                  cursor))
     }
     tasksDeterminingBuildDuration.add(tasksCriticalPath.last())
 
@@ -325,7 +313,7 @@ class CriticalPathAnalyzer(override val warningsFilter: BuildAttributionWarnings
     tasksDeterminingBuildDuration.addAll(
       getCriticalPathOfTasksStrictlyInTimeRange(tasksCriticalPath.last().executionEndTime,
                                                 Long.MAX_VALUE,
-                                                listIterator))
+                                                cursor))
   }
 
   private fun calculatePluginsDeterminingBuildDuration() {
@@ -342,10 +330,16 @@ class CriticalPathAnalyzer(override val warningsFilter: BuildAttributionWarnings
     pluginsDeterminingBuildDuration.sortByDescending { it.buildDuration }
   }
 
+  private fun clearTasks() {
+    tasks.clear()
+    taskIds.clear()
+    criticalPathDurationToTask = LongArray(INITIAL_CAPACITY)
+    criticalPathPredecessor = IntArray(INITIAL_CAPACITY)
+  }
+
   override fun onBuildStart() {
     super.onBuildStart()
-    tasksSet.clear()
-    dependenciesMap.clear()
+    clearTasks()
     tasksDeterminingBuildDuration.clear()
     pluginsDeterminingBuildDuration.clear()
     buildStartedTimestamp = Long.MAX_VALUE
@@ -355,12 +349,28 @@ class CriticalPathAnalyzer(override val warningsFilter: BuildAttributionWarnings
   override fun onBuildSuccess() {
     calculateTasksDeterminingBuildDuration(calculateTasksCriticalPathBasedOnDependencies())
     calculatePluginsDeterminingBuildDuration()
-    tasksSet.clear()
-    dependenciesMap.clear()
+    clearTasks()
   }
 
   override fun onBuildFailure() {
-    tasksSet.clear()
-    dependenciesMap.clear()
+    clearTasks()
+  }
+
+  /**
+   * Iterates over task ids sorted by start time, the position is kept between queries for consecutive time ranges.
+   */
+  private class SortedTasksCursor(private val taskIds: IntArray) {
+    private var position = 0
+
+    fun hasNext() = position < taskIds.size
+    fun peek() = taskIds[position]
+    fun advance() {
+      position++
+    }
+    fun remaining() = taskIds.size - position
+  }
+
+  private companion object {
+    const val INITIAL_CAPACITY = 256
   }
 }
@@ -21,6 +21,7 @@ import com.android.build.attribution.data.PluginData
 import com.android.build.attribution.data.TaskContainer
 import com.android.build.attribution.data.TaskData
 import com.google.common.truth.Truth.assertThat
+import org.gradle.tooling.events.task.TaskFinishEvent
 import org.jetbrains.kotlin.utils.addToStdlib.sumByLong
 import org.junit.Test
 
@@ -146,4 +147,37 @@ class CriticalPathAnalyzerTest {
     assertThat(analyzer.pluginsDeterminingBuildDuration[1].plugin).isEqualTo(PluginData(pluginA, ""))
     assertThat(analyzer.pluginsDeterminingBuildDuration[1].buildDuration).isEqualTo(25)
   }
+
+  @Test
+  fun testLongDependencyChain() {
+    val pluginContainer = PluginContainer()
+    val analyzer = CriticalPathAnalyzer(BuildAttributionWarningsFilter(), TaskContainer(), pluginContainer)
+    val pluginA = createBinaryPluginIdentifierStub("pluginA")
+
+    analyzer.onBuildStart()
+
+    // Given a chain of tasks where each task depends on the previous one, and a shorter task running in parallel to each of them
+    // T0(2) -> T1(2) -> ... -> T1999(2)
+    // S0(1)    S1(1)    ...    S1999(1)
+    val chainLength = 2000
+    val chain = ArrayList<TaskData>()
+    var previousTask: TaskFinishEvent? = null
+    for (i in 0 until chainLength) {
+      val task = createTaskFinishEventStub(":app:task$i", pluginA, listOfNotNull(previousTask), 2L * i, 2L * i + 2)
+      val sideTask = createTaskFinishEventStub(":lib:side$i", pluginA, emptyList(), 2L * i, 2L * i + 1)
+      analyzer.receiveEvent(sideTask)
+      analyzer.receiveEvent(task)
+      chain.add(TaskData.createTaskData(task, pluginContainer))
+      previousTask = task
+    }
+
+    // When the build is finished successfully and the analyzer is run
+    analyzer.onBuildSuccess()
+
+    // Then the whole chain should be on the critical path, and none of the side tasks
+    assertThat(analyzer.tasksDeterminingBuildDuration).isEqualTo(chain)
+    assertThat(analyzer.tasksDeterminingBuildDuration.sumByLong { it.executionTime }).isEqualTo(2L * chainLength)
+    assertThat(analyzer.pluginsDeterminingBuildDuration).hasSize(1)
+    assertThat(analyzer.pluginsDeterminingBuildDuration[0].buildDuration).isEqualTo(2L * chainLength)
+  }
 }
@@ -291,6 +291,18 @@ public final class AndroidApt {
   public static Map<AndroidCompilerMessageKind, List<String>> crunch(@NotNull IAndroidTarget target,
                                                                      @NotNull List<String> resPaths,
                                                                      @NotNull String outputPath) throws IOException {
+    return crunch(target, resPaths, null, outputPath);
+  }
+
+  /**
+   * Crunches PNG files of the given resource directories. If {@code resFolderNames} is not null, only the resource folders
+   * (e.g. "drawable-hdpi") with these names are processed, which allows crunching disjoint sets of folders concurrently
+   * into the same output directory.
+   */
+  public static Map<AndroidCompilerMessageKind, List<String>> crunch(@NotNull IAndroidTarget target,
+                                                                     @NotNull List<String> resPaths,
+                                                                     @Nullable Collection<String> resFolderNames,
+                                                                     @NotNull String outputPath) throws IOException {
     BuildToolInfo buildToolInfo = target.getBuildToolInfo();
     if (buildToolInfo == null) {
       return Collections.singletonMap(AndroidCompilerMessageKind.ERROR, Collections.singletonList("No Build Tools in the Android SDK."));
@@ -304,7 +316,7 @@ public final class AndroidApt {
     File tempDir = null;
     try {
       if (!resPaths.isEmpty()) {
-        if (resPaths.size() == 1) {
+        if (resPaths.size() == 1 && resFolderNames == null) {
           args.add("-S");
           args.add(resPaths.get(0));
         }
@@ -315,9 +327,21 @@ public final class AndroidApt {
             final String resDirPath = resPaths.get(i);
             final File resDir = new File(resDirPath);
 
-            if (resDir.exists()) {
+            if (!resDir.exists()) {
+              continue;
+            }
+            if (resFolderNames == null) {
               FileUtil.copyDir(resDir, tempDir, PNG_FILES_FILTER);
             }
+            else {
+              for (String folderName : resFolderNames) {
+                final File resFolder = new File(resDir, folderName);
+
+                if (resFolder.isDirectory()) {
+                  FileUtil.copyDir(resFolder, new File(tempDir, folderName), PNG_FILES_FILTER);
+                }
+              }
+            }
           }
           args.add("-S");
           args.add(tempDir.getPath());
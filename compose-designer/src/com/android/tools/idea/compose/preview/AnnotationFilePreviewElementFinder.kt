@@ -17,12 +17,18 @@ package com.android.tools.idea.compose.preview
  */
 import com.intellij.openapi.application.ReadAction
 import com.intellij.openapi.diagnostic.Logger
+import com.intellij.openapi.project.DumbService
 import com.intellij.openapi.project.Project
 import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.psi.PsiDocumentManager
+import com.intellij.psi.PsiFile
 import com.intellij.psi.PsiManager
+import com.intellij.psi.SmartPointerManager
 import com.intellij.psi.util.PsiTreeUtil
 import com.intellij.util.text.nullize
-import org.jetbrains.kotlin.psi.KtImportDirective
+import org.jetbrains.kotlin.psi.KtAnnotationEntry
+import org.jetbrains.kotlin.psi.KtFile
+import org.jetbrains.kotlin.psi.KtNamedFunction
 import org.jetbrains.uast.UAnnotation
 import org.jetbrains.uast.UClass
 import org.jetbrains.uast.UElement
@@ -30,6 +36,7 @@ import org.jetbrains.uast.UFile
 import org.jetbrains.uast.UMethod
 import org.jetbrains.uast.evaluateString
 import org.jetbrains.uast.getContainingUMethod
+import org.jetbrains.uast.toUElement
 import org.jetbrains.uast.visitor.UastVisitor
 
 private fun UAnnotation.findAttributeIntValue(name: String) =
@@ -52,13 +59,34 @@ private fun attributesToConfiguration(node: UAnnotation): PreviewConfiguration {
   return PreviewConfiguration.cleanAndGet(apiLevel, theme, width, height, fontScale)
 }
 
+/**
+ * Creates the [PreviewElement] for the given `@Preview` annotation of the [annotatedMethod], reading its attributes from UAST.
+ */
+private fun createPreviewElement(composableMethod: String, previewAnnotation: UAnnotation, annotatedMethod: UMethod): PreviewElement {
+  val previewName = previewAnnotation.findDeclaredAttributeValue("name")?.evaluateString() ?: annotatedMethod.name
+  val groupName = previewAnnotation.findDeclaredAttributeValue("group")?.evaluateString()
+  return PreviewElement(previewName,
+                        groupName,
+                        composableMethod,
+                        previewAnnotation.toSmartPsiPointer(),
+                        annotatedMethod.uastBody.toSmartPsiPointer(),
+                        attributesToConfiguration(previewAnnotation))
+}
+
 /**
  * [FilePreviewElementFinder] that uses `@Preview` annotations.
+ *
+ * The previews are found using the [PreviewAnnotationIndex] so the cost does not depend on the size of the file. The UAST tree is only
+ * walked in dumb mode or when the index can not be used, for example for files that are not in the project.
  */
 object AnnotationFilePreviewElementFinder : FilePreviewElementFinder {
   override fun hasPreviewMethods(project: Project, file: VirtualFile): Boolean = ReadAction.compute<Boolean, Throwable> {
-    PsiTreeUtil.findChildrenOfType(PsiManager.getInstance(project).findFile(file), KtImportDirective::class.java)
-      .any { PREVIEW_ANNOTATION_FQN == it.importedFqName?.asString() }
+    if (!DumbService.isDumb(project)) {
+      PreviewAnnotationIndex.getDataForFile(project, file)?.let { return@compute it.importsPreview }
+    }
+    // Only the import list is checked so this does not depend on the size of the file either
+    val ktFile = PsiManager.getInstance(project).findFile(file) as? KtFile ?: return@compute false
+    ktFile.importDirectives.any { PREVIEW_ANNOTATION_FQN == it.importedFqName?.asString() }
   }
 
   /**
@@ -66,6 +94,55 @@ object AnnotationFilePreviewElementFinder : FilePreviewElementFinder {
    * The order of the elements will be the same as the order of the composable functions.
    */
   override fun findPreviewMethods(uFile: UFile): List<PreviewElement> = ReadAction.compute<List<PreviewElement>, Throwable> {
+    val psiFile = uFile.sourcePsi
+    findIndexedPreviewMethods(psiFile) ?: findPreviewMethodsInTree(uFile)
+  }
+
+  /**
+   * Returns the [PreviewElement]s of the [psiFile] from the [PreviewAnnotationIndex], or null if the index can not be used or is not in
+   * sync with the PSI.
+   */
+  private fun findIndexedPreviewMethods(psiFile: PsiFile): List<PreviewElement>? {
+    val project = psiFile.project
+    val virtualFile = psiFile.virtualFile ?: return null
+    if (DumbService.isDumb(project)) return null
+    val document = PsiDocumentManager.getInstance(project).getCachedDocument(psiFile)
+    if (document != null && PsiDocumentManager.getInstance(project).isUncommited(document)) return null
+    val data = PreviewAnnotationIndex.getDataForFile(project, virtualFile) ?: return null
+
+    val pointerManager = SmartPointerManager.getInstance(project)
+    return data.previews.map { preview ->
+      val annotation = PsiTreeUtil.findElementOfClassAtOffset(psiFile, preview.annotationOffset, KtAnnotationEntry::class.java, true)
+                       ?: return null
+      val function = PsiTreeUtil.getParentOfType(annotation, KtNamedFunction::class.java) ?: return null
+      if (function.name != preview.methodName) return null
+
+      if (function.valueParameters.isNotEmpty()) {
+        // We do not fail here. The ComposeViewAdapter will throw an exception that will be surfaced to the user
+        Logger.getInstance(AnnotationFilePreviewElementFinder::class.java).debug("Preview functions must not have any parameters")
+      }
+
+      if (!preview.isEvaluated) {
+        // Some attributes are not literals, they need to be resolved
+        val uAnnotation = annotation.toUElement() as? UAnnotation ?: return null
+        val uMethod = function.toUElement() as? UMethod ?: return null
+        return@map createPreviewElement(preview.composableMethodFqn, uAnnotation, uMethod)
+      }
+
+      PreviewElement(preview.name ?: preview.methodName,
+                     preview.group,
+                     preview.composableMethodFqn,
+                     pointerManager.createSmartPsiElementPointer(annotation),
+                     function.bodyExpression?.let { pointerManager.createSmartPsiElementPointer(it) },
+                     PreviewConfiguration.cleanAndGet(preview.apiLevel, preview.theme?.nullize(), preview.width, preview.height,
+                                                      preview.fontScale))
+    }
+  }
+
+  /**
+   * Finds the [PreviewElement]s by visiting the whole [uFile].
+   */
+  private fun findPreviewMethodsInTree(uFile: UFile): List<PreviewElement> {
     val previewMethodsFqName = mutableSetOf<String>()
     val previewElements = mutableListOf<PreviewElement>()
     uFile.accept(object : UastVisitor {
@@ -78,18 +155,11 @@ object AnnotationFilePreviewElementFinder : FilePreviewElementFinder {
       private fun visitPreviewAnnotation(previewAnnotation: UAnnotation, annotatedMethod: UMethod) {
         val uClass: UClass = annotatedMethod.uastParent as UClass
         val composableMethod = "${uClass.qualifiedName}.${annotatedMethod.name}"
-        val previewName = previewAnnotation.findDeclaredAttributeValue("name")?.evaluateString() ?: annotatedMethod.name
-        val groupName = previewAnnotation.findDeclaredAttributeValue("group")?.evaluateString()
 
         // If the same composable functions is found multiple times, only keep the first one. This usually will happen during
         // copy & paste and both the compiler and Studio will flag it as an error.
         if (previewMethodsFqName.add(composableMethod)) {
-          previewElements.add(PreviewElement(previewName,
-                                             groupName,
-                                             composableMethod,
-                                             previewAnnotation.toSmartPsiPointer(),
-                                             annotatedMethod.uastBody.toSmartPsiPointer(),
-                                             attributesToConfiguration(previewAnnotation)))
+          previewElements.add(createPreviewElement(composableMethod, previewAnnotation, annotatedMethod))
         }
       }
 
@@ -113,6 +183,6 @@ object AnnotationFilePreviewElementFinder : FilePreviewElementFinder {
       }
     })
 
-    return@compute previewElements
+    return previewElements
   }
 }
\ No newline at end of file
@@ -68,6 +68,8 @@ import com.intellij.ui.EditorNotificationPanel
 import com.intellij.ui.EditorNotifications
 import com.intellij.util.concurrency.AppExecutorUtil
 import com.intellij.util.ui.UIUtil
+import kotlinx.coroutines.Deferred
+import kotlinx.coroutines.async
 import kotlinx.coroutines.asCoroutineDispatcher
 import kotlinx.coroutines.cancel
 import kotlinx.coroutines.future.await
@@ -77,6 +79,7 @@ import org.jetbrains.android.facet.AndroidFacet
 import org.jetbrains.android.uipreview.ModuleClassLoaderManager
 import org.jetbrains.kotlin.backend.common.pop
 import java.awt.BorderLayout
+import java.awt.Rectangle
 import java.util.function.Consumer
 import java.util.function.Supplier
 import javax.swing.JComponent
@@ -201,6 +204,37 @@ class ComposePreviewRepresentation(psiFile: PsiFile,
    */
   var previewElements: List<PreviewElement> = emptyList()
 
+  /**
+   * What a model of the [surface] displays: the [PreviewElement.toRenderKey] of the preview and the XML used to render it.
+   * [dependencyHash] is the [PreviewElement.dependencyHash] of the code used in the last render, or null if the model needs to be rendered.
+   */
+  private class ModelPreview(val key: PreviewElement, val fileContents: String, var dependencyHash: Long? = null)
+
+  /**
+   * [ModelPreview] of every model in the [surface]. Only accessed from the [refreshDispatcher].
+   */
+  private val modelPreviews = mutableMapOf<NlModel, ModelPreview>()
+
+  /**
+   * [PreviewElement.dependencyHash]es, indexed by [PreviewElement.toRenderKey], of the code the currently loaded classes were compiled
+   * from. Only the previews whose hash differs from the one of their last render are rendered again on refresh.
+   */
+  @Volatile
+  private var compiledHashes: Map<PreviewElement, Long> = emptyMap()
+
+  /**
+   * Hashes of the previews taken when the last build started. The build compiles the code as it was at that point, so edits made while
+   * building are still considered pending when it finishes.
+   */
+  @Volatile
+  private var buildStartHashes: Deferred<Map<PreviewElement, Long>>? = null
+
+  /**
+   * Hashes to be used as [compiledHashes] in the next refresh, set when a build succeeds.
+   */
+  @Volatile
+  private var newCompiledHashes: Deferred<Map<PreviewElement, Long>>? = null
+
   private var isContentBeingRendered = false
 
   /**
@@ -264,6 +298,8 @@ class ComposePreviewRepresentation(psiFile: PsiFile,
         ModuleUtil.collectModulesDependsOn(module, modules)
         modules.forEach { ModuleClassLoaderManager.get().clearCache(it) }
         EditorNotifications.getInstance(project).updateNotifications(file.virtualFile!!)
+        newCompiledHashes = buildStartHashes ?: async { computeDependencyHashes(project, previewProvider.previewElements) }
+        buildStartHashes = null
         refresh()
       }
 
@@ -273,6 +309,7 @@ class ComposePreviewRepresentation(psiFile: PsiFile,
       }
 
       override fun buildStarted() {
+        buildStartHashes = async { computeDependencyHashes(project, previewProvider.previewElements) }
         if (workbench.isMessageVisible) {
           workbench.showLoading(message("panel.building"))
           workbench.hideContent()
@@ -343,6 +380,57 @@ class ComposePreviewRepresentation(psiFile: PsiFile,
     .mapNotNull { it.renderResult }
     .any { it.renderResult.isSuccess && it.logger.brokenClasses.values.isEmpty() }
 
+  /**
+   * Returns true if the last render of the given [model] failed or has not completed yet.
+   */
+  private fun hasRenderErrors(model: NlModel): Boolean {
+    val result = (surface.getSceneManager(model) as? LayoutlibSceneManager)?.renderResult ?: return true
+    return !result.renderResult.isSuccess || result.logger.brokenClasses.values.isNotEmpty()
+  }
+
+  /**
+   * Returns the models whose [com.android.tools.idea.common.surface.SceneView] is, at least partially, in the visible area of the surface.
+   */
+  private fun findVisibleModels(): Set<NlModel> {
+    val visibleRect = surface.scrollPane.viewport.viewRect
+    return surface.models
+      .filter { model ->
+        val sceneView = surface.getSceneManager(model)?.sceneView ?: return@filter false
+        visibleRect.intersects(Rectangle(sceneView.x, sceneView.y, sceneView.size.width, sceneView.size.height))
+      }
+      .toSet()
+  }
+
+  /**
+   * Renders the out of date models from the given list: the ones showing a new preview, the ones whose code changed since their last
+   * render and the ones that failed to render. The renders are all requested at once, the ones visible first, and this method returns
+   * when they complete. Models not yet in the surface are added in the given order.
+   */
+  private suspend fun renderOutdatedModels(models: List<NlModel>) {
+    val hashes = compiledHashes
+    val outdatedModels = models.filter { model ->
+      val preview = modelPreviews[model] ?: return@filter true
+      preview.dependencyHash == null || preview.dependencyHash != hashes[preview.key] || hasRenderErrors(model)
+    }
+    if (LOG.isDebugEnabled) LOG.debug("Rendering ${outdatedModels.size} of ${models.size} model(s)")
+    if (outdatedModels.isEmpty()) return
+
+    val visibleModels = withContext(uiThread) { findVisibleModels() }
+    val (existingModels, newModels) = outdatedModels.partition { surface.getSceneManager(it) != null }
+    val showDecorations = RenderSettings.getProjectSettings(project).showDecorations
+    val renders = (existingModels.sortedByDescending { it in visibleModels } + newModels).map { model ->
+      (surface.getSceneManager(model) as? LayoutlibSceneManager)?.let {
+        // When showing decorations, show the full device size
+        configureLayoutlibSceneManager(it, fullDeviceSize = showDecorations)
+      }
+      modelPreviews[model]?.let { it.dependencyHash = hashes[it.key] }
+      // We call addModel even though the model might not be new. If we try to add an existing model,
+      // this will trigger a new render which is exactly what we want.
+      surface.addModel(model)
+    }
+    renders.forEach { it.await() }
+  }
+
   /**
    * Hides the preview content and shows an error message on the surface.
    */
@@ -383,7 +471,8 @@ class ComposePreviewRepresentation(psiFile: PsiFile,
 
   /**
    * Refresh the preview surfaces. This will retrieve all the Preview annotations and render those elements.
-   * The call will block until all the given [PreviewElement]s have completed rendering.
+   * The call will block until all the given [PreviewElement]s have completed rendering. Models that keep showing the same preview are only
+   * rendered again if they are out of date, see [renderOutdatedModels].
    */
   private suspend fun doRefreshSync(filePreviewElements: List<PreviewElement>) = withContext(refreshDispatcher) {
     if (LOG.isDebugEnabled) LOG.debug("doRefresh of ${filePreviewElements.size} elements.")
@@ -416,9 +505,18 @@ class ComposePreviewRepresentation(psiFile: PsiFile,
           """.trimIndent())
         }
 
-        val model = if (existingModels.isNotEmpty()) {
+        val renderKey = previewElement.toRenderKey()
+        val existingModel = if (existingModels.isNotEmpty()) existingModels.pop() else null
+        val existingPreview = existingModel?.let { modelPreviews[it] }
+        if (existingModel != null && existingPreview?.key == renderKey && existingPreview.fileContents == fileContents) {
+          LOG.debug("Re-using model showing the same preview")
+          navigationHandler.addDefaultLocation(existingModel, createNavigatable(psiFile, previewElement), psiFile.virtualFile)
+          return@map existingModel
+        }
+
+        val model = if (existingModel != null) {
           LOG.debug("Re-using model")
-          configureExistingModel(existingModels.pop(), previewElement.displayName, fileContents, surface)
+          configureExistingModel(existingModel, previewElement.displayName, fileContents, surface)
         }
         else {
           LOG.debug("No models to reuse were found. New model.")
@@ -433,9 +531,8 @@ class ComposePreviewRepresentation(psiFile: PsiFile,
                          modelUpdater)
         }
 
-        val navigable: Navigatable = PsiNavigationSupport.getInstance().createNavigatable(
-          project, psiFile.virtualFile, previewElement.previewElementDefinitionPsi?.element?.textOffset ?: 0)
-        navigationHandler.addDefaultLocation(model, navigable, psiFile.virtualFile)
+        modelPreviews[model] = ModelPreview(renderKey, fileContents)
+        navigationHandler.addDefaultLocation(model, createNavigatable(psiFile, previewElement), psiFile.virtualFile)
 
         previewElement.configuration.applyTo(model.configuration)
 
@@ -446,15 +543,14 @@ class ComposePreviewRepresentation(psiFile: PsiFile,
     // Remove and dispose pre-existing models that were not used.
     // This will happen if the user removes one or more previews.
     if (LOG.isDebugEnabled) LOG.debug("Removing ${existingModels.size} model(s)")
-    existingModels.forEach { surface.removeModel(it) }
-    models
-      .onEach {
-        // We call addModel even though the model might not be new. If we try to add an existing model,
-        // this will trigger a new render which is exactly what we want.
-        surface.addModel(it).await()
-      }.ifEmpty {
-        showModalErrorMessage(message("panel.no.previews.defined"))
-      }
+    existingModels.forEach {
+      surface.removeModel(it)
+      modelPreviews.remove(it)
+    }
+    if (models.isEmpty()) {
+      showModalErrorMessage(message("panel.no.previews.defined"))
+    }
+    renderOutdatedModels(models)
 
     if (LOG.isDebugEnabled) {
       LOG.debug("Render completed in ${stopwatch?.duration?.toMillis()}ms")
@@ -489,32 +585,30 @@ class ComposePreviewRepresentation(psiFile: PsiFile,
     onRefresh?.invoke()
   }
 
+  private fun createNavigatable(psiFile: PsiFile, previewElement: PreviewElement): Navigatable =
+    PsiNavigationSupport.getInstance().createNavigatable(
+      project, psiFile.virtualFile, previewElement.previewElementDefinitionPsi?.element?.textOffset ?: 0)
+
   /**
    * Requests a refresh the preview surfaces. This will retrieve all the Preview annotations and render those elements.
-   * The refresh will only happen if the Preview elements have changed from the last render.
+   * The refresh will only happen if the Preview elements have changed from the last render, and only the previews whose code
+   * changed since the last build will be rendered again.
    */
   override fun refresh() {
     refreshDispatcher.cancel()
     launch(uiThread) {
       isContentBeingRendered = true
+      newCompiledHashes?.let {
+        newCompiledHashes = null
+        compiledHashes = it.await()
+      }
       val filePreviewElements = previewProvider.previewElements
 
       if (filePreviewElements == previewElements && savedIsShowingDecorations == RenderSettings.getProjectSettings(
           project).showDecorations) {
-        LOG.debug("No updates on the PreviewElements, just refreshing the existing ones")
-        // In this case, there are no new previews. We need to make sure that the surface is still correctly
-        // configured and that we are showing the right size for components. For example, if the user switches on/off
-        // decorations, that will not generate/remove new PreviewElements but will change the surface settings.
-        val showingDecorations = RenderSettings.getProjectSettings(project).showDecorations
+        LOG.debug("No updates on the PreviewElements, just refreshing the out of date ones")
         withContext(refreshDispatcher) {
-          surface.models
-            .mapNotNull { surface.getSceneManager(it) }
-            .filterIsInstance<LayoutlibSceneManager>()
-            .forEach {
-              // When showing decorations, show the full device size
-              configureLayoutlibSceneManager(it, fullDeviceSize = showingDecorations)
-            }
-          surface.requestRender().await()
+          renderOutdatedModels(surface.models)
         }
       }
       else {
@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.compose.preview
+
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.roots.ProjectFileIndex
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.util.indexing.DefaultFileTypeSpecificInputFilter
+import com.intellij.util.indexing.FileBasedIndex
+import com.intellij.util.indexing.FileContent
+import com.intellij.util.indexing.ID
+import com.intellij.util.indexing.SingleEntryFileBasedIndexExtension
+import com.intellij.util.indexing.SingleEntryIndexer
+import com.intellij.util.io.DataExternalizer
+import com.intellij.util.io.DataInputOutputUtil.readINT
+import com.intellij.util.io.DataInputOutputUtil.writeINT
+import com.intellij.util.io.IOUtil
+import org.jetbrains.kotlin.KtNodeTypes
+import org.jetbrains.kotlin.fileClasses.javaFileFacadeFqName
+import org.jetbrains.kotlin.idea.KotlinFileType
+import org.jetbrains.kotlin.psi.KtAnnotationEntry
+import org.jetbrains.kotlin.psi.KtConstantExpression
+import org.jetbrains.kotlin.psi.KtEscapeStringTemplateEntry
+import org.jetbrains.kotlin.psi.KtExpression
+import org.jetbrains.kotlin.psi.KtFile
+import org.jetbrains.kotlin.psi.KtLiteralStringTemplateEntry
+import org.jetbrains.kotlin.psi.KtNamedFunction
+import org.jetbrains.kotlin.psi.KtStringTemplateExpression
+import org.jetbrains.kotlin.psi.KtTreeVisitorVoid
+import org.jetbrains.kotlin.psi.psiUtil.containingClassOrObject
+import java.io.DataInput
+import java.io.DataOutput
+
+/**
+ * A `@Preview` annotated `@Composable` function stored in the [PreviewAnnotationIndex].
+ *
+ * The attributes of the annotation are only read when they are literals since the index can not resolve references. If any of them is
+ * not a literal, [isEvaluated] is false and the annotation has to be read from the PSI.
+ *
+ * @param annotationOffset text offset of the `@Preview` annotation in the file.
+ */
+data class IndexedPreview(val composableMethodFqn: String,
+                          val methodName: String,
+                          val annotationOffset: Int,
+                          val isEvaluated: Boolean,
+                          val name: String?,
+                          val group: String?,
+                          val apiLevel: Int?,
+                          val theme: String?,
+                          val width: Int?,
+                          val height: Int?,
+                          val fontScale: Float?)
+
+/**
+ * Data stored in the [PreviewAnnotationIndex] for a Kotlin file.
+ *
+ * @param importsPreview true if the file imports the `@Preview` annotation, even if it is not used yet.
+ * @param previews the previews in the file, in the order they are declared. Only the first function with a given name is kept.
+ */
+data class PreviewFileData(val importsPreview: Boolean, val previews: List<IndexedPreview>)
+
+/** Marker returned by [literalValue] for expressions that are not literals. */
+private object NotALiteral
+
+/**
+ * Returns the value of a literal expression as an [Int], [Float] or [String], or [NotALiteral] for anything that would need to be resolved
+ * or evaluated.
+ */
+private fun KtExpression.literalValue(): Any = when (this) {
+  is KtConstantExpression -> when (node.elementType) {
+    KtNodeTypes.INTEGER_CONSTANT -> text.replace("_", "").toIntOrNull()
+    KtNodeTypes.FLOAT_CONSTANT -> text.replace("_", "").removeSuffix("f").removeSuffix("F").toFloatOrNull()
+    else -> null
+  } ?: NotALiteral
+  is KtStringTemplateExpression -> {
+    val value = StringBuilder()
+    val isLiteral = entries.all {
+      when (it) {
+        is KtLiteralStringTemplateEntry -> value.append(it.text).let { true }
+        is KtEscapeStringTemplateEntry -> value.append(it.unescapedValue).let { true }
+        else -> false
+      }
+    }
+    if (isLiteral) value.toString() else NotALiteral
+  }
+  else -> NotALiteral
+}
+
+/**
+ * Returns true if this annotation entry refers to the annotation with the given [fqn], only looking at the imports of the [file].
+ */
+private fun KtAnnotationEntry.isAnnotation(fqn: String, file: KtFile): Boolean {
+  val referencedName = typeReference?.text ?: return false
+  if (referencedName == fqn) return true
+
+  val packageName = fqn.substringBeforeLast('.')
+  val shortName = fqn.substringAfterLast('.')
+  if (referencedName == shortName && file.packageFqName.asString() == packageName) return true
+  return file.importDirectives.any {
+    val importedName = it.importedFqName?.asString()
+    when {
+      it.isAllUnder -> importedName == packageName && referencedName == shortName
+      importedName != fqn -> false
+      else -> referencedName == (it.aliasName ?: shortName)
+    }
+  }
+}
+
+/**
+ * File based index of the `@Preview` annotated `@Composable` functions of the Kotlin files. This allows finding the previews of a file
+ * without walking its UAST tree. Only the files that import or use `@Preview` have an entry.
+ */
+class PreviewAnnotationIndex : SingleEntryFileBasedIndexExtension<PreviewFileData>() {
+  companion object {
+    @JvmField
+    val NAME = ID.create<Int, PreviewFileData>("ComposePreviewAnnotationIndex")
+
+    private val NO_PREVIEWS = PreviewFileData(false, emptyList())
+
+    /**
+     * Returns the [PreviewFileData] for the given [file] or null if the file is not indexed. Files in the project without an entry in the
+     * index neither import nor use `@Preview`. This can not be called in dumb mode.
+     */
+    fun getDataForFile(project: Project, file: VirtualFile): PreviewFileData? {
+      if (!ProjectFileIndex.getInstance(project).isInContent(file)) return null
+      return FileBasedIndex.getInstance().getFileData(NAME, file, project).values.firstOrNull() ?: NO_PREVIEWS
+    }
+
+    private fun writeNullableUTF(out: DataOutput, value: String?) {
+      out.writeBoolean(value != null)
+      value?.let { IOUtil.writeUTF(out, it) }
+    }
+
+    private fun readNullableUTF(`in`: DataInput): String? = if (`in`.readBoolean()) IOUtil.readUTF(`in`) else null
+
+    private fun writeNullableInt(out: DataOutput, value: Int?) {
+      out.writeBoolean(value != null)
+      value?.let { out.writeInt(it) }
+    }
+
+    private fun readNullableInt(`in`: DataInput): Int? = if (`in`.readBoolean()) `in`.readInt() else null
+
+    /**
+     * Returns the [IndexedPreview] for the given function if it is a `@Composable` annotated with `@Preview`.
+     */
+    private fun toIndexedPreview(file: KtFile, function: KtNamedFunction): IndexedPreview? {
+      val annotations = function.annotationEntries
+      if (annotations.none { it.isAnnotation(COMPOSABLE_ANNOTATION_FQN, file) }) return null
+      val previewAnnotation = annotations.firstOrNull { it.isAnnotation(PREVIEW_ANNOTATION_FQN, file) } ?: return null
+      val methodName = function.name ?: return null
+      val classFqn = function.containingClassOrObject?.fqName?.asString() ?: file.javaFileFacadeFqName.asString()
+
+      var isEvaluated = true
+      val arguments = mutableMapOf<String, Any>()
+      previewAnnotation.valueArguments.forEach {
+        val name = it.getArgumentName()?.asName?.asString()
+        val expression = it.getArgumentExpression()
+        if (name == null || expression == null) {
+          // Positional arguments need the annotation declaration to be mapped
+          isEvaluated = false
+        }
+        else {
+          arguments[name] = expression.literalValue()
+        }
+      }
+      if (arguments.containsValue(NotALiteral)) isEvaluated = false
+
+      return IndexedPreview(composableMethodFqn = "$classFqn.$methodName",
+                            methodName = methodName,
+                            annotationOffset = previewAnnotation.textRange.startOffset,
+                            isEvaluated = isEvaluated,
+                            name = arguments["name"] as? String,
+                            group = arguments["group"] as? String,
+                            apiLevel = arguments["apiLevel"] as? Int,
+                            theme = arguments["theme"] as? String,
+                            // Both width and height have to support old ("width") and new ("widthDp") conventions
+                            width = arguments["width"] as? Int ?: arguments[WIDTH_PARAMETER] as? Int,
+                            height = arguments["height"] as? Int ?: arguments[HEIGHT_PARAMETER] as? Int,
+                            fontScale = arguments["fontScale"] as? Float)
+    }
+  }
+
+  override fun getValueExternalizer(): DataExternalizer<PreviewFileData> = object : DataExternalizer<PreviewFileData> {
+    override fun save(out: DataOutput, value: PreviewFileData) {
+      out.writeBoolean(value.importsPreview)
+      writeINT(out, value.previews.size)
+      for (preview in value.previews) {
+        IOUtil.writeUTF(out, preview.composableMethodFqn)
+        IOUtil.writeUTF(out, preview.methodName)
+        writeINT(out, preview.annotationOffset)
+        out.writeBoolean(preview.isEvaluated)
+        writeNullableUTF(out, preview.name)
+        writeNullableUTF(out, preview.group)
+        writeNullableInt(out, preview.apiLevel)
+        writeNullableUTF(out, preview.theme)
+        writeNullableInt(out, preview.width)
+        writeNullableInt(out, preview.height)
+        out.writeBoolean(preview.fontScale != null)
+        preview.fontScale?.let { out.writeFloat(it) }
+      }
+    }
+
+    override fun read(`in`: DataInput): PreviewFileData {
+      val importsPreview = `in`.readBoolean()
+      val previews = (0 until readINT(`in`)).map {
+        IndexedPreview(composableMethodFqn = IOUtil.readUTF(`in`),
+                       methodName = IOUtil.readUTF(`in`),
+                       annotationOffset = readINT(`in`),
+                       isEvaluated = `in`.readBoolean(),
+                       name = readNullableUTF(`in`),
+                       group = readNullableUTF(`in`),
+                       apiLevel = readNullableInt(`in`),
+                       theme = readNullableUTF(`in`),
+                       width = readNullableInt(`in`),
+                       height = readNullableInt(`in`),
+                       fontScale = if (`in`.readBoolean()) `in`.readFloat() else null)
+      }
+      return PreviewFileData(importsPreview, previews)
+    }
+  }
+
+  override fun getName(): ID<Int, PreviewFileData> = NAME
+
+  override fun getIndexer(): SingleEntryIndexer<PreviewFileData> = object : SingleEntryIndexer<PreviewFileData>(false) {
+    override fun computeValue(inputData: FileContent): PreviewFileData? {
+      // Both the import and any use of the annotation contain its name, most files can be skipped without building their PSI
+      if (!inputData.contentAsText.contains(PREVIEW_NAME)) return null
+      val file = inputData.psiFile as? KtFile ?: return null
+      val importsPreview = file.importDirectives.any { PREVIEW_ANNOTATION_FQN == it.importedFqName?.asString() }
+      val previewMethodsFqName = mutableSetOf<String>()
+      val previews = mutableListOf<IndexedPreview>()
+      file.accept(object : KtTreeVisitorVoid() {
+        override fun visitNamedFunction(function: KtNamedFunction) {
+          // The body is not visited since local functions can not be previewed
+          if (function.isLocal) return
+          // If the same composable functions is found multiple times, only keep the first one. This usually will happen during
+          // copy & paste and both the compiler and Studio will flag it as an error.
+          toIndexedPreview(file, function)?.takeIf { previewMethodsFqName.add(it.composableMethodFqn) }?.let { previews.add(it) }
+        }
+      })
+      return if (importsPreview || previews.isNotEmpty()) PreviewFileData(importsPreview, previews) else null
+    }
+  }
+
+  override fun getInputFilter(): FileBasedIndex.InputFilter = DefaultFileTypeSpecificInputFilter(KotlinFileType.INSTANCE)
+
+  override fun getVersion() = 2
+}
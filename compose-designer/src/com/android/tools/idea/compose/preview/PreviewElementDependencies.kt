@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.compose.preview
+
+import com.android.tools.idea.res.ResourceRepositoryManager
+import com.google.common.hash.Hashing
+import com.intellij.openapi.application.ReadAction
+import com.intellij.openapi.project.DumbService
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.roots.ProjectFileIndex
+import com.intellij.openapi.roots.ProjectRootModificationTracker
+import com.intellij.openapi.util.Key
+import com.intellij.psi.PsiElement
+import com.intellij.psi.PsiMember
+import com.intellij.psi.util.CachedValue
+import com.intellij.psi.util.CachedValueProvider
+import com.intellij.psi.util.CachedValuesManager
+import com.intellij.psi.util.PsiModificationTracker
+import com.intellij.psi.util.PsiTreeUtil
+import org.jetbrains.android.facet.AndroidFacet
+import org.jetbrains.kotlin.idea.references.mainReference
+import org.jetbrains.kotlin.psi.KtConstructor
+import org.jetbrains.kotlin.psi.KtDeclaration
+import org.jetbrains.kotlin.psi.KtNamedFunction
+import org.jetbrains.kotlin.psi.KtParameter
+import org.jetbrains.kotlin.psi.KtProperty
+import org.jetbrains.kotlin.psi.KtReferenceExpression
+
+private val SOURCE_DEPENDENCIES_KEY: Key<CachedValue<List<PsiElement>>> = Key.create("compose.preview.source.dependencies")
+
+/**
+ * Returns the declaration whose text is hashed when [target] is referenced: functions, properties and classes are hashed as a whole,
+ * constructors as part of their class. Returns null for parameters and local variables, which are part of the text of the declaration
+ * that references them.
+ */
+private fun hashedDeclaration(target: PsiElement): PsiElement? = when (target) {
+  is KtConstructor<*> -> target.getContainingClassOrObject()
+  is KtParameter -> null
+  is KtProperty -> if (target.isLocal) null else target
+  is KtNamedFunction -> if (target.isLocal) null else target
+  is KtDeclaration -> target
+  is PsiMember -> target
+  else -> null
+}
+
+/**
+ * Returns the declarations in the project sources referenced from this one: functions and constructors it calls, properties and classes
+ * it uses, written in Kotlin or Java. The result is cached until the next PSI modification so previews sharing the same composables only
+ * resolve them once per refresh.
+ */
+private fun PsiElement.sourceDependencies(): List<PsiElement> = CachedValuesManager.getCachedValue(this, SOURCE_DEPENDENCIES_KEY) {
+  val fileIndex = ProjectFileIndex.getInstance(project)
+  val dependencies = PsiTreeUtil.findChildrenOfType(this, KtReferenceExpression::class.java)
+    .asSequence()
+    .mapNotNull { reference -> reference.mainReference.resolve()?.let { hashedDeclaration(it) } }
+    .filter { declaration -> declaration.containingFile?.virtualFile?.let { fileIndex.isInSourceContent(it) } == true }
+    .filter { declaration -> declaration != this && !PsiTreeUtil.isAncestor(this, declaration, true) }
+    .distinct()
+    .toList()
+  CachedValueProvider.Result.create(dependencies, PsiModificationTracker.MODIFICATION_COUNT)
+}
+
+/**
+ * Returns a hash of everything the rendering of this [PreviewElement] depends on:
+ * - its composable method and, transitively, all the declarations of the project sources that it references: functions, properties
+ *   and classes, whether Kotlin or Java,
+ * - the version of the resources of its module,
+ * - the version of the project roots, which changes when the libraries of the project change.
+ *
+ * Code that is not reached through a reference from the preview, e.g. the implementations of an interface it calls, is not covered.
+ *
+ * Returns null if the method can not be found. Must be called from a read action in smart mode.
+ */
+internal fun PreviewElement.dependencyHash(): Long? {
+  val body = previewBodyPsi?.element ?: return null
+  val method = PsiTreeUtil.getParentOfType(body, KtNamedFunction::class.java, false) ?: return null
+
+  val hasher = Hashing.farmHashFingerprint64().newHasher()
+  hasher.putLong(ProjectRootModificationTracker.getInstance(method.project).modificationCount)
+  AndroidFacet.getInstance(method)?.let { hasher.putLong(ResourceRepositoryManager.getAppResources(it).modificationCount) }
+  val visited = mutableSetOf<PsiElement>()
+  val pending = mutableListOf<PsiElement>(method)
+  while (pending.isNotEmpty()) {
+    val declaration = pending.removeAt(pending.size - 1)
+    if (!visited.add(declaration)) continue
+    hasher.putUnencodedChars(declaration.containingFile?.virtualFile?.path ?: "")
+    hasher.putUnencodedChars(declaration.text)
+    // Added in reverse so the traversal follows the order of the references in the source
+    declaration.sourceDependencies().asReversed().filterTo(pending) { it !in visited }
+  }
+  return hasher.hash().asLong()
+}
+
+/**
+ * Returns the [PreviewElement] used as key to track the renders of a preview. Unlike the original, it does not depend on the PSI pointers
+ * so it can be compared across calls to [FilePreviewElementFinder.findPreviewMethods].
+ */
+internal fun PreviewElement.toRenderKey(): PreviewElement = copy(previewElementDefinitionPsi = null, previewBodyPsi = null)
+
+/**
+ * Computes the [dependencyHash] of every one of the given [previewElements], indexed by [toRenderKey]. Previews whose hash can not be
+ * computed, or all of them in dumb mode, are not in the result.
+ */
+internal fun computeDependencyHashes(project: Project, previewElements: List<PreviewElement>): Map<PreviewElement, Long> =
+  ReadAction.compute<Map<PreviewElement, Long>, Throwable> {
+    if (DumbService.isDumb(project)) return@compute emptyMap()
+    previewElements
+      .mapNotNull { element -> element.dependencyHash()?.let { element.toRenderKey() to it } }
+      .toMap()
+  }
@@ -139,6 +139,73 @@ class AnnotationFilePreviewElementFinderTest : ComposeLightJavaCodeInsightFixtur
     assertEquals("Preview1", elements[0].displayName)
   }
 
+  fun testIndexedPreviews() {
+    @Language("kotlin")
+    val composeTest = myFixture.addFileToProject("src/Test.kt", """
+      import androidx.ui.tooling.preview.Preview
+      import androidx.compose.Composable
+
+      const val GROUP = "constGroup"
+
+      @Composable
+      @Preview(name = "literal", group = "groupA", apiLevel = 12, theme = "", widthDp = 10, fontScale = 1.5f)
+      fun Preview1() {
+      }
+
+      class Container {
+        @Composable
+        @Preview(name = "resolved", group = GROUP)
+        fun Preview2() {
+        }
+      }
+    """.trimIndent())
+
+    val data = PreviewAnnotationIndex.getDataForFile(project, composeTest.virtualFile)!!
+    assertTrue(data.importsPreview)
+    assertEquals(listOf("TestKt.Preview1", "Container.Preview2"), data.previews.map { it.composableMethodFqn })
+    data.previews[0].let {
+      assertTrue(it.isEvaluated)
+      assertEquals("literal", it.name)
+      assertEquals("groupA", it.group)
+      assertEquals(12, it.apiLevel)
+      assertEquals(10, it.width)
+      assertNull(it.height)
+      assertEquals(1.5f, it.fontScale)
+    }
+    // The group is a constant that can not be evaluated by the index
+    assertFalse(data.previews[1].isEvaluated)
+
+    val elements = AnnotationFilePreviewElementFinder.findPreviewMethods(composeTest.toUElement() as UFile)
+    assertEquals(listOf("literal", "resolved"), elements.map { it.displayName })
+    elements[0].let {
+      assertEquals("groupA", it.groupName)
+      assertNull(it.configuration.theme)
+      assertEquals(10, it.configuration.width)
+      assertEquals(UNDEFINED_DIMENSION, it.configuration.height)
+      assertEquals("@Preview(name = \"literal\", group = \"groupA\", apiLevel = 12, theme = \"\", widthDp = 10, fontScale = 1.5f)",
+                   it.previewElementDefinitionPsi?.element?.text)
+      assertEquals("{\n}", it.previewBodyPsi?.element?.text)
+    }
+    assertEquals("constGroup", elements[1].groupName)
+  }
+
+  fun testHasPreviewMethods() {
+    val withImport = myFixture.addFileToProject("src/WithImport.kt", """
+      import androidx.ui.tooling.preview.Preview
+
+      fun notAPreview() {}
+    """.trimIndent())
+    val withoutImport = myFixture.addFileToProject("src/WithoutImport.kt", """
+      fun notAPreview() {}
+    """.trimIndent())
+
+    assertTrue(AnnotationFilePreviewElementFinder.hasPreviewMethods(project, withImport.virtualFile))
+    assertFalse(AnnotationFilePreviewElementFinder.hasPreviewMethods(project, withoutImport.virtualFile))
+
+    // Files that don't mention the annotation have no entry in the index, they are skipped without parsing them
+    assertEquals(PreviewFileData(false, emptyList()), PreviewAnnotationIndex.getDataForFile(project, withoutImport.virtualFile))
+  }
+
   fun testFindPreviewPackage() {
     @Language("kotlin")
     val notPreviewAnnotation = myFixture.addFileToProject("src/com/android/notpreview/Preview.kt", """
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.compose.preview
+
+import com.intellij.openapi.command.WriteCommandAction
+import com.intellij.psi.PsiDocumentManager
+import com.intellij.psi.PsiFile
+import org.intellij.lang.annotations.Language
+import org.jetbrains.uast.UFile
+import org.jetbrains.uast.toUElement
+
+class PreviewElementDependenciesTest : ComposeLightJavaCodeInsightFixtureTestCase() {
+  private lateinit var file: PsiFile
+
+  override fun setUp() {
+    super.setUp()
+    @Language("kotlin")
+    val contents = """
+      import androidx.ui.tooling.preview.Preview
+      import androidx.compose.Composable
+
+      @Composable
+      fun Shared() {
+        Leaf(1)
+      }
+
+      @Composable
+      fun Leaf(i: Int) {
+      }
+
+      @Composable
+      fun Other() {
+      }
+
+      @Composable
+      @Preview
+      fun Preview1() {
+        Shared()
+      }
+
+      @Composable
+      @Preview
+      fun Preview2() {
+        Other()
+      }
+
+      val greeting = "Hello"
+
+      class Style(val size: Int)
+
+      @Composable
+      fun Styled() {
+        Leaf(Style(2).size)
+      }
+
+      @Composable
+      @Preview
+      fun Preview3() {
+        Styled()
+        Leaf(greeting.length)
+      }
+    """.trimIndent()
+    file = myFixture.addFileToProject("src/Test.kt", contents)
+  }
+
+  private fun hashes(): Map<String, Long> =
+    computeDependencyHashes(project, AnnotationFilePreviewElementFinder.findPreviewMethods(file.toUElement() as UFile))
+      .mapKeys { it.key.composableMethodFqn }
+
+  private fun replace(oldText: String, newText: String) {
+    val document = PsiDocumentManager.getInstance(project).getDocument(file)!!
+    WriteCommandAction.runWriteCommandAction(project) {
+      val offset = document.text.indexOf(oldText)
+      document.replaceString(offset, offset + oldText.length, newText)
+      PsiDocumentManager.getInstance(project).commitDocument(document)
+    }
+  }
+
+  fun testHashesAreStable() {
+    val hashes = hashes()
+    assertEquals(setOf("TestKt.Preview1", "TestKt.Preview2", "TestKt.Preview3"), hashes.keys)
+    assertEquals(hashes, hashes())
+  }
+
+  fun testTransitiveChangesOnlyAffectCallers() {
+    val before = hashes()
+
+    // Leaf is only called, indirectly, from Preview1
+    replace("fun Leaf(i: Int) {\n}", "fun Leaf(i: Int) {\n  Other()\n}")
+    val after = hashes()
+    assertFalse(before["TestKt.Preview1"] == after["TestKt.Preview1"])
+    assertEquals(before["TestKt.Preview2"], after["TestKt.Preview2"])
+
+    // Other is called from both
+    replace("fun Other() {\n}", "fun Other() {\n  Leaf(2)\n}")
+    val last = hashes()
+    assertFalse(after["TestKt.Preview1"] == last["TestKt.Preview1"])
+    assertFalse(after["TestKt.Preview2"] == last["TestKt.Preview2"])
+  }
+
+  fun testPropertyAndClassChangesAffectUsers() {
+    val before = hashes()
+
+    replace("val greeting = \"Hello\"", "val greeting = \"Hi\"")
+    val after = hashes()
+    assertFalse(before["TestKt.Preview3"] == after["TestKt.Preview3"])
+    assertEquals(before["TestKt.Preview1"], after["TestKt.Preview1"])
+    assertEquals(before["TestKt.Preview2"], after["TestKt.Preview2"])
+
+    // Style is only used through its constructor and a property declared in the constructor
+    replace("class Style(val size: Int)", "class Style(val size: Int) {\n  val extra = 0\n}")
+    val last = hashes()
+    assertFalse(after["TestKt.Preview3"] == last["TestKt.Preview3"])
+    assertEquals(after["TestKt.Preview1"], last["TestKt.Preview1"])
+  }
+
+  fun testRenderKeyIgnoresPsi() {
+    val first = AnnotationFilePreviewElementFinder.findPreviewMethods(file.toUElement() as UFile)
+    val second = AnnotationFilePreviewElementFinder.findPreviewMethods(file.toUElement() as UFile)
+    assertEquals(first.map { it.toRenderKey() }.toSet(), second.map { it.toRenderKey() }.toSet())
+    assertNull(first[0].toRenderKey().previewBodyPsi)
+  }
+}
@@ -23,6 +23,7 @@ import com.android.tools.deployer.DeployMetric;
 import com.android.tools.deployer.Deployer;
 import com.android.tools.deployer.DeployerException;
 import com.android.tools.deployer.Installer;
+import com.android.tools.deployer.TaskRunner;
 import com.android.tools.idea.log.LogWrapper;
 import com.android.tools.idea.run.ConsolePrinter;
 import com.android.tools.idea.run.DeploymentService;
@@ -30,7 +31,9 @@ import com.android.tools.idea.run.IdeService;
 import com.android.tools.idea.run.ui.ApplyChangesAction;
 import com.android.tools.idea.run.ui.BaseAction;
 import com.android.tools.idea.run.util.LaunchStatus;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Stopwatch;
+import com.google.common.util.concurrent.Futures;
 import com.google.wireless.android.sdk.stats.LaunchTaskDetail;
 import com.intellij.execution.Executor;
 import com.intellij.execution.executors.DefaultDebugExecutor;
@@ -49,11 +52,15 @@ import com.intellij.openapi.ui.playback.commands.ActionCommand;
 import com.intellij.openapi.util.Computable;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.wm.ToolWindowId;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import javax.swing.event.HyperlinkEvent;
@@ -64,6 +71,20 @@ public abstract class AbstractDeployTask implements LaunchTask {
 
   public static final int MIN_API_VERSION = 26;
   private static final NotificationGroup NOTIFICATION_GROUP = NotificationGroup.toolWindowGroup("UnifiedDeployTask", ToolWindowId.RUN);
+  /** Name of the metric covering the whole deployment of a single package. */
+  private static final String PACKAGE_METRIC = "DEPLOY_PACKAGE";
+  private static final int MAX_CONCURRENT_PACKAGE_DEPLOYMENTS = 4;
+  /**
+   * Number of threads shared by the task runners of the packages of a concurrent deployment, the same as the {@link DeploymentService}
+   * task runner has.
+   */
+  private static final int PACKAGE_TASK_RUNNER_THREADS = 5;
+  /**
+   * Executor for deploying packages concurrently. It is separate from the {@link DeploymentService} task runner, which the deployer of
+   * each package blocks on.
+   */
+  private static final ExecutorService ourPackageDeployExecutor =
+    AppExecutorUtil.createBoundedApplicationPoolExecutor("AbstractDeployTask", MAX_CONCURRENT_PACKAGE_DEPLOYMENTS);
 
   @NotNull private final Project myProject;
   @NotNull private final Map<String, List<File>> myPackages;
@@ -92,36 +113,74 @@ public abstract class AbstractDeployTask implements LaunchTask {
     Stopwatch stopwatch = Stopwatch.createStarted();
     LogWrapper logger = new LogWrapper(LOG);
 
-    // Collection that will accumulate metrics for the deployment.
-    ArrayList<DeployMetric> metrics = new ArrayList<>();
     // VM clock timestamp used to snap metric times to wall-clock time.
     long vmClockStartNs = System.nanoTime();
     // Wall-clock start time for the deployment.
     long wallClockStartMs = System.currentTimeMillis();
 
-    AdbClient adb = new AdbClient(device, logger);
-    Installer installer = new AdbInstaller(getLocalInstaller(), adb, metrics, logger);
-    DeploymentService service = DeploymentService.getInstance(myProject);
-    IdeService ideService = new IdeService(myProject);
-    Deployer deployer = new Deployer(adb, service.getDexDatabase(), service.getTaskRunner(),
-                                     installer, ideService, metrics, logger);
-    List<String> idsSkippedInstall = new ArrayList<>();
-    for (Map.Entry<String, List<File>> entry : myPackages.entrySet()) {
-      String applicationId = entry.getKey();
-      List<File> apkFiles = entry.getValue();
+    List<Map.Entry<String, List<File>>> packages = new ArrayList<>(myPackages.entrySet());
+    boolean concurrent = canDeployPackagesConcurrently() && packages.size() > 1;
+    // When deploying concurrently, the first package is still deployed on its own so that the installer is pushed to the device at most
+    // once. The remaining packages are independent and get deployed in parallel.
+    int sequentialCount = concurrent ? 1 : packages.size();
+    List<PackageResult> results = new ArrayList<>(packages.size());
+    for (Map.Entry<String, List<File>> entry : packages.subList(0, sequentialCount)) {
+      PackageResult result = deployPackage(device, entry.getKey(), entry.getValue(), null, logger);
+      results.add(result);
+      if (result.error != null) {
+        break;
+      }
+    }
+
+    if (concurrent && results.get(0).error == null) {
+      // One executor for the tasks of all the packages of this deployment, which doesn't take more threads as there are more packages.
+      ExecutorService taskExecutor =
+        AppExecutorUtil.createBoundedApplicationPoolExecutor("AbstractDeployTask Tasks", PACKAGE_TASK_RUNNER_THREADS);
+      List<Future<PackageResult>> futures = new ArrayList<>(packages.size() - 1);
+      for (Map.Entry<String, List<File>> entry : packages.subList(1, packages.size())) {
+        futures.add(ourPackageDeployExecutor.submit(() -> deployPackage(device, entry.getKey(), entry.getValue(), taskExecutor, logger)));
+      }
       try {
-        Deployer.Result result = perform(device, deployer, applicationId, apkFiles);
-        addSubTaskDetails(metrics, vmClockStartNs, wallClockStartMs);
-        if (result.skippedInstall) {
-          idsSkippedInstall.add(applicationId);
+        for (Future<PackageResult> future : futures) {
+          results.add(getResult(future));
         }
       }
-      catch (DeployerException e) {
-        logger.warning("%s failed: %s %s", getDescription(), e.getMessage(), e.getDetails());
-        return toLaunchResult(executor, e, printer);
+      catch (InterruptedException e) {
+        futures.forEach(future -> future.cancel(true));
+        // Still report the metrics of the packages that were deployed before the interruption.
+        List<PackageResult> finished = new ArrayList<>(results.subList(0, 1));
+        for (Future<PackageResult> future : futures) {
+          if (future.isDone() && !future.isCancelled()) {
+            finished.add(Futures.getUnchecked(future));
+          }
+        }
+        for (PackageResult result : finished) {
+          addSubTaskDetails(result.metrics, vmClockStartNs, wallClockStartMs);
+        }
+        Thread.currentThread().interrupt();
+        LaunchResult result = new LaunchResult();
+        result.setSuccess(false);
+        result.setError(getFailureTitle() + "\nThe deployment was interrupted.");
+        return result;
       }
     }
 
+    List<String> idsSkippedInstall = new ArrayList<>();
+    DeployerException error = null;
+    for (PackageResult result : results) {
+      addSubTaskDetails(result.metrics, vmClockStartNs, wallClockStartMs);
+      if (error == null) {
+        error = result.error;
+      }
+      if (result.error == null && result.skippedInstall) {
+        idsSkippedInstall.add(result.applicationId);
+      }
+    }
+    if (error != null) {
+      logger.warning("%s failed: %s %s", getDescription(), error.getMessage(), error.getDetails());
+      return toLaunchResult(executor, error, printer);
+    }
+
     stopwatch.stop();
     long duration = stopwatch.elapsed(TimeUnit.MILLISECONDS);
     if (idsSkippedInstall.isEmpty()) {
@@ -138,6 +197,87 @@ public abstract class AbstractDeployTask implements LaunchTask {
     return new LaunchResult();
   }
 
+  /**
+   * Deploys a single package using its own adb client, installer and deployer, so that packages can be deployed independently of each
+   * other. The metrics of the deployment, including a {@link #PACKAGE_METRIC} covering all of it, are collected in the returned result.
+   *
+   * @param taskExecutor the executor shared by the packages deployed concurrently, or null if the package is deployed on its own
+   */
+  @NotNull
+  private PackageResult deployPackage(@NotNull IDevice device, @NotNull String applicationId, @NotNull List<File> apkFiles,
+                                      @Nullable ExecutorService taskExecutor, @NotNull LogWrapper logger) {
+    ArrayList<DeployMetric> metrics = new ArrayList<>();
+    DeployMetric packageMetric = new DeployMetric(PACKAGE_METRIC);
+
+    PackageResult result = new PackageResult(applicationId, metrics);
+    try {
+      Deployer deployer = createDeployer(device, taskExecutor, metrics, logger);
+      result.skippedInstall = perform(device, deployer, applicationId, apkFiles).skippedInstall;
+      packageMetric.finish("SUCCESS");
+    }
+    catch (DeployerException e) {
+      result.error = e;
+      packageMetric.finish("FAILED");
+    }
+    metrics.add(packageMetric);
+    logger.info("Deployment of %s took %d ms", applicationId,
+                TimeUnit.NANOSECONDS.toMillis(packageMetric.getEndTimeNs() - packageMetric.getStartTimeNs()));
+    return result;
+  }
+
+  /**
+   * Creates the deployer of a single package.
+   * <p>
+   * The task runner of {@link DeploymentService} keeps the pending tasks of whoever uses it, so a package deployed concurrently with
+   * others gets a task runner of its own. The task runners of the packages of a deployment share one bounded executor, so they don't
+   * compete for the threads the other packages are waiting on. The dex database is still shared by all packages.
+   *
+   * @param taskExecutor the executor shared by the packages deployed concurrently, or null if the package is deployed on its own
+   * @param metrics      the list collecting the metrics of the deployment
+   */
+  @VisibleForTesting
+  @NotNull
+  protected Deployer createDeployer(@NotNull IDevice device, @Nullable ExecutorService taskExecutor,
+                                    @NotNull ArrayList<DeployMetric> metrics, @NotNull LogWrapper logger) {
+    AdbClient adb = new AdbClient(device, logger);
+    Installer installer = new AdbInstaller(getLocalInstaller(), adb, metrics, logger);
+    DeploymentService service = DeploymentService.getInstance(myProject);
+    IdeService ideService = new IdeService(myProject);
+    TaskRunner runner = taskExecutor != null ? new TaskRunner(taskExecutor) : service.getTaskRunner();
+    return new Deployer(adb, service.getDexDatabase(), runner, installer, ideService, metrics, logger);
+  }
+
+  @NotNull
+  private static PackageResult getResult(@NotNull Future<PackageResult> future) throws InterruptedException {
+    try {
+      return future.get();
+    }
+    catch (ExecutionException e) {
+      // Deploying a package only throws unchecked exceptions; rethrow them as if the package had been deployed on this thread.
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException)cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error)cause;
+      }
+      throw new RuntimeException(cause);
+    }
+  }
+
+  /**
+   * Returns whether the packages of this task are independent of each other and can be deployed concurrently. Tasks that modify
+   * running processes should deploy one package at a time.
+   * <p>
+   * The failure behavior differs between the two modes. Deploying one package at a time stops at the first failure. Deploying
+   * concurrently still deploys all the remaining packages when one of them fails, and then reports the first failure in package order.
+   * <p>
+   * Only whole package deployments run concurrently. The dex comparison of a package is not prefetched while another package installs.
+   */
+  protected boolean canDeployPackagesConcurrently() {
+    return false;
+  }
+
   abstract protected String getFailureTitle();
 
   abstract protected Deployer.Result perform(
@@ -218,6 +358,18 @@ public abstract class AbstractDeployTask implements LaunchTask {
 
   protected abstract String createSkippedApkInstallMessage(List<String> skippedApkList, boolean all);
 
+  private static class PackageResult {
+    @NotNull final String applicationId;
+    @NotNull final List<DeployMetric> metrics;
+    boolean skippedInstall;
+    @Nullable DeployerException error;
+
+    PackageResult(@NotNull String applicationId, @NotNull List<DeployMetric> metrics) {
+      this.applicationId = applicationId;
+      this.metrics = metrics;
+    }
+  }
+
   private class DeploymentErrorNotificationListener implements NotificationListener {
     private final @NotNull DeployerException.ResolutionAction myResolutionAction;
     private final @NotNull DeploymentHyperlinkInfo myHyperlinkInfo;
@@ -95,6 +95,13 @@ public class DeployTask extends AbstractDeployTask {
     return deployer.install(applicationId, getPathsToInstall(files), options.build(), installMode);
   }
 
+  @Override
+  protected boolean canDeployPackagesConcurrently() {
+    // Installs of different applications (e.g. an app and its test APK) do not depend on each other, so a failed install doesn't
+    // need to stop the other ones.
+    return true;
+  }
+
   @NotNull
   @Override
   public String getDescription() {
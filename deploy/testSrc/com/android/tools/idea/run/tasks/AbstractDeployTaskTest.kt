@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.tools.idea.run.tasks
+
+import com.android.ddmlib.IDevice
+import com.android.tools.deployer.DeployMetric
+import com.android.tools.deployer.Deployer
+import com.android.tools.deployer.DeployerException
+import com.android.tools.idea.log.LogWrapper
+import com.android.tools.idea.run.ConsolePrinter
+import com.android.tools.idea.run.util.LaunchStatus
+import com.google.common.truth.Truth.assertThat
+import com.intellij.execution.Executor
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.util.Computable
+import com.intellij.testFramework.LightPlatformTestCase
+import org.mockito.Mockito.mock
+import java.io.File
+import java.util.ArrayList
+import java.util.Collections
+import java.util.concurrent.ExecutorService
+
+/**
+ * Extends LightPlatformTestCase as a successful deployment shows a notification, which needs IJ's Application instance.
+ */
+class AbstractDeployTaskTest : LightPlatformTestCase() {
+
+  fun testConcurrentDeployInstallsRemainingPackagesAndReportsFirstFailure() {
+    val task = FakeDeployTask(project, listOf("a", "b", "c", "d"), true) { applicationId ->
+      if (applicationId == "b" || applicationId == "d") throw DeployerException.parseFailed(applicationId)
+      Deployer.Result()
+    }
+
+    val result = run(task)
+
+    assertThat(result.success).isFalse()
+    assertThat(result.consoleError).endsWith("\nb")
+    assertThat(task.performed).containsExactly("a", "b", "c", "d")
+    assertThat(getPackageStatuses(task)).containsExactly("SUCCESS", "FAILED", "SUCCESS", "FAILED")
+  }
+
+  fun testSequentialDeployStopsAtFirstFailure() {
+    val task = FakeDeployTask(project, listOf("a", "b", "c"), false) { applicationId ->
+      if (applicationId == "b") throw DeployerException.parseFailed(applicationId)
+      Deployer.Result()
+    }
+
+    val result = run(task)
+
+    assertThat(result.success).isFalse()
+    assertThat(task.performed).containsExactly("a", "b").inOrder()
+    assertThat(getPackageStatuses(task)).containsExactly("SUCCESS", "FAILED").inOrder()
+  }
+
+  fun testConcurrentDeployReportsSkippedInstalls() {
+    val task = FakeDeployTask(project, listOf("a", "b", "c"), true) { applicationId ->
+      Deployer.Result().apply { skippedInstall = applicationId != "b" }
+    }
+
+    val result = run(task)
+
+    assertThat(result.success).isTrue()
+    assertThat(task.skippedInstalls).containsExactly("a", "c").inOrder()
+    assertThat(task.allSkipped).isFalse()
+    assertThat(getPackageStatuses(task)).containsExactly("SUCCESS", "SUCCESS", "SUCCESS")
+  }
+
+  fun testAllInstallsSkipped() {
+    val task = FakeDeployTask(project, listOf("a", "b"), true) { Deployer.Result().apply { skippedInstall = true } }
+
+    val result = run(task)
+
+    assertThat(result.success).isTrue()
+    assertThat(task.skippedInstalls).containsExactly("a", "b").inOrder()
+    assertThat(task.allSkipped).isTrue()
+  }
+
+  fun testOnePackageMetricPerPackage() {
+    val task = FakeDeployTask(project, listOf("a", "b", "c"), true) { Deployer.Result() }
+
+    run(task)
+
+    assertThat(task.performed).containsExactly("a", "b", "c")
+    // Each package's metrics are reported once, so the other metrics of a package don't get repeated either.
+    assertThat(task.subTaskDetails.map { it.id }).containsExactly("FAKE_DEPLOY.DEPLOY_PACKAGE", "FAKE_DEPLOY.DEPLOY_PACKAGE",
+                                                                  "FAKE_DEPLOY.DEPLOY_PACKAGE", "FAKE_DEPLOY.FAKE_PERFORM",
+                                                                  "FAKE_DEPLOY.FAKE_PERFORM", "FAKE_DEPLOY.FAKE_PERFORM")
+  }
+
+  fun testConcurrentPackagesShareTaskExecutor() {
+    val task = FakeDeployTask(project, listOf("a", "b", "c", "d"), true) { Deployer.Result() }
+
+    run(task)
+
+    // The first package is deployed on its own with the shared task runner, the others share one executor for the whole deployment.
+    assertThat(task.taskExecutors).hasSize(4)
+    assertThat(task.taskExecutors[0]).isNull()
+    assertThat(task.taskExecutors.subList(1, 4).toSet()).hasSize(1)
+    assertThat(task.taskExecutors[1]).isNotNull()
+  }
+
+  fun testSequentialDeployUsesSharedTaskRunner() {
+    val task = FakeDeployTask(project, listOf("a", "b"), false) { Deployer.Result() }
+
+    run(task)
+
+    assertThat(task.taskExecutors).containsExactly(null, null)
+  }
+
+  private fun run(task: AbstractDeployTask): LaunchResult {
+    return task.run(mock(Executor::class.java), mock(IDevice::class.java), mock(LaunchStatus::class.java),
+                    mock(ConsolePrinter::class.java))
+  }
+
+  private fun getPackageStatuses(task: AbstractDeployTask): List<String> {
+    return task.subTaskDetails.filter { it.id == "FAKE_DEPLOY.DEPLOY_PACKAGE" }.map { it.status }
+  }
+
+  private class FakeDeployTask(
+    project: Project,
+    applicationIds: List<String>,
+    private val concurrent: Boolean,
+    private val result: (String) -> Deployer.Result
+  ) : AbstractDeployTask(project, applicationIds.associateWith { listOf<File>() }, false, Computable { "" }) {
+    val performed: MutableList<String> = Collections.synchronizedList(ArrayList())
+    var skippedInstalls: List<String>? = null
+    var allSkipped = false
+    val taskExecutors: MutableList<ExecutorService?> = Collections.synchronizedList(ArrayList())
+    private val metrics = Collections.synchronizedMap(HashMap<Deployer, ArrayList<DeployMetric>>())
+
+    override fun getDescription() = "Fake deploy"
+
+    override fun getId() = "FAKE_DEPLOY"
+
+    override fun getFailureTitle() = "Fake deploy failed"
+
+    override fun canDeployPackagesConcurrently() = concurrent
+
+    override fun createDeployer(device: IDevice, taskExecutor: ExecutorService?, metrics: ArrayList<DeployMetric>,
+                                logger: LogWrapper): Deployer {
+      taskExecutors.add(taskExecutor)
+      val deployer = mock(Deployer::class.java)
+      this.metrics[deployer] = metrics
+      return deployer
+    }
+
+    override fun perform(device: IDevice, deployer: Deployer, applicationId: String, files: List<File>): Deployer.Result {
+      performed.add(applicationId)
+      val metric = DeployMetric("FAKE_PERFORM")
+      try {
+        return result(applicationId)
+      }
+      finally {
+        metric.finish("DONE")
+        metrics.getValue(deployer).add(metric)
+      }
+    }
+
+    override fun createSkippedApkInstallMessage(skippedApkList: List<String>, all: Boolean): String {
+      skippedInstalls = skippedApkList
+      allSkipped = all
+      return "Skipped"
+    }
+  }
+}
@@ -21,6 +21,7 @@ import com.google.common.cache.CacheBuilder
 import com.google.common.collect.EvictingQueue
 import com.google.common.math.Quantiles
 import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
 
 /**
  * Interface for reading the diagnose information
@@ -40,6 +41,22 @@ interface NlDiagnosticsRead {
    * Returns the last render image size in bytes
    */
   fun lastRenderImageSize(): Long
+
+  /**
+   * Returns the number of model updates and renders added to the rendering queue
+   */
+  fun queuedUpdates(): Long
+
+  /**
+   * Returns the number of model updates and renders actually run by the rendering queue. The difference with [queuedUpdates] is the
+   * number of requests that have been merged with others, or that are still pending.
+   */
+  fun executedUpdates(): Long
+
+  /**
+   * Returns the current delay, in ms, used by the rendering queue to merge the requests
+   */
+  fun queueMergingDelay(): Int
 }
 
 /**
@@ -50,6 +67,21 @@ interface NlDiagnosticsWrite {
    * Record a render action with the time and the size of the generated image
    */
   fun recordRender(timeMs: Long, lastRenderSizeBytes: Long)
+
+  /**
+   * Record a new model update or render request added to the rendering queue
+   */
+  fun recordUpdateQueued()
+
+  /**
+   * Record a model update or render run by the rendering queue
+   */
+  fun recordUpdateExecuted()
+
+  /**
+   * Record a change of the delay used by the rendering queue to merge the requests
+   */
+  fun recordQueueMergingDelay(delayMs: Int)
 }
 
 /**
@@ -61,11 +93,20 @@ object NopNlDiagnosticsImpl : NlDiagnosticsRead, NlDiagnosticsWrite {
   override fun renderTime(percentile: Int): Long = -1
   override fun recordRender(timeMs: Long, lastRenderSizeBytes: Long) {}
   override fun lastRenders(): List<Long> = emptyList()
+  override fun queuedUpdates(): Long = -1
+  override fun executedUpdates(): Long = -1
+  override fun queueMergingDelay(): Int = -1
+  override fun recordUpdateQueued() {}
+  override fun recordUpdateExecuted() {}
+  override fun recordQueueMergingDelay(delayMs: Int) {}
 }
 
 private class NlDiagnosticsImpl : NlDiagnosticsRead, NlDiagnosticsWrite {
   private val lastRenderTimes = EvictingQueue.create<Long>(100)
   private var lastRenderImageBytes = -1L
+  private val queued = AtomicLong()
+  private val executed = AtomicLong()
+  @Volatile private var mergingDelayMs = -1
 
   override fun lastRenders(): List<Long> = lastRenderTimes.toList()
 
@@ -77,6 +118,24 @@ private class NlDiagnosticsImpl : NlDiagnosticsRead, NlDiagnosticsWrite {
     lastRenderImageBytes = lastRenderSizeBytes
   }
 
+  override fun queuedUpdates(): Long = queued.get()
+
+  override fun executedUpdates(): Long = executed.get()
+
+  override fun queueMergingDelay(): Int = mergingDelayMs
+
+  override fun recordUpdateQueued() {
+    queued.incrementAndGet()
+  }
+
+  override fun recordUpdateExecuted() {
+    executed.incrementAndGet()
+  }
+
+  override fun recordQueueMergingDelay(delayMs: Int) {
+    mergingDelayMs = delayMs
+  }
+
   override fun renderTime(percentile: Int): Long = if (lastRenderTimes.size > 0)
     Quantiles.percentiles().index(percentile).compute(lastRenderTimes).toLong()
   else -1
@@ -61,6 +61,12 @@ public class DefaultModelUpdater implements NlModel.NlModelUpdaterInterface {
      * Map from tags in the view render tree to the corresponding snapshots
      */
     protected final Map<XmlTag, TagSnapshot> myTagToSnapshot = Maps.newHashMap();
+
+    /**
+     * Map from the components in the old component hierarchy to the tag they were pointing to. Components that still point to the
+     * same tag after the update do not need their tag to be updated.
+     */
+    protected final Map<NlComponent, XmlTag> myPreviousTags = Maps.newIdentityHashMap();
   }
 
   private void recordComponentMapping(
@@ -289,6 +295,7 @@ public class DefaultModelUpdater implements NlModel.NlModelUpdaterInterface {
     XmlTag tag = component.getTagDeprecated();
 
     recordComponentMapping(tag, component, data);
+    data.myPreviousTags.put(component, tag);
     data.mySnapshotToComponent.put(component.getSnapshot(), component);
 
     for (NlComponent child : component.getChildren()) {
@@ -342,9 +349,12 @@ public class DefaultModelUpdater implements NlModel.NlModelUpdaterInterface {
         NlComponent child = createTree(subtag, data);
         children.add(child);
       }
-      component.setChildren(children);
+      // Only update the children of the components whose structure changed, most edits only change attributes
+      if (!children.equals(component.getChildren())) {
+        component.setChildren(children);
+      }
     }
-    else {
+    else if (!component.getChildren().isEmpty()) {
       component.setChildren(null);
     }
 
@@ -363,7 +373,10 @@ public class DefaultModelUpdater implements NlModel.NlModelUpdaterInterface {
       if (component != null) {
         component.setSnapshot(snapshot);
         assert snapshot.tag != null;
-        component.setTag(snapshot.tag);
+        // Setting the tag creates a new smart pointer, skip it for the components that were not affected by the edit
+        if (data.myPreviousTags.get(component) != snapshot.tag) {
+          component.setTag(snapshot.tag);
+        }
       }
     }
     for (NlModel.TagSnapshotTreeNode child : node.getChildren()) {
@@ -17,6 +17,7 @@ package com.android.tools.idea.common.scene;
 
 import com.android.tools.idea.common.scene.draw.DisplayList;
 import com.android.tools.idea.common.surface.DesignSurface;
+import com.android.tools.idea.flags.StudioFlags;
 import org.jetbrains.annotations.NotNull;
 
 import java.awt.*;
@@ -28,30 +29,46 @@ public class Display {
   private long mTime;
   private DisplayList myDisplayList = new DisplayList();
   private long myDisplayListVersion = 0;
+  private boolean myShowOnlySelection = false;
   double myScale = 0;
 
   public void reLayout() {
     myDisplayListVersion = 0;
+    myDisplayList.clearRetainedFragments();
   }
 
   public void draw(@NotNull SceneContext sceneContext, @NotNull Graphics2D g, @NotNull Scene scene) {
     mTime = System.currentTimeMillis();
     boolean needsRebuild = false;
+    boolean needsFullRebuild = false;
+    scene.checkDecorationState();
     if (scene.getDisplayListVersion() > myDisplayListVersion) {
       needsRebuild = true;
     }
     if (sceneContext.getScale() != myScale) {
       myScale = sceneContext.getScale();
-      needsRebuild = true;
+      needsFullRebuild = true;
+    }
+    if (sceneContext.showOnlySelection() != myShowOnlySelection) {
+      myShowOnlySelection = sceneContext.showOnlySelection();
+      needsFullRebuild = true;
     }
+    needsRebuild |= needsFullRebuild;
     needsRebuild |= myDisplayList.getCommands().isEmpty();
     if (needsRebuild) {
       needsRebuild = scene.layout(mTime, sceneContext);
+      // Only the components that changed since the last build are rebuilt, unless the whole list was invalidated
+      myDisplayList.setRetained(StudioFlags.NELE_RETAINED_DISPLAY_LIST.get());
+      // Changes of the whole scene, e.g. of the selection, are handled by Scene#buildDisplayList
+      if (needsFullRebuild) {
+        myDisplayList.clearRetainedFragments();
+      }
       myDisplayList.clear();
       scene.buildDisplayList(myDisplayList, mTime, sceneContext);
       myDisplayListVersion = scene.getDisplayListVersion();
       if (needsRebuild) {
-        scene.needsRebuildList();
+        // The components still animating will request the rebuild of their part of the list in the next layout
+        scene.requestDisplayListUpdate();
       }
     }
     draw(sceneContext, g, myDisplayList);
@@ -59,7 +76,7 @@ public class Display {
     if (needsRebuild) {
       DesignSurface designSurface = sceneContext.getSurface();
       if (designSurface != null) {
-        designSurface.repaint();
+        scene.repaint();
       }
     }
   }
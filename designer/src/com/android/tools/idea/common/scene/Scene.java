@@ -43,10 +43,12 @@ import com.android.tools.idea.common.scene.target.Target;
 import com.android.tools.idea.common.surface.DesignSurface;
 import com.android.tools.idea.common.surface.SceneView;
 import com.android.tools.idea.configurations.Configuration;
+import com.android.tools.idea.flags.StudioFlags;
 import com.android.tools.idea.rendering.RenderLogger;
 import com.android.tools.idea.rendering.RenderService;
 import com.android.tools.idea.rendering.RenderTask;
 import com.android.tools.idea.uibuilder.api.ViewHandler;
+import com.android.tools.idea.uibuilder.handlers.constraint.ConstraintLayoutHandler;
 import com.android.tools.idea.uibuilder.handlers.constraint.SecondarySelector;
 import com.android.tools.idea.uibuilder.handlers.constraint.draw.ConstraintLayoutDecorator;
 import com.android.tools.idea.uibuilder.model.NlComponentHelperKt;
@@ -71,6 +73,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
+import javax.swing.JComponent;
 import org.intellij.lang.annotations.JdkConstants;
 import org.intellij.lang.annotations.MagicConstant;
 import org.jetbrains.android.facet.AndroidFacet;
@@ -104,6 +107,19 @@ public class Scene implements SelectionListener, Disposable {
   public static final int IMMEDIATE_LAYOUT = 1;
   public static final int ANIMATED_LAYOUT = 2;
   private long myDisplayListVersion = 1;
+  // Changes when the whole display list has to be rebuilt, as opposed to the parts drawn by specific components
+  private long myFullDisplayListVersion = 1;
+  private long myComponentDisplayListVersion = 0;
+  // State the decorators depend on besides the components themselves, as of the last build of the display list
+  private List<NlComponent> myDecoratedSelection = ImmutableList.of();
+  private int myDecoratedVisualPropertiesVersion = -1;
+  // Area to repaint on the next call to repaint(), or null if the whole surface has to be repainted
+  @AndroidDpCoordinate @Nullable private Rectangle myDirtyRegion = null;
+  private boolean myWholeSceneDirty = true;
+  // Margin added around the dirty region, to account for the targets and decorations drawn outside of the changed components.
+  // The largest ones are the anchors: they are moved up to 2 * ANCHOR_SIZE out of small components and are ANCHOR_SIZE wide on
+  // each side of their center (see AnchorTarget#layout), one more ANCHOR_SIZE covers their outline and antialiasing.
+  @SwingCoordinate private static final int DIRTY_REGION_MARGIN = 4 * AnchorTarget.ANCHOR_SIZE;
   private Target myOverTarget;
   private Target mySnapTarget;
   private SceneComponent myCurrentComponent;
@@ -368,6 +384,8 @@ public class Scene implements SelectionListener, Disposable {
     if (myRoot != null) {
       markSelection(myRoot, model);
     }
+    // Decorators of other components may depend on the selection as well
+    needsRebuildList();
   }
 
   /**
@@ -409,8 +427,26 @@ public class Scene implements SelectionListener, Disposable {
     buildDisplayList(displayList, time, SceneContext.get());
   }
 
+  /**
+   * Repaints the surface. If only specific components changed since the last repaint (see {@link #needsRebuildList(SceneComponent)}),
+   * only the area around them is repainted.
+   */
   public void repaint() {
-    myDesignSurface.repaint();
+    Rectangle dirtyRegion = myWholeSceneDirty ? null : myDirtyRegion;
+    myDirtyRegion = null;
+    myWholeSceneDirty = false;
+    if (dirtyRegion == null) {
+      myDesignSurface.repaint();
+      return;
+    }
+    JComponent layeredPane = myDesignSurface.getLayeredPane();
+    for (SceneView sceneView : mySceneManager.getSceneViews()) {
+      SceneContext context = sceneView.getContext();
+      layeredPane.repaint(context.getSwingXDip(dirtyRegion.x) - DIRTY_REGION_MARGIN,
+                          context.getSwingYDip(dirtyRegion.y) - DIRTY_REGION_MARGIN,
+                          context.getSwingDimensionDip(dirtyRegion.width) + 2 * DIRTY_REGION_MARGIN,
+                          context.getSwingDimensionDip(dirtyRegion.height) + 2 * DIRTY_REGION_MARGIN);
+    }
   }
 
   /**
@@ -429,6 +465,8 @@ public class Scene implements SelectionListener, Disposable {
       });
 
       sceneContext.getScenePicker().reset();
+      checkDecorationState();
+      displayList.setSharedVersion(myFullDisplayListVersion);
       myRoot.buildDisplayList(time, displayList, sceneContext);
       if (DEBUG) {
         System.out.println("========= DISPLAY LIST ======== \n" + displayList.serialize());
@@ -451,10 +489,8 @@ public class Scene implements SelectionListener, Disposable {
   public boolean layout(long time, SceneContext sceneContext) {
     boolean needsToRebuildDisplayList = false;
     if (myRoot != null) {
+      // The components that changed request the rebuild of their part of the display list
       needsToRebuildDisplayList = myRoot.layout(sceneContext, time);
-      if (needsToRebuildDisplayList) {
-        needsRebuildList();
-      }
     }
     return needsToRebuildDisplayList;
   }
@@ -511,19 +547,18 @@ public class Scene implements SelectionListener, Disposable {
       myHoverListener.find(transform, myRoot, x, y, modifiersEx);
       mySnapListener.find(transform, myRoot, x, y, modifiersEx);
     }
-    repaint();
     Target closestTarget = myHoverListener.getClosestTarget(modifiersEx);
     String tooltip = null;
     if (myOverTarget != closestTarget) {
       if (myOverTarget != null) {
         myOverTarget.setMouseHovered(false);
+        needsRebuildList(myOverTarget);
         myOverTarget = null;
-        needsRebuildList();
       }
       if (closestTarget != null) {
         closestTarget.setMouseHovered(true);
         myOverTarget = closestTarget;
-        needsRebuildList();
+        needsRebuildList(closestTarget);
       }
     }
     if (closestTarget != null) {
@@ -532,13 +567,13 @@ public class Scene implements SelectionListener, Disposable {
       if (snapTarget != mySnapTarget) {
         if (mySnapTarget != null) {
           mySnapTarget.setMouseHovered(false);
+          needsRebuildList(mySnapTarget);
           mySnapTarget = null;
-          needsRebuildList();
         }
         if (snapTarget != null) {
           snapTarget.setMouseHovered(true);
           mySnapTarget = closestTarget;
-          needsRebuildList();
+          needsRebuildList(snapTarget);
         }
       }
     }
@@ -550,6 +585,7 @@ public class Scene implements SelectionListener, Disposable {
       tooltip = closestComponent.getNlComponent().getTooltipText();
     }
     if (myCurrentComponent != closestComponent) {
+      // Changes of draw state request the rebuild of the display list
       if (myCurrentComponent != null) {
         myCurrentComponent.setDrawState(SceneComponent.DrawState.NORMAL);
         myCurrentComponent = null;
@@ -558,7 +594,6 @@ public class Scene implements SelectionListener, Disposable {
         closestComponent.setDrawState(SceneComponent.DrawState.HOVER);
         myCurrentComponent = closestComponent;
       }
-      needsRebuildList();
     }
 
     if (closestComponent == null
@@ -578,6 +613,7 @@ public class Scene implements SelectionListener, Disposable {
       getDesignSurface().setDesignToolTip(tooltip);
     }
 
+    repaint();
     setCursor(transform, x, y, modifiersEx);
   }
 
@@ -1073,10 +1109,77 @@ public class Scene implements SelectionListener, Disposable {
     return myDisplayListVersion;
   }
 
+  /**
+   * Invalidates the whole display list if the selection or the visual properties of the layout editor changed since the display list
+   * was last built: the decorators of any component may depend on them, e.g. to show the constraints of the selected components.
+   */
+  public void checkDecorationState() {
+    List<NlComponent> selection = getSelection();
+    int visualPropertiesVersion = ConstraintLayoutHandler.getVisualPropertiesVersion();
+    if (visualPropertiesVersion != myDecoratedVisualPropertiesVersion || !selection.equals(myDecoratedSelection)) {
+      myDecoratedSelection = ImmutableList.copyOf(selection);
+      myDecoratedVisualPropertiesVersion = visualPropertiesVersion;
+      needsRebuildList();
+    }
+  }
+
   // TODO: reduce visibility? Probably the modified SceneComponents should do this rather than
   // requiring it to be done explicitly by the code that's modifying them.
   public void needsRebuildList() {
     myDisplayListVersion++;
+    myFullDisplayListVersion++;
+    myWholeSceneDirty = true;
+  }
+
+  /**
+   * Marks the display list as dirty because the drawing of the given target changed, see {@link #needsRebuildList(SceneComponent)}.
+   */
+  public void needsRebuildList(@NotNull Target target) {
+    SceneComponent component = target.getComponent();
+    if (component != null) {
+      needsRebuildList(component);
+    }
+    else {
+      needsRebuildList();
+    }
+  }
+
+  /**
+   * Marks the display list as dirty because the drawing of the given component changed. Only the commands of this component, of its
+   * parent, its siblings and its children are rebuilt, the commands of the other components are reused.
+   */
+  public void needsRebuildList(@NotNull SceneComponent component) {
+    if (!StudioFlags.NELE_RETAINED_DISPLAY_LIST.get()) {
+      needsRebuildList();
+      return;
+    }
+    myDisplayListVersion++;
+    component.displayListChanged(++myComponentDisplayListVersion);
+    addDirtyRegion(component);
+  }
+
+  private void addDirtyRegion(@NotNull SceneComponent component) {
+    SceneComponent parent = component.getParent();
+    if (parent == null) {
+      myWholeSceneDirty = true;
+      return;
+    }
+    // Components are drawn within the bounds of their parent, and so are their connections to their siblings
+    Rectangle region = parent.fillRect(null);
+    region.add(component.fillRect(null));
+    if (myDirtyRegion == null) {
+      myDirtyRegion = region;
+    }
+    else {
+      myDirtyRegion.add(region);
+    }
+  }
+
+  /**
+   * Requests a new build of the display list without invalidating any part of it, e.g. to run the next step of the layout animations.
+   */
+  void requestDisplayListUpdate() {
+    myDisplayListVersion++;
   }
 
   //endregion
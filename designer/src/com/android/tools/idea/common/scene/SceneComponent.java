@@ -77,6 +77,14 @@ public class SceneComponent {
 
   private DrawState myDrawState = DrawState.NORMAL;
 
+  /**
+   * Versions of the draw commands of this component, used to reuse the commands retained in a {@link DisplayList} when nothing changed.
+   * The commands of a component depend on its own state, on the state of its parent and of its siblings: myDisplayListVersion changes
+   * when this component or one of its children changes, mySubtreeDisplayListVersion when this component or any of its descendants changes.
+   */
+  private long myDisplayListVersion = 0;
+  private long mySubtreeDisplayListVersion = 0;
+
   @GuardedBy("myTargets")
   private final ArrayList<Target> myTargets = new ArrayList<>();
 
@@ -404,7 +412,7 @@ public class SceneComponent {
       NlComponentHelperKt.setX(myNlComponent, Coordinates.dpToPx(myScene.getSceneManager(), dx));
       NlComponentHelperKt.setY(myNlComponent, Coordinates.dpToPx(myScene.getSceneManager(), dy));
     }
-    myScene.needsRebuildList();
+    myScene.needsRebuildList(this);
   }
 
   /**
@@ -425,7 +433,7 @@ public class SceneComponent {
       NlComponentHelperKt.setY(myNlComponent, Coordinates.dpToPx(myScene.getSceneManager(), dy));
     }
     else {
-      myScene.needsRebuildList();
+      myScene.needsRebuildList(this);
     }
   }
 
@@ -440,7 +448,7 @@ public class SceneComponent {
       NlComponentHelperKt.setW(myNlComponent, Coordinates.dpToPx(myScene.getSceneManager(), width));
       NlComponentHelperKt.setH(myNlComponent, Coordinates.dpToPx(myScene.getSceneManager(), height));
     }
-    myScene.needsRebuildList();
+    myScene.needsRebuildList(this);
   }
 
   /**
@@ -515,6 +523,7 @@ public class SceneComponent {
     }
     if (oldState != myDrawState) {
       DecoratorUtilities.setTimeChange(myNlComponent, DecoratorUtilities.VIEW, DecoratorUtilities.mapState(drawState));
+      myScene.needsRebuildList(this);
     }
   }
 
@@ -658,6 +667,7 @@ public class SceneComponent {
       myCachedTargetList = null;
       myTargets.add(target);
     }
+    myScene.needsRebuildList(this);
   }
 
   public void addChild(@NotNull SceneComponent child) {
@@ -709,6 +719,9 @@ public class SceneComponent {
       Target target = targets.get(i);
       needsRebuildDisplayList |= target.layout(sceneTransform, myCurrentLeft, myCurrentTop, myCurrentRight, myCurrentBottom);
     }
+    if (needsRebuildDisplayList) {
+      myScene.needsRebuildList(this);
+    }
 
     for (SceneComponent child : myChildren) {
       needsRebuildDisplayList |= child.layout(sceneTransform, time);
@@ -758,7 +771,27 @@ public class SceneComponent {
   }
 
   public void buildDisplayList(long time, @NotNull DisplayList list, SceneContext sceneContext) {
+    long dependencyVersion = myParent != null ? myParent.myDisplayListVersion : 0;
+    if (list.replayFragment(this, mySubtreeDisplayListVersion, dependencyVersion)) {
+      return;
+    }
+    int start = list.getCommandCount();
     myDecorator.buildList(list, time, sceneContext, this);
+    list.retainFragment(this, start, mySubtreeDisplayListVersion, dependencyVersion);
+  }
+
+  /**
+   * Records that the draw commands of this component changed, see {@link Scene#needsRebuildList(SceneComponent)}.
+   * The commands of its parent, its siblings and its children have to be rebuilt as well since they may depend on it.
+   */
+  void displayListChanged(long version) {
+    myDisplayListVersion = version;
+    if (myParent != null) {
+      myParent.myDisplayListVersion = version;
+    }
+    for (SceneComponent component = this; component != null; component = component.myParent) {
+      component.mySubtreeDisplayListVersion = version;
+    }
   }
 
   //endregion
@@ -833,6 +866,7 @@ public class SceneComponent {
       myCachedTargetList = null;
       myTargets.clear();
     }
+    myScene.needsRebuildList(this);
 
     // update the Targets created by parent's TargetProvider
     SceneComponent parent = myParent;
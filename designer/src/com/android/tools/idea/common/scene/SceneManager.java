@@ -97,6 +97,14 @@ abstract public class SceneManager implements Disposable {
     return mySceneView;
   }
 
+  /**
+   * Returns all the {@link SceneView}s displaying the {@link Scene} of this manager.
+   */
+  @NotNull
+  public List<SceneView> getSceneViews() {
+    return mySceneView != null ? ImmutableList.of(mySceneView) : ImmutableList.of();
+  }
+
   @NotNull
   public ImmutableList<Layer> getLayers() {
     return mySceneView.getLayers();
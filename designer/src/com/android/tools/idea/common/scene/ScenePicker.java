@@ -15,11 +15,16 @@
  */
 package com.android.tools.idea.common.scene;
 
+import com.google.common.annotations.VisibleForTesting;
 import java.util.Arrays;
 import java.util.function.Consumer;
 
 /**
  * This class provides efficient detection of many objects
+ * <p>
+ * Once the picker has been queried without being modified, the bounding rectangles of the objects are indexed in a uniform grid,
+ * so that subsequent queries only test the objects whose bounds overlap the cell under the cursor. Objects added inside the indexed
+ * area are inserted into the grid in place.
  */
 public class ScenePicker {
   private final static int MAX_DATA_SIZE = 10;
@@ -39,6 +44,24 @@ public class ScenePicker {
   private final static int OBJECT_CURVE = 2;
   private final static int OBJECT_RECTANGLE = 3;
   private final static int OBJECT_CIRCLE = 4;
+
+  // Below this number of objects a linear scan is cheaper than building the grid
+  private final static int MIN_INDEXED_OBJECTS = 64;
+  private final static int MAX_GRID_SIZE = 64;
+  private final static int INITIAL_CELL_CAPACITY = 8;
+  private boolean mIndexEnabled = true;
+  private boolean mGridValid = false;
+  private int mFindsSinceChange = 0;
+  private int mGridX1;
+  private int mGridY1;
+  private int mGridX2;
+  private int mGridY2;
+  private int mCellWidth;
+  private int mCellHeight;
+  private int mGridColumns;
+  private int mGridRows;
+  private int[][] mCells = new int[0][];
+  private int[] mCellSizes = new int[0];
   LineSelectionEngine mLine = new LineSelectionEngine();
   PointSelectionEngine mPoint = new PointSelectionEngine();
   CurveToSelectionEngine mCurve = new CurveToSelectionEngine();
@@ -70,21 +93,145 @@ public class ScenePicker {
    * @param y location y
    */
   public void find(int x, int y) {
+    if (!mGridValid && mFindsSinceChange > 0 && mIndexEnabled && mObjectCount >= MIN_INDEXED_OBJECTS) {
+      buildGrid();
+    }
+    mFindsSinceChange++;
+
+    if (!mGridValid) {
+      for (int i = 0; i < mObjectCount; i++) {
+        checkHit(i, x, y);
+      }
+      return;
+    }
+    if (x < mGridX1 || y < mGridY1 || x > mGridX2 || y > mGridY2) {
+      return; // Outside the bounds of all the objects
+    }
+    int cell = (y - mGridY1) / mCellHeight * mGridColumns + (x - mGridX1) / mCellWidth;
+    int[] objects = mCells[cell];
+    int size = mCellSizes[cell];
+    for (int i = 0; i < size; i++) {
+      checkHit(objects[i], x, y);
+    }
+  }
+
+  private void checkHit(int object, int x, int y) {
+    int p = object * 4;
+    int x1 = mRect[p++];
+    int y1 = mRect[p++];
+    int x2 = mRect[p++];
+    int y2 = mRect[p];
+    if (inRect(x, y, x1, y1, x2, y2)) {
+      SelectionEngine selector = myEngines[mTypes[object]];
+      if (selector.inRange(object, x, y)) {
+        mHitElementListener.over(mObjects[object], selector.distance());
+      }
+    }
+  }
+
+  /**
+   * Enables or disables the spatial index. When disabled every query scans all the objects.
+   */
+  @VisibleForTesting
+  void setIndexEnabled(boolean enabled) {
+    mIndexEnabled = enabled;
+    if (!enabled) {
+      mGridValid = false;
+    }
+  }
+
+  /**
+   * Returns true if queries currently go through the spatial index.
+   */
+  @VisibleForTesting
+  boolean isIndexed() {
+    return mGridValid;
+  }
+
+  /**
+   * Builds the grid from the bounding rectangles of all the objects. The grid covers the union of the bounding rectangles and has
+   * about as many cells as there are objects, so that each cell references only a few objects on typical layouts.
+   */
+  private void buildGrid() {
+    int x1 = Integer.MAX_VALUE;
+    int y1 = Integer.MAX_VALUE;
+    int x2 = Integer.MIN_VALUE;
+    int y2 = Integer.MIN_VALUE;
     for (int i = 0; i < mObjectCount; i++) {
       int p = i * 4;
-      int x1 = mRect[p++];
-      int y1 = mRect[p++];
-      int x2 = mRect[p++];
-      int y2 = mRect[p];
-      if (inRect(x, y, x1, y1, x2, y2)) {
-        SelectionEngine selector = myEngines[mTypes[i]];
-        if (selector.inRange(i, x, y)) {
-          mHitElementListener.over(mObjects[i], selector.distance());
+      x1 = Math.min(x1, mRect[p]);
+      y1 = Math.min(y1, mRect[p + 1]);
+      x2 = Math.max(x2, mRect[p + 2]);
+      y2 = Math.max(y2, mRect[p + 3]);
+    }
+    if (mObjectCount == 0) {
+      return;
+    }
+    int size = Math.min(MAX_GRID_SIZE, (int)Math.ceil(Math.sqrt(mObjectCount)));
+    mGridX1 = x1;
+    mGridY1 = y1;
+    mGridX2 = x2;
+    mGridY2 = y2;
+    mCellWidth = Math.max(1, (int)(((long)x2 - x1 + size) / size));
+    mCellHeight = Math.max(1, (int)(((long)y2 - y1 + size) / size));
+    mGridColumns = (int)(((long)x2 - x1) / mCellWidth) + 1;
+    mGridRows = (int)(((long)y2 - y1) / mCellHeight) + 1;
+
+    int cellCount = mGridColumns * mGridRows;
+    if (mCells.length < cellCount) {
+      mCells = Arrays.copyOf(mCells, cellCount);
+      mCellSizes = new int[cellCount];
+    }
+    else {
+      Arrays.fill(mCellSizes, 0);
+    }
+    for (int i = 0; i < mObjectCount; i++) {
+      addToGrid(i);
+    }
+    mGridValid = true;
+  }
+
+  private void addToGrid(int object) {
+    int p = object * 4;
+    int column1 = (mRect[p] - mGridX1) / mCellWidth;
+    int row1 = (mRect[p + 1] - mGridY1) / mCellHeight;
+    int column2 = (mRect[p + 2] - mGridX1) / mCellWidth;
+    int row2 = (mRect[p + 3] - mGridY1) / mCellHeight;
+    for (int row = row1; row <= row2; row++) {
+      for (int column = column1; column <= column2; column++) {
+        int cell = row * mGridColumns + column;
+        int[] objects = mCells[cell];
+        int size = mCellSizes[cell];
+        if (objects == null) {
+          objects = mCells[cell] = new int[INITIAL_CELL_CAPACITY];
+        }
+        else if (size == objects.length) {
+          objects = mCells[cell] = Arrays.copyOf(objects, size * 2);
         }
+        objects[size] = object;
+        mCellSizes[cell] = size + 1;
       }
     }
   }
 
+  /**
+   * Called by the selection engines once an object and its bounding rectangle have been stored.
+   */
+  private void objectAdded() {
+    int object = mObjectCount++;
+    if (!mGridValid) {
+      mFindsSinceChange = 0;
+      return;
+    }
+    int p = object * 4;
+    if (mRect[p] < mGridX1 || mRect[p + 1] < mGridY1 || mRect[p + 2] > mGridX2 || mRect[p + 3] > mGridY2) {
+      // The grid doesn't cover the new object, rebuild it on the next query
+      mGridValid = false;
+      return;
+    }
+    addToGrid(object);
+  }
+
   /**
    * set the listener to be notified of the objects in range
    *
@@ -124,6 +271,8 @@ public class ScenePicker {
   public void reset() {
     mObjectCount = 0;
     mObjectDataUsed = 0;
+    mGridValid = false;
+    mFindsSinceChange = 0;
     Arrays.fill(mObjects, null);// delete references
   }
 
@@ -264,7 +413,7 @@ public class ScenePicker {
       mObjectData[mObjectDataUsed++] = y1;
       mObjects[mObjectCount] = select;
       addRect(x1 - range, y1 - range, x1 + range, y1 + range);
-      mObjectCount++;
+      objectAdded();
     }
 
     double mDistance;
@@ -299,7 +448,7 @@ public class ScenePicker {
       mObjectData[mObjectDataUsed++] = r;
       mObjects[mObjectCount] = select;
       addRect(x1 - range - r, y1 - range - r, x1 + range + r, y1 + range + r);
-      mObjectCount++;
+      objectAdded();
     }
 
     double mDistance;
@@ -361,7 +510,7 @@ public class ScenePicker {
       addRect(x1 - r, y1 - r, x2 + r, y2 + r);
       mObjects[mObjectCount] = select;
       mTypes[mObjectCount] = OBJECT_LINE;
-      mObjectCount++;
+      objectAdded();
     }
 
     @Override
@@ -425,7 +574,7 @@ public class ScenePicker {
       addRect(x1 - range, y1 - range, x2 + range, y2 + range);
       mObjects[mObjectCount] = select;
       mTypes[mObjectCount] = OBJECT_RECTANGLE;
-      mObjectCount++;
+      objectAdded();
     }
 
     /**
@@ -542,7 +691,7 @@ public class ScenePicker {
       mObjects[mObjectCount] = select;
       mTypes[mObjectCount] = OBJECT_CURVE;
       bounds(range + width);
-      mObjectCount++;
+      objectAdded();
     }
 
     @Override
@@ -34,8 +34,11 @@ import java.awt.*;
 import java.awt.geom.GeneralPath;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.function.Function;
 
 
@@ -48,10 +51,148 @@ public class DisplayList {
   private final static boolean DEBUG = false;
   private ArrayList<DrawCommand> myCommands = new ArrayList<>();
   private Stack<UNClip> myUnClipStack = new Stack<>();
+  /**
+   * Commands recorded for parts of the list that can be reused in the next build, or null if this list is not retained.
+   */
+  @Nullable private IdentityHashMap<Object, RetainedFragment> myRetainedFragments;
+  /** Owners of the fragments completed in the current build that are not nested in another completed fragment yet. */
+  private final ArrayList<Object> myCompletedFragmentOwners = new ArrayList<>();
+  private final ArrayList<Integer> myCompletedFragmentStarts = new ArrayList<>();
+  private int myBuildCount = 0;
+  /** Version of the state shared by all the retained fragments, see {@link #setSharedVersion}. */
+  private long mySharedVersion = 0;
 
   public void clear() {
     myCommands.clear();
     myUnClipStack.clear();
+    myCompletedFragmentOwners.clear();
+    myCompletedFragmentStarts.clear();
+    if (myRetainedFragments != null) {
+      // Drop the fragments that were not used in the last build, their owners are gone
+      int lastBuild = myBuildCount;
+      myRetainedFragments.values().removeIf(fragment -> fragment.myBuild != lastBuild);
+    }
+    myBuildCount++;
+  }
+
+  /**
+   * Enables or disables retaining fragments of this list between builds, see {@link #retainFragment}.
+   */
+  public void setRetained(boolean retained) {
+    if (!retained) {
+      myRetainedFragments = null;
+    }
+    else if (myRetainedFragments == null) {
+      myRetainedFragments = new IdentityHashMap<>();
+    }
+  }
+
+  public boolean isRetained() {
+    return myRetainedFragments != null;
+  }
+
+  /**
+   * Discards all the retained fragments, so that the next build starts from scratch.
+   */
+  public void clearRetainedFragments() {
+    if (myRetainedFragments != null) {
+      myRetainedFragments.clear();
+    }
+  }
+
+  /**
+   * Sets the version of the state all the fragments of this list depend on, discarding the retained fragments if it changed.
+   */
+  public void setSharedVersion(long version) {
+    if (version != mySharedVersion) {
+      clearRetainedFragments();
+      mySharedVersion = version;
+    }
+  }
+
+  /**
+   * Returns the number of commands in the list, to be used as the start of a fragment passed to {@link #retainFragment}.
+   */
+  public int getCommandCount() {
+    return myCommands.size();
+  }
+
+  /**
+   * Records the commands added since {@code start} as the fragment of {@code owner}, so that they can be appended again by
+   * {@link #replayFragment} in the next build. The versions identify the state the fragment was built from.
+   * Does nothing if the list is not retained.
+   */
+  public void retainFragment(@NotNull Object owner, int start, long version, long dependencyVersion) {
+    if (myRetainedFragments == null) {
+      return;
+    }
+    DrawCommand[] commands = myCommands.subList(start, myCommands.size()).toArray(new DrawCommand[0]);
+    // The fragments completed since start are nested in this one
+    int firstNested = myCompletedFragmentStarts.size();
+    while (firstNested > 0 && myCompletedFragmentStarts.get(firstNested - 1) >= start) {
+      firstNested--;
+    }
+    List<Object> nestedOwners = myCompletedFragmentOwners.subList(firstNested, myCompletedFragmentOwners.size());
+    Object[] nested = nestedOwners.toArray();
+    nestedOwners.clear();
+    myCompletedFragmentStarts.subList(firstNested, myCompletedFragmentStarts.size()).clear();
+
+    myRetainedFragments.put(owner, new RetainedFragment(commands, nested, version, dependencyVersion, myBuildCount));
+    fragmentCompleted(owner, start);
+  }
+
+  /**
+   * Appends the commands recorded for {@code owner} in the previous build if it was built from the same versions.
+   *
+   * @return true if the fragment was appended, false if it has to be built again
+   */
+  public boolean replayFragment(@NotNull Object owner, long version, long dependencyVersion) {
+    if (myRetainedFragments == null) {
+      return false;
+    }
+    RetainedFragment fragment = myRetainedFragments.get(owner);
+    if (fragment == null || fragment.myVersion != version || fragment.myDependencyVersion != dependencyVersion) {
+      return false;
+    }
+    int start = myCommands.size();
+    Collections.addAll(myCommands, fragment.myCommands);
+    markUsed(fragment);
+    fragmentCompleted(owner, start);
+    return true;
+  }
+
+  private void fragmentCompleted(@NotNull Object owner, int start) {
+    myCompletedFragmentOwners.add(owner);
+    myCompletedFragmentStarts.add(start);
+  }
+
+  /**
+   * Marks the fragment and the fragments nested in it as used in the current build, so that they are kept for the next one.
+   */
+  private void markUsed(@NotNull RetainedFragment fragment) {
+    fragment.myBuild = myBuildCount;
+    for (Object nestedOwner : fragment.myNestedOwners) {
+      RetainedFragment nested = myRetainedFragments.get(nestedOwner);
+      if (nested != null && nested.myBuild != myBuildCount) {
+        markUsed(nested);
+      }
+    }
+  }
+
+  private static class RetainedFragment {
+    @NotNull final DrawCommand[] myCommands;
+    @NotNull final Object[] myNestedOwners;
+    final long myVersion;
+    final long myDependencyVersion;
+    int myBuild;
+
+    RetainedFragment(@NotNull DrawCommand[] commands, @NotNull Object[] nestedOwners, long version, long dependencyVersion, int build) {
+      myCommands = commands;
+      myNestedOwners = nestedOwners;
+      myVersion = version;
+      myDependencyVersion = dependencyVersion;
+      myBuild = build;
+    }
   }
 
   public ArrayList<DrawCommand> getCommands() {
@@ -155,7 +155,7 @@ abstract public class AnchorTarget extends BaseTarget implements Notch.Provider
   public void setMouseHovered(boolean over) {
     if (over != mIsOver) {
       mIsOver = over;
-      myComponent.getScene().needsRebuildList();
+      myComponent.getScene().needsRebuildList(myComponent);
       myComponent.getScene().repaint();
     }
   }
@@ -172,6 +172,7 @@ import org.intellij.lang.annotations.JdkConstants.InputEventMask;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
 
 /**
  * Handles interactions for the ConstraintLayout
@@ -195,6 +196,8 @@ public class ConstraintLayoutHandler extends ViewGroupHandler implements Compone
   private final static String ADD_FLOW = "Add Flow";
 
   private static HashMap<String, Boolean> ourVisibilityFlags = new HashMap<>();
+  // Incremented every time one of the visibility flags changes, so the drawn decorations depending on them can be rebuilt
+  private static int ourVisualPropertiesVersion = 0;
 
   // This is used to efficiently test if they are horizontal or vertical.
   private static HashSet<String> ourHorizontalBarriers = new HashSet<>(Arrays.asList(GRAVITY_VALUE_TOP, GRAVITY_VALUE_BOTTOM));
@@ -742,6 +745,7 @@ public class ConstraintLayoutHandler extends ViewGroupHandler implements Compone
                             @NotNull List<NlComponent> selectedChildren,
                             boolean selected) {
       ourVisibilityFlags.put(mType, selected);
+      ourVisualPropertiesVersion++;
 
       PropertiesComponent.getInstance().setValue(mType, selected);
       ensureLayersAreShown(editor, 1000);
@@ -757,6 +761,14 @@ public class ConstraintLayoutHandler extends ViewGroupHandler implements Compone
     return selected;
   }
 
+  /**
+   * Returns a version number that changes every time one of the visual properties returned by {@link #getVisualProperty(String)}
+   * is toggled.
+   */
+  public static int getVisualPropertiesVersion() {
+    return ourVisualPropertiesVersion;
+  }
+
   /**
    * Used in testing
    */
@@ -764,6 +776,16 @@ public class ConstraintLayoutHandler extends ViewGroupHandler implements Compone
     ourVisibilityFlags.put(SHOW_CONSTRAINTS_PREF_KEY, true);
     ourVisibilityFlags.put(SHOW_MARGINS_PREF_KEY, true);
     ourVisibilityFlags.put(FADE_UNSELECTED_VIEWS, false);
+    ourVisualPropertiesVersion++;
+  }
+
+  /**
+   * Used in testing
+   */
+  @TestOnly
+  public static void setVisualProperty(@NotNull String prop, boolean value) {
+    ourVisibilityFlags.put(prop, value);
+    ourVisualPropertiesVersion++;
   }
 
   static class ControlIcon implements Icon {
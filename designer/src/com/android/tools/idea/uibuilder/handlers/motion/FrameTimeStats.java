@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.handlers.motion;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the duration of the last {@link #CAPACITY} frames of a MotionLayout animation, either while scrubbing the
+ * timeline or while playing it, to know if the preview keeps up with the display refresh rate.
+ */
+public final class FrameTimeStats {
+  static final int CAPACITY = 120;
+
+  private final long[] myFrameTimesNs = new long[CAPACITY];
+  private int myNext;
+  private int myCount;
+
+  public synchronized void record(long frameTimeNs) {
+    myFrameTimesNs[myNext] = frameTimeNs;
+    myNext = (myNext + 1) % CAPACITY;
+    myCount = Math.min(myCount + 1, CAPACITY);
+  }
+
+  public synchronized void reset() {
+    myNext = 0;
+    myCount = 0;
+  }
+
+  public synchronized int getFrameCount() {
+    return myCount;
+  }
+
+  public synchronized double getAverageMs() {
+    if (myCount == 0) {
+      return 0;
+    }
+    long total = 0;
+    for (int i = 0; i < myCount; i++) {
+      total += myFrameTimesNs[i];
+    }
+    return total / (myCount * 1E6);
+  }
+
+  /**
+   * Returns the frame time, in milliseconds, below which the given percentage of the recorded frames are.
+   */
+  public synchronized double getPercentileMs(double percentile) {
+    if (myCount == 0) {
+      return 0;
+    }
+    long[] sorted = Arrays.copyOf(myFrameTimesNs, myCount);
+    Arrays.sort(sorted);
+    int index = (int)Math.ceil(percentile / 100 * myCount) - 1;
+    return sorted[Math.max(0, Math.min(myCount - 1, index))] / 1E6;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format("%d frames, average %.1fms, 90th percentile %.1fms, max %.1fms",
+                         myCount, getAverageMs(), getPercentileMs(90), getPercentileMs(100));
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.handlers.motion;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Cache of the per view motion data of the current transition: the sampled animation path and the key frame positions.
+ * <p>
+ * Neither of them depends on the progress of the transition, so they only need to be read from layoutlib once per
+ * transition instead of on every frame while scrubbing or playing. Entries are tied to the view object and the size of
+ * the MotionLayout they were computed for, a new inflation or layout of a different size misses the cache. Changes to the
+ * transition or to the motion scene that do not re-inflate must call {@link #clear()}.
+ */
+final class MotionCache {
+  private static final class Entry {
+    final Object myView;
+    final int myLayoutWidth;
+    final int myLayoutHeight;
+
+    float[] myPath;
+    int myPathSize;
+    int myPathResult;
+
+    int[] myKeyFrameTypes;
+    float[] myKeyFramePositions;
+    int myKeyFrameCount;
+
+    Entry(@NotNull Object view, int layoutWidth, int layoutHeight) {
+      myView = view;
+      myLayoutWidth = layoutWidth;
+      myLayoutHeight = layoutHeight;
+    }
+  }
+
+  private final Map<Object, Entry> myEntries = new WeakHashMap<>();
+
+  @NotNull
+  private Entry getEntry(@NotNull Object key, @NotNull Object view, int layoutWidth, int layoutHeight) {
+    Entry entry = myEntries.get(key);
+    if (entry == null || entry.myView != view || entry.myLayoutWidth != layoutWidth || entry.myLayoutHeight != layoutHeight) {
+      entry = new Entry(view, layoutWidth, layoutHeight);
+      myEntries.put(key, entry);
+    }
+    return entry;
+  }
+
+  /**
+   * Copies the cached path of the given view, sampled with the given size, into path. Returns the value originally
+   * returned by layoutlib, or null if the path is not cached.
+   */
+  @Nullable
+  synchronized Integer getPath(@NotNull Object key, @NotNull Object view, int layoutWidth, int layoutHeight, float[] path, int size) {
+    Entry entry = getEntry(key, view, layoutWidth, layoutHeight);
+    if (entry.myPath == null || entry.myPathSize != size) {
+      return null;
+    }
+    System.arraycopy(entry.myPath, 0, path, 0, entry.myPath.length);
+    return entry.myPathResult;
+  }
+
+  synchronized void putPath(@NotNull Object key, @NotNull Object view, int layoutWidth, int layoutHeight, float[] path, int size, int result) {
+    Entry entry = getEntry(key, view, layoutWidth, layoutHeight);
+    entry.myPath = Arrays.copyOf(path, Math.min(path.length, size * 2));
+    entry.myPathSize = size;
+    entry.myPathResult = result;
+  }
+
+  /**
+   * Copies the cached key frame positions of the given view into type and pos. Returns the number of key frames, or null
+   * if they are not cached.
+   */
+  @Nullable
+  synchronized Integer getKeyFramePositions(@NotNull Object key, @NotNull Object view, int layoutWidth, int layoutHeight,
+                                            int[] type, float[] pos) {
+    Entry entry = getEntry(key, view, layoutWidth, layoutHeight);
+    if (entry.myKeyFrameTypes == null || entry.myKeyFrameTypes.length > type.length || entry.myKeyFramePositions.length > pos.length) {
+      return null;
+    }
+    System.arraycopy(entry.myKeyFrameTypes, 0, type, 0, entry.myKeyFrameTypes.length);
+    System.arraycopy(entry.myKeyFramePositions, 0, pos, 0, entry.myKeyFramePositions.length);
+    return entry.myKeyFrameCount;
+  }
+
+  synchronized void putKeyFramePositions(@NotNull Object key, @NotNull Object view, int layoutWidth, int layoutHeight,
+                                         int[] type, float[] pos, int count) {
+    Entry entry = getEntry(key, view, layoutWidth, layoutHeight);
+    int typeCount = Math.max(0, Math.min(count, type.length));
+    entry.myKeyFrameTypes = Arrays.copyOf(type, typeCount);
+    entry.myKeyFramePositions = Arrays.copyOf(pos, Math.min(typeCount * 2, pos.length));
+    entry.myKeyFrameCount = count;
+  }
+
+  synchronized void clear() {
+    myEntries.clear();
+  }
+}
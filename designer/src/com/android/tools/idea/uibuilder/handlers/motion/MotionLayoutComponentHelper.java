@@ -73,6 +73,10 @@ public final class MotionLayoutComponentHelper {
 
   private final Object myDesignTool;
   private final NlComponent myMotionLayoutComponent;
+  /** Paths and key frame positions of the current transition, they do not change while scrubbing or playing. */
+  private final MotionCache myMotionCache = new MotionCache();
+  /** Time taken by {@link #setProgress(float)}, that is, by every frame of the animation. */
+  private final FrameTimeStats myFrameTimeStats = new FrameTimeStats();
   private final boolean DEBUG = false;
   private static boolean mShowPaths = true;
 
@@ -139,6 +143,25 @@ public final class MotionLayoutComponentHelper {
     if (myDesignTool == null) {
       return -1;
     }
+    ViewInfo viewInfo = NlComponentHelperKt.getViewInfo(nlComponent);
+    Object view = viewInfo != null ? viewInfo.getViewObject() : null;
+    ViewInfo layoutInfo = NlComponentHelperKt.getViewInfo(myMotionLayoutComponent);
+    int layoutWidth = layoutInfo != null ? layoutInfo.getRight() - layoutInfo.getLeft() : 0;
+    int layoutHeight = layoutInfo != null ? layoutInfo.getBottom() - layoutInfo.getTop() : 0;
+    if (view != null) {
+      Integer cached = myMotionCache.getPath(nlComponent, view, layoutWidth, layoutHeight, path, size);
+      if (cached != null) {
+        return cached;
+      }
+    }
+    int result = computePath(nlComponent, path, size);
+    if (view != null && result > 0) {
+      myMotionCache.putPath(nlComponent, view, layoutWidth, layoutHeight, path, size, result);
+    }
+    return result;
+  }
+
+  private int computePath(NlComponent nlComponent, final float[] path, int size) {
     if (myGetAnimationPathMethod == null) {
       try {
 
@@ -366,6 +389,7 @@ public final class MotionLayoutComponentHelper {
   }
 
   public void setKeyframe(Object keyframe, String tag, Object value) {
+    myMotionCache.clear();
     if (myDesignTool == null) {
       return;
     }
@@ -404,6 +428,7 @@ public final class MotionLayoutComponentHelper {
   }
 
   public void setAttributes(int dpiValue, String constraintSetId, Object view, Object attributes) {
+    myMotionCache.clear();
     if (myDesignTool == null) {
       return;
     }
@@ -441,6 +466,7 @@ public final class MotionLayoutComponentHelper {
   }
 
   boolean setKeyframePosition(Object view, int position, int type, float x, float y) {
+    myMotionCache.clear();
     if (myDesignTool == null) {
       return false;
     }
@@ -528,6 +554,7 @@ public final class MotionLayoutComponentHelper {
     if (myDesignTool == null) {
       return false;
     }
+    long start = System.nanoTime();
     NlModel model = myMotionLayoutComponent.getModel();
     //model.notifyModified(NlModel.ChangeType.EDIT);
     if (!setTransitionPosition(value)) {
@@ -535,10 +562,20 @@ public final class MotionLayoutComponentHelper {
     }
     model.notifyLiveUpdate(false);
     refresh(myMotionLayoutComponent);
+    myFrameTimeStats.record(System.nanoTime() - start);
     return true;
   }
 
+  /**
+   * Returns the time taken by the last frames of the animation, see {@link #setProgress(float)}.
+   */
+  @NotNull
+  public FrameTimeStats getFrameTimeStats() {
+    return myFrameTimeStats;
+  }
+
   public void setTransition(String start, String end) {
+    myMotionCache.clear();
     if (myDesignTool == null) {
       return;
     }
@@ -583,6 +620,7 @@ public final class MotionLayoutComponentHelper {
   }
 
   public void setState(String state) {
+    myMotionCache.clear();
     if (myDesignTool == null) {
       return;
     }
@@ -1019,6 +1057,21 @@ public final class MotionLayoutComponentHelper {
     if (info == null || (info != null && info.getViewObject() == null)) {
       return -1;
     }
+    ViewInfo layoutInfo = NlComponentHelperKt.getViewInfo(myMotionLayoutComponent);
+    int layoutWidth = layoutInfo != null ? layoutInfo.getRight() - layoutInfo.getLeft() : 0;
+    int layoutHeight = layoutInfo != null ? layoutInfo.getBottom() - layoutInfo.getTop() : 0;
+    Integer cached = myMotionCache.getKeyFramePositions(component, info.getViewObject(), layoutWidth, layoutHeight, type, pos);
+    if (cached != null) {
+      return cached;
+    }
+    int count = computeKeyframePos(info, type, pos);
+    if (count >= 0) {
+      myMotionCache.putKeyFramePositions(component, info.getViewObject(), layoutWidth, layoutHeight, type, pos, count);
+    }
+    return count;
+  }
+
+  private int computeKeyframePos(@NotNull ViewInfo info, int[] type, float[] pos) {
 
     if (myGetKeyFramePositionsMethod == null) {
       try {
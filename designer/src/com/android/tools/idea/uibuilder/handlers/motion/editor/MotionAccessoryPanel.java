@@ -46,6 +46,7 @@ import com.android.tools.idea.uibuilder.surface.AccessoryPanel;
 import com.android.tools.idea.uibuilder.surface.NlDesignSurface;
 import com.google.common.collect.ImmutableList;
 import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.xml.XmlAttribute;
@@ -69,6 +70,7 @@ import org.jetbrains.annotations.Nullable;
  */
 public class MotionAccessoryPanel implements AccessoryPanelInterface, MotionLayoutInterface, MotionDesignSurfaceEdits {
   private static final boolean DEBUG = false;
+  private static final Logger LOG = Logger.getInstance(MotionAccessoryPanel.class);
   private static final boolean TEMP_HACK_FORCE_APPLY = false;
   private final Project myProject;
   private final NlDesignSurface myDesignSurface;
@@ -241,12 +243,16 @@ public class MotionAccessoryPanel implements AccessoryPanelInterface, MotionLayo
             surface.setAnimationScrubbing(true);
             //noinspection fallthrough
           case MOTION_PLAY: {
+            myMotionHelper.getFrameTimeStats().reset();
             LayoutlibSceneManager manager = surface.getSceneManager();
             manager.updateSceneView();
             manager.requestLayoutAndRender(false);
             surface.setRenderSynchronously(true);
           }  break;
           case MOTION_STOP: {
+            if (LOG.isDebugEnabled()) {
+              LOG.debug("Animation stopped: " + myMotionHelper.getFrameTimeStats());
+            }
             surface.setRenderSynchronously(false);
             surface.setAnimationScrubbing(false);
             LayoutlibSceneManager manager = surface.getSceneManager();
@@ -41,6 +41,8 @@ public class Display3D extends JPanel {
   Matrix myInvMatrix;
   boolean isImageInvalid = true;
   static final boolean mPerspective = false;
+  boolean myTiledRendering = true;
+  TiledRasterizer myTiledRasterizer;
 
   Vector<ActionListener> myViewChangeListener = new Vector<>();
 
@@ -151,17 +153,43 @@ public class Display3D extends JPanel {
       Arrays.fill(myZBuffer, Float.MAX_VALUE);
       Arrays.fill(rgbData, 0xFF000000);
 
+      rasterize(rgbData, w, h);
+
+      isImageInvalid = false;
+    }
+    return myImage;
+  }
+
+  /**
+   * Selects between the single threaded rasterizer and the tiled one, which renders tiles of the image in parallel
+   */
+  public void setTiledRendering(boolean tiled) {
+    myTiledRendering = tiled;
+    isImageInvalid = true;
+    repaint();
+  }
+
+  private void rasterize(int[] rgbData, int w, int h) {
+    if (myTiledRendering) {
+      if (myTiledRasterizer == null || myTiledRasterizer.getWidth() != w || myTiledRasterizer.getHeight() != h) {
+        myTiledRasterizer = new TiledRasterizer(w, h);
+      }
       if (mTriData.myTexture != null) {
-        Rasterize.toZBuff(myZBuffer, rgbData, w, h, myTransFormCache,
-                          mTriData.myTexture, mTriData.myTextureWidth, mTriData.myTextureHeight, myViewMatrix.m);
+        myTiledRasterizer.toZBuff(myZBuffer, rgbData, myTransFormCache,
+                                  mTriData.myTexture, mTriData.myTextureWidth, mTriData.myTextureHeight, myViewMatrix.m);
       }
       else { // run a simple render if no myTexture
-        Rasterize.simple(myZBuffer, rgbData, w, h, myTransFormCache);
+        myTiledRasterizer.simple(myZBuffer, rgbData, myTransFormCache);
       }
-
-      isImageInvalid = false;
+      return;
+    }
+    if (mTriData.myTexture != null) {
+      Rasterize.toZBuff(myZBuffer, rgbData, w, h, myTransFormCache,
+                        mTriData.myTexture, mTriData.myTextureWidth, mTriData.myTextureHeight, myViewMatrix.m);
+    }
+    else { // run a simple render if no myTexture
+      Rasterize.simple(myZBuffer, rgbData, w, h, myTransFormCache);
     }
-    return myImage;
   }
 
   public void setTriData(TriData data) {
@@ -215,13 +243,7 @@ public class Display3D extends JPanel {
       Arrays.fill(myZBuffer, Float.MAX_VALUE);
       Arrays.fill(rgbData, 0xFF000000);
 
-      if (mTriData.myTexture != null) {
-        Rasterize.toZBuff(myZBuffer, rgbData, w, h, myTransFormCache,
-                          mTriData.myTexture, mTriData.myTextureWidth, mTriData.myTextureHeight, myViewMatrix.m);
-      }
-      else { // run a simple render if no myTexture
-        Rasterize.simple(myZBuffer, rgbData, w, h, myTransFormCache);
-      }
+      rasterize(rgbData, w, h);
 
       isImageInvalid = false;
     }
@@ -267,7 +267,31 @@ public class Rasterize {
                                               float tx1, float ty1,
                                               float tx2, float ty2,
                                               float tx3, float ty3,
-                                              int[] texture, int tWidth, int tHeight, double[] matrix)
+                                              int[] texture, int tWidth, int tHeight, double[] matrix) {
+    render_perspectiveAffine(zbuff, rgb, w, h, fx1, fy1, fz1, fx2, fy2, fz2, fx3, fy3, fz3, tx1, ty1, tx2, ty2, tx3, ty3,
+                             texture, tWidth, tHeight, matrix, 0, 0, w, h);
+  }
+
+  /**
+   * Same as {@link #render_perspectiveAffine(float[], int[], int, int, float, float, float, float, float, float, float, float, float,
+   * float, float, float, float, float, float, int[], int, int, double[])}, but only writes the pixels of the clip rectangle, so that
+   * {@link TiledRasterizer} can render the tiles of one image concurrently. The edge functions are evaluated from the first pixel
+   * inside the clip rectangle, so the pixels inside it get exactly the same values as without clipping.
+   *
+   * @param clipX0 the first column to render
+   * @param clipY0 the first row to render
+   * @param clipX1 the column after the last one to render
+   * @param clipY1 the row after the last one to render
+   */
+  static void render_perspectiveAffine(float[] zbuff, int[] rgb, int w, int h,
+                                       float fx1, float fy1, float fz1,
+                                       float fx2, float fy2, float fz2,
+                                       float fx3, float fy3, float fz3,
+                                       float tx1, float ty1,
+                                       float tx2, float ty2,
+                                       float tx3, float ty3,
+                                       int[] texture, int tWidth, int tHeight, double[] matrix,
+                                       int clipX0, int clipY0, int clipX1, int clipY1)
 
   {
     if (((fx1 - fx2) * (fy3 - fy2) - (fy1 - fy2) * (fx3 - fx2)) < 0) {
@@ -376,17 +400,20 @@ public class Rasterize {
     int miny = (min(Y1, Y2, Y3) + 0xF) >> 4;
     int maxy = (max(Y1, Y2, Y3) + 0xF) >> 4;
 
-    if (miny < 0) {
-      miny = 0;
+    if (miny < clipY0) {
+      miny = clipY0;
     }
-    if (minx < 0) {
-      minx = 0;
+    if (minx < clipX0) {
+      minx = clipX0;
     }
-    if (maxx > w) {
-      maxx = w;
+    if (maxx > clipX1) {
+      maxx = clipX1;
     }
-    if (maxy > h) {
-      maxy = h;
+    if (maxy > clipY1) {
+      maxy = clipY1;
+    }
+    if (minx >= maxx || miny >= maxy) {
+      return;
     }
     int off = miny * w;
 
@@ -828,7 +855,27 @@ public class Rasterize {
                           float fx1, float fy1, float fz1,
                           float fx2, float fy2, float fz2,
                           float fx3, float fy3, float fz3,
-                          int color)
+                          int color) {
+    flat(zbuff, rgb, w, h, fx1, fy1, fz1, fx2, fy2, fz2, fx3, fy3, fz3, color, 0, 0, w, h);
+  }
+
+  /**
+   * Renders a triangle of a single color using the zbuffer, but only writes the pixels of the clip rectangle. This lets
+   * {@link TiledRasterizer} render the tiles of one image concurrently. The edge functions are evaluated from the first pixel inside the
+   * clip rectangle, so the pixels inside it get exactly the same values as with
+   * {@link #flat(float[], int[], int, int, float, float, float, float, float, float, float, float, float, int)}.
+   *
+   * @param color  the color of the triangle
+   * @param clipX0 the first column to render
+   * @param clipY0 the first row to render
+   * @param clipX1 the column after the last one to render
+   * @param clipY1 the row after the last one to render
+   */
+  static void flat(float[] zbuff, int[] rgb, int w, int h,
+                   float fx1, float fy1, float fz1,
+                   float fx2, float fy2, float fz2,
+                   float fx3, float fy3, float fz3,
+                   int color, int clipX0, int clipY0, int clipX1, int clipY1)
 
   {
     if (((fx1 - fx2) * (fy3 - fy2) - (fy1 - fy2) * (fx3 - fx2)) < 0) {
@@ -908,17 +955,20 @@ public class Rasterize {
     int miny = (min(Y1, Y2, Y3) + 0xF) >> 4;
     int maxy = (max(Y1, Y2, Y3) + 0xF) >> 4;
 
-    if (miny < 0) {
-      miny = 0;
+    if (miny < clipY0) {
+      miny = clipY0;
     }
-    if (minx < 0) {
-      minx = 0;
+    if (minx < clipX0) {
+      minx = clipX0;
     }
-    if (maxx > w) {
-      maxx = w;
+    if (maxx > clipX1) {
+      maxx = clipX1;
     }
-    if (maxy > h) {
-      maxy = h;
+    if (maxy > clipY1) {
+      maxy = clipY1;
+    }
+    if (minx >= maxx || miny >= maxy) {
+      return;
     }
     int off = miny * w;
 
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.layout3d;
+
+import java.util.stream.IntStream;
+
+/**
+ * Tiled version of the {@link Rasterize} entry points. Triangles are binned into screen space tiles
+ * using their bounding boxes, then the tiles are rendered in parallel. Every tile draws its triangles in
+ * the original order and with the same edge functions, so the result is identical to {@link Rasterize}.
+ */
+public class TiledRasterizer {
+  static final int TILE_SIZE = 64;
+
+  private final int myWidth;
+  private final int myHeight;
+  private final int myTilesX;
+  private final int myTilesY;
+  // Triangles of tile t are myTileTriangles[myTileStart[t]] .. myTileTriangles[myTileStart[t + 1] - 1]
+  private final int[] myTileStart;
+  private int[] myTileTriangles = new int[0];
+
+  public TiledRasterizer(int w, int h) {
+    myWidth = w;
+    myHeight = h;
+    myTilesX = (w + TILE_SIZE - 1) / TILE_SIZE;
+    myTilesY = (h + TILE_SIZE - 1) / TILE_SIZE;
+    myTileStart = new int[myTilesX * myTilesY + 1];
+  }
+
+  public int getWidth() {
+    return myWidth;
+  }
+
+  public int getHeight() {
+    return myHeight;
+  }
+
+  /**
+   * Tiled equivalent of {@link Rasterize#toZBuff(float[], int[], int, int, TriData, int[], int, int, double[])}
+   */
+  public void toZBuff(float[] zbuff, int[] rgb, TriData tri, int[] texture, int tWidth, int tHeight, double[] matrix) {
+    bin(tri);
+    renderTiles((x0, y0, x1, y1, i) -> {
+      int p1 = tri.myIndex[i];
+      int p2 = tri.myIndex[i + 1];
+      int p3 = tri.myIndex[i + 2];
+      int type = tri.mySurfaceType[i / 3];
+      if (type == 1) {
+        Rasterize.render_perspectiveAffine(zbuff, rgb, myWidth, myHeight,
+                                           tri.myVert[p1], tri.myVert[p1 + 1], tri.myVert[p1 + 2],
+                                           tri.myVert[p2], tri.myVert[p2 + 1], tri.myVert[p2 + 2],
+                                           tri.myVert[p3], tri.myVert[p3 + 1], tri.myVert[p3 + 2],
+                                           tri.myTexture_uv[p1], tri.myTexture_uv[p1 + 1],
+                                           tri.myTexture_uv[p2], tri.myTexture_uv[p2 + 1],
+                                           tri.myTexture_uv[p3], tri.myTexture_uv[p3 + 1],
+                                           texture, tWidth, tHeight, matrix,
+                                           x0, y0, x1, y1);
+      }
+      else {
+        Rasterize.flat(zbuff, rgb, myWidth, myHeight,
+                       tri.myVert[p1], tri.myVert[p1 + 1], tri.myVert[p1 + 2],
+                       tri.myVert[p2], tri.myVert[p2 + 1], tri.myVert[p2 + 2],
+                       tri.myVert[p3], tri.myVert[p3 + 1], tri.myVert[p3 + 2],
+                       (type == 0) ? Rasterize.BLUE : Rasterize.GRAY,
+                       x0, y0, x1, y1);
+      }
+    });
+  }
+
+  /**
+   * Tiled equivalent of {@link Rasterize#simple(float[], int[], int, int, TriData)}
+   */
+  public void simple(float[] zbuff, int[] rgb, TriData tri) {
+    bin(tri);
+    renderTiles((x0, y0, x1, y1, i) -> {
+      int p1 = tri.myIndex[i];
+      int p2 = tri.myIndex[i + 1];
+      int p3 = tri.myIndex[i + 2];
+      int type = (tri.mySurfaceType != null) ? tri.mySurfaceType[i / 3] : 0;
+      Rasterize.flat(zbuff, rgb, myWidth, myHeight,
+                     tri.myVert[p1], tri.myVert[p1 + 1], tri.myVert[p1 + 2],
+                     tri.myVert[p2], tri.myVert[p2 + 1], tri.myVert[p2 + 2],
+                     tri.myVert[p3], tri.myVert[p3 + 1], tri.myVert[p3 + 2],
+                     (type == 0) ? Rasterize.BLUE : Rasterize.GRAY,
+                     x0, y0, x1, y1);
+    });
+  }
+
+  private interface TriangleRenderer {
+    /**
+     * Draws the triangle starting at index i of {@link TriData#myIndex}, clipped to [x0, x1) x [y0, y1)
+     */
+    void render(int x0, int y0, int x1, int y1, int i);
+  }
+
+  private void renderTiles(TriangleRenderer renderer) {
+    IntStream.range(0, myTilesX * myTilesY).parallel().forEach(tile -> {
+      int x0 = (tile % myTilesX) * TILE_SIZE;
+      int y0 = (tile / myTilesX) * TILE_SIZE;
+      int x1 = Math.min(x0 + TILE_SIZE, myWidth);
+      int y1 = Math.min(y0 + TILE_SIZE, myHeight);
+      for (int t = myTileStart[tile]; t < myTileStart[tile + 1]; t++) {
+        renderer.render(x0, y0, x1, y1, myTileTriangles[t]);
+      }
+    });
+  }
+
+  /**
+   * Builds the list of triangles overlapping every tile, in two passes: count, then fill.
+   */
+  private void bin(TriData tri) {
+    int tileCount = myTilesX * myTilesY;
+    int[] bounds = new int[4];
+    int[] count = new int[tileCount + 1];
+    for (int i = 0; i < tri.myIndex.length; i += 3) {
+      if (tileBounds(tri, i, bounds)) {
+        for (int ty = bounds[1]; ty <= bounds[3]; ty++) {
+          for (int tx = bounds[0]; tx <= bounds[2]; tx++) {
+            count[ty * myTilesX + tx]++;
+          }
+        }
+      }
+    }
+    int total = 0;
+    for (int tile = 0; tile < tileCount; tile++) {
+      myTileStart[tile] = total;
+      total += count[tile];
+      count[tile] = myTileStart[tile];
+    }
+    myTileStart[tileCount] = total;
+    if (myTileTriangles.length < total) {
+      myTileTriangles = new int[total];
+    }
+    for (int i = 0; i < tri.myIndex.length; i += 3) {
+      if (tileBounds(tri, i, bounds)) {
+        for (int ty = bounds[1]; ty <= bounds[3]; ty++) {
+          for (int tx = bounds[0]; tx <= bounds[2]; tx++) {
+            myTileTriangles[count[ty * myTilesX + tx]++] = i;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Computes the range of tiles covered by the bounding box of a triangle, padded by a pixel to be
+   * conservative with the rounding of the rasterizer. Returns false if the triangle is off screen.
+   */
+  private boolean tileBounds(TriData tri, int i, int[] bounds) {
+    int p1 = tri.myIndex[i];
+    int p2 = tri.myIndex[i + 1];
+    int p3 = tri.myIndex[i + 2];
+    float minX = Math.min(tri.myVert[p1], Math.min(tri.myVert[p2], tri.myVert[p3]));
+    float maxX = Math.max(tri.myVert[p1], Math.max(tri.myVert[p2], tri.myVert[p3]));
+    float minY = Math.min(tri.myVert[p1 + 1], Math.min(tri.myVert[p2 + 1], tri.myVert[p3 + 1]));
+    float maxY = Math.max(tri.myVert[p1 + 1], Math.max(tri.myVert[p2 + 1], tri.myVert[p3 + 1]));
+    if (!(maxX >= 0 && maxY >= 0 && minX < myWidth && minY < myHeight)) {
+      // Also rejects NaN coordinates
+      return false;
+    }
+    bounds[0] = (int)Math.max(0, minX - 1) / TILE_SIZE;
+    bounds[1] = (int)Math.max(0, minY - 1) / TILE_SIZE;
+    bounds[2] = (int)Math.min(myWidth - 1, maxX + 1) / TILE_SIZE;
+    bounds[3] = (int)Math.min(myHeight - 1, maxY + 1) / TILE_SIZE;
+    return true;
+  }
+}
@@ -135,6 +135,14 @@ public class LayoutlibSceneManager extends SceneManager {
   @GuardedBy("myRenderingQueueLock")
   private MergingUpdateQueue myRenderingQueue;
   private static final int RENDER_DELAY_MS = 10;
+  /**
+   * Maximum delay used to merge the rendering requests when the renders are slow.
+   */
+  private static final int MAX_RENDER_DELAY_MS = 250;
+  /**
+   * Moving average of the render times, used to adapt the merging delay of the rendering queue. -1 until the first render.
+   */
+  private volatile long myAverageRenderTimeMs = -1;
   private RenderTask myRenderTask;
   // Protects all accesses to the myRenderTask reference. RenderTask calls to render and layout do not need to be protected
   // since RenderTask is able to handle those safely.
@@ -402,6 +410,15 @@ public class LayoutlibSceneManager extends SceneManager {
     return mySecondarySceneView;
   }
 
+  @NotNull
+  @Override
+  public List<SceneView> getSceneViews() {
+    if (mySecondarySceneView == null) {
+      return super.getSceneViews();
+    }
+    return ImmutableList.<SceneView>builder().addAll(super.getSceneViews()).add(mySecondarySceneView).build();
+  }
+
   @Override
   protected void updateFromComponent(SceneComponent sceneComponent) {
     super.updateFromComponent(sceneComponent);
@@ -540,9 +557,11 @@ public class LayoutlibSceneManager extends SceneManager {
     }
 
     // This update is low priority so the model updates take precedence
+    NlDiagnosticsManager.getWriteInstance(getDesignSurface()).recordUpdateQueued();
     getRenderingQueue().queue(new Update("model.render", LOW_PRIORITY) {
       @Override
       public void run() {
+        NlDiagnosticsManager.getWriteInstance(getDesignSurface()).recordUpdateExecuted();
         render(trigger);
       }
 
@@ -620,9 +639,11 @@ public class LayoutlibSceneManager extends SceneManager {
       }
     }
 
+    NlDiagnosticsManager.getWriteInstance(getDesignSurface()).recordUpdateQueued();
     getRenderingQueue().queue(new Update("model.update", HIGH_PRIORITY) {
       @Override
       public void run() {
+        NlDiagnosticsManager.getWriteInstance(getDesignSurface()).recordUpdateExecuted();
         NlModel model = getModel();
         Project project = model.getModule().getProject();
         if (!project.isOpen()) {
@@ -658,6 +679,29 @@ public class LayoutlibSceneManager extends SceneManager {
     }
   }
 
+  /**
+   * Returns the delay used to merge the rendering requests for the given average render time. While a render is running, new
+   * requests can not be displayed anyway so, for slow renders, waiting longer merges the bursts of edits (for example while typing or
+   * during a refactoring) into fewer renders. Fast renders keep the default delay so the preview stays responsive.
+   */
+  @VisibleForTesting
+  static int computeMergingDelay(long averageRenderTimeMs) {
+    return (int)Math.max(RENDER_DELAY_MS, Math.min(MAX_RENDER_DELAY_MS, averageRenderTimeMs / 2));
+  }
+
+  /**
+   * Updates the moving average of the render times with a new render and adapts the merging delay of the rendering queue.
+   */
+  private void updateMergingDelay(@NotNull DesignSurface surface, long renderTimeMs) {
+    long average = myAverageRenderTimeMs;
+    average = average < 0 ? renderTimeMs : (3 * average + renderTimeMs) / 4;
+    myAverageRenderTimeMs = average;
+
+    int delay = computeMergingDelay(average);
+    getRenderingQueue().setMergingTimeSpan(delay);
+    NlDiagnosticsManager.getWriteInstance(surface).recordQueueMergingDelay(delay);
+  }
+
   /**
    * Whether we should render just the viewport
    */
@@ -1026,6 +1070,7 @@ public class LayoutlibSceneManager extends SceneManager {
           }
           try {
             long renderTimeMs = System.currentTimeMillis() - renderStartTimeMs;
+            updateMergingDelay(surface, renderTimeMs);
             NlDiagnosticsManager.getWriteInstance(surface).recordRender(renderTimeMs,
                                                                         myRenderResult.getRenderedImage().getWidth() * myRenderResult.getRenderedImage().getHeight() * 4);
           }
@@ -29,12 +29,13 @@ import static com.android.tools.idea.uibuilder.handlers.constraint.ConstraintCom
  */
 public class ConstraintSet {
   private ArrayList<ConstrainedWidget> myWidgets;
+  private ArrayList<ConstrainedWidget> myMembers;
   private ScoutWidget myParentWidget;
   private double myProbability;
   private ArrayList<Chain> myChains;
   private ArrayList<Connection> myChainConnnections;
   private double myError;
-  private double connectionWeight = 5;
+  private static final double CONNECTION_WEIGHT = 5;
 
 
   /**
@@ -54,6 +55,28 @@ public class ConstraintSet {
       myWidgets.add(widget);
       myProbability += widget.getCost();
     }
+    myMembers = myWidgets;
+  }
+
+  /**
+   * Builds a constraint set for a subset of the widgets, that is closed under connections
+   * (none of the members connects to a widget outside of the subset).
+   *
+   * @param widgets constrained widgets indexed by widget, only the entries of the members are used
+   * @param members indices of the widgets that are part of this set
+   * @param parent  parent scout widget
+   */
+  ConstraintSet(ConstrainedWidget[] widgets, int[] members, ScoutWidget parent) {
+    myWidgets = new ArrayList<ConstrainedWidget>(Arrays.asList(widgets));
+    myMembers = new ArrayList<ConstrainedWidget>(members.length);
+    myChainConnnections = new ArrayList<Connection>();
+    myProbability = 0;
+    myParentWidget = parent;
+    for (int member : members) {
+      ConstrainedWidget widget = widgets[member];
+      myMembers.add(widget);
+      myProbability += widget.getCost();
+    }
   }
 
   /**
@@ -102,6 +125,7 @@ public class ConstraintSet {
                                    wid);
       myWidgets.add(temp);
     }
+    myMembers = myWidgets;
   }
 
   /**
@@ -151,12 +175,12 @@ public class ConstraintSet {
    */
   boolean hasCycles() {
     boolean hasCycles = false;
-    ArrayList<ConstrainedWidget> remaining = new ArrayList<ConstrainedWidget>(myWidgets);
+    ArrayList<ConstrainedWidget> remaining = new ArrayList<ConstrainedWidget>(myMembers);
     Stack<ConstrainedWidget> visited = new Stack<ConstrainedWidget>();
     while (remaining.size() != 0 && !hasCycles) {
       hasCycles |= searchCycles(remaining, visited, remaining.get(0), Direction.ORIENTATION_VERTICAL);
     }
-    remaining.addAll(myWidgets);
+    remaining.addAll(myMembers);
     visited.empty();
     while (remaining.size() != 0 && !hasCycles) {
       hasCycles |= searchCycles(remaining, visited, remaining.get(0), Direction.ORIENTATION_HORIZONTAL);
@@ -256,7 +280,7 @@ public class ConstraintSet {
    * @return
    */
   public boolean isValidCentered() {
-    for (ConstrainedWidget wid : myWidgets) {
+    for (ConstrainedWidget wid : myMembers) {
       for (Direction anchor : Direction.getAllDirections()) {
         // If there's a backwards connection, there needs to be an
         // opposite backwards connection to the same widget
@@ -319,7 +343,7 @@ public class ConstraintSet {
       error[chain.orientation()] += chain.totalError();
     }
 
-    for (ConstrainedWidget wid : myWidgets) {
+    for (ConstrainedWidget wid : myMembers) {
       // Simple margin connection (vertical)
       if (!(wid.getConnection(Direction.TOP).isConnected() && wid.getConnection(Direction.BOTTOM).isConnected())) {
         error[Direction.ORIENTATION_VERTICAL] += Math.abs(wid.getConnection(Direction.TOP).getMargin() +
@@ -348,12 +372,31 @@ public class ConstraintSet {
     }
 
     double connections = 0;
-    for (ConstrainedWidget widget : myWidgets) {
+    for (ConstrainedWidget widget : myMembers) {
       connections += widget.numberOfConnections();
     }
 
     myError = Arrays.stream(error).sum();
-    myError += connectionWeight * connections;
+    myError += CONNECTION_WEIGHT * connections;
+  }
+
+  /**
+   * Returns the part of the error computed by {@link #calculateError()} that only depends on the given widget:
+   * the weight of its connections and the margins in the orientations where it isn't centered. Chains and centered
+   * connections can only add to it, so the sum over all the widgets of a set is a lower bound of the error of the set.
+   */
+  static double errorLowerBound(ConstrainedWidget wid) {
+    if (wid.getScoutWidget().isGuideline()) {
+      return 0;
+    }
+    double error = CONNECTION_WEIGHT * wid.numberOfConnections();
+    if (!(wid.getConnection(Direction.TOP).isConnected() && wid.getConnection(Direction.BOTTOM).isConnected())) {
+      error += Math.abs(wid.getConnection(Direction.TOP).getMargin() + wid.getConnection(Direction.BOTTOM).getMargin());
+    }
+    if (!(wid.getConnection(Direction.LEFT).isConnected() && wid.getConnection(Direction.RIGHT).isConnected())) {
+      error += Math.abs(wid.getConnection(Direction.LEFT).getMargin() + wid.getConnection(Direction.RIGHT).getMargin());
+    }
+    return error;
   }
 
   /**
@@ -366,7 +409,7 @@ public class ConstraintSet {
       return;
     }
     // Find start of chains
-    for (ConstrainedWidget wid : myWidgets) {
+    for (ConstrainedWidget wid : myMembers) {
       if (!myChainConnnections.contains(wid.getConnection(Direction.LEFT)) &&
           myChainConnnections.contains(wid.getConnection(Direction.RIGHT))) {
         Chain hChainStart = new Chain(Direction.ORIENTATION_HORIZONTAL);
@@ -434,6 +477,10 @@ public class ConstraintSet {
                                              newConnection.destDirection().ordinal(),
                                              newConnection.getAbsoluteMargin());
         }
+        else if (!wid.getConnection(dir).isConnected()) {
+          // Left unconstrained, no valid connection was found for this widget
+          continue;
+        }
         else {
           // Centered connection
           if (!myChainConnnections.contains(wid.getConnection(dir)) &&
@@ -16,21 +16,43 @@
 
 package com.android.tools.idea.uibuilder.scout;
 
+import com.google.common.annotations.VisibleForTesting;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Generates the list of valid constraint sets for a given list of widgets and returns
  * the best
+ * <p>
+ * The widgets are split into clusters that can't be connected to each other, and the best set of every cluster
+ * is searched independently on the fork-join common pool. Each search is a depth-first branch and bound, where
+ * {@link ConstraintSet#errorLowerBound(ConstrainedWidget)} bounds the error of the widgets that haven't been
+ * constrained yet. If no valid set is found in time, a greedy pass starting from the connections to the parent is
+ * used instead.
  */
 
 public class ConstraintSetGenerator {
 
+  /**
+   * Time after which the searches return the best set they found so far.
+   */
+  private static final long TIME_BUDGET_MS = 300;
+
+  /**
+   * Time after which a search that didn't find any valid set gives up and falls back to the greedy pass.
+   */
+  private static final long MAX_TIME_MS = 2000;
+
+  private long myTimeBudgetMs = TIME_BUDGET_MS;
+  private long myMaxTimeMs = MAX_TIME_MS;
+
   private int myNumberOfWidgets;
   private ScoutWidget[] myWidgetRecs;
   private ArrayList<WidgetPossibleConnections> myConnectionList;
   private ArrayList<ArrayList<ConstrainedWidget>> myValidWidgets;
-  private ArrayList<ConstraintSet> myConstraintSets;
+  private double[][] myLowerBounds;
   public int myParentWidth = 1000;
   public int myParentHeight = 900;
 
@@ -40,89 +62,122 @@ public class ConstraintSetGenerator {
   }
 
   /**
-   * Class to generate all the combinations of length myWidgetNumber
-   * in a prioritized order
-   * For position i, the maximum value is myMaxPhases[i]
+   * Searches the best constraint set of a cluster of widgets. Once the time budget is exhausted,
+   * the search stops and keeps the best set found so far.
    */
-  private class CombinationGenerator {
-    private ArrayList<int[]> myGenerated;
-    private int[] myMaxPhases;
-    private int myPhase;
-    private int myWidgetNumber;
-    private int myCurrent;
-
-    public CombinationGenerator(int widgetNumber, int[] maxPhases) {
-      myPhase = 1;
-      myWidgetNumber = widgetNumber;
-      myCurrent = 0;
-      myMaxPhases = maxPhases;
-      generateFirstPhase();
-    }
-
-    private void generateFirstPhase() {
-      myGenerated = new ArrayList<>();
-      myGenerated.add(new int[myWidgetNumber]);
-      while (true) {
-        int[] tempComb = myGenerated.get(myGenerated.size() - 1).clone();
-        boolean carry = true;
-        int pos = 0;
-        while (carry) {
-          if (pos == myWidgetNumber) {
-            break;
-          }
-          if (tempComb[pos] == 1) {
-            tempComb[pos] = 0;
-            pos++;
-          }
-          else if (myMaxPhases[pos] != 1) {
-            tempComb[pos] = 1;
-            carry = false;
-          }
-        }
-        if (carry == true) {
+  private class ClusterSearch extends RecursiveAction {
+    private final int[] myMembers;
+    private final long myDeadline;
+    private final long myMaxDeadline;
+    private final ConstrainedWidget[] myWidgets;
+    private final int[] myChoice;
+    private final double[] myRemainingBound;
+    private int[] myBest;
+    private double myBestError = Double.POSITIVE_INFINITY;
+    private boolean myTimedOut;
+
+    ClusterSearch(int[] members, long startTime) {
+      myMembers = members;
+      myDeadline = startTime + myTimeBudgetMs;
+      myMaxDeadline = startTime + myMaxTimeMs;
+      myWidgets = new ConstrainedWidget[myNumberOfWidgets];
+      myChoice = new int[members.length];
+      // Lower bound of the error of the members from a position onwards, using their best candidates
+      myRemainingBound = new double[members.length + 1];
+      for (int i = members.length - 1; i >= 0; i--) {
+        myRemainingBound[i] = myRemainingBound[i + 1] + myLowerBounds[members[i]][0];
+      }
+    }
+
+    @Override
+    protected void compute() {
+      search(0, 0);
+      if (myBest == null) {
+        greedySearch();
+      }
+    }
+
+    private void search(int position, double bound) {
+      if (position == myMembers.length) {
+        evaluate();
+        return;
+      }
+      // Pruned branches may not reach any complete set for a long time, so the time is checked on every step
+      checkDeadline();
+      int widget = myMembers[position];
+      ArrayList<ConstrainedWidget> candidates = myValidWidgets.get(widget);
+      double[] bounds = myLowerBounds[widget];
+      for (int i = 0; i < candidates.size() && !myTimedOut; i++) {
+        // Candidates are sorted by lower bound, none of the next ones can do better either
+        if (bound + bounds[i] + myRemainingBound[position + 1] >= myBestError) {
           break;
         }
-        myGenerated.add(tempComb);
+        myChoice[position] = i;
+        myWidgets[widget] = candidates.get(i);
+        search(position + 1, bound + bounds[i]);
       }
     }
 
-    public int[] nextPhasedCombination() {
-      if (myCurrent > myGenerated.size() - 1) {
-        generateNewPhase();
+    private void evaluate() {
+      ConstraintSet set = new ConstraintSet(myWidgets, myMembers, myWidgetRecs[0]);
+      if (set.validate()) {
+        set.calculateError();
+        if (set.error() < myBestError) {
+          myBestError = set.error();
+          myBest = myChoice.clone();
+        }
       }
-      int[] comb = myGenerated.size() > 0 ? myGenerated.get(myCurrent) : null;
-      myCurrent++;
-      return comb;
+      checkDeadline();
     }
 
-    public void generateNewPhase() {
-      myPhase++;
-      ArrayList<int[]> newGen = new ArrayList<>(myGenerated);
-      ArrayList<int[]> aux = new ArrayList<>();
-      for (int i = 0; i < myWidgetNumber; i++) {
-        if (myMaxPhases[i] <= myPhase) {
-          continue;
+    private void checkDeadline() {
+      myTimedOut = System.currentTimeMillis() > (myBest != null ? myDeadline : myMaxDeadline);
+    }
+
+    /**
+     * Starts from the cheapest candidates that only connect to the parent, which can't form cycles, and then replaces
+     * the candidate of every member in turn by the cheapest one that keeps the set valid, for another time budget.
+     */
+    private void greedySearch() {
+      int[] choice = new int[myMembers.length];
+      for (int position = 0; position < myMembers.length; position++) {
+        int widget = myMembers[position];
+        ArrayList<ConstrainedWidget> candidates = myValidWidgets.get(widget);
+        for (int i = 0; i < candidates.size(); i++) {
+          if (isParentOnly(candidates.get(i))) {
+            choice[position] = i;
+            break;
+          }
         }
-        for (int[] existing : newGen) {
-          int[] temp = existing.clone();
-          temp[i] = myPhase;
-          if (!aux.stream().anyMatch(
-            p -> Arrays.equals(p, temp))) {
-            aux.add(temp);
+        myWidgets[widget] = candidates.get(choice[position]);
+      }
+
+      long deadline = System.currentTimeMillis() + myTimeBudgetMs;
+      for (int position = 0; position < myMembers.length; position++) {
+        int widget = myMembers[position];
+        ArrayList<ConstrainedWidget> candidates = myValidWidgets.get(widget);
+        for (int i = 0; i < choice[position] && System.currentTimeMillis() <= deadline; i++) {
+          myWidgets[widget] = candidates.get(i);
+          if (new ConstraintSet(myWidgets, myMembers, myWidgetRecs[0]).validate()) {
+            choice[position] = i;
+            break;
           }
         }
-        newGen.addAll(aux);
-        aux.clear();
+        myWidgets[widget] = candidates.get(choice[position]);
+      }
+      myBest = choice;
+    }
+
+    void fillCombination(int[] combination) {
+      for (int i = 0; i < myMembers.length; i++) {
+        combination[myMembers[i]] = myBest[i];
       }
-      newGen.subList(0, myGenerated.size()).clear();
-      myGenerated = newGen;
-      myCurrent = 0;
     }
   }
 
   /**
    * For every widget it generates the list of possible valid connection and
-   * then generates all valid constraint sets.
+   * then searches the best valid constraint set.
    *
    * @return best constraint set
    */
@@ -137,19 +192,35 @@ public class ConstraintSetGenerator {
     }
 
     this.myValidWidgets = new ArrayList<ArrayList<ConstrainedWidget>>();
+    this.myLowerBounds = new double[myNumberOfWidgets][];
     ArrayList<ConstrainedWidget> tempValid;
     for (WidgetPossibleConnections widget : this.myConnectionList) {
       tempValid = getValidConnectionCombinations(widget);
+      if (tempValid.isEmpty()) {
+        // The existing connections of the widget don't allow any valid bounded form, leave it unconstrained
+        tempValid.add(createUnconstrained(widget.getWidget()));
+      }
       tempValid.sort((a, b) -> b.compareTo(a));
+      // Stable sort, candidates with the same bound stay sorted by cost
+      tempValid.sort(Comparator.comparingDouble(ConstraintSet::errorLowerBound));
+      myLowerBounds[myValidWidgets.size()] = tempValid.stream().mapToDouble(ConstraintSet::errorLowerBound).toArray();
       myValidWidgets.add(tempValid);
     }
 
-    generateConstraintSets();
-    for (ConstraintSet set : myConstraintSets) {
-      set.calculateError();
-    }
-    myConstraintSets.sort((a, b) -> b.compareTo(a));
-    return myConstraintSets.get(0);
+    int[] combination = generateConstraintSet();
+    ConstraintSet set = new ConstraintSet(combination, myValidWidgets, myWidgetRecs[0]);
+    set.validate();
+    set.calculateError();
+    return set;
+  }
+
+  /**
+   * Overrides the time budgets of the search, see {@link #TIME_BUDGET_MS} and {@link #MAX_TIME_MS}.
+   */
+  @VisibleForTesting
+  void setTimeBudget(long timeBudgetMs, long maxTimeMs) {
+    myTimeBudgetMs = timeBudgetMs;
+    myMaxTimeMs = maxTimeMs;
   }
 
   /**
@@ -162,42 +233,105 @@ public class ConstraintSetGenerator {
   }
 
   /**
-   * Gets the valid bounded widget forms and generates all valid constrained sets
-   * that don't generate loops. Returns the one with the smallest margin sum.
+   * Searches the valid bounded widget forms of every independent cluster of widgets in parallel
+   * and returns the combination that doesn't generate loops and has the smallest error.
    */
-  void generateConstraintSets() {
-    myConstraintSets = new ArrayList<ConstraintSet>();
+  int[] generateConstraintSet() {
+    long startTime = System.currentTimeMillis();
+    ArrayList<int[]> clusters = findIndependentClusters();
+    ClusterSearch[] searches = new ClusterSearch[clusters.size()];
+    for (int i = 0; i < searches.length; i++) {
+      searches[i] = new ClusterSearch(clusters.get(i), startTime);
+    }
+    ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+      @Override
+      protected void compute() {
+        invokeAll(searches);
+      }
+    });
 
-    int[] minValid = new int[myNumberOfWidgets];
-    double totalCombinations = 1;
-    for (int i = 0; i < myNumberOfWidgets; i++) {
-      totalCombinations *= myValidWidgets.get(i).size();
-      minValid[i] = myValidWidgets.get(i).size();
+    int[] combination = new int[myNumberOfWidgets];
+    for (ClusterSearch search : searches) {
+      search.fillCombination(combination);
     }
+    return combination;
+  }
 
-    CombinationGenerator gen = new CombinationGenerator(myNumberOfWidgets, minValid);
+  /**
+   * Groups the widgets that may be connected to each other by any of their valid bounded forms.
+   * Loops and chains can only happen within a group, so every group can be solved on its own.
+   */
+  ArrayList<int[]> findIndependentClusters() {
+    int[] parent = new int[myNumberOfWidgets];
+    for (int i = 0; i < myNumberOfWidgets; i++) {
+      parent[i] = i;
+    }
+    for (int i = 0; i < myNumberOfWidgets; i++) {
+      for (ConstrainedWidget candidate : myValidWidgets.get(i)) {
+        if (candidate.getScoutWidget().isGuideline()) {
+          continue;
+        }
+        for (Direction dir : Direction.getAllDirections()) {
+          int dest = candidate.getConnection(dir).destWidget();
+          if (dest >= 0) {
+            parent[findRoot(parent, i)] = findRoot(parent, dest);
+          }
+        }
+      }
+    }
 
-    long startTime = System.currentTimeMillis();
-    long totalTime = 0;
-    double explored = 0;
-
-    int[] combination = gen.nextPhasedCombination();
-    ArrayList<ConstraintSet> generated = new ArrayList<>();
-    while (combination != null) {
-      generated.add(new ConstraintSet(combination, myValidWidgets, myWidgetRecs[0]));
-      totalTime = System.currentTimeMillis() - startTime;
-      if (totalTime > 2000) {
-        break;
+    int[] clusterIndex = new int[myNumberOfWidgets];
+    int[] clusterSize = new int[myNumberOfWidgets];
+    int clusterCount = 0;
+    for (int i = 0; i < myNumberOfWidgets; i++) {
+      int root = findRoot(parent, i);
+      if (root == i) {
+        clusterIndex[i] = clusterCount++;
       }
-      combination = gen.nextPhasedCombination();
     }
-    explored = generated.size() / totalCombinations;
-    System.out.println("Percentage of combinations explored: " + Double.toString(explored));
-    for (ConstraintSet tempSet : generated) {
-      if (tempSet.validate()) {
-        myConstraintSets.add(tempSet);
+    for (int i = 0; i < myNumberOfWidgets; i++) {
+      clusterSize[clusterIndex[findRoot(parent, i)]]++;
+    }
+    ArrayList<int[]> clusters = new ArrayList<>(clusterCount);
+    for (int i = 0; i < clusterCount; i++) {
+      clusters.add(new int[clusterSize[i]]);
+      clusterSize[i] = 0;
+    }
+    for (int i = 0; i < myNumberOfWidgets; i++) {
+      int cluster = clusterIndex[findRoot(parent, i)];
+      clusters.get(cluster)[clusterSize[cluster]++] = i;
+    }
+    return clusters;
+  }
+
+  private static boolean isParentOnly(ConstrainedWidget candidate) {
+    if (candidate.getScoutWidget().isGuideline()) {
+      return true;
+    }
+    for (Direction dir : Direction.getAllDirections()) {
+      Connection connection = candidate.getConnection(dir);
+      if (connection.isConnected() && !connection.isParentConnection()) {
+        return false;
       }
     }
+    return true;
+  }
+
+  private static ConstrainedWidget createUnconstrained(ScoutWidget widget) {
+    return new ConstrainedWidget(new Connection(Connection.NO_CONNECTION, Direction.TOP, Direction.TOP, null),
+                                 new Connection(Connection.NO_CONNECTION, Direction.BOTTOM, Direction.BOTTOM, null),
+                                 new Connection(Connection.NO_CONNECTION, Direction.RIGHT, Direction.RIGHT, null),
+                                 new Connection(Connection.NO_CONNECTION, Direction.LEFT, Direction.LEFT, null),
+                                 new Connection(Connection.NO_CONNECTION, Direction.BASELINE, Direction.BASELINE, null),
+                                 widget);
+  }
+
+  private static int findRoot(int[] parent, int widget) {
+    while (parent[widget] != widget) {
+      parent[widget] = parent[parent[widget]];
+      widget = parent[widget];
+    }
+    return widget;
   }
 
   /**
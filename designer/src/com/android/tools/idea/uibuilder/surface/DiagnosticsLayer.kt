@@ -78,6 +78,11 @@ class DiagnosticsLayer(val surface: DesignSurface) : Layer() {
       | 90% Render    ${PCT_FORMAT.format(diagnostics.renderTime(90))}ms
       | Last render   ${PCT_FORMAT.format(lastRenderMs)}ms / ${diagnostics.lastRenderImageSize() / MB}MB
       |
+      |Rendering queue
+      | Queued        ${diagnostics.queuedUpdates()}
+      | Executed      ${diagnostics.executedUpdates()}
+      | Merge delay   ${diagnostics.queueMergingDelay()}ms
+      |
       |Image pool
       | Allocated     ${(poolStats?.totalBytesAllocated() ?: -1) / MB}MB
       | In use        ${(poolStats?.totalBytesInUse() ?: -1)  / MB}MB
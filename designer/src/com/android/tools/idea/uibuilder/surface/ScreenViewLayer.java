@@ -20,7 +20,6 @@ import com.android.tools.idea.common.model.NlModel;
 import com.android.tools.idea.common.surface.DesignSurface;
 import com.android.tools.idea.common.surface.Layer;
 import com.android.tools.idea.rendering.RenderResult;
-import com.android.tools.idea.rendering.imagepool.ImagePool;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableMap;
 import com.intellij.openapi.diagnostic.Logger;
@@ -184,7 +183,7 @@ public class ScreenViewLayer extends Layer {
     //noinspection FloatingPointEquality
     if (drawNewImg || currentScale != myLastScale || !myScreenViewVisibleRect.equals(myCachedScreenViewDisplayRect)) {
       if (myLastRenderResult != null && myLastRenderResult.hasImage()) {
-        BufferedImage renderedImage = myLastRenderResult.getRenderedImage().getCopy();
+        BufferedImage renderedImage = getRenderedImage(myLastRenderResult);
         if (renderedImage != null) {
           int resultImageWidth = renderedImage.getWidth();
           int resultImageHeight = renderedImage.getHeight();
@@ -199,7 +198,7 @@ public class ScreenViewLayer extends Layer {
             // result image to make it fit in the ScreenView and we use a higher quality (but slow) process. We will issue a request to obtain
             // the high quality version but paint the low quality version below. Once it's ready, we'll repaint.
 
-            requestHighQualityScaledImage(ScaleContext.create(g));
+            requestHighQualityScaledImage(renderedImage, ScaleContext.create(g));
           }
 
           cachedVisibleImage = getPreviewImage(g.getDeviceConfiguration(), renderedImage,
@@ -222,6 +221,15 @@ public class ScreenViewLayer extends Layer {
     g.dispose();
   }
 
+  /**
+   * Returns the image to paint for the given {@link RenderResult}. By default, this is a copy of the rendered image. The returned image
+   * is only read, never modified.
+   */
+  @Nullable
+  protected BufferedImage getRenderedImage(@NotNull RenderResult result) {
+    return result.getRenderedImage().getCopy();
+  }
+
   protected void setLastRenderResult(@Nullable RenderResult result) {
     myLastRenderResult = result;
   }
@@ -232,7 +240,7 @@ public class ScreenViewLayer extends Layer {
    * @param renderResult The renderResult from {@link NlModel#getRenderResult()}
    * @return false if renderResult is null or the same as the previous one or if no image is available, true otherwise
    */
-  private boolean newRenderImageAvailable(@Nullable RenderResult renderResult) {
+  protected boolean newRenderImageAvailable(@Nullable RenderResult renderResult) {
     return renderResult != null && renderResult.hasImage() && renderResult != myLastRenderResult;
   }
 
@@ -255,15 +263,11 @@ public class ScreenViewLayer extends Layer {
    *    delay:      = == ====--->
    *                           | actual call to {@link RescaleRunnable#run()}
    * </pre>
+   * @param image the image being painted, of the size of the rendered image
    * @param ctx ScaleContext used to get the scaling of the physical screen this is displayed on.
    *            This is to support HiDPI screens with various scalings.
    */
-  private void requestHighQualityScaledImage(@NotNull ScaleContext ctx) {
-    if (myLastRenderResult == null) {
-      return;
-    }
-
-    ImagePool.Image image = myLastRenderResult.getRenderedImage();
+  private void requestHighQualityScaledImage(@NotNull BufferedImage image, @NotNull ScaleContext ctx) {
     // Obtain the factors to convert from screen view coordinates to our result image coordinates
     double xScaleFactor = (double)image.getWidth() / myScreenViewSize.width;
     double yScaleFactor = (double)image.getHeight() / myScreenViewSize.height;
@@ -288,12 +292,7 @@ public class ScreenViewLayer extends Layer {
       return;
     }
 
-    BufferedImage imageCopy = image.getCopy(sx, sy, sw, sh);
-    if (imageCopy == null) {
-      return;
-    }
-
-    myRescaleRunnable.setSource(imageCopy, xScaleFactor, yScaleFactor, ctx);
+    myRescaleRunnable.setSource(image.getSubimage(sx, sy, sw, sh), xScaleFactor, yScaleFactor, ctx);
     try {
       myScheduledFuture = myScheduledExecutorService.schedule(myRescaleRunnable, REQUEST_SCALE_DEBOUNCE_TIME_IN_MS, TimeUnit.MILLISECONDS);
     }
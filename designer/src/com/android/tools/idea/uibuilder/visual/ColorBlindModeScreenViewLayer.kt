@@ -21,38 +21,84 @@ import com.android.tools.idea.uibuilder.surface.ScreenViewLayer
 import com.android.tools.idea.uibuilder.visual.colorblindmode.ColorBlindMode
 import com.android.tools.idea.uibuilder.visual.colorblindmode.ColorConverter
 import com.intellij.openapi.util.Disposer
+import com.intellij.util.concurrency.AppExecutorUtil
+import com.intellij.util.ui.UIUtil
+import java.awt.image.BufferedImage
+
+/**
+ * Executor shared by all the color blind layers. Each mode is converted in parallel, up to the number of available cores.
+ */
+private val conversionExecutor = AppExecutorUtil.createBoundedApplicationPoolExecutor("ColorBlindModeConverter",
+                                                                                      Runtime.getRuntime().availableProcessors())
 
 /**
  * Screen view layer that can override the results from the layoutlib to simulate different
  * color blind modes.
  *
+ * The rendered image is copied in the UI thread when a new render result is available, and the copy is converted in a background
+ * thread. The rendered image itself is never modified. Until the conversion is done, the layer keeps painting the previous converted
+ * image so the original colors are never displayed.
+ *
  * @param mode enum that represents the different color blind mode to simulate.
  */
-class ColorBlindModeScreenViewLayer(screenView: ScreenView, val mode: ColorBlindMode) :
+class ColorBlindModeScreenViewLayer(private val screenView: ScreenView, val mode: ColorBlindMode) :
   ScreenViewLayer(screenView) {
 
   private val colorConverter = ColorConverter(mode)
+  /** Last [RenderResult] whose image has been converted. Only accessed from the UI thread. */
+  private var convertedResult: RenderResult? = null
+  /** Converted copy of the image of [convertedResult]. Only accessed from the UI thread. */
+  private var convertedImage: BufferedImage? = null
+  /** [RenderResult] being converted in the background, if any. Only accessed from the UI thread. */
+  private var pendingResult: RenderResult? = null
+
   init {
     Disposer.register(this, colorConverter)
   }
 
-  override fun setLastRenderResult(result: RenderResult?) {
-    super.setLastRenderResult(result)
+  override fun newRenderImageAvailable(renderResult: RenderResult?): Boolean {
+    if (renderResult == null || !super.newRenderImageAvailable(renderResult)) {
+      return false
+    }
+    if (mode == ColorBlindMode.NONE || renderResult === convertedResult) {
+      // Displaying the original image, or the image has already been converted.
+      return true
+    }
+    if (renderResult !== pendingResult) {
+      // Copy the image now, the result might be disposed before the conversion runs
+      val copy = renderResult.renderedImage.copy ?: return false
+      pendingResult = renderResult
+      conversionExecutor.execute { convert(renderResult, copy) }
+    }
+    return false
+  }
 
-    if (mode == ColorBlindMode.NONE) {
-      // Displaying the original image. No need to apply the simulation.
+  private fun convert(result: RenderResult, image: BufferedImage) {
+    if (Disposer.isDisposed(this)) {
       return
     }
-
     colorConverter.init()
-    val original = result?.renderedImage ?: return
-    val copied = original.copy ?: return
-    colorConverter.convert(copied, copied)
-
-    original.paint{ g2D ->
-      val w = original.width
-      val h = original.height
-      g2D.drawImage(copied, 0, 0, w, h, 0, 0, w,  h, null)
+    colorConverter.convert(image, image)
+
+    UIUtil.invokeLaterIfNeeded {
+      if (pendingResult === result) {
+        pendingResult = null
+        convertedResult = result
+        convertedImage = image
+        screenView.surface.repaint()
+      }
+    }
+  }
+
+  override fun getRenderedImage(result: RenderResult): BufferedImage? =
+    if (result === convertedResult) convertedImage else super.getRenderedImage(result)
+
+  override fun setLastRenderResult(result: RenderResult?) {
+    super.setLastRenderResult(result)
+    if (result == null) {
+      convertedResult = null
+      convertedImage = null
+      pendingResult = null
     }
   }
-}
\ No newline at end of file
+}
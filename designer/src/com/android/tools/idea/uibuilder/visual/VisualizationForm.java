@@ -41,6 +41,7 @@ import com.android.tools.idea.uibuilder.surface.SceneMode;
 import com.android.tools.idea.uibuilder.visual.analytics.MultiViewMetricTrackerKt;
 import com.android.tools.idea.util.SyncUtil;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import com.intellij.CommonBundle;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.actionSystem.ActionGroup;
@@ -103,6 +104,13 @@ public class VisualizationForm implements Disposable, ConfigurationSetListener,
    */
   @SwingCoordinate private static final int VERTICAL_SCREEN_DELTA = 48;
 
+  /**
+   * Number of models added at the same time. Layoutlib renders on a single thread, so the renders of a batch are still done one after the
+   * other: batching only queues their render requests together instead of waiting for each model to be added before adding the next one.
+   * Cancelling the load only stops the models of the next batches.
+   */
+  private static final int MODEL_BATCH_SIZE = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+
   private final Project myProject;
   private final NlDesignSurface mySurface;
   private final WorkBench<DesignSurface> myWorkBench;
@@ -383,16 +391,18 @@ public class VisualizationForm implements Disposable, ConfigurationSetListener,
         }
 
         AtomicBoolean isAddingModelCanceled = new AtomicBoolean(false);
-        // We want to add model sequentially so we can interrupt them if needed.
+        // We add the models in batches so we can interrupt them if needed.
         // When adding a model the render request is triggered. Stop adding remaining models avoids unnecessary render requests.
+        // The models of a batch are added together so their render requests are queued at once. The renders themselves still run one at a
+        // time on the Layoutlib render thread, only the post-processing of their images can overlap the next renders.
         CompletableFuture<Void> addModelFuture = CompletableFuture.completedFuture(null);
-        for (NlModel model : models) {
+        for (List<NlModel> batch : Lists.partition(models, MODEL_BATCH_SIZE)) {
           addModelFuture = addModelFuture.thenCompose(it -> {
             if (isAddingModelCanceled.get()) {
               return CompletableFuture.completedFuture(null);
             }
             else {
-              return mySurface.addModel(model);
+              return CompletableFuture.allOf(batch.stream().map(mySurface::addModel).toArray(CompletableFuture[]::new));
             }
           });
         }
@@ -27,30 +27,38 @@ import kotlin.math.pow
  * go/cbm_simulator
  */
 
+private const val CONVERSION_CACHE_BITS = 12
+private const val CONVERSION_CACHE_SIZE = 1 shl CONVERSION_CACHE_BITS
+
 /**
- * Color blind simulator.
+ * Color blind simulator. Images can be converted from any thread.
  */
 class ColorConverter(val mode: ColorBlindMode) : Disposable {
 
   companion object {
+    @Volatile
     private var removeGammaCLut: DoubleArray? = null
   }
+  @Volatile
   private var cbmCLut: ColorLut? = null
 
   /**
    * Ensure that all necessary color lookup table is built.
    * Encouraged to call it every time before calling [convert]
    */
+  @Synchronized
   fun init() {
-    if (removeGammaCLut == null) {
+    var gammaCLut = removeGammaCLut
+    if (gammaCLut == null) {
       ColorConverterLogger.start("Build CLut for ${mode.name}")
-      removeGammaCLut = buildGammaCLut(Function { (it / 255.0).pow(GAMMA) })
+      gammaCLut = buildGammaCLut(Function { (it / 255.0).pow(GAMMA) })
+      removeGammaCLut = gammaCLut
       ColorConverterLogger.end("Build CLut for ${mode.name}")
     }
 
     if (cbmCLut == null) {
       ColorConverterLogger.start("Build gamma CLut for ${mode.name}")
-      cbmCLut = buildColorLut(DIM, mode, removeGammaCLut!!)
+      cbmCLut = buildColorLut(DIM, mode, gammaCLut)
       ColorConverterLogger.end("Build gamma CLut for ${mode.name}")
     }
   }
@@ -59,16 +67,26 @@ class ColorConverter(val mode: ColorBlindMode) : Disposable {
    * Pre condition : BufferedImage must be [BufferedImage.TYPE_INT_ARGB]
    */
   fun convert(startImage: BufferedImage, postImage: BufferedImage) {
-    if (cbmCLut == null || removeGammaCLut == null) {
-      throw RuntimeException("Make sure the converter.init is called.")
-    }
+    val lut = cbmCLut ?: throw RuntimeException("Make sure the converter.init is called.")
 
     ColorConverterLogger.start("Apply ${mode.name}")
     val inData = (startImage.raster.dataBuffer as DataBufferInt).data
     val outData = (postImage.raster.dataBuffer as DataBufferInt).data
 
+    // Rendered layouts only use a few distinct colors, mostly in runs of identical pixels. Remember the last conversions in a small
+    // direct mapped cache so the interpolation is only done once per color instead of once per pixel.
+    val cachedColors = IntArray(CONVERSION_CACHE_SIZE)
+    val cachedResults = IntArray(CONVERSION_CACHE_SIZE)
+    val cachedValid = BooleanArray(CONVERSION_CACHE_SIZE)
     for (i in inData.indices) {
-      outData[i] = convert(inData[i])
+      val color = inData[i]
+      val slot = (color * -0x61c88647) ushr (32 - CONVERSION_CACHE_BITS)
+      if (!cachedValid[slot] || cachedColors[slot] != color) {
+        cachedColors[slot] = color
+        cachedResults[slot] = 0xff shl 24 or lut.interpolate(prepare(color))
+        cachedValid[slot] = true
+      }
+      outData[i] = cachedResults[slot]
     }
     ColorConverterLogger.end("Apply ${mode.name}")
 
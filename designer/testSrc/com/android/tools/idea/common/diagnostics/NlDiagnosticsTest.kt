@@ -66,4 +66,24 @@ class NlDiagnosticsTest {
     assertEquals(100, read.lastRenders()[0])
     assertEquals(101, read.lastRenders()[1])
   }
-}
\ No newline at end of file
+
+  @Test
+  fun testQueueRecording() {
+    val surface = mock(DesignSurface::class.java)
+    val write = NlDiagnosticsManager.getWriteInstance(surface)
+    val read = NlDiagnosticsManager.getReadInstance(surface)
+
+    assertEquals(0, read.queuedUpdates())
+    assertEquals(0, read.executedUpdates())
+    assertEquals(-1, read.queueMergingDelay())
+
+    write.recordUpdateQueued()
+    write.recordUpdateQueued()
+    write.recordUpdateQueued()
+    write.recordUpdateExecuted()
+    write.recordQueueMergingDelay(50)
+    assertEquals(3, read.queuedUpdates())
+    assertEquals(1, read.executedUpdates())
+    assertEquals(50, read.queueMergingDelay())
+  }
+}
@@ -32,6 +32,8 @@ import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyBoolean;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -69,6 +71,7 @@ import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Disposer;
 import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.SmartPointerManager;
 import com.intellij.psi.XmlElementFactory;
 import com.intellij.psi.xml.XmlAttribute;
 import com.intellij.psi.xml.XmlFile;
@@ -720,6 +723,93 @@ public class NlModelTest extends LayoutTestCase {
     assertEquals("android.widget.SearchView", NlComponentHelperKt.getViewInfo(searchViewComponent).getClassName());
   }
 
+  public void testUpdateSkipsUnchangedChildrenAndTags() {
+    XmlFile modelXml = (XmlFile)myFixture.addFileToProject("res/layout/unchanged.xml",
+                                                           "<LinearLayout" +
+                                                           "         xmlns:android=\"http://schemas.android.com/apk/res/android\"" +
+                                                           "         android:layout_width=\"match_parent\"" +
+                                                           "         android:layout_height=\"match_parent\">" +
+                                                           "  <TextView android:id=\"@+id/text\"" +
+                                                           "    android:layout_width=\"wrap_content\"" +
+                                                           "    android:layout_height=\"wrap_content\" />" +
+                                                           "  <Button android:id=\"@+id/button\"" +
+                                                           "    android:layout_width=\"wrap_content\"" +
+                                                           "    android:layout_height=\"wrap_content\" />" +
+                                                           "</LinearLayout>");
+    NlModel model = createModel(modelXml);
+    updateHierarchy(modelXml, model);
+    NlComponent root = model.getComponents().get(0);
+    List<NlComponent> children = root.getChildren();
+    assertEquals(2, children.size());
+
+    // Changing an attribute does not change the structure nor the tags
+    WriteCommandAction.runWriteCommandAction(
+      getProject(), () -> modelXml.getRootTag().getSubTags()[0].setAttribute(ATTR_ORIENTATION, ANDROID_URI, VALUE_VERTICAL));
+    SmartPointerManager pointerManager = spy(SmartPointerManager.getInstance(getProject()));
+    ServiceContainerUtil.replaceService(getProject(), SmartPointerManager.class, pointerManager, getTestRootDisposable());
+    updateHierarchy(modelXml, model);
+
+    assertSame(root, model.getComponents().get(0));
+    assertSame(children, root.getChildren());
+    XmlTag rootTag = modelXml.getRootTag();
+    verify(pointerManager, never()).createSmartPsiElementPointer(rootTag);
+    for (XmlTag tag : rootTag.getSubTags()) {
+      verify(pointerManager, never()).createSmartPsiElementPointer(tag);
+    }
+  }
+
+  public void testUpdateAppliesChangedChildrenAndTags() {
+    XmlFile modelXml = (XmlFile)myFixture.addFileToProject("res/layout/changed.xml",
+                                                           "<LinearLayout" +
+                                                           "         xmlns:android=\"http://schemas.android.com/apk/res/android\"" +
+                                                           "         android:layout_width=\"match_parent\"" +
+                                                           "         android:layout_height=\"match_parent\">" +
+                                                           "  <TextView android:id=\"@+id/text\"" +
+                                                           "    android:layout_width=\"wrap_content\"" +
+                                                           "    android:layout_height=\"wrap_content\" />" +
+                                                           "</LinearLayout>");
+    NlModel model = createModel(modelXml);
+    updateHierarchy(modelXml, model);
+    NlComponent root = model.getComponents().get(0);
+    NlComponent text = root.getChild(0);
+    List<NlComponent> children = root.getChildren();
+
+    // Replacing the tag of the TextView keeps the component, which must now point to the new tag
+    XmlTag newTextTag = WriteCommandAction.writeCommandAction(getProject()).compute(() -> {
+      XmlTag textTag = modelXml.getRootTag().getSubTags()[0];
+      XmlTag replacement = XmlElementFactory.getInstance(getProject()).createTagFromText(
+        "<TextView android:id=\"@+id/text\" android:layout_width=\"match_parent\" android:layout_height=\"wrap_content\" />");
+      return (XmlTag)textTag.replace(replacement);
+    });
+    updateHierarchy(modelXml, model);
+
+    assertSame(text, root.getChild(0));
+    assertSame(newTextTag, text.getTagDeprecated());
+    assertSame(children, root.getChildren());
+
+    // Adding a child changes the structure of the root
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> modelXml.getRootTag().addSubTag(
+      XmlElementFactory.getInstance(getProject()).createTagFromText(
+        "<Button android:layout_width=\"wrap_content\" android:layout_height=\"wrap_content\" />"), false));
+    updateHierarchy(modelXml, model);
+
+    assertNotSame(children, root.getChildren());
+    assertEquals(2, root.getChildCount());
+    assertSame(text, root.getChild(0));
+    assertEquals(BUTTON, root.getChild(1).getTagName());
+  }
+
+  private static void updateHierarchy(@NotNull XmlFile modelXml, @NotNull NlModel model) {
+    TagSnapshot rootSnapshot = TagSnapshot.createTagSnapshot(modelXml.getRootTag(), null);
+    ViewInfo rootViewInfo = new ViewInfo(rootSnapshot.tagName, rootSnapshot, 0, 0, 500, 500);
+    List<ViewInfo> children = new ArrayList<>();
+    for (TagSnapshot child : rootSnapshot.children) {
+      children.add(new ViewInfo(child.tagName, child, 0, 0, 100, 100));
+    }
+    rootViewInfo.setChildren(children);
+    LayoutlibSceneManager.updateHierarchy(modelXml.getRootTag(), ImmutableList.of(rootViewInfo), model);
+  }
+
   public void testLayoutListenersModifyListenerList() {
     XmlFile modelXml = (XmlFile)myFixture.addFileToProject("res/layout/model.xml",
                                                            "<LinearLayout" +
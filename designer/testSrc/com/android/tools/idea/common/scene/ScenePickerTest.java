@@ -19,6 +19,11 @@ import junit.framework.TestCase;
 
 import java.awt.*;
 import java.awt.geom.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
 
 /**
  * Test ScenePicker
@@ -378,4 +383,73 @@ public class ScenePickerTest extends TestCase {
       scenePicker.find((int)x, (int)y);
     }
   }
+
+  public void testIndexedFindMatchesLinearScan() {
+    ScenePicker indexed = new ScenePicker();
+    ScenePicker linear = new ScenePicker();
+    linear.setIndexEnabled(false);
+    Random random = new Random(42);
+    for (int i = 0; i < 500; i++) {
+      int x = random.nextInt(1000);
+      int y = random.nextInt(1000);
+      if (i % 5 == 0) {
+        int width = random.nextInt(100);
+        int height = random.nextInt(100);
+        indexed.addRect(i, 5, x, y, x + width, y + height);
+        linear.addRect(i, 5, x, y, x + width, y + height);
+      }
+      else {
+        indexed.addPoint(i, 6, x, y);
+        linear.addPoint(i, 6, x, y);
+      }
+    }
+    List<Object> indexedHits = new ArrayList<>();
+    List<Object> linearHits = new ArrayList<>();
+    indexed.setSelectListener((obj, dist) -> indexedHits.add(obj));
+    linear.setSelectListener((obj, dist) -> linearHits.add(obj));
+
+    for (int y = -10; y < 1110; y += 7) {
+      for (int x = -10; x < 1110; x += 7) {
+        indexedHits.clear();
+        linearHits.clear();
+        indexed.find(x, y);
+        linear.find(x, y);
+        // Objects must be reported in the order they were added, as listeners rely on it for ties
+        assertEquals(linearHits, indexedHits);
+      }
+    }
+    assertTrue(indexed.isIndexed());
+    assertFalse(linear.isIndexed());
+  }
+
+  public void testAddAfterIndexing() {
+    ScenePicker scenePicker = new ScenePicker();
+    for (int i = 0; i < 100; i++) {
+      scenePicker.addRect(i, 0, i * 20, 0, i * 20 + 10, 10);
+    }
+    List<Object> hits = new ArrayList<>();
+    scenePicker.setSelectListener((obj, dist) -> hits.add(obj));
+    scenePicker.find(5, 5);
+    scenePicker.find(5, 5);
+    assertTrue(scenePicker.isIndexed());
+    assertEquals(Arrays.asList(0, 0), hits);
+
+    // An object added inside the indexed area is inserted into the index in place
+    scenePicker.addRect("inside", 0, 1005, 0, 1015, 10);
+    assertTrue(scenePicker.isIndexed());
+    hits.clear();
+    scenePicker.find(1008, 5);
+    assertEquals(Arrays.asList(50, "inside"), hits);
+
+    // Adding one outside of the indexed area invalidates the index
+    scenePicker.addRect("outside", 0, 5000, 5000, 5010, 5010);
+    assertFalse(scenePicker.isIndexed());
+    hits.clear();
+    scenePicker.find(5005, 5005);
+    assertEquals(Collections.singletonList("outside"), hits);
+
+    List<Object> all = new ArrayList<>();
+    scenePicker.foreachObject(all::add);
+    assertEquals(102, all.size());
+  }
 }
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.handlers.motion;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class FrameTimeStatsTest {
+  private static final long MS = 1_000_000L;
+
+  @Test
+  public void empty() {
+    FrameTimeStats stats = new FrameTimeStats();
+    assertEquals(0, stats.getFrameCount());
+    assertEquals(0, stats.getAverageMs(), 0);
+    assertEquals(0, stats.getPercentileMs(90), 0);
+  }
+
+  @Test
+  public void averageAndPercentiles() {
+    FrameTimeStats stats = new FrameTimeStats();
+    for (int i = 1; i <= 10; i++) {
+      stats.record(i * MS);
+    }
+    assertEquals(10, stats.getFrameCount());
+    assertEquals(5.5, stats.getAverageMs(), 1E-9);
+    assertEquals(9, stats.getPercentileMs(90), 1E-9);
+    assertEquals(10, stats.getPercentileMs(100), 1E-9);
+    assertEquals(1, stats.getPercentileMs(0), 1E-9);
+  }
+
+  @Test
+  public void onlyLastFramesAreKept() {
+    FrameTimeStats stats = new FrameTimeStats();
+    for (int i = 0; i < FrameTimeStats.CAPACITY; i++) {
+      stats.record(100 * MS);
+    }
+    for (int i = 0; i < FrameTimeStats.CAPACITY; i++) {
+      stats.record(10 * MS);
+    }
+    assertEquals(FrameTimeStats.CAPACITY, stats.getFrameCount());
+    assertEquals(10, stats.getAverageMs(), 1E-9);
+
+    stats.reset();
+    assertEquals(0, stats.getFrameCount());
+  }
+}
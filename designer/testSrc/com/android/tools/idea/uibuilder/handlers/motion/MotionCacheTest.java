@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.handlers.motion;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class MotionCacheTest {
+  private final Object myComponent = new Object();
+  private final Object myView = new Object();
+
+  @Test
+  public void pathHit() {
+    MotionCache cache = new MotionCache();
+    float[] path = new float[]{1, 2, 3, 4};
+    assertNull(cache.getPath(myComponent, myView, 100, 200, new float[4], 2));
+    cache.putPath(myComponent, myView, 100, 200, path, 2, 7);
+
+    float[] cached = new float[4];
+    assertEquals(Integer.valueOf(7), cache.getPath(myComponent, myView, 100, 200, cached, 2));
+    assertArrayEquals(path, cached, 0);
+  }
+
+  @Test
+  public void pathMissForDifferentSize() {
+    MotionCache cache = new MotionCache();
+    cache.putPath(myComponent, myView, 100, 200, new float[]{1, 2, 3, 4}, 2, 7);
+    assertNull(cache.getPath(myComponent, myView, 100, 200, new float[8], 4));
+  }
+
+  @Test
+  public void keyFramePositionsHit() {
+    MotionCache cache = new MotionCache();
+    int[] type = new int[]{1, 2};
+    float[] pos = new float[]{10, 20, 30, 40};
+    cache.putKeyFramePositions(myComponent, myView, 100, 200, type, pos, 2);
+
+    int[] cachedType = new int[2];
+    float[] cachedPos = new float[4];
+    assertEquals(Integer.valueOf(2), cache.getKeyFramePositions(myComponent, myView, 100, 200, cachedType, cachedPos));
+    assertArrayEquals(type, cachedType);
+    assertArrayEquals(pos, cachedPos, 0);
+  }
+
+  @Test
+  public void newViewEvictsEntry() {
+    MotionCache cache = new MotionCache();
+    cache.putPath(myComponent, myView, 100, 200, new float[]{1, 2, 3, 4}, 2, 7);
+    cache.putKeyFramePositions(myComponent, myView, 100, 200, new int[]{1}, new float[]{10, 20}, 1);
+
+    // A new inflation replaces the entry, so going back to the old view misses as well
+    assertNull(cache.getPath(myComponent, new Object(), 100, 200, new float[4], 2));
+    assertNull(cache.getPath(myComponent, myView, 100, 200, new float[4], 2));
+    assertNull(cache.getKeyFramePositions(myComponent, myView, 100, 200, new int[1], new float[2]));
+  }
+
+  @Test
+  public void newLayoutSizeEvictsEntry() {
+    MotionCache cache = new MotionCache();
+    cache.putPath(myComponent, myView, 100, 200, new float[]{1, 2, 3, 4}, 2, 7);
+
+    assertNull(cache.getPath(myComponent, myView, 300, 200, new float[4], 2));
+    assertNull(cache.getPath(myComponent, myView, 100, 200, new float[4], 2));
+  }
+
+  @Test
+  public void clearInvalidatesAllEntries() {
+    MotionCache cache = new MotionCache();
+    Object otherComponent = new Object();
+    Object otherView = new Object();
+    cache.putPath(myComponent, myView, 100, 200, new float[]{1, 2, 3, 4}, 2, 7);
+    cache.putPath(otherComponent, otherView, 100, 200, new float[]{5, 6, 7, 8}, 2, 7);
+
+    cache.clear();
+    assertNull(cache.getPath(myComponent, myView, 100, 200, new float[4], 2));
+    assertNull(cache.getPath(otherComponent, otherView, 100, 200, new float[4], 2));
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.layout3d;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * Simple benchmark driver for the 3d engine. Renders a rotating, deeply nested layout with the single threaded
+ * and the tiled rasterizers and reports the frame rate of each. Fails if both don't produce the same image; {@link TiledRasterizerTest}
+ * checks that on smaller images as part of the regular tests.
+ * <p>
+ * Usage: Layout3dBenchmark [width height frames depth]
+ */
+public class Layout3dBenchmark {
+  private final TriData myTriData;
+  private final TriData myTransFormCache;
+  private final ViewMatrix myViewMatrix = new ViewMatrix();
+  private final int myWidth;
+  private final int myHeight;
+  private final float[] myZBuffer;
+  private final int[] myRgb;
+
+  public Layout3dBenchmark(TriData triData, int w, int h) {
+    myTriData = triData;
+    myTransFormCache = new TriData(triData);
+    myWidth = w;
+    myHeight = h;
+    myZBuffer = new float[w * h];
+    myRgb = new int[w * h];
+    myViewMatrix.look(ViewMatrix.UP_AT, triData, w, h);
+    myViewMatrix.setScreenWidth(1920);
+    myViewMatrix.calcMatrix();
+    myViewMatrix.trackBallDown(w / 2, h / 2);
+  }
+
+  /**
+   * Builds a layout with the given nesting depth, every level containing a row of buttons and the next level.
+   */
+  public static Layout.View getNestedViews(BufferedImage img, int depth) {
+    float w = img.getWidth();
+    float h = img.getHeight();
+    Layout.View root = new Layout.View(0, 0, w, h);
+    Layout.View parent = root;
+    float inset = Math.min(w, h) / (4 * depth + 4);
+    for (int level = 1; level <= depth; level++) {
+      float x = inset * level;
+      float y = inset * level;
+      float width = w - 2 * x;
+      float height = h - 2 * y;
+      Layout.View child = new Layout.View(x, y, width, height);
+      float buttonWidth = width / 11;
+      for (int i = 0; i < 5; i++) {
+        parent.addChild(new Layout.View(x + buttonWidth * (2 * i + 1), y + height - inset, buttonWidth, inset / 2));
+      }
+      parent.addChild(child);
+      parent = child;
+    }
+    return root;
+  }
+
+  /**
+   * Renders a frame of the rotation and returns the time it took in nanoseconds
+   */
+  long renderFrame(int frame, TiledRasterizer tiled) {
+    myViewMatrix.trackBallMove(myWidth / 2 + (frame % 100) * myWidth / 400, myHeight / 2 + (frame % 50) * myHeight / 400);
+    Matrix invMatrix = myViewMatrix.invers();
+    long start = System.nanoTime();
+    myTriData.transform(invMatrix, myTransFormCache);
+    Arrays.fill(myZBuffer, Float.MAX_VALUE);
+    Arrays.fill(myRgb, 0xFF000000);
+    if (tiled != null) {
+      tiled.toZBuff(myZBuffer, myRgb, myTransFormCache,
+                    myTriData.myTexture, myTriData.myTextureWidth, myTriData.myTextureHeight, myViewMatrix.m);
+    }
+    else {
+      Rasterize.toZBuff(myZBuffer, myRgb, myWidth, myHeight, myTransFormCache,
+                        myTriData.myTexture, myTriData.myTextureWidth, myTriData.myTextureHeight, myViewMatrix.m);
+    }
+    return System.nanoTime() - start;
+  }
+
+  /**
+   * Renders the given number of frames and returns the frame rate
+   */
+  double run(int frames, TiledRasterizer tiled) {
+    long total = 0;
+    for (int frame = 0; frame < frames; frame++) {
+      total += renderFrame(frame, tiled);
+    }
+    return frames / (total * 1E-9);
+  }
+
+  public static void main(String[] args) {
+    int w = args.length > 1 ? Integer.parseInt(args[0]) : 1024;
+    int h = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+    int frames = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+    int depth = args.length > 3 ? Integer.parseInt(args[3]) : 30;
+
+    BufferedImage img = CheckLayout3d.getTestImage();
+    Layout layout = new Layout(img, getNestedViews(img, depth));
+    Layout3dBenchmark benchmark = new Layout3dBenchmark(layout, w, h);
+    TiledRasterizer tiled = new TiledRasterizer(w, h);
+    System.out.println(w + "x" + h + ", " + layout.myIndex.length / 3 + " triangles, " + frames + " frames");
+
+    // Check that both rasterizers produce the same image. Frame 0 doesn't rotate the layout yet, so a later frame is compared.
+    benchmark.renderFrame(1, null);
+    int[] expected = Arrays.copyOf(benchmark.myRgb, benchmark.myRgb.length);
+    benchmark.renderFrame(1, tiled);
+    if (!Arrays.equals(expected, benchmark.myRgb)) {
+      throw new AssertionError("The tiled rasterizer doesn't produce the same image as the single threaded one");
+    }
+
+    // Warm up
+    benchmark.run(frames / 4 + 1, null);
+    benchmark.run(frames / 4 + 1, tiled);
+
+    double serialFps = benchmark.run(frames, null);
+    double tiledFps = benchmark.run(frames, tiled);
+    System.out.println(String.format("single thread: %8.1f fps", serialFps));
+    System.out.println(String.format("tiled:         %8.1f fps (%d cores)", tiledFps, Runtime.getRuntime().availableProcessors()));
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.layout3d;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import org.junit.Test;
+
+public class TiledRasterizerTest {
+  // Neither size is a multiple of the tile size, so the last row and column of tiles are partial
+  private static final int WIDTH = 300;
+  private static final int HEIGHT = 517;
+
+  @Test
+  public void toZBuffMatchesSerialRasterizer() {
+    Layout layout = createLayout();
+    TriData transformed = new TriData(layout);
+    ViewMatrix viewMatrix = createViewMatrix(layout);
+    TiledRasterizer tiled = new TiledRasterizer(WIDTH, HEIGHT);
+
+    for (int frame = 1; frame <= 10; frame++) {
+      rotate(viewMatrix, frame);
+      layout.transform(viewMatrix.invers(), transformed);
+
+      float[] serialZBuffer = createZBuffer();
+      int[] serialRgb = createRgb();
+      Rasterize.toZBuff(serialZBuffer, serialRgb, WIDTH, HEIGHT, transformed,
+                        layout.myTexture, layout.myTextureWidth, layout.myTextureHeight, viewMatrix.m);
+
+      float[] tiledZBuffer = createZBuffer();
+      int[] tiledRgb = createRgb();
+      tiled.toZBuff(tiledZBuffer, tiledRgb, transformed, layout.myTexture, layout.myTextureWidth, layout.myTextureHeight, viewMatrix.m);
+
+      assertNotEquals("Nothing was rendered", 0, Arrays.stream(serialRgb).filter(pixel -> pixel != 0xFF000000).count());
+      assertArrayEquals("frame " + frame, serialRgb, tiledRgb);
+      assertArrayEquals("frame " + frame, serialZBuffer, tiledZBuffer, 0);
+    }
+  }
+
+  @Test
+  public void simpleMatchesSerialRasterizer() {
+    Layout layout = createLayout();
+    TriData transformed = new TriData(layout);
+    ViewMatrix viewMatrix = createViewMatrix(layout);
+    TiledRasterizer tiled = new TiledRasterizer(WIDTH, HEIGHT);
+
+    for (int frame = 1; frame <= 10; frame++) {
+      rotate(viewMatrix, frame);
+      layout.transform(viewMatrix.invers(), transformed);
+
+      float[] serialZBuffer = createZBuffer();
+      int[] serialRgb = createRgb();
+      Rasterize.simple(serialZBuffer, serialRgb, WIDTH, HEIGHT, transformed);
+
+      float[] tiledZBuffer = createZBuffer();
+      int[] tiledRgb = createRgb();
+      tiled.simple(tiledZBuffer, tiledRgb, transformed);
+
+      assertArrayEquals("frame " + frame, serialRgb, tiledRgb);
+      assertArrayEquals("frame " + frame, serialZBuffer, tiledZBuffer, 0);
+    }
+  }
+
+  private static Layout createLayout() {
+    BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+    int[] data = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (((i % WIDTH) * 255 / WIDTH) << 16) | (((i / WIDTH) * 255 / HEIGHT) << 8) | (i & 0xFF);
+    }
+    return new Layout(image, Layout3dBenchmark.getNestedViews(image, 8));
+  }
+
+  private static ViewMatrix createViewMatrix(TriData triData) {
+    ViewMatrix viewMatrix = new ViewMatrix();
+    viewMatrix.look(ViewMatrix.UP_AT, triData, WIDTH, HEIGHT);
+    viewMatrix.setScreenWidth(WIDTH * 1.5);
+    viewMatrix.calcMatrix();
+    viewMatrix.trackBallDown(WIDTH / 2, HEIGHT / 2);
+    return viewMatrix;
+  }
+
+  /**
+   * Rotates the layout a bit more for every frame, so that the triangles cross the tile edges at many different angles. Frame 0 would
+   * not move the track ball at all.
+   */
+  private static void rotate(ViewMatrix viewMatrix, int frame) {
+    viewMatrix.trackBallMove(WIDTH / 2 + frame * WIDTH / 37, HEIGHT / 2 + frame * HEIGHT / 53);
+  }
+
+  private static float[] createZBuffer() {
+    float[] zBuffer = new float[WIDTH * HEIGHT];
+    Arrays.fill(zBuffer, Float.MAX_VALUE);
+    return zBuffer;
+  }
+
+  private static int[] createRgb() {
+    int[] rgb = new int[WIDTH * HEIGHT];
+    Arrays.fill(rgb, 0xFF000000);
+    return rgb;
+  }
+}
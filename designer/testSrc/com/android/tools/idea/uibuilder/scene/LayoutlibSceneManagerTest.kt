@@ -57,6 +57,15 @@ class LayoutlibSceneManagerTest: SceneTest() {
     assertNotNull(sceneManager.secondarySceneView)
   }
 
+  fun testMergingDelay() {
+    // Fast renders keep the default delay
+    assertEquals(10, LayoutlibSceneManager.computeMergingDelay(0))
+    assertEquals(10, LayoutlibSceneManager.computeMergingDelay(15))
+    // Slow renders wait for half the render time, up to a maximum
+    assertEquals(100, LayoutlibSceneManager.computeMergingDelay(200))
+    assertEquals(250, LayoutlibSceneManager.computeMergingDelay(5000))
+  }
+
   override fun createModel(): ModelBuilder {
     return model(SdkConstants.FD_RES_XML, "preference.xml",
                  component(SdkConstants.TAG_PREFERENCE_SCREEN)
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.scene
+
+import com.android.SdkConstants.CONSTRAINT_LAYOUT
+import com.android.SdkConstants.LINEAR_LAYOUT
+import com.android.SdkConstants.TEXT_VIEW
+import com.android.tools.idea.common.fixtures.ModelBuilder
+import com.android.tools.idea.common.scene.draw.DisplayList
+import com.android.tools.idea.common.scene.draw.DrawCommand
+import com.android.tools.idea.uibuilder.handlers.constraint.ConstraintLayoutHandler
+import com.google.common.collect.ImmutableList
+import java.util.Collections
+import java.util.IdentityHashMap
+
+class SceneRetainedDisplayListTest : SceneTest() {
+
+  override fun createModel(): ModelBuilder = model("constraint.xml",
+                                                   component(CONSTRAINT_LAYOUT.defaultName())
+                                                     .id("@id/root")
+                                                     .withBounds(0, 0, 2000, 2000)
+                                                     .width("1000dp")
+                                                     .height("1000dp")
+                                                     .children(
+                                                       component(TEXT_VIEW)
+                                                         .id("@id/button")
+                                                         .withBounds(200, 400, 200, 40)
+                                                         .width("100dp")
+                                                         .height("20dp")
+                                                         .withAttribute("tools:layout_editor_absoluteX", "100dp")
+                                                         .withAttribute("tools:layout_editor_absoluteY", "200dp"),
+                                                       component(LINEAR_LAYOUT)
+                                                         .id("@id/linear")
+                                                         .withBounds(1200, 1200, 500, 500)
+                                                         .width("250dp")
+                                                         .height("250dp")
+                                                         .withAttribute("tools:layout_editor_absoluteX", "600dp")
+                                                         .withAttribute("tools:layout_editor_absoluteY", "600dp")
+                                                         .children(
+                                                           component(TEXT_VIEW)
+                                                             .id("@id/textView3")
+                                                             .withBounds(1200, 1200, 200, 200)
+                                                             .width("100dp")
+                                                             .height("100dp")
+                                                         )
+                                                     ))
+
+  fun testUnchangedComponentsAreReused() {
+    val list = DisplayList()
+    list.setRetained(true)
+    build(list)
+    val firstBuild = identitySetOf(list.commands)
+
+    // Nothing changed, all the commands are reused
+    build(list)
+    assertTrue(list.commands.all { it in firstBuild })
+
+    // Moving the nested text view rebuilds the root and the linear layout subtree, the commands of the button are reused
+    val textView = myScene.getSceneComponent("textView3")!!
+    textView.setPosition(textView.drawX + 10, textView.drawY + 10)
+    build(list)
+    assertTrue(list.commands.any { it in firstBuild })
+    assertTrue(list.commands.any { it !in firstBuild })
+    assertEquals(buildFromScratch(), list.serialize())
+  }
+
+  fun testSelectionChangeRebuildsList() {
+    val list = DisplayList()
+    list.setRetained(true)
+    build(list)
+    val firstBuild = identitySetOf(list.commands)
+
+    // The decorators of all the components depend on the selection, e.g. to draw the constraints of the selected components
+    myModel.surface.selectionModel.setSelection(ImmutableList.of(myScene.getSceneComponent("button")!!.nlComponent))
+    build(list)
+    assertTrue(list.commands.none { it in firstBuild })
+    assertEquals(buildFromScratch(), list.serialize())
+
+    val secondBuild = identitySetOf(list.commands)
+    myModel.surface.selectionModel.setSelection(ImmutableList.of(myScene.getSceneComponent("textView3")!!.nlComponent))
+    build(list)
+    assertTrue(list.commands.none { it in secondBuild })
+    assertEquals(buildFromScratch(), list.serialize())
+  }
+
+  fun testVisualPropertyToggleRebuildsList() {
+    val list = DisplayList()
+    list.setRetained(true)
+    build(list)
+    val firstBuild = identitySetOf(list.commands)
+
+    try {
+      ConstraintLayoutHandler.setVisualProperty(ConstraintLayoutHandler.SHOW_CONSTRAINTS_PREF_KEY, false)
+      build(list)
+      assertTrue(list.commands.none { it in firstBuild })
+      assertEquals(buildFromScratch(), list.serialize())
+
+      // Nothing changed since the toggle, all the commands are reused again
+      val secondBuild = identitySetOf(list.commands)
+      build(list)
+      assertTrue(list.commands.all { it in secondBuild })
+    }
+    finally {
+      ConstraintLayoutHandler.forceDefaultVisualProperties()
+    }
+  }
+
+  fun testNotRetainedListIsRebuilt() {
+    val list = DisplayList()
+    build(list)
+    val firstBuild = identitySetOf(list.commands)
+
+    build(list)
+    assertTrue(list.commands.none { it in firstBuild })
+  }
+
+  private fun build(list: DisplayList) {
+    list.clear()
+    myScene.buildDisplayList(list, 0)
+  }
+
+  private fun buildFromScratch(): String {
+    val list = DisplayList()
+    myScene.buildDisplayList(list, 0)
+    return list.serialize()
+  }
+
+  private fun identitySetOf(commands: List<DrawCommand>): Set<DrawCommand> =
+    Collections.newSetFromMap(IdentityHashMap<DrawCommand, Boolean>()).apply { addAll(commands) }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.scout;
+
+import static com.android.SdkConstants.CONSTRAINT_LAYOUT;
+import static com.android.SdkConstants.TEXT_VIEW;
+
+import com.android.tools.idea.common.fixtures.ModelBuilder;
+import com.android.tools.idea.uibuilder.scene.SceneTest;
+import java.util.ArrayList;
+import org.jetbrains.annotations.NotNull;
+
+public class ConstraintSetGeneratorTest extends SceneTest {
+  @Override
+  @NotNull
+  public ModelBuilder createModel() {
+    return model("constraint.xml",
+                 component(CONSTRAINT_LAYOUT.defaultName())
+                   .id("@+id/content_main")
+                   .withBounds(0, 0, 2000, 2000)
+                   .width("1000dp")
+                   .height("1000dp")
+                   .children(
+                     component(TEXT_VIEW)
+                       .id("@+id/textview1")
+                       .withBounds(100, 200, 200, 40)
+                       .width("100dp")
+                       .height("20dp"),
+                     component(TEXT_VIEW)
+                       .id("@+id/textview2")
+                       .withBounds(600, 500, 400, 100)
+                       .width("200dp")
+                       .height("50dp"),
+                     component(TEXT_VIEW)
+                       .id("@+id/textview3")
+                       .withBounds(1200, 1400, 300, 60)
+                       .width("150dp")
+                       .height("30dp"),
+                     component(TEXT_VIEW)
+                       .id("@+id/textview4")
+                       .withBounds(700, 200, 200, 40)
+                       .width("100dp")
+                       .height("20dp")
+                       .withAttribute("app:layout_constraintTop_toTopOf", "parent")
+                       .withAttribute("app:layout_constraintBaseline_toBaselineOf", "@+id/textview1")
+                   ));
+  }
+
+  public void testFindsOptimalSetOfSmallLayouts() {
+    ScoutWidget[] widgets = getWidgets();
+    ScoutWidget root = widgets[0];
+    ScoutWidget textView1 = widgets[indexOf(widgets, "textview1")];
+    ScoutWidget textView2 = widgets[indexOf(widgets, "textview2")];
+    ScoutWidget textView3 = widgets[indexOf(widgets, "textview3")];
+    for (ScoutWidget[] layout : new ScoutWidget[][]{
+      {root, textView1, textView2},
+      {root, textView1, textView3},
+      {root, textView2, textView3}}) {
+      ConstraintSet set = new ConstraintSetGenerator(layout).findConstraintSet();
+      assertTrue(set.validate());
+      assertEquals(findSmallestError(layout), set.error(), 1e-6);
+    }
+  }
+
+  public void testReturnsValidSetWhenOutOfTime() {
+    ConstraintSetGenerator generator = new ConstraintSetGenerator(getWidgets());
+    generator.setTimeBudget(0, 0);
+
+    ConstraintSet set = generator.findConstraintSet();
+    assertTrue(set.validate());
+    assertFalse(Double.isNaN(set.error()));
+  }
+
+  public void testWidgetWithoutValidFormIsLeftUnconstrained() {
+    ScoutWidget[] widgets = getWidgets();
+    // The existing top and baseline constraints of textview4 can't be kept together
+    assertEmpty(getCandidates(widgets, indexOf(widgets, "textview4")));
+
+    ConstraintSet set = new ConstraintSetGenerator(widgets).findConstraintSet();
+    assertTrue(set.validate());
+    assertTrue(set.displayString().contains("DrawConnection"));
+  }
+
+  @NotNull
+  private ScoutWidget[] getWidgets() {
+    return ScoutWidget.getWidgetArray(myModel.getComponents().get(0));
+  }
+
+  private static int indexOf(@NotNull ScoutWidget[] widgets, @NotNull String id) {
+    for (int i = 0; i < widgets.length; i++) {
+      if (id.equals(widgets[i].mNlComponent.getId())) {
+        return i;
+      }
+    }
+    throw new IllegalArgumentException(id);
+  }
+
+  @NotNull
+  private static ArrayList<ConstrainedWidget> getCandidates(@NotNull ScoutWidget[] widgets, int widget) {
+    WidgetPossibleConnections connections = new WidgetPossibleConnections(widgets[widget]);
+    connections.generateAllConnections(widgets);
+    return new ConstraintSetGenerator(widgets).getValidConnectionCombinations(connections);
+  }
+
+  /**
+   * Returns the error of the best valid constraint set, trying every combination of candidates.
+   */
+  private static double findSmallestError(@NotNull ScoutWidget[] widgets) {
+    ArrayList<ArrayList<ConstrainedWidget>> candidates = new ArrayList<>();
+    for (int i = 1; i < widgets.length; i++) {
+      candidates.add(getCandidates(widgets, i));
+    }
+    double smallestError = Double.POSITIVE_INFINITY;
+    int[] combination = new int[candidates.size()];
+    while (true) {
+      ConstraintSet set = new ConstraintSet(combination, candidates, widgets[0]);
+      if (set.validate()) {
+        set.calculateError();
+        smallestError = Math.min(smallestError, set.error());
+      }
+      int position = 0;
+      while (position < combination.length && ++combination[position] == candidates.get(position).size()) {
+        combination[position++] = 0;
+      }
+      if (position == combination.length) {
+        return smallestError;
+      }
+    }
+  }
+}
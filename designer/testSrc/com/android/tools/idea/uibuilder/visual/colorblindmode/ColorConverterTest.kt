@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.visual.colorblindmode
+
+import junit.framework.TestCase
+import java.awt.image.BufferedImage
+import java.util.Random
+
+class ColorConverterTest : TestCase() {
+
+  fun testImageConversionMatchesSingleColors() {
+    val random = Random(0)
+    // A few colors repeated in runs, like a rendered layout, and some random pixels to fill the conversion cache
+    val palette = IntArray(8) { random.nextInt() or (0xff shl 24) }
+    @Suppress("UndesirableClassUsage")
+    val image = BufferedImage(64, 64, BufferedImage.TYPE_INT_ARGB)
+    for (y in 0 until image.height) {
+      for (x in 0 until image.width) {
+        image.setRGB(x, y, if (y % 8 == 0) random.nextInt() else palette[(x / 8 + y) % palette.size])
+      }
+    }
+
+    for (mode in ColorBlindMode.values()) {
+      val converter = ColorConverter(mode)
+      converter.init()
+      @Suppress("UndesirableClassUsage")
+      val converted = BufferedImage(image.width, image.height, BufferedImage.TYPE_INT_ARGB)
+      converter.convert(image, converted)
+
+      for (y in 0 until image.height) {
+        for (x in 0 until image.width) {
+          assertEquals("$mode at ($x, $y)", converter.convert(image.getRGB(x, y)), converted.getRGB(x, y))
+        }
+      }
+      converter.dispose()
+    }
+  }
+}
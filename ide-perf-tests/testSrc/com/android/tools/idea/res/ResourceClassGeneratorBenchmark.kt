@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.res
+
+import com.android.ide.common.rendering.api.ResourceNamespace.RES_AUTO
+import com.android.tools.idea.benchmarks.EDITOR_PERFGATE_PROJECT_NAME
+import com.android.tools.idea.benchmarks.measureTimeMs
+import com.android.tools.idea.testing.AndroidProjectRule
+import com.android.tools.perflogger.Benchmark
+import com.android.tools.perflogger.Metric
+import com.intellij.openapi.command.WriteCommandAction
+import com.intellij.psi.PsiManager
+import org.jetbrains.android.facet.AndroidFacet
+import org.junit.Rule
+import org.junit.Test
+
+/**
+ * Measures the time it takes to generate the light R classes used for rendering, by number of resources, both from scratch and after an
+ * edit that only affects one resource type.
+ */
+class ResourceClassGeneratorBenchmark {
+  @get:Rule
+  val projectRule = AndroidProjectRule.inMemory()
+
+  private val benchmark = Benchmark.Builder("Light R class generation")
+    .setDescription("Generation time of the R classes used for rendering, by number of resources.")
+    .setProject(EDITOR_PERFGATE_PROJECT_NAME)
+    .build()
+
+  @Test
+  fun generation() {
+    for (resourceCount in listOf(1_000, 10_000, 30_000)) {
+      measureGeneration(resourceCount)
+    }
+  }
+
+  private fun measureGeneration(resourceCount: Int) {
+    val fixture = projectRule.fixture
+    val strings = (0 until resourceCount).joinToString(separator = "\n", prefix = "<resources>\n", postfix = "\n</resources>") {
+      "  <string name=\"string_$it\">String $it</string>"
+    }
+    val res = fixture.addFileToProject("res$resourceCount/values/strings.xml", strings).virtualFile.parent.parent
+    val layout = fixture.addFileToProject("res$resourceCount/layout/layout.xml", "<FrameLayout />").virtualFile
+    val facet = AndroidFacet.getInstance(projectRule.module)!!
+    val resources = ModuleResourceRepository.createForTest(facet, listOf(res), RES_AUTO, null)
+    val idManager = ResourceIdManager.get(projectRule.module)
+
+    val fullMetric = Metric("full_r_class_generation_$resourceCount")
+    val fullSamples = measureTimeMs(
+      warmupIterations = 5,
+      mainIterations = 10,
+      action = {
+        val generator = ResourceClassGenerator.create(idManager, resources, RES_AUTO)
+        generator.generate("p1.R")
+        generator.generate("p1.R\$string")
+        generator.generate("p1.R\$layout")
+      }
+    )
+    fullMetric.addSamples(benchmark, *fullSamples.toTypedArray())
+    fullMetric.commit()
+
+    // Edits to the layouts should only regenerate R$layout.
+    val generator = ResourceClassGenerator.create(idManager, resources, RES_AUTO)
+    generator.generate("p1.R\$string")
+    val incrementalMetric = Metric("incremental_r_class_generation_$resourceCount")
+    var layoutCount = 0
+    val incrementalSamples = measureTimeMs(
+      warmupIterations = 5,
+      mainIterations = 10,
+      setUp = {
+        val directory = PsiManager.getInstance(projectRule.project).findFile(layout)!!.containingDirectory
+        WriteCommandAction.runWriteCommandAction(projectRule.project) {
+          directory.copyFileFrom("layout${layoutCount++}.xml", directory.findFile("layout.xml")!!)
+        }
+      },
+      action = {
+        generator.generate("p1.R")
+        generator.generate("p1.R\$string")
+        generator.generate("p1.R\$layout")
+      }
+    )
+    incrementalMetric.addSamples(benchmark, *incrementalSamples.toTypedArray())
+    incrementalMetric.commit()
+  }
+}
@@ -16,8 +16,10 @@ import java.util.Map;
 import java.util.Set;
 import org.jetbrains.android.util.ResourceEntry;
 import org.jetbrains.android.util.ValueResourcesFileParser;
+import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.jps.android.model.JpsAndroidModuleExtension;
+import org.jetbrains.jps.builders.storage.BuildDataPaths;
 import org.jetbrains.jps.incremental.java.FormsParsing;
 import org.jetbrains.jps.model.java.JpsJavaClasspathKind;
 import org.jetbrains.jps.model.java.JpsJavaExtensionService;
@@ -29,7 +31,10 @@ import org.jetbrains.jps.model.module.JpsModuleDependency;
  * @author Eugene.Kudelevsky
  */
 public class AndroidBuildDataCache {
+  @NonNls private static final String VALUE_RESOURCES_CACHE_FILE_NAME = "parsed_value_resources.dat";
+
   private static AndroidBuildDataCache ourInstance;
+  private static AndroidValueResourcesCacheStorage ourValueResourcesStorage;
 
   private final Map<JpsModule, MyAndroidDeps> myModule2AndroidDeps = new HashMap<JpsModule, MyAndroidDeps>();
   private final Map<String, List<ResourceEntry>> myParsedValueResourceFiles = new HashMap<String, List<ResourceEntry>>();
@@ -42,8 +47,22 @@ public class AndroidBuildDataCache {
     return ourInstance;
   }
 
+  /**
+   * Enables the persistent cache of parsed values XML files stored under the Android data storage of the build. The cache file
+   * itself is read lazily, on the first request of a parsed file.
+   */
+  public static void initPersistentStorage(@NotNull BuildDataPaths dataPaths) {
+    final File androidStorage = new File(dataPaths.getDataStorageRoot(), AndroidJpsUtil.ANDROID_STORAGE_DIR);
+    ourValueResourcesStorage = new AndroidValueResourcesCacheStorage(new File(androidStorage, VALUE_RESOURCES_CACHE_FILE_NAME));
+  }
+
   public static void clean() {
     ourInstance = null;
+
+    if (ourValueResourcesStorage != null) {
+      ourValueResourcesStorage.flush();
+      ourValueResourcesStorage = null;
+    }
   }
 
   // If parsing throws IOException, the result it is not cached, so invoker should catch it and stop the build
@@ -52,7 +71,20 @@ public class AndroidBuildDataCache {
     List<ResourceEntry> entries = myParsedValueResourceFiles.get(path);
 
     if (entries == null) {
-      entries = parseValueResourceFile(file);
+      final AndroidValueResourcesCacheStorage storage = ourValueResourcesStorage;
+      final long timestamp = file.lastModified();
+      final long length = file.length();
+
+      if (storage != null) {
+        entries = storage.get(path, timestamp, length);
+      }
+      if (entries == null) {
+        entries = parseValueResourceFile(file);
+
+        if (storage != null) {
+          storage.put(path, timestamp, length, entries);
+        }
+      }
       myParsedValueResourceFiles.put(path, entries);
     }
     return entries;
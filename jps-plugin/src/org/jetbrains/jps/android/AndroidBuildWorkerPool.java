@@ -0,0 +1,198 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package org.jetbrains.jps.android;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.ThrowableConvertor;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jetbrains.android.util.AndroidBuildTestingManager;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jps.incremental.CompileContext;
+import org.jetbrains.jps.incremental.ProjectBuildException;
+
+/**
+ * Runs independent per-input jobs of the Android builders (pre-dexing, PNG crunching) on a bounded pool of worker threads.
+ * <p>
+ * Jobs must not report anything to the {@link CompileContext} or register outputs themselves: they return their results,
+ * which are handed back in the order of the inputs so that the caller can report messages and outputs deterministically.
+ */
+final class AndroidBuildWorkerPool {
+  private static final Logger LOG = Logger.getInstance(AndroidBuildWorkerPool.class);
+
+  @NonNls private static final String WORKER_COUNT_PROPERTY = "android.jps.worker.count";
+  private static final long CANCELLATION_CHECK_INTERVAL_MS = 100;
+  /**
+   * Default upper bound of the pool size. Every dx job runs in its own JVM with its own maximum heap (1 GB by default), so the pool
+   * is not sized by the number of processors alone: 4 concurrent jobs already give most of the speedup without risking to exhaust
+   * the memory of many-core machines.
+   */
+  private static final int MAX_DEFAULT_WORKER_COUNT = 4;
+
+  /** Child processes started by the jobs running on the current worker thread, see {@link #trackProcess}. */
+  private static final ThreadLocal<Set<Process>> ourJobProcesses = new ThreadLocal<>();
+
+  private AndroidBuildWorkerPool() {
+  }
+
+  /**
+   * Returns the maximum number of jobs that may run concurrently. Defaults to the number of available processors, but at most
+   * {@link #MAX_DEFAULT_WORKER_COUNT}, and may be overridden with the {@code android.jps.worker.count} system property. Builds driven by {@link AndroidBuildTestingManager}
+   * always run sequentially so that the logged command lines keep a stable order.
+   */
+  static int getMaxWorkerCount() {
+    if (AndroidBuildTestingManager.getTestingManager() != null) {
+      return 1;
+    }
+    final int defaultCount = Math.min(Runtime.getRuntime().availableProcessors(), MAX_DEFAULT_WORKER_COUNT);
+    final String value = System.getProperty(WORKER_COUNT_PROPERTY);
+
+    if (value != null) {
+      try {
+        return Math.max(1, Integer.parseInt(value.trim()));
+      }
+      catch (NumberFormatException e) {
+        LOG.warn("Invalid value of " + WORKER_COUNT_PROPERTY + ": " + value);
+      }
+    }
+    return Math.max(1, defaultCount);
+  }
+
+  /**
+   * Registers a child process started by a job running on a worker thread, so that it is destroyed if the build is canceled
+   * before the job completes. Does nothing if called outside of a worker thread.
+   */
+  static void trackProcess(@NotNull Process process) {
+    final Set<Process> processes = ourJobProcesses.get();
+
+    if (processes != null) {
+      processes.add(process);
+    }
+  }
+
+  /**
+   * Applies {@code job} to every input and returns the results in the order of {@code inputs}. The build cancellation status
+   * is checked while waiting; if the build is canceled, the pending jobs are abandoned and the processes they registered with
+   * {@link #trackProcess} are destroyed.
+   */
+  @NotNull
+  static <T, R> List<R> execute(@NotNull CompileContext context,
+                                @NotNull String name,
+                                @NotNull List<T> inputs,
+                                @NotNull ThrowableConvertor<T, R, IOException> job) throws IOException, ProjectBuildException {
+    return execute(context, name, inputs, getMaxWorkerCount(), job);
+  }
+
+  /**
+   * Same as {@link #execute(CompileContext, String, List, ThrowableConvertor)}, but runs at most {@code maxWorkerCount} jobs
+   * concurrently.
+   */
+  @NotNull
+  static <T, R> List<R> execute(@NotNull CompileContext context,
+                                @NotNull String name,
+                                @NotNull List<T> inputs,
+                                int maxWorkerCount,
+                                @NotNull ThrowableConvertor<T, R, IOException> job) throws IOException, ProjectBuildException {
+    final int workerCount = Math.min(maxWorkerCount, inputs.size());
+    final List<R> results = new ArrayList<>(inputs.size());
+
+    if (workerCount <= 1) {
+      for (T input : inputs) {
+        context.checkCanceled();
+        results.add(job.convert(input));
+      }
+      return results;
+    }
+    final ExecutorService executor = Executors.newFixedThreadPool(workerCount, new MyThreadFactory(name));
+    final Set<Process> processes = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    boolean completed = false;
+
+    try {
+      final List<Future<R>> futures = new ArrayList<>(inputs.size());
+
+      for (T input : inputs) {
+        futures.add(executor.submit(() -> {
+          ourJobProcesses.set(processes);
+          try {
+            return job.convert(input);
+          }
+          finally {
+            ourJobProcesses.remove();
+          }
+        }));
+      }
+      for (Future<R> future : futures) {
+        results.add(waitFor(context, future));
+      }
+      completed = true;
+      return results;
+    }
+    finally {
+      executor.shutdownNow();
+
+      if (!completed) {
+        // Interrupting the workers doesn't stop the external tools they are waiting for
+        for (Process process : processes) {
+          process.destroy();
+        }
+      }
+    }
+  }
+
+  private static <R> R waitFor(@NotNull CompileContext context, @NotNull Future<R> future) throws IOException, ProjectBuildException {
+    while (true) {
+      context.checkCanceled();
+      try {
+        return future.get(CANCELLATION_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+      }
+      catch (TimeoutException ignored) {
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new ProjectBuildException(e);
+      }
+      catch (ExecutionException e) {
+        final Throwable cause = e.getCause();
+
+        if (cause instanceof IOException) {
+          throw (IOException)cause;
+        }
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException)cause;
+        }
+        if (cause instanceof Error) {
+          throw (Error)cause;
+        }
+        throw new ProjectBuildException(cause);
+      }
+    }
+  }
+
+  private static class MyThreadFactory implements ThreadFactory {
+    private final String myName;
+    private final AtomicInteger myCounter = new AtomicInteger();
+
+    MyThreadFactory(@NotNull String name) {
+      myName = name;
+    }
+
+    @Override
+    public Thread newThread(@NotNull Runnable r) {
+      final Thread thread = new Thread(r, myName + " worker " + myCounter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -246,9 +246,29 @@ public class AndroidDexBuilder extends AndroidTargetBuilder<BuildRootDescriptor,
                                @NotNull String builderName,
                                @NotNull String srcTargetName,
                                @Nullable JpsModule module) throws IOException {
+    final DexInvocation invocation = prepareDex(platform, outFilePath, compileTargets, context, project, builderName, module);
+
+    if (invocation == null) {
+      return false;
+    }
+    return reportDexResult(invocation, executeDex(invocation), context, outputConsumer, builderName, srcTargetName);
+  }
+
+  /**
+   * Validates the dex configuration and builds the dx command line. Problems are reported to {@code context}, so this method
+   * must be called on the builder thread.
+   */
+  @Nullable
+  static DexInvocation prepareDex(@NotNull AndroidPlatform platform,
+                                  @NotNull String outFilePath,
+                                  @NotNull String[] compileTargets,
+                                  @NotNull CompileContext context,
+                                  @NotNull JpsProject project,
+                                  @NotNull String builderName,
+                                  @Nullable JpsModule module) {
     BuildToolInfo buildToolInfo = platform.getTarget().getBuildToolInfo();
     if (buildToolInfo == null) {
-      return false;
+      return null;
     }
 
     final String dxJarPath = FileUtil.toSystemDependentName(buildToolInfo.getPath(BuildToolInfo.PathId.DX_JAR));
@@ -258,7 +278,7 @@ public class AndroidDexBuilder extends AndroidTargetBuilder<BuildRootDescriptor,
     if (testingManager == null && !dxJar.isFile()) {
       context.processMessage(
         new CompilerMessage(builderName, BuildMessage.Kind.ERROR, AndroidJpsBundle.message("android.jps.cannot.find.file", dxJarPath)));
-      return false;
+      return null;
     }
 
     boolean multiDex = false;
@@ -324,15 +344,25 @@ public class AndroidDexBuilder extends AndroidTargetBuilder<BuildRootDescriptor,
     final String javaExecutable = getJavaExecutable(platform, context, builderName);
 
     if (javaExecutable == null) {
-      return false;
+      return null;
     }
     final List<String> commandLine = ExternalProcessUtil
       .buildJavaCommandLine(javaExecutable, AndroidDxRunner.class.getName(),
                             Collections.emptyList(), classPath, vmOptions, programParamList);
+    return new DexInvocation(commandLine, outFilePath, compileTargets, multiDex);
+  }
 
+  /**
+   * Runs dx for a prepared invocation and returns the produced messages. Doesn't touch the compile context, so independent
+   * invocations may be executed concurrently.
+   */
+  @NotNull
+  static Map<AndroidCompilerMessageKind, List<String>> executeDex(@NotNull DexInvocation invocation) throws IOException {
+    final List<String> commandLine = invocation.myCommandLine;
     LOG.info(AndroidBuildCommonUtils.command2string(commandLine));
 
     final String[] commands = ArrayUtil.toStringArray(commandLine);
+    final AndroidBuildTestingManager testingManager = AndroidBuildTestingManager.getTestingManager();
     final Process process;
 
     if (testingManager != null) {
@@ -342,20 +372,33 @@ public class AndroidDexBuilder extends AndroidTargetBuilder<BuildRootDescriptor,
     else {
       process = Runtime.getRuntime().exec(commands);
     }
+    AndroidBuildWorkerPool.trackProcess(process);
     final Map<AndroidCompilerMessageKind, List<String>> messages = new HashMap<>(3);
     messages.put(AndroidCompilerMessageKind.ERROR, new ArrayList<>());
     messages.put(AndroidCompilerMessageKind.WARNING, new ArrayList<>());
     messages.put(AndroidCompilerMessageKind.INFORMATION, new ArrayList<>());
 
-    AndroidBuildCommonUtils.handleDexCompilationResult(process, StringUtil.join(commandLine, " "), outFilePath, messages, multiDex);
+    AndroidBuildCommonUtils.handleDexCompilationResult(process, StringUtil.join(commandLine, " "), invocation.myOutFilePath, messages,
+                                                       invocation.myMultiDex);
+    return messages;
+  }
 
+  /**
+   * Reports the messages of an executed dx invocation and registers its output if it succeeded.
+   */
+  static boolean reportDexResult(@NotNull DexInvocation invocation,
+                                 @NotNull Map<AndroidCompilerMessageKind, List<String>> messages,
+                                 @NotNull CompileContext context,
+                                 @NotNull BuildOutputConsumer outputConsumer,
+                                 @NotNull String builderName,
+                                 @NotNull String srcTargetName) throws IOException {
     AndroidJpsUtil.addMessages(context, messages, builderName, srcTargetName);
     final boolean success = messages.get(AndroidCompilerMessageKind.ERROR).isEmpty();
 
     if (success) {
       final List<String> srcFiles = new ArrayList<>();
 
-      for (String compileTargetPath : compileTargets) {
+      for (String compileTargetPath : invocation.myCompileTargets) {
         final File compileTarget = new File(compileTargetPath);
 
         if (compileTarget.isFile()) {
@@ -373,7 +416,7 @@ public class AndroidDexBuilder extends AndroidTargetBuilder<BuildRootDescriptor,
           });
         }
       }
-      outputConsumer.registerOutputFile(outFile, srcFiles);
+      outputConsumer.registerOutputFile(new File(invocation.myOutFilePath), srcFiles);
     }
     return success;
   }
@@ -513,4 +556,18 @@ public class AndroidDexBuilder extends AndroidTargetBuilder<BuildRootDescriptor,
     return messages.get(AndroidCompilerMessageKind.ERROR).isEmpty()
            ? Pair.create(true, newState) : null;
   }
+
+  static final class DexInvocation {
+    private final List<String> myCommandLine;
+    private final String myOutFilePath;
+    private final String[] myCompileTargets;
+    private final boolean myMultiDex;
+
+    private DexInvocation(@NotNull List<String> commandLine, @NotNull String outFilePath, @NotNull String[] compileTargets, boolean multiDex) {
+      myCommandLine = commandLine;
+      myOutFilePath = outFilePath;
+      myCompileTargets = compileTargets;
+      myMultiDex = multiDex;
+    }
+  }
 }
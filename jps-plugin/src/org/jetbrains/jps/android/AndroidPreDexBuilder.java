@@ -5,6 +5,7 @@ import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.io.FileUtilRt;
 import org.jetbrains.android.util.AndroidBuildTestingManager;
+import org.jetbrains.android.util.AndroidCompilerMessageKind;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -26,6 +27,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author Eugene.Kudelevsky
@@ -91,44 +93,62 @@ public class AndroidPreDexBuilder extends AndroidTargetBuilder<AndroidPreDexBuil
     if (platform == null) {
       return false;
     }
-    if (!filesToPreDex.isEmpty()) {
-      final File outputDir = target.getOutputFile(context);
+    if (filesToPreDex.isEmpty()) {
+      return true;
+    }
+    final File outputDir = target.getOutputFile(context);
+    final List<PreDexJob> jobs = new ArrayList<PreDexJob>();
 
-      for (Pair<File, String> pair : filesToPreDex) {
-        context.checkCanceled();
+    for (Pair<File, String> pair : filesToPreDex) {
+      context.checkCanceled();
 
-        final File srcFile = pair.getFirst();
-        final String moduleName = pair.getSecond();
-        final String srcFilePath = srcFile.getAbsolutePath();
-        final File outputFile;
+      final File srcFile = pair.getFirst();
+      final String moduleName = pair.getSecond();
+      final String srcFilePath = srcFile.getAbsolutePath();
+      final File outputFile;
 
-        if (moduleName != null) {
-          context.processMessage(new ProgressMessage("Pre-dex [" + moduleName + "]"));
-          outputFile = new File(new File(outputDir, moduleName), srcFile.getName());
-        }
-        else {
-          context.processMessage(new ProgressMessage("Pre-dex: " + srcFile.getName()));
-          final String outputFileName = getOutputFileNameForExternalJar(srcFile);
-
-          if (outputFileName == null) {
-            context.processMessage(new CompilerMessage(BUILDER_NAME, BuildMessage.Kind.ERROR,
-                                                       "Cannot pre-dex file " + srcFilePath + ": incorrect path", srcFilePath));
-            return false;
-          }
-          outputFile = new File(outputDir, outputFileName);
-        }
+      if (moduleName != null) {
+        context.processMessage(new ProgressMessage("Pre-dex [" + moduleName + "]"));
+        outputFile = new File(new File(outputDir, moduleName), srcFile.getName());
+      }
+      else {
+        context.processMessage(new ProgressMessage("Pre-dex: " + srcFile.getName()));
+        final String outputFileName = getOutputFileNameForExternalJar(srcFile);
 
-        if (AndroidJpsUtil.createDirIfNotExist(outputFile.getParentFile(), context, BUILDER_NAME) == null) {
+        if (outputFileName == null) {
+          context.processMessage(new CompilerMessage(BUILDER_NAME, BuildMessage.Kind.ERROR,
+                                                     "Cannot pre-dex file " + srcFilePath + ": incorrect path", srcFilePath));
           return false;
         }
+        outputFile = new File(outputDir, outputFileName);
+      }
 
-        if (!AndroidDexBuilder.runDex(platform, outputFile.getPath(), new String[]{srcFilePath}, context,
-          project, outputConsumer, BUILDER_NAME, srcFile.getName(), null)) {
-          return false;
-        }
+      if (AndroidJpsUtil.createDirIfNotExist(outputFile.getParentFile(), context, BUILDER_NAME) == null) {
+        return false;
+      }
+      final AndroidDexBuilder.DexInvocation invocation =
+        AndroidDexBuilder.prepareDex(platform, outputFile.getPath(), new String[]{srcFilePath}, context, project, BUILDER_NAME, null);
+
+      if (invocation == null) {
+        return false;
+      }
+      jobs.add(new PreDexJob(srcFile, invocation));
+    }
+    // Libraries are dexed independently of each other, so dx runs concurrently. Messages and outputs are reported afterwards
+    // in the original order to keep the build log deterministic.
+    final List<Map<AndroidCompilerMessageKind, List<String>>> results =
+      AndroidBuildWorkerPool.execute(context, BUILDER_NAME, jobs, job -> AndroidDexBuilder.executeDex(job.myInvocation));
+    boolean success = true;
+
+    for (int i = 0; i < jobs.size(); i++) {
+      final PreDexJob job = jobs.get(i);
+
+      if (!AndroidDexBuilder.reportDexResult(job.myInvocation, results.get(i), context, outputConsumer, BUILDER_NAME,
+                                             job.mySrcFile.getName())) {
+        success = false;
       }
     }
-    return true;
+    return success;
   }
 
   public static boolean canBePreDexed(@NotNull File file) {
@@ -140,4 +160,14 @@ public class AndroidPreDexBuilder extends AndroidTargetBuilder<AndroidPreDexBuil
   public String getPresentableName() {
     return BUILDER_NAME;
   }
+
+  private static class PreDexJob {
+    final File mySrcFile;
+    final AndroidDexBuilder.DexInvocation myInvocation;
+
+    PreDexJob(@NotNull File srcFile, @NotNull AndroidDexBuilder.DexInvocation invocation) {
+      mySrcFile = srcFile;
+      myInvocation = invocation;
+    }
+  }
 }
@@ -4,6 +4,7 @@ import com.android.sdklib.IAndroidTarget;
 import com.android.tools.idea.jps.AndroidTargetBuilder;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.util.Processor;
+import com.intellij.util.ThrowableConvertor;
 import org.jetbrains.android.compiler.tools.AndroidApt;
 import org.jetbrains.android.util.AndroidCompilerMessageKind;
 import org.jetbrains.annotations.NonNls;
@@ -22,12 +23,13 @@ import org.jetbrains.jps.model.module.JpsModule;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.*;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * @author Eugene.Kudelevsky
@@ -55,7 +57,7 @@ public class AndroidResourceCachingBuilder extends AndroidTargetBuilder<BuildRoo
 
   private static boolean runPngCaching(AndroidResourceCachingBuildTarget target,
                                        CompileContext context,
-                                       BuildOutputConsumer outputConsumer) throws IOException {
+                                       BuildOutputConsumer outputConsumer) throws IOException, ProjectBuildException {
     final JpsModule module = target.getModule();
     final JpsAndroidModuleExtension extension = AndroidJpsUtil.getExtension(module);
     assert extension != null;
@@ -102,10 +104,8 @@ public class AndroidResourceCachingBuilder extends AndroidTargetBuilder<BuildRoo
         inputDirs.add(f.getPath());
       }
     }
-    final Map<AndroidCompilerMessageKind, List<String>> messages =
-      AndroidApt.crunch(androidTarget, inputDirs,resCacheDir.getPath());
-    AndroidJpsUtil.addMessages(context, messages, BUILDER_NAME, module.getName());
-    final boolean success = messages.get(AndroidCompilerMessageKind.ERROR).isEmpty();
+    final boolean success = crunch(context, module.getName(), inputDirs, AndroidBuildWorkerPool.getMaxWorkerCount(),
+                                   folders -> AndroidApt.crunch(androidTarget, inputDirs, folders, resCacheDir.getPath()));
 
     if (success) {
       final Map<String, File> outputFiles = new HashMap<String, File>();
@@ -137,6 +137,84 @@ public class AndroidResourceCachingBuilder extends AndroidTargetBuilder<BuildRoo
     return success;
   }
 
+  /**
+   * Crunches the PNG files of {@code inputDirs} and reports the messages of the crunch to {@code context}. With more than one worker,
+   * the resource folders are split into groups that {@code cruncher} crunches concurrently, given the names of the folders of a group.
+   * Otherwise {@code cruncher} is called once with null, to crunch all the folders.
+   *
+   * @return false if the crunch of any group failed
+   */
+  static boolean crunch(@NotNull CompileContext context,
+                        @NotNull String moduleName,
+                        @NotNull List<String> inputDirs,
+                        int maxWorkerCount,
+                        @NotNull ThrowableConvertor<List<String>, Map<AndroidCompilerMessageKind, List<String>>, IOException> cruncher)
+    throws IOException, ProjectBuildException {
+    final List<List<String>> folderGroups = splitResourceFolders(inputDirs, maxWorkerCount);
+    final List<Map<AndroidCompilerMessageKind, List<String>>> results;
+
+    if (folderGroups.size() <= 1) {
+      results = Collections.singletonList(cruncher.convert(null));
+    }
+    else {
+      // Every group covers a disjoint set of resource folders, so the crunch outputs don't overlap
+      results = AndroidBuildWorkerPool.execute(context, BUILDER_NAME, folderGroups, maxWorkerCount, cruncher);
+    }
+    boolean success = true;
+
+    // The messages of all groups are reported, also when some group failed
+    for (Map<AndroidCompilerMessageKind, List<String>> messages : results) {
+      AndroidJpsUtil.addMessages(context, messages, BUILDER_NAME, moduleName);
+      final List<String> errors = messages.get(AndroidCompilerMessageKind.ERROR);
+
+      if (errors != null && !errors.isEmpty()) {
+        success = false;
+      }
+    }
+    return success;
+  }
+
+  /**
+   * Distributes the resource folders found in {@code inputDirs} into at most {@code maxGroups} groups that can be crunched
+   * independently. The grouping depends only on the folder names, so it is stable between builds.
+   */
+  @NotNull
+  static List<List<String>> splitResourceFolders(@NotNull List<String> inputDirs, int maxGroups) {
+    if (maxGroups <= 1) {
+      return Collections.emptyList();
+    }
+    final Set<String> folderNames = new TreeSet<String>();
+
+    for (String inputDir : inputDirs) {
+      final File[] children = new File(inputDir).listFiles();
+
+      if (children != null) {
+        for (File child : children) {
+          if (child.isDirectory()) {
+            folderNames.add(child.getName());
+          }
+        }
+      }
+    }
+    final int groupCount = Math.min(maxGroups, folderNames.size());
+
+    if (groupCount <= 1) {
+      // A single group would crunch everything anyway, without the need to copy the folders to a temp directory first
+      return Collections.emptyList();
+    }
+    final List<List<String>> groups = new ArrayList<List<String>>(groupCount);
+
+    for (int i = 0; i < groupCount; i++) {
+      groups.add(new ArrayList<String>());
+    }
+    int i = 0;
+
+    for (String folderName : folderNames) {
+      groups.get(i++ % groupCount).add(folderName);
+    }
+    return groups;
+  }
+
   @NotNull
   @Override
   public String getPresentableName() {
@@ -117,6 +117,7 @@ public class AndroidSourceGeneratingBuilder extends ModuleLevelBuilder {
   @Override
   public void buildStarted(CompileContext context) {
     IS_ENABLED.set(context, true);
+    AndroidBuildDataCache.initPersistentStorage(context.getProjectDescriptor().dataManager.getDataPaths());
   }
 
   @Override
@@ -0,0 +1,247 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package org.jetbrains.jps.android;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import org.jetbrains.android.util.ResourceEntry;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Disk-backed cache of parsed values XML files, shared between builds. An entry is valid as long as the timestamp and the length
+ * of the file are the same as when it was parsed.
+ * <p>
+ * The storage is loaded lazily on the first lookup and written back only if it was modified. Resource types, names and contexts
+ * are stored through a string table, so that repeating strings (types and contexts mostly) are written only once. The contents
+ * are protected by a CRC32 checksum; a truncated or corrupted file is discarded and the affected files are simply reparsed.
+ */
+class AndroidValueResourcesCacheStorage {
+  private static final Logger LOG = Logger.getInstance(AndroidValueResourcesCacheStorage.class);
+
+  private static final int SIGNATURE = 0xDEADBEEF;
+  private static final byte VERSION = 2;
+  /** Size of the signature, version, checksum and length preceding the contents. */
+  private static final int HEADER_SIZE = 4 + 1 + 8 + 4;
+
+  private final File myFile;
+  private Map<String, MyEntry> myEntries;
+  private boolean myModified;
+
+  AndroidValueResourcesCacheStorage(@NotNull File file) {
+    myFile = file;
+  }
+
+  @Nullable
+  synchronized List<ResourceEntry> get(@NotNull String path, long timestamp, long length) {
+    final MyEntry entry = getEntries().get(path);
+    return entry != null && entry.myTimestamp == timestamp && entry.myLength == length ? entry.myResources : null;
+  }
+
+  synchronized void put(@NotNull String path, long timestamp, long length, @NotNull List<ResourceEntry> resources) {
+    getEntries().put(path, new MyEntry(timestamp, length, resources));
+    myModified = true;
+  }
+
+  /**
+   * Writes the cache to disk if it was modified. Entries of the files that don't exist anymore are dropped.
+   */
+  synchronized void flush() {
+    if (myEntries == null || !myModified) {
+      return;
+    }
+    myEntries.keySet().removeIf(path -> !new File(path).isFile());
+
+    try {
+      final ByteArrayOutputStream contents = new ByteArrayOutputStream();
+      final DataOutputStream contentsOut = new DataOutputStream(contents);
+      save(contentsOut);
+      contentsOut.flush();
+      final byte[] bytes = contents.toByteArray();
+
+      FileUtil.createParentDirs(myFile);
+      final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(myFile)));
+      try {
+        out.writeInt(SIGNATURE);
+        out.writeByte(VERSION);
+        out.writeLong(computeChecksum(bytes));
+        out.writeInt(bytes.length);
+        out.write(bytes);
+      }
+      finally {
+        out.close();
+      }
+      myModified = false;
+    }
+    catch (IOException e) {
+      LOG.info("Cannot save parsed value resources to " + myFile.getPath(), e);
+      FileUtil.delete(myFile);
+    }
+  }
+
+  @NotNull
+  private Map<String, MyEntry> getEntries() {
+    if (myEntries == null) {
+      myEntries = new HashMap<>();
+
+      if (myFile.isFile()) {
+        try {
+          final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(myFile)));
+          try {
+            load(readContents(in));
+          }
+          finally {
+            in.close();
+          }
+        }
+        catch (IOException | RuntimeException e) {
+          // The cache is only an optimization, whatever is wrong with it the files are reparsed
+          LOG.info("Cannot load parsed value resources from " + myFile.getPath(), e);
+          myEntries.clear();
+          FileUtil.delete(myFile);
+        }
+      }
+    }
+    return myEntries;
+  }
+
+  /**
+   * Reads the header of the cache file and returns a stream over its contents after verifying their length and checksum.
+   */
+  @NotNull
+  private DataInputStream readContents(@NotNull DataInputStream in) throws IOException {
+    if (in.readInt() != SIGNATURE) {
+      throw new IOException("incorrect signature");
+    }
+    if (in.readByte() != VERSION) {
+      throw new IOException("old version");
+    }
+    final long checksum = in.readLong();
+    final int length = in.readInt();
+
+    if (length < 0 || length != myFile.length() - HEADER_SIZE) {
+      throw new IOException("incorrect length " + length);
+    }
+    final byte[] bytes = new byte[length];
+    in.readFully(bytes);
+
+    if (computeChecksum(bytes) != checksum) {
+      throw new IOException("checksum mismatch");
+    }
+    return new DataInputStream(new ByteArrayInputStream(bytes));
+  }
+
+  private static long computeChecksum(@NotNull byte[] bytes) {
+    final CRC32 crc = new CRC32();
+    crc.update(bytes);
+    return crc.getValue();
+  }
+
+  private void load(@NotNull DataInputStream in) throws IOException {
+    final int stringCount = readCount(in);
+    final String[] strings = new String[stringCount];
+
+    for (int i = 0; i < stringCount; i++) {
+      strings[i] = in.readUTF();
+    }
+    final int fileCount = readCount(in);
+
+    for (int i = 0; i < fileCount; i++) {
+      final String path = in.readUTF();
+      final long timestamp = in.readLong();
+      final long length = in.readLong();
+      final int resourceCount = readCount(in);
+      final List<ResourceEntry> resources = new ArrayList<>(resourceCount);
+
+      for (int j = 0; j < resourceCount; j++) {
+        resources.add(new ResourceEntry(readString(in, strings), readString(in, strings), readString(in, strings)));
+      }
+      myEntries.put(path, new MyEntry(timestamp, length, resources));
+    }
+  }
+
+  private static int readCount(@NotNull DataInputStream in) throws IOException {
+    final int count = in.readInt();
+
+    if (count < 0 || count > in.available()) {
+      throw new IOException("incorrect count " + count);
+    }
+    return count;
+  }
+
+  @NotNull
+  private static String readString(@NotNull DataInputStream in, @NotNull String[] strings) throws IOException {
+    final int index = in.readInt();
+
+    if (index < 0 || index >= strings.length) {
+      throw new IOException("incorrect string index " + index);
+    }
+    return strings[index];
+  }
+
+  private void save(@NotNull DataOutputStream out) throws IOException {
+    final Map<String, Integer> stringIndices = new HashMap<>();
+    final List<String> strings = new ArrayList<>();
+
+    for (MyEntry entry : myEntries.values()) {
+      for (ResourceEntry resource : entry.myResources) {
+        addString(resource.getType(), stringIndices, strings);
+        addString(resource.getName(), stringIndices, strings);
+        addString(resource.getContext(), stringIndices, strings);
+      }
+    }
+    out.writeInt(strings.size());
+
+    for (String s : strings) {
+      out.writeUTF(s);
+    }
+    out.writeInt(myEntries.size());
+
+    for (Map.Entry<String, MyEntry> e : myEntries.entrySet()) {
+      final MyEntry entry = e.getValue();
+      out.writeUTF(e.getKey());
+      out.writeLong(entry.myTimestamp);
+      out.writeLong(entry.myLength);
+      out.writeInt(entry.myResources.size());
+
+      for (ResourceEntry resource : entry.myResources) {
+        out.writeInt(stringIndices.get(resource.getType()));
+        out.writeInt(stringIndices.get(resource.getName()));
+        out.writeInt(stringIndices.get(resource.getContext()));
+      }
+    }
+  }
+
+  private static void addString(@NotNull String s, @NotNull Map<String, Integer> stringIndices, @NotNull List<String> strings) {
+    if (!stringIndices.containsKey(s)) {
+      stringIndices.put(s, strings.size());
+      strings.add(s);
+    }
+  }
+
+  private static class MyEntry {
+    final long myTimestamp;
+    final long myLength;
+    final List<ResourceEntry> myResources;
+
+    MyEntry(long timestamp, long length, @NotNull List<ResourceEntry> resources) {
+      myTimestamp = timestamp;
+      myLength = length;
+      myResources = resources;
+    }
+  }
+}
@@ -0,0 +1,142 @@
+package org.jetbrains.jps.android;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.jetbrains.android.util.AndroidCompilerMessageKind;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jps.incremental.CompileContext;
+import org.jetbrains.jps.incremental.messages.BuildMessage;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AndroidResourceCachingBuilderTest {
+  @Rule public TemporaryFolder myTempFolder = new TemporaryFolder();
+
+  private List<String> myInputDirs;
+  private List<BuildMessage> myMessages;
+  private CompileContext myContext;
+
+  @Before
+  public void setUp() throws IOException {
+    final File res1 = myTempFolder.newFolder("res1");
+    new File(res1, "drawable-hdpi").mkdir();
+    new File(res1, "drawable-mdpi").mkdir();
+    new File(res1, "values").mkdir();
+    new File(res1, "not_a_folder.png").createNewFile();
+    final File res2 = myTempFolder.newFolder("res2");
+    new File(res2, "drawable-hdpi").mkdir();
+    new File(res2, "drawable-xhdpi").mkdir();
+    myInputDirs = Arrays.asList(res1.getPath(), res2.getPath());
+
+    myMessages = Collections.synchronizedList(new ArrayList<>());
+    // Only the parts of the context that crunching uses are implemented
+    myContext = (CompileContext)Proxy.newProxyInstance(
+      CompileContext.class.getClassLoader(), new Class[]{CompileContext.class}, (proxy, method, args) -> {
+        switch (method.getName()) {
+          case "processMessage":
+            myMessages.add((BuildMessage)args[0]);
+            return null;
+          case "checkCanceled":
+            return null;
+          default:
+            throw new UnsupportedOperationException(method.getName());
+        }
+      });
+  }
+
+  @Test
+  public void testSplitResourceFolders() {
+    assertEquals(Arrays.asList(Arrays.asList("drawable-hdpi", "drawable-xhdpi"), Arrays.asList("drawable-mdpi", "values")),
+                 AndroidResourceCachingBuilder.splitResourceFolders(myInputDirs, 2));
+    assertEquals(Arrays.asList(Collections.singletonList("drawable-hdpi"), Collections.singletonList("drawable-mdpi"),
+                               Collections.singletonList("drawable-xhdpi"), Collections.singletonList("values")),
+                 AndroidResourceCachingBuilder.splitResourceFolders(myInputDirs, 8));
+  }
+
+  @Test
+  public void testSplitResourceFoldersWithSingleGroup() throws IOException {
+    assertTrue(AndroidResourceCachingBuilder.splitResourceFolders(myInputDirs, 1).isEmpty());
+
+    final File res = myTempFolder.newFolder("res3");
+    new File(res, "drawable").mkdir();
+    assertTrue(AndroidResourceCachingBuilder.splitResourceFolders(Collections.singletonList(res.getPath()), 4).isEmpty());
+  }
+
+  @Test
+  public void testGroupsCrunchedConcurrently() throws Exception {
+    final CountDownLatch running = new CountDownLatch(2);
+    final List<List<String>> crunched = Collections.synchronizedList(new ArrayList<>());
+
+    final boolean success = AndroidResourceCachingBuilder.crunch(myContext, "app", myInputDirs, 2, folders -> {
+      crunched.add(folders);
+      running.countDown();
+      // Both groups have to be crunched at the same time for the latch to open
+      try {
+        assertTrue(running.await(10, TimeUnit.SECONDS));
+      }
+      catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+      return createMessages(Collections.emptyList(), Collections.singletonList("Crunched " + folders));
+    });
+
+    assertTrue(success);
+    assertEquals(2, crunched.size());
+    assertEquals(2, myMessages.size());
+  }
+
+  @Test
+  public void testErrorsOfOneGroupReportedAndBuildFails() throws Exception {
+    final boolean success = AndroidResourceCachingBuilder.crunch(myContext, "app", myInputDirs, 2, folders -> {
+      if (folders.contains("drawable-mdpi")) {
+        return createMessages(Collections.singletonList("Cannot crunch " + folders), Collections.emptyList());
+      }
+      return createMessages(Collections.emptyList(), Collections.singletonList("Crunched " + folders));
+    });
+
+    assertFalse(success);
+    assertEquals(2, myMessages.size());
+    // Messages are reported in the order of the groups
+    assertEquals(BuildMessage.Kind.INFO, myMessages.get(0).getKind());
+    assertEquals("[app] Crunched [drawable-hdpi, drawable-xhdpi]", myMessages.get(0).getMessageText());
+    assertEquals(BuildMessage.Kind.ERROR, myMessages.get(1).getKind());
+    assertEquals("[app] Cannot crunch [drawable-mdpi, values]", myMessages.get(1).getMessageText());
+  }
+
+  @Test
+  public void testSingleWorkerCrunchesAllFolders() throws Exception {
+    final List<List<String>> crunched = new ArrayList<>();
+
+    final boolean success = AndroidResourceCachingBuilder.crunch(myContext, "app", myInputDirs, 1, folders -> {
+      crunched.add(folders);
+      return createMessages(Collections.emptyList(), Collections.emptyList());
+    });
+
+    assertTrue(success);
+    assertEquals(Collections.singletonList(null), crunched);
+  }
+
+  @NotNull
+  private static Map<AndroidCompilerMessageKind, List<String>> createMessages(@NotNull List<String> errors, @NotNull List<String> infos) {
+    final Map<AndroidCompilerMessageKind, List<String>> messages = new EnumMap<>(AndroidCompilerMessageKind.class);
+    messages.put(AndroidCompilerMessageKind.ERROR, errors);
+    messages.put(AndroidCompilerMessageKind.INFORMATION, infos);
+    messages.put(AndroidCompilerMessageKind.WARNING, Collections.emptyList());
+    return messages;
+  }
+}
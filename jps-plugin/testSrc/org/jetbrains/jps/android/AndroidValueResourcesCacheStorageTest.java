@@ -0,0 +1,113 @@
+package org.jetbrains.jps.android;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.intellij.openapi.util.io.FileUtil;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import org.jetbrains.android.util.ResourceEntry;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AndroidValueResourcesCacheStorageTest {
+  @Rule public TemporaryFolder myTempFolder = new TemporaryFolder();
+
+  private File myCacheFile;
+  private File myValuesFile;
+  private List<ResourceEntry> myResources;
+
+  @Before
+  public void setUp() throws IOException {
+    myCacheFile = new File(myTempFolder.getRoot(), "cache/value_resources.bin");
+    myValuesFile = myTempFolder.newFile("strings.xml");
+    FileUtil.writeToFile(myValuesFile, "<resources><string name=\"app_name\">App</string></resources>");
+    myResources = Arrays.asList(new ResourceEntry("string", "app_name", "strings.xml"),
+                                new ResourceEntry("string", "title", "strings.xml"),
+                                new ResourceEntry("id", "button", "ids.xml"));
+  }
+
+  @Test
+  public void testRoundTrip() {
+    writeCache();
+
+    final AndroidValueResourcesCacheStorage storage = new AndroidValueResourcesCacheStorage(myCacheFile);
+    assertEquals(myResources, getCachedResources(storage));
+    assertNull(storage.get(myValuesFile.getPath(), myValuesFile.lastModified() + 1, myValuesFile.length()));
+    assertNull(storage.get(myValuesFile.getPath(), myValuesFile.lastModified(), myValuesFile.length() + 1));
+  }
+
+  @Test
+  public void testEntriesOfDeletedFilesDropped() {
+    final AndroidValueResourcesCacheStorage storage = new AndroidValueResourcesCacheStorage(myCacheFile);
+    final String deletedPath = new File(myTempFolder.getRoot(), "deleted.xml").getPath();
+    storage.put(deletedPath, 1, 1, myResources);
+    storage.put(myValuesFile.getPath(), myValuesFile.lastModified(), myValuesFile.length(), myResources);
+    storage.flush();
+
+    final AndroidValueResourcesCacheStorage reloaded = new AndroidValueResourcesCacheStorage(myCacheFile);
+    assertNull(reloaded.get(deletedPath, 1, 1));
+    assertEquals(myResources, getCachedResources(reloaded));
+  }
+
+  @Test
+  public void testCorruptedFileIgnored() throws IOException {
+    writeCache();
+    final byte[] bytes = FileUtil.loadFileBytes(myCacheFile);
+    bytes[bytes.length - 5] ^= 0x5A;
+    FileUtil.writeToFile(myCacheFile, bytes);
+
+    assertNotCached();
+  }
+
+  @Test
+  public void testTruncatedFileIgnored() throws IOException {
+    writeCache();
+    final byte[] bytes = FileUtil.loadFileBytes(myCacheFile);
+    FileUtil.writeToFile(myCacheFile, Arrays.copyOf(bytes, bytes.length / 2));
+
+    assertNotCached();
+  }
+
+  @Test
+  public void testGarbageFileIgnored() throws IOException {
+    FileUtil.createParentDirs(myCacheFile);
+    FileUtil.writeToFile(myCacheFile, new byte[]{(byte)0xDE, (byte)0xAD, (byte)0xBE, (byte)0xEF, 2, -1, -1, -1, -1, -1, -1});
+
+    assertNotCached();
+  }
+
+  @Test
+  public void testRewrittenAfterCorruption() throws IOException {
+    writeCache();
+    FileUtil.writeToFile(myCacheFile, new byte[]{1, 2, 3});
+    assertNotCached();
+
+    // After falling back to a reparse, the new results are persisted again
+    writeCache();
+    assertEquals(myResources, getCachedResources(new AndroidValueResourcesCacheStorage(myCacheFile)));
+  }
+
+  private void writeCache() {
+    final AndroidValueResourcesCacheStorage storage = new AndroidValueResourcesCacheStorage(myCacheFile);
+    storage.put(myValuesFile.getPath(), myValuesFile.lastModified(), myValuesFile.length(), myResources);
+    storage.flush();
+    assertTrue(myCacheFile.isFile());
+  }
+
+  private void assertNotCached() {
+    assertNull(getCachedResources(new AndroidValueResourcesCacheStorage(myCacheFile)));
+    assertFalse(myCacheFile.exists());
+  }
+
+  private List<ResourceEntry> getCachedResources(@NotNull AndroidValueResourcesCacheStorage storage) {
+    return storage.get(myValuesFile.getPath(), myValuesFile.lastModified(), myValuesFile.length());
+  }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.naveditor.scene
+
+import com.android.annotations.concurrency.GuardedBy
+import com.android.tools.adtui.ImageUtils
+import com.google.common.annotations.VisibleForTesting
+import com.google.common.hash.Hashing
+import com.intellij.openapi.diagnostic.Logger
+import java.awt.Dimension
+import java.awt.image.BufferedImage
+import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardCopyOption
+import java.util.concurrent.Executor
+import java.util.stream.Collectors
+import javax.imageio.ImageIO
+
+/**
+ * Identifies a rendered layout: the hash of the content of the layout file, a description of the configuration it was rendered with
+ * and the modification count of the resources at the time of the render.
+ */
+data class ThumbnailKey(val contentHash: Long, val configuration: String, val resourceVersion: Long) {
+  val fileName: String
+    get() = "%016x.png".format(Hashing.farmHashFingerprint64().hashUnencodedChars("$contentHash|$configuration|$resourceVersion").asLong())
+}
+
+/**
+ * Two-level cache of the images rendered by [ThumbnailManager].
+ *
+ * Full-size images and their scaled variants are kept in memory in a LRU map bounded by the number of bytes of the images. Full-size
+ * images are also written as PNG files to [directory] (if not null), so that they survive both the eviction from memory and the closing
+ * of the editor. Every full-size image has a chain of mipmaps, each level half the size of the previous one, that is built once and used
+ * as the source of the scaled variants.
+ */
+class ThumbnailCache(
+  private val directory: Path?,
+  private val memoryBudgetBytes: Long,
+  private val diskExecutor: Executor
+) {
+  private data class ScaledKey(val key: ThumbnailKey, val dimension: Dimension)
+
+  private class CachedImage(val image: BufferedImage) {
+    @GuardedBy("this")
+    private val mipmaps = mutableListOf(image)
+
+    /**
+     * Returns the smallest mipmap that is at least [width] x [height] pixels, or the full image if none is small enough.
+     */
+    @Synchronized
+    fun getMipmap(width: Int, height: Int): BufferedImage {
+      var level = 0
+      while (true) {
+        val current = mipmaps[level]
+        if (current.width / 2 < width || current.height / 2 < height || current.width < 2 || current.height < 2) {
+          return current
+        }
+        level++
+        if (level == mipmaps.size) {
+          mipmaps.add(ImageUtils.scale(current, 0.5, 0.5))
+        }
+      }
+    }
+  }
+
+  @GuardedBy("this")
+  private val memory = LinkedHashMap<Any, Any>(16, 0.75f, true)
+
+  @GuardedBy("this")
+  private var memoryBytes = 0L
+
+  @GuardedBy("this")
+  private var writesSinceTrim = 0
+
+  /**
+   * Returns the full-size image for [key] if it's in memory.
+   */
+  @Synchronized
+  fun getFullImage(key: ThumbnailKey): BufferedImage? = (memory[key] as CachedImage?)?.image
+
+  /**
+   * Returns the full-size image for [key], reading it from disk if it isn't in memory. This may do IO and shouldn't be called on the
+   * event thread.
+   */
+  fun loadFullImage(key: ThumbnailKey): BufferedImage? {
+    getFullImage(key)?.let { return it }
+    val file = directory?.resolve(key.fileName) ?: return null
+    if (!Files.isRegularFile(file)) {
+      return null
+    }
+    val image = try {
+      ImageIO.read(file.toFile())
+    }
+    catch (e: IOException) {
+      LOG.info("Cannot read cached thumbnail $file", e)
+      null
+    } ?: return null
+    putInMemory(key, CachedImage(image), estimateSize(image) * 4 / 3)
+    return image
+  }
+
+  /**
+   * Stores a freshly rendered full-size image in memory, and asynchronously on disk.
+   */
+  fun putFullImage(key: ThumbnailKey, image: BufferedImage) {
+    putInMemory(key, CachedImage(image), estimateSize(image) * 4 / 3)
+    if (directory != null) {
+      diskExecutor.execute { writeToDisk(key, image) }
+    }
+  }
+
+  /**
+   * Returns the smallest mipmap of the full-size image for [key] that has at least the given dimensions.
+   */
+  fun getMipmap(key: ThumbnailKey, width: Int, height: Int): BufferedImage? {
+    val cached = synchronized(this) { memory[key] as CachedImage? } ?: return null
+    return cached.getMipmap(width, height)
+  }
+
+  @Synchronized
+  fun getScaledImage(key: ThumbnailKey, dimension: Dimension): BufferedImage? = memory[ScaledKey(key, dimension)] as BufferedImage?
+
+  fun putScaledImage(key: ThumbnailKey, dimension: Dimension, image: BufferedImage) {
+    putInMemory(ScaledKey(key, Dimension(dimension)), image, estimateSize(image))
+  }
+
+  @VisibleForTesting
+  @Synchronized
+  fun getMemoryBytes() = memoryBytes
+
+  @Synchronized
+  private fun putInMemory(key: Any, value: Any, size: Long) {
+    memory.put(key, value)?.let { memoryBytes -= sizeOf(it) }
+    memoryBytes += size
+    val iterator = memory.entries.iterator()
+    // Never evict the entry that was just added
+    while (memoryBytes > memoryBudgetBytes && memory.size > 1) {
+      val eldest = iterator.next()
+      memoryBytes -= sizeOf(eldest.value)
+      iterator.remove()
+    }
+  }
+
+  private fun sizeOf(value: Any) = when (value) {
+    is CachedImage -> estimateSize(value.image) * 4 / 3
+    else -> estimateSize(value as BufferedImage)
+  }
+
+  private fun writeToDisk(key: ThumbnailKey, image: BufferedImage) {
+    val directory = directory ?: return
+    try {
+      Files.createDirectories(directory)
+      val file = directory.resolve(key.fileName)
+      val temp = Files.createTempFile(directory, "thumbnail", ".tmp")
+      try {
+        ImageIO.write(image, "png", temp.toFile())
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+      }
+      finally {
+        Files.deleteIfExists(temp)
+      }
+      val trim = synchronized(this) {
+        (++writesSinceTrim >= TRIM_INTERVAL).also { if (it) writesSinceTrim = 0 }
+      }
+      if (trim) {
+        trimDiskCache(directory)
+      }
+    }
+    catch (e: IOException) {
+      LOG.info("Cannot write cached thumbnail", e)
+    }
+  }
+
+  companion object {
+    private val LOG = Logger.getInstance(ThumbnailCache::class.java)
+
+    /** Maximum number of images kept on disk, the least recently written ones are deleted first. */
+    private const val MAX_DISK_ENTRIES = 1000
+
+    /** Number of writes between two checks of the number of images on disk. */
+    private const val TRIM_INTERVAL = 50
+
+    private fun estimateSize(image: BufferedImage) = image.width.toLong() * image.height * 4
+
+    @VisibleForTesting
+    fun trimDiskCache(directory: Path, maxEntries: Int = MAX_DISK_ENTRIES) {
+      val files = Files.list(directory).use { stream ->
+        stream.filter { it.fileName.toString().endsWith(".png") }.collect(Collectors.toList())
+      }
+      if (files.size <= maxEntries) {
+        return
+      }
+      files.sortedBy { Files.getLastModifiedTime(it) }.take(files.size - maxEntries).forEach { Files.deleteIfExists(it) }
+    }
+  }
+}
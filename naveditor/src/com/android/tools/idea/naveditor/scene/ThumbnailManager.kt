@@ -17,25 +17,35 @@ package com.android.tools.idea.naveditor.scene
 
 import com.google.common.annotations.VisibleForTesting
 import com.android.annotations.concurrency.GuardedBy
+import com.android.ide.common.resources.ResourceItem
+import com.android.ide.common.resources.ResourceVisitor
 import com.android.tools.adtui.ImageUtils
+import com.android.tools.idea.concurrency.AndroidIoManager
 import com.android.tools.idea.configurations.Configuration
 import com.android.tools.idea.rendering.RenderResult
 import com.android.tools.idea.rendering.RenderService
 import com.android.tools.idea.rendering.RenderTask
 import com.android.tools.idea.res.LocalResourceRepository
 import com.android.tools.idea.res.ResourceRepositoryManager
+import com.android.tools.idea.util.toVirtualFile
 import com.google.common.collect.HashBasedTable
+import com.google.common.hash.Hashing
 import com.intellij.openapi.application.ApplicationManager
+import com.intellij.openapi.application.PathManager
+import com.intellij.openapi.fileEditor.FileDocumentManager
 import com.intellij.openapi.util.Key
 import com.intellij.openapi.vfs.VirtualFile
 import com.intellij.psi.xml.XmlFile
-import com.intellij.reference.SoftReference
+import com.intellij.util.concurrency.AppExecutorUtil
+import com.intellij.util.containers.ContainerUtil
 import com.intellij.util.ui.ImageUtil
 import com.intellij.util.ui.UIUtil
 import org.jetbrains.android.facet.AndroidFacet
 import org.jetbrains.android.facet.AndroidFacetScopedService
 import java.awt.Dimension
 import java.awt.image.BufferedImage
+import java.nio.file.Path
+import java.nio.file.Paths
 import java.util.*
 import java.util.concurrent.CompletableFuture
 import java.util.concurrent.TimeUnit
@@ -52,14 +62,26 @@ data class RefinableImage(val image: BufferedImage? = null, val refined: Complet
 
 /**
  * Creates and caches preview images of screens in the nav editor.
+ *
+ * Images are cached in a [ThumbnailCache], keyed by the content of the layout file, the configuration and the content of the app
+ * resources, so unchanged layouts are not rendered again when the editor or the IDE is reopened. The content of a file with unsaved
+ * changes is taken from its document, which is what gets rendered. Files are only read on background threads: until the key of a layout
+ * is known, the last image rendered for it is shown.
  */
-open class ThumbnailManager protected constructor(facet: AndroidFacet) : AndroidFacetScopedService(facet) {
+open class ThumbnailManager @JvmOverloads protected constructor(
+  facet: AndroidFacet,
+  cacheDirectory: Path? = defaultCacheDirectory()
+) : AndroidFacetScopedService(facet) {
 
-  private val myImages = HashBasedTable.create<VirtualFile, Configuration, SoftReference<BufferedImage>?>()
-  private val myScaledImages = HashBasedTable.create<VirtualFile, Configuration, MutableMap<Dimension, SoftReference<BufferedImage>?>?>()
-  private val myRenderVersions = HashBasedTable.create<VirtualFile, Configuration, Long>()
-  private val myRenderModStamps = HashBasedTable.create<VirtualFile, Configuration, Long>()
+  private val myCache = ThumbnailCache(cacheDirectory, MEMORY_BUDGET_BYTES, AndroidIoManager.getInstance().getBackgroundDiskIoExecutor())
+  // Last key for which an image was rendered, used to show an outdated image while the new one is being rendered
+  private val myLatestKeys = HashBasedTable.create<VirtualFile, Configuration, ThumbnailKey>()
+  // Content hashes of the layout and resource files, with the modification stamp of the file or document they were computed for
+  private val myContentHashes: MutableMap<VirtualFile, Pair<Long, Long>> = ContainerUtil.createConcurrentWeakMap()
   private val myResourceRepository: LocalResourceRepository = ResourceRepositoryManager.getAppResources(facet)
+  // Hash of the content of the app resources, with the modification count of the repository it was computed for
+  @Volatile
+  private var myResourcesHash: Pair<Long, Long>? = null
 
   @GuardedBy("disposalLock")
   private val myPendingFutures = HashMap<VirtualFile, CompletableFuture<RefinableImage?>>()
@@ -93,23 +115,107 @@ open class ThumbnailManager protected constructor(facet: AndroidFacet) : Android
     dimensions: Dimension
   ): RefinableImage {
     val file = xmlFile.virtualFile
-    val cachedByDimension = myScaledImages[file, configuration] ?: mutableMapOf<Dimension, SoftReference<BufferedImage>?>().also {
-      myScaledImages.put(file, configuration, it)
+    val key = getKeyIfHashed(file, configuration)
+    val cached = key?.let { myCache.getScaledImage(it, dimensions) }
+    if (cached != null) {
+      return RefinableImage(cached)
+    }
+    val outdated = synchronized(myLatestKeys) { myLatestKeys[file, configuration] }?.let { myCache.getScaledImage(it, dimensions) }
+    val refined = if (key != null) {
+      getScaledImage(xmlFile, configuration, key, dimensions)
     }
-    val cached = cachedByDimension[dimensions]?.get()
-    return if (cached != null &&
-               myRenderVersions.get(file, configuration) == myResourceRepository.modificationCount &&
-               myRenderModStamps.get(file, configuration) == file.timeStamp) {
-      RefinableImage(cached)
+    else {
+      // Hashing the files may read them from disk, so it's done in the background
+      CompletableFuture.supplyAsync({ getKey(file, configuration) }, AppExecutorUtil.getAppExecutorService())
+        .thenCompose { newKey ->
+          myCache.getScaledImage(newKey, dimensions)?.let { CompletableFuture.completedFuture<RefinableImage?>(RefinableImage(it)) }
+          ?: getScaledImage(xmlFile, configuration, newKey, dimensions)
+        }
+    }
+    return RefinableImage(outdated, refined)
+  }
+
+  /**
+   * Returns the key of the image of [file] if the content hashes it depends on are up to date, without reading any file.
+   */
+  private fun getKeyIfHashed(file: VirtualFile, configuration: Configuration): ThumbnailKey? {
+    val contentHash = myContentHashes[file]?.takeIf { it.first == getModificationStamp(file) }?.second ?: return null
+    val resourcesHash = myResourcesHash?.takeIf { it.first == myResourceRepository.modificationCount }?.second ?: return null
+    return ThumbnailKey(contentHash, describe(configuration), resourcesHash)
+  }
+
+  /**
+   * Returns the key of the image of [file], hashing the files that changed since the last call. This may do IO and shouldn't be called
+   * on the event thread.
+   */
+  @VisibleForTesting
+  fun getKey(file: VirtualFile, configuration: Configuration): ThumbnailKey {
+    return ThumbnailKey(getContentHash(file), describe(configuration), getResourcesHash())
+  }
+
+  /**
+   * Returns the modification stamp of the document of [file] if it's loaded, since the document may have unsaved changes.
+   */
+  private fun getModificationStamp(file: VirtualFile): Long {
+    return FileDocumentManager.getInstance().getCachedDocument(file)?.modificationStamp ?: file.modificationStamp
+  }
+
+  private fun getContentHash(file: VirtualFile): Long {
+    val stamp = getModificationStamp(file)
+    myContentHashes[file]?.let { (hashedStamp, hash) -> if (hashedStamp == stamp) return hash }
+    val documentManager = FileDocumentManager.getInstance()
+    val document = documentManager.getCachedDocument(file)
+    val hash = if (document != null && documentManager.isDocumentUnsaved(document)) {
+      Hashing.farmHashFingerprint64().hashUnencodedChars(document.immutableCharSequence)
     }
     else {
-      RefinableImage(cached, getScaledImage(xmlFile, configuration, dimensions))
+      Hashing.farmHashFingerprint64().hashBytes(file.contentsToByteArray())
+    }
+    return hash.asLong().also { myContentHashes[file] = Pair(stamp, it) }
+  }
+
+  /**
+   * Returns a hash of the paths and contents of the files the project resources are defined in, and of the names of the libraries the
+   * app depends on. Unlike the modification count of the resource repository, it is the same in every IDE session.
+   */
+  private fun getResourcesHash(): Long {
+    val modificationCount = myResourceRepository.modificationCount
+    myResourcesHash?.let { (hashedCount, hash) -> if (hashedCount == modificationCount) return hash }
+    // The sources of the resource items rather than the resource directories, so that only the files the repository knows about are hashed
+    val files = HashSet<VirtualFile>()
+    ResourceRepositoryManager.getProjectResources(facet).accept(object : ResourceVisitor {
+      override fun visit(resourceItem: ResourceItem): ResourceVisitor.VisitResult {
+        resourceItem.source.toVirtualFile()?.let { files.add(it) }
+        return ResourceVisitor.VisitResult.CONTINUE
+      }
+    })
+    val hasher = Hashing.farmHashFingerprint64().newHasher()
+    for (file in files.sortedBy { it.path }) {
+      hasher.putUnencodedChars(file.path).putLong(getContentHash(file))
+    }
+    for (library in ResourceRepositoryManager.getInstance(facet).libraryResources.mapNotNull { it.libraryName }.sorted()) {
+      hasher.putUnencodedChars(library)
     }
+    return hasher.hash().asLong().also { myResourcesHash = Pair(modificationCount, it) }
+  }
+
+  /**
+   * Returns a description of everything in [configuration] that affects the rendering, that is stable across IDE sessions.
+   */
+  private fun describe(configuration: Configuration): String {
+    return listOf(module.project.locationHash,
+                  module.name,
+                  configuration.fullConfig.qualifierString,
+                  configuration.device?.id,
+                  configuration.deviceState?.name,
+                  configuration.theme,
+                  configuration.target?.hashString()).joinToString("|")
   }
 
   private fun getScaledImage(
     xmlFile: XmlFile,
     configuration: Configuration,
+    key: ThumbnailKey,
     dimensions: Dimension
   ): CompletableFuture<RefinableImage?> {
     val file = xmlFile.virtualFile
@@ -127,7 +233,7 @@ open class ThumbnailManager protected constructor(facet: AndroidFacet) : Android
     }
 
     // This async pipeline will eventually set "result". First get the full-sized image.
-    getFullImage(configuration, xmlFile)
+    getFullImage(configuration, xmlFile, key)
       // Scale the image to the desired size
       .thenApply { full ->
         if (full == null) {
@@ -141,13 +247,8 @@ open class ThumbnailManager protected constructor(facet: AndroidFacet) : Android
             }
           }
           // This does the high-quality scaling asynchronously
-          val scaledFuture = scaleImage(full, dimensions).thenApply { scaled ->
-            val dimensionMap: MutableMap<Dimension, SoftReference<BufferedImage>?> =
-              myScaledImages[xmlFile.virtualFile, configuration]
-              ?: mutableMapOf<Dimension, SoftReference<BufferedImage>?>().also {
-                myScaledImages.put(xmlFile.virtualFile, configuration, it)
-              }
-            dimensionMap[dimensions] = SoftReference(scaled)
+          val scaledFuture = scaleImage(key, full, dimensions).thenApply { scaled ->
+            myCache.putScaledImage(key, dimensions, scaled)
             scaled
           }.thenApply { RefinableImage(it) }
           // This stage of the top-level async pipeline returns a quickly-scaled version of the fullsize image, and the future for the high-
@@ -173,13 +274,12 @@ open class ThumbnailManager protected constructor(facet: AndroidFacet) : Android
 
   private fun getFullImage(
     configuration: Configuration,
-    xmlFile: XmlFile
+    xmlFile: XmlFile,
+    key: ThumbnailKey
   ): CompletableFuture<BufferedImage?> {
     val file = xmlFile.virtualFile
-    val fullSize = myImages[file, configuration]?.get()
-    return if (fullSize != null &&
-               myRenderVersions.get(file, configuration) == myResourceRepository.modificationCount &&
-               myRenderModStamps.get(file, configuration) == file.timeStamp) {
+    val fullSize = myCache.getFullImage(key)
+    return if (fullSize != null) {
       CompletableFuture.completedFuture(fullSize)
     }
     else {
@@ -188,7 +288,13 @@ open class ThumbnailManager protected constructor(facet: AndroidFacet) : Android
       // if inflate() (which is itself synchronous) hasn't already been called.
       ApplicationManager.getApplication().executeOnPooledThread {
         try {
-          val image = getImage(xmlFile, file, configuration)
+          // Only render if the image isn't in the disk cache either
+          val image = myCache.loadFullImage(key) ?: getImage(xmlFile, configuration, key)
+          if (image != null) {
+            synchronized(myLatestKeys) {
+              myLatestKeys.put(file, configuration, key)
+            }
+          }
           result.complete(image)
         }
         catch (t: Throwable) {
@@ -205,13 +311,17 @@ open class ThumbnailManager protected constructor(facet: AndroidFacet) : Android
     return scaled
   }
 
-  private fun scaleImage(image: BufferedImage, dimensions: Dimension): CompletableFuture<BufferedImage> {
+  private fun scaleImage(key: ThumbnailKey, full: BufferedImage, dimensions: Dimension): CompletableFuture<BufferedImage> {
     val result = CompletableFuture<BufferedImage>()
     ApplicationManager.getApplication().executeOnPooledThread {
       var scaledImage: BufferedImage? = null
+      val retina = UIUtil.isRetina() && ImageUtils.supportsRetina()
+      val factor = if (retina) 2 else 1
+      // Scale from the smallest mipmap that is still large enough, rather than from the full image
+      val image = myCache.getMipmap(key, dimensions.width * factor, dimensions.height * factor) ?: full
       val xScale = dimensions.width.toDouble() / image.width
       val yScale = dimensions.height.toDouble() / image.height
-      if (UIUtil.isRetina() && ImageUtils.supportsRetina()) {
+      if (retina) {
         scaledImage = ImageUtils.scale(image, xScale * 2, yScale * 2)
         scaledImage = ImageUtils.convertToRetina(scaledImage)
       }
@@ -224,7 +334,7 @@ open class ThumbnailManager protected constructor(facet: AndroidFacet) : Android
     return result
   }
 
-  private fun getImage(xmlFile: XmlFile, file: VirtualFile, configuration: Configuration): BufferedImage? {
+  private fun getImage(xmlFile: XmlFile, configuration: Configuration, key: ThumbnailKey): BufferedImage? {
     val renderService = RenderService.getInstance(module.project)
     val task = createTask(facet, xmlFile, configuration, renderService)
     var renderResult: CompletableFuture<RenderResult>? = null
@@ -235,9 +345,9 @@ open class ThumbnailManager protected constructor(facet: AndroidFacet) : Android
     if (renderResult != null) {
       // This should also be done in a listener if task.render() were actually async.
       image = renderResult.get().renderedImage.copy
-      myImages.put(file, configuration, SoftReference<BufferedImage>(image))
-      myRenderVersions.put(file, configuration, myResourceRepository.modificationCount)
-      myRenderModStamps.put(file, configuration, file.timeStamp)
+      if (image != null) {
+        myCache.putFullImage(key, image)
+      }
     }
     return image
   }
@@ -256,6 +366,16 @@ open class ThumbnailManager protected constructor(facet: AndroidFacet) : Android
   override fun onServiceDisposal(facet: AndroidFacet) {}
 
   companion object {
+    /** Memory used by the full size and scaled images kept in memory. */
+    private const val MEMORY_BUDGET_BYTES = 64L * 1024 * 1024
+
+    private const val CACHE_DIRECTORY = "nav-thumbnails"
+
+    private fun defaultCacheDirectory(): Path? {
+      // Keep tests independent from the images rendered by previous tests
+      return if (ApplicationManager.getApplication().isUnitTestMode) null else Paths.get(PathManager.getSystemPath(), CACHE_DIRECTORY)
+    }
+
     @JvmStatic
     fun getInstance(facet: AndroidFacet): ThumbnailManager {
       var manager = facet.getUserData(KEY)
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.naveditor.scene
+
+import com.intellij.openapi.util.io.FileUtil
+import junit.framework.TestCase
+import java.awt.Dimension
+import java.awt.image.BufferedImage
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.attribute.FileTime
+import java.util.concurrent.Executor
+
+private val KEY1 = ThumbnailKey(1, "config", 1)
+private val KEY2 = ThumbnailKey(2, "config", 1)
+private val KEY3 = ThumbnailKey(1, "config", 2)
+
+class ThumbnailCacheTest : TestCase() {
+  private lateinit var directory: Path
+
+  override fun setUp() {
+    super.setUp()
+    directory = Files.createTempDirectory("thumbnails")
+  }
+
+  override fun tearDown() {
+    try {
+      FileUtil.delete(directory.toFile())
+    }
+    finally {
+      super.tearDown()
+    }
+  }
+
+  fun testMemoryBudget() {
+    // Room for two 100x100 images and their mipmaps
+    val cache = ThumbnailCache(null, 2L * 100 * 100 * 4 * 4 / 3, Executor { it.run() })
+    val image1 = image(100, 100, 0xFF0000)
+    val image2 = image(100, 100, 0x00FF00)
+    cache.putFullImage(KEY1, image1)
+    cache.putFullImage(KEY2, image2)
+    assertSame(image2, cache.getFullImage(KEY2))
+    assertSame(image1, cache.getFullImage(KEY1))
+
+    // KEY1 was used last, KEY2 is evicted
+    cache.putFullImage(KEY3, image(100, 100, 0x0000FF))
+    assertSame(image1, cache.getFullImage(KEY1))
+    assertNull(cache.getFullImage(KEY2))
+    assertTrue(cache.getMemoryBytes() <= 2L * 100 * 100 * 4 * 4 / 3)
+  }
+
+  fun testScaledImages() {
+    val cache = ThumbnailCache(null, Long.MAX_VALUE, Executor { it.run() })
+    val scaled = image(10, 20, 0)
+    cache.putScaledImage(KEY1, Dimension(10, 20), scaled)
+    assertSame(scaled, cache.getScaledImage(KEY1, Dimension(10, 20)))
+    assertNull(cache.getScaledImage(KEY1, Dimension(20, 10)))
+    assertNull(cache.getScaledImage(KEY3, Dimension(10, 20)))
+  }
+
+  fun testMipmaps() {
+    val cache = ThumbnailCache(null, Long.MAX_VALUE, Executor { it.run() })
+    val full = image(400, 800, 0xFF0000)
+    cache.putFullImage(KEY1, full)
+
+    assertSame(full, cache.getMipmap(KEY1, 300, 300))
+    val half = cache.getMipmap(KEY1, 200, 300)!!
+    assertEquals(200, half.width)
+    assertEquals(400, half.height)
+    val eighth = cache.getMipmap(KEY1, 50, 100)!!
+    assertEquals(50, eighth.width)
+    assertEquals(100, eighth.height)
+    // Levels are only generated once
+    assertSame(half, cache.getMipmap(KEY1, 200, 300))
+    assertSame(eighth, cache.getMipmap(KEY1, 40, 90))
+    assertEquals(100, cache.getMipmap(KEY1, 100, 100)!!.width)
+    assertNull(cache.getMipmap(KEY2, 10, 10))
+  }
+
+  fun testDiskCache() {
+    val image = image(30, 40, 0x123456)
+    ThumbnailCache(directory, Long.MAX_VALUE, Executor { it.run() }).putFullImage(KEY1, image)
+    assertTrue(Files.isRegularFile(directory.resolve(KEY1.fileName)))
+
+    // A new cache, e.g. after reopening the editor, reads the image back from disk
+    val cache = ThumbnailCache(directory, Long.MAX_VALUE, Executor { it.run() })
+    assertNull(cache.getFullImage(KEY1))
+    val loaded = cache.loadFullImage(KEY1)!!
+    assertEquals(30, loaded.width)
+    assertEquals(40, loaded.height)
+    assertEquals(image.getRGB(5, 5), loaded.getRGB(5, 5))
+    assertSame(loaded, cache.getFullImage(KEY1))
+
+    assertNull(cache.loadFullImage(KEY2))
+    assertNull(cache.loadFullImage(KEY3))
+  }
+
+  fun testTrimDiskCache() {
+    val cache = ThumbnailCache(directory, Long.MAX_VALUE, Executor { it.run() })
+    val keys = (0 until 5).map { ThumbnailKey(it.toLong(), "config", 1) }
+    keys.forEachIndexed { i, key ->
+      cache.putFullImage(key, image(2, 2, 0))
+      Files.setLastModifiedTime(directory.resolve(key.fileName), FileTime.fromMillis(1000L * (i + 1)))
+    }
+
+    ThumbnailCache.trimDiskCache(directory, 3)
+    assertEquals(listOf(false, false, true, true, true), keys.map { Files.isRegularFile(directory.resolve(it.fileName)) })
+  }
+
+  private fun image(width: Int, height: Int, color: Int): BufferedImage {
+    val image = BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB)
+    for (x in 0 until width) {
+      for (y in 0 until height) {
+        image.setRGB(x, y, color or 0xFF000000.toInt())
+      }
+    }
+    return image
+  }
+}
@@ -29,10 +29,14 @@ import com.android.tools.idea.rendering.RenderTestUtil;
 import com.android.tools.idea.res.ResourceRepositoryManager;
 import com.intellij.idea.Bombed;
 import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VfsUtil;
 import com.intellij.openapi.vfs.VirtualFile;
-import com.intellij.openapi.vfs.newvfs.impl.VirtualFileSystemEntry;
+import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiManager;
 import com.intellij.psi.xml.XmlFile;
 import com.intellij.util.ui.ImageUtil;
@@ -40,6 +44,7 @@ import com.intellij.util.ui.UIUtil;
 import java.awt.Dimension;
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Calendar;
@@ -101,6 +106,52 @@ public class ThumbnailManagerTest extends NavTestCase {
     assertSame(image, imageFuture.getTerminalImage());
   }
 
+  public void testKeyDependsOnResourceContent() throws Exception {
+    ThumbnailManager manager = ThumbnailManager.getInstance(myFacet);
+    VirtualFile file = myFixture.findFileInTempDir("res/layout/activity_main.xml");
+    XmlFile psiFile = (XmlFile)PsiManager.getInstance(getProject()).findFile(file);
+    NlModel model = NlModel.create(getMyRootDisposable(), null, myFacet, psiFile.getVirtualFile(), mySurface.getComponentRegistrar());
+    Configuration configuration = model.getConfiguration();
+    ThumbnailKey original = manager.getKey(file, configuration);
+
+    VirtualFile resDir = myFixture.findFileInTempDir("res");
+    AndroidResourceUtil.createValueResource(getProject(), resDir, "foo", ResourceType.STRING, "thumbnail_strings.xml",
+                                            Collections.singletonList(ResourceFolderType.VALUES.getName()), "bar");
+    ResourceRepositoryManager.getAppResources(myFacet).sync();
+    assertFalse(original.equals(manager.getKey(file, configuration)));
+
+    // The key only depends on the content of the resources, not on the number of changes, so it can be persisted across sessions
+    VirtualFile added = myFixture.findFileInTempDir("res/values/thumbnail_strings.xml");
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> {
+      try {
+        added.delete(this);
+      }
+      catch (IOException e) {
+        fail(e.getMessage());
+      }
+    });
+    ResourceRepositoryManager.getAppResources(myFacet).sync();
+    assertEquals(original, manager.getKey(file, configuration));
+  }
+
+  public void testKeyDependsOnUnsavedChanges() {
+    ThumbnailManager manager = ThumbnailManager.getInstance(myFacet);
+    VirtualFile file = myFixture.findFileInTempDir("res/layout/activity_main.xml");
+    XmlFile psiFile = (XmlFile)PsiManager.getInstance(getProject()).findFile(file);
+    NlModel model = NlModel.create(getMyRootDisposable(), null, myFacet, psiFile.getVirtualFile(), mySurface.getComponentRegistrar());
+    Configuration configuration = model.getConfiguration();
+    ThumbnailKey original = manager.getKey(file, configuration);
+
+    // The layout is rendered from its PSI, so an edit that isn't saved yet has to change the key too
+    Document document = FileDocumentManager.getInstance().getDocument(file);
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> {
+      document.insertString(document.getTextLength(), "\n");
+      PsiDocumentManager.getInstance(getProject()).commitDocument(document);
+    });
+    assertTrue(FileDocumentManager.getInstance().isDocumentUnsaved(document));
+    assertFalse(original.equals(manager.getKey(file, configuration)));
+  }
+
   public void testOldVersion() throws Exception {
     ThumbnailManager manager = ThumbnailManager.getInstance(myFacet);
     VirtualFile file = myFixture.findFileInTempDir("res/layout/activity_main.xml");
@@ -132,7 +183,15 @@ public class ThumbnailManagerTest extends NavTestCase {
       }
     });
 
-    ((VirtualFileSystemEntry)file).setTimeStamp(file.getTimeStamp() + 100);
+    // Images are cached by content, touching the file isn't enough to render it again
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> {
+      try {
+        VfsUtil.saveText(file, VfsUtil.loadText(file) + "\n<!-- changed -->\n");
+      }
+      catch (IOException e) {
+        fail(e.getMessage());
+      }
+    });
 
     RefinableImage image = manager.getThumbnail(psiFile, configuration, new Dimension(100, 200));
     taskStarted.acquire();
@@ -28,6 +28,7 @@ import com.android.tools.idea.resources.base.Base128InputStream;
 import com.android.tools.idea.resources.base.Base128OutputStream;
 import com.android.tools.idea.resources.base.BasicResourceItem;
 import com.android.tools.idea.resources.base.BasicResourceItemBase;
+import com.android.tools.idea.resources.base.BasicValueResourceItem;
 import com.android.tools.idea.resources.base.BasicValueResourceItemBase;
 import com.android.tools.idea.resources.base.NamespaceResolver;
 import com.android.tools.idea.resources.base.RepositoryConfiguration;
@@ -179,6 +180,8 @@ public final class FrameworkResourceRepository extends AarSourceResourceReposito
 
     myLanguageGroups.addAll(languageGroupsLoadedFromSourceRepositoryOrCache);
     if (languageGroups == null || !languageGroupsLoadedFromSourceRepositoryOrCache.containsAll(languageGroups)) {
+      // Share the names and values with the resources copied from the source repository or loaded from cache.
+      loader.setStringCache(stringCache);
       loader.loadRepositoryContents(this);
     }
 
@@ -212,7 +215,7 @@ public final class FrameworkResourceRepository extends AarSourceResourceReposito
    * Copies resources from another FrameworkResourceRepository.
    *
    * @param sourceRepository the repository to copy resources from
-   * @param stringCache the string cache to populate with the names of copied resources
+   * @param stringCache the string cache to populate with the names and values of copied resources
    * @param namespaceResolverCache the namespace resolver cache to populate with namespace resolvers referenced by the copied resources
    * @return the {@link RepositoryConfiguration} objects referenced by the copied resources
    */
@@ -238,6 +241,12 @@ public final class FrameworkResourceRepository extends AarSourceResourceReposito
         }
         String name = item.getName();
         stringCache.put(name, name);
+        if (item instanceof BasicValueResourceItem) {
+          String value = ((BasicValueResourceItem)item).getValue();
+          if (value != null) {
+            stringCache.putIfAbsent(value, value);
+          }
+        }
       }
     }
 
@@ -409,7 +418,6 @@ public final class FrameworkResourceRepository extends AarSourceResourceReposito
           myLanguageGroups = readLanguageGroups(zipFile);
         }
 
-        Map<String, String> stringCache = Maps.newHashMapWithExpectedSize(10000);
         Map<NamespaceResolver, NamespaceResolver> namespaceResolverCache = new HashMap<>();
 
         for (String language : myLanguageGroups) {
@@ -426,7 +434,7 @@ public final class FrameworkResourceRepository extends AarSourceResourceReposito
             }
 
             try (Base128InputStream stream = new Base128InputStream(zipFile.getInputStream(zipEntry))) {
-              repository.loadFromStream(stream, stringCache, namespaceResolverCache);
+              repository.loadFromStream(stream, myStringCache, namespaceResolverCache);
             }
           }
         }
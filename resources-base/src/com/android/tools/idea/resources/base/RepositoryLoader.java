@@ -106,9 +106,11 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
+import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.kxml2.io.KXmlParser;
@@ -140,6 +142,12 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
   @NotNull private final ValueResourceXmlParser myParser = new ValueResourceXmlParser();
   @NotNull private final XmlTextExtractor myTextExtractor = new XmlTextExtractor();
   @NotNull private final ResourceUrlParser myUrlParser = new ResourceUrlParser();
+  /**
+   * Shared instances of resource names and values. The same resource is usually defined in many configurations, e.g. in each
+   * language, and many values like references to other resources are repeated, so sharing the strings significantly reduces
+   * the memory used by the loaded resources.
+   */
+  @NotNull protected Map<String, String> myStringCache = Maps.newHashMapWithExpectedSize(10000);
   // Used to keep track of resources defined in the current value resource file.
   @NotNull private final Table<ResourceType, String, BasicValueResourceItemBase> myValueFileResources =
       Tables.newCustomTable(new EnumMap<>(ResourceType.class), () -> new LinkedHashMap<>());
@@ -486,7 +494,7 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
               String resourceName = myParser.getAttributeValue(null, ATTR_NAME);
               if (resourceName != null) {
                 validateResourceName(resourceName, resourceType, file);
-                BasicValueResourceItemBase item = createResourceItem(resourceType, resourceName, sourceFile);
+                BasicValueResourceItemBase item = createResourceItem(resourceType, intern(resourceName), sourceFile);
                 addValueResourceItem(item);
               }
             }
@@ -562,6 +570,25 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
     addValueFileResources();
   }
 
+  /**
+   * Sets the map used for sharing string instances between the resources loaded by this loader, which can be shared with the
+   * deserialization of other resources of the same repository.
+   *
+   * @param stringCache the map used for storing previously encountered strings; keys and values are identical
+   */
+  public final void setStringCache(@NotNull Map<String, String> stringCache) {
+    myStringCache = stringCache;
+  }
+
+  /**
+   * Returns the shared instance of the given string.
+   */
+  @Contract("null -> null; !null -> !null")
+  @Nullable
+  protected final String intern(@Nullable String str) {
+    return str == null ? null : myStringCache.computeIfAbsent(str, Function.identity());
+  }
+
   protected void handleParsingError(@NotNull PathString file, @NotNull Exception e) {
     LOG.warn("Failed to parse " + file.toString(), e);
   }
@@ -584,7 +611,7 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
 
   protected final void addIdResourceItem(@NotNull String resourceName, @NotNull ResourceSourceFile sourceFile) {
     ResourceVisibility visibility = getVisibility(ResourceType.ID, resourceName);
-    BasicValueResourceItem item = new BasicValueResourceItem(ResourceType.ID, resourceName, sourceFile, visibility, null);
+    BasicValueResourceItem item = new BasicValueResourceItem(ResourceType.ID, intern(resourceName), sourceFile, visibility, null);
     if (!resourceAlreadyDefined(item)) { // Don't create duplicate ID resources.
       addValueResourceItem(item);
     }
@@ -593,7 +620,7 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
   @NotNull
   private BasicFileResourceItem createFileResourceItem(
       @NotNull PathString file, @NotNull ResourceType resourceType, @NotNull RepositoryConfiguration configuration) {
-    String resourceName = getResourceName(file);
+    String resourceName = intern(getResourceName(file));
     ResourceVisibility visibility = getVisibility(resourceType, resourceName);
     Density density = null;
     if (DensityBasedResourceValue.isDensityBasedResourceType(resourceType)) {
@@ -670,7 +697,7 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
     ResourceNamespace.Resolver namespaceResolver = myParser.getNamespaceResolver();
     List<String> values = new ArrayList<>();
     forSubTags(TAG_ITEM, () -> {
-      String text = myTextExtractor.extractText(myParser, false);
+      String text = intern(myTextExtractor.extractText(myParser, false));
       values.add(text);
     });
     int index = 0;
@@ -799,7 +826,7 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
       @NotNull ResourceType type, @NotNull String name, @NotNull ResourceSourceFile sourceFile, boolean withRowXml)
       throws IOException, XmlPullParserException {
     ResourceNamespace.Resolver namespaceResolver = myParser.getNamespaceResolver();
-    String text = type == ResourceType.ID ? null : myTextExtractor.extractText(myParser, withRowXml);
+    String text = type == ResourceType.ID ? null : intern(myTextExtractor.extractText(myParser, withRowXml));
     String rawXml = type == ResourceType.ID ? null : myTextExtractor.getRawXml();
     assert withRowXml || rawXml == null; // Text extractor doesn't extract raw XML unless asked to do it.
     ResourceVisibility visibility = getVisibility(type, name);
@@ -822,9 +849,9 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
     List<StyleItemResourceValue> styleItems = new ArrayList<>();
     forSubTags(TAG_ITEM, () -> {
       ResourceNamespace.Resolver itemNamespaceResolver = myParser.getNamespaceResolver();
-      String itemName = myParser.getAttributeValue(null, ATTR_NAME);
+      String itemName = intern(myParser.getAttributeValue(null, ATTR_NAME));
       if (itemName != null) {
-        String text = myTextExtractor.extractText(myParser, false);
+        String text = intern(myTextExtractor.extractText(myParser, false));
         StyleItemResourceValueImpl styleItem =
             new StyleItemResourceValueImpl(myNamespace, itemName, text, sourceFile.getRepository().getLibraryName());
         styleItem.setNamespaceResolver(itemNamespaceResolver);
@@ -1004,7 +1031,7 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
       text = text.replace('/', File.separatorChar);
     }
     ResourceVisibility visibility = getVisibility(type, name);
-    BasicValueResourceItem item = new BasicValueResourceItem(type, name, sourceFile, visibility, text);
+    BasicValueResourceItem item = new BasicValueResourceItem(type, name, sourceFile, visibility, intern(text));
     item.setNamespaceResolver(namespaceResolver);
     return item;
   }
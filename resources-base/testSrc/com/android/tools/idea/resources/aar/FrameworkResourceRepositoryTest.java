@@ -349,4 +349,20 @@ public class FrameworkResourceRepositoryTest extends PlatformTestCase {
     assertThat(withItalian.getNumberOfLanguageGroupsLoadedFromCache()).isEqualTo(2);
     checkContents(withItalian);
   }
+
+  public void testStringSharing() {
+    for (Set<String> languages : Arrays.asList(ImmutableSet.of("fr", "de"), ImmutableSet.<String>of())) {
+      FrameworkResourceRepository repository = FrameworkResourceRepository.create(myResourceFolder, languages, null, false);
+      FrameworkResourceRepository withItalian = repository.loadMissingLanguages(ImmutableSet.of("it"), null);
+      for (FrameworkResourceRepository resources : Arrays.asList(repository, withItalian)) {
+        // The same resource is defined in many configurations, including the ones copied from the original repository
+        // when loading additional languages. The name should only be stored once.
+        List<ResourceItem> items = resources.getResources(ResourceNamespace.ANDROID, ResourceType.STRING, "ok");
+        assertThat(items.size()).isGreaterThan(1);
+        for (ResourceItem item : items) {
+          assertThat(item.getName()).isSameAs(items.get(0).getName());
+        }
+      }
+    }
+  }
 }